@@ -0,0 +1,64 @@
+package net.irisshaders.iris.test.custom_uniforms;
+
+import com.sun.management.ThreadMXBean;
+import net.irisshaders.iris.gl.uniform.FloatSupplier;
+import net.irisshaders.iris.gl.uniform.UniformUpdateFrequency;
+import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+public class CustomUniformsAllocationTest {
+	private static final int WARMUP_FRAMES = 20_000;
+	private static final int MEASURED_FRAMES = 10_000;
+
+	@Test
+	void testSteadyStateUpdateDoesNotAllocate() {
+		Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean,
+			"per-thread allocation counters are unavailable");
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		float[] time = new float[1];
+		Vector3f position = new Vector3f();
+
+		CustomUniforms.Builder builder = new CustomUniforms.Builder();
+		builder.addVariable("vec2", "wave", "vec2(sin(time), cos(time)) * 0.5 + vec2(0.5, 0.5)", true);
+		builder.addVariable("vec3", "offset", "position - vec3(time, 0.0, -time)", true);
+		builder.addVariable("vec3", "scaled", "clamp(offset * vec3(2.0, 2.0, 2.0), vec3(-4.0, -4.0, -4.0), vec3(4.0, 4.0, 4.0))", true);
+		builder.addVariable("vec4", "color", "vec4(wave.x, wave.y, scaled.z, 1.0)", true);
+		builder.addVariable("float", "brightness", "color.r * 0.25 + smooth(wave.y, 1.0, 1.0)", true);
+		builder.addVariable("bool", "isDay", "brightness > 0.5 && offset.y == 0.0", true);
+
+		CustomUniforms uniforms = builder.build(holder -> {
+			holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "time", (FloatSupplier) () -> time[0]);
+			holder.uniform3f(UniformUpdateFrequency.PER_FRAME, "position", () -> position);
+		});
+
+		for (int i = 0; i < WARMUP_FRAMES; i++) {
+			step(uniforms, time, position, i);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+
+		for (int i = 0; i < MEASURED_FRAMES; i++) {
+			step(uniforms, time, position, WARMUP_FRAMES + i);
+		}
+
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+		// the counter itself may allocate a few bytes on some JVMs, but nothing per frame
+		Assertions.assertTrue(allocated < MEASURED_FRAMES, "allocated " + allocated + " bytes over " + MEASURED_FRAMES + " updates");
+	}
+
+	private static void step(CustomUniforms uniforms, float[] time, Vector3f position, int frame) {
+		time[0] = frame * 0.016f;
+		position.set(frame % 17, frame % 5, frame % 3);
+		uniforms.update(frame / 3);
+	}
+}
@@ -0,0 +1,60 @@
+package net.irisshaders.iris.test.custom_uniforms;
+
+import kroppeb.stareval.function.FunctionReturn;
+import net.irisshaders.iris.gl.uniform.FloatSupplier;
+import net.irisshaders.iris.gl.uniform.UniformUpdateFrequency;
+import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CustomUniformsFrequencyTest {
+	private static final int FRAMES = 600;
+	private static final int FRAMES_PER_TICK = 3;
+
+	@Test
+	void testEvaluationsDropForSlowInputs() {
+		int[] evaluations = new int[3];
+
+		CustomUniforms.Builder builder = new CustomUniforms.Builder();
+		// only depends on a constant input, so it's evaluated once
+		builder.addVariable("float", "scale", "viewScale * 2.0", true);
+		// only depends on per tick inputs, so it's evaluated on every tick
+		builder.addVariable("float", "dayProgress", "worldTime / 24000.0 * scale", true);
+		// depends on a per frame input, so it's evaluated every frame
+		builder.addVariable("float", "wave", "sin(frameTime * dayProgress)", true);
+		// impure, so it's evaluated every frame even though it doesn't depend on anything
+		builder.addVariable("float", "noise", "random()", true);
+
+		CustomUniforms uniforms = builder.build(holder -> {
+			holder.uniform1f(UniformUpdateFrequency.ONCE, "viewScale", (FloatSupplier) () -> {
+				evaluations[0]++;
+				return 1.0f;
+			});
+			holder.uniform1f(UniformUpdateFrequency.PER_TICK, "worldTime", (FloatSupplier) () -> {
+				evaluations[1]++;
+				return 6000.0f;
+			});
+			holder.uniform1f(UniformUpdateFrequency.PER_FRAME, "frameTime", (FloatSupplier) () -> {
+				evaluations[2]++;
+				return 0.016f;
+			});
+		});
+
+		for (int frame = 0; frame < FRAMES; frame++) {
+			uniforms.update(frame / FRAMES_PER_TICK);
+		}
+
+		Assertions.assertEquals(1, evaluations[0]);
+		Assertions.assertEquals(FRAMES / FRAMES_PER_TICK, evaluations[1]);
+		Assertions.assertEquals(FRAMES, evaluations[2]);
+
+		Assertions.assertEquals(0.5f, evaluate(uniforms, "dayProgress"));
+		Assertions.assertEquals((float) Math.sin(0.016f * 0.5f), evaluate(uniforms, "wave"));
+	}
+
+	private static float evaluate(CustomUniforms uniforms, String name) {
+		FunctionReturn functionReturn = new FunctionReturn();
+		uniforms.getVariable(name).evaluateTo(uniforms, functionReturn);
+		return functionReturn.floatReturn;
+	}
+}
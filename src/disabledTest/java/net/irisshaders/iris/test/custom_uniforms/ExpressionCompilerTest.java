@@ -0,0 +1,126 @@
+package net.irisshaders.iris.test.custom_uniforms;
+
+import kroppeb.stareval.compiler.CompiledBooleanExpression;
+import kroppeb.stareval.compiler.CompiledFloatExpression;
+import kroppeb.stareval.compiler.CompiledIntExpression;
+import kroppeb.stareval.compiler.ExpressionCompiler;
+import kroppeb.stareval.element.ExpressionElement;
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.expression.VariableExpression;
+import kroppeb.stareval.function.FunctionContext;
+import kroppeb.stareval.function.FunctionReturn;
+import kroppeb.stareval.function.Type;
+import kroppeb.stareval.parser.Parser;
+import kroppeb.stareval.resolver.ExpressionResolver;
+import net.irisshaders.iris.parsing.IrisFunctions;
+import net.irisshaders.iris.parsing.IrisOptions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExpressionCompilerTest {
+	private static final float[] INPUTS = {0.0f, -1.0f, 0.5f, 2.0f, 7.25f, -1000.0f, Float.NaN, Float.POSITIVE_INFINITY};
+
+	/**
+	 * Evaluates the expression with both the interpreter and the compiler for a range of values of {@code x},
+	 * and checks that the results are identical.
+	 */
+	private static void assertEquivalent(Type outputType, String expressionStr) throws Exception {
+		ExpressionElement element = Parser.parse(expressionStr, IrisOptions.options);
+		ExpressionResolver resolver = new ExpressionResolver(IrisFunctions.functions,
+			name -> name.equals("x") ? Type.Float : null, true);
+
+		float[] x = new float[1];
+		VariableExpression variable = new VariableExpression() {
+			@Override
+			public void evaluateTo(FunctionContext context, FunctionReturn functionReturn) {
+				functionReturn.floatReturn = x[0];
+			}
+		};
+
+		FunctionContext context = new FunctionContext() {
+			@Override
+			public Expression getVariable(String name) {
+				return name.equals("x") ? variable : null;
+			}
+
+			@Override
+			public boolean hasVariable(String name) {
+				return name.equals("x");
+			}
+		};
+
+		Expression expression = resolver.resolveExpression(outputType, element);
+		FunctionReturn functionReturn = new FunctionReturn();
+
+		if (outputType.equals(Type.Boolean)) {
+			CompiledBooleanExpression compiled = ExpressionCompiler.compileBoolean(expression, context);
+			CompiledBooleanExpression interpreted = CompiledBooleanExpression.interpret(expression, context);
+
+			for (float input : INPUTS) {
+				x[0] = input;
+				expression.evaluateTo(context, functionReturn);
+
+				String message = expressionStr + " with x = " + input;
+				Assertions.assertEquals(functionReturn.booleanReturn, compiled.evaluateBoolean(), message);
+				Assertions.assertEquals(functionReturn.booleanReturn, interpreted.evaluateBoolean(), message);
+			}
+		} else if (outputType.equals(Type.Int)) {
+			CompiledIntExpression compiled = ExpressionCompiler.compileInt(expression, context);
+			CompiledIntExpression interpreted = CompiledIntExpression.interpret(expression, context);
+
+			for (float input : INPUTS) {
+				x[0] = input;
+				expression.evaluateTo(context, functionReturn);
+
+				String message = expressionStr + " with x = " + input;
+				Assertions.assertEquals(functionReturn.intReturn, compiled.evaluateInt(), message);
+				Assertions.assertEquals(functionReturn.intReturn, interpreted.evaluateInt(), message);
+			}
+		} else {
+			CompiledFloatExpression compiled = ExpressionCompiler.compileFloat(expression, context);
+			CompiledFloatExpression interpreted = CompiledFloatExpression.interpret(expression, context);
+
+			for (float input : INPUTS) {
+				x[0] = input;
+				expression.evaluateTo(context, functionReturn);
+
+				String message = expressionStr + " with x = " + input;
+				Assertions.assertEquals(functionReturn.floatReturn, compiled.evaluateFloat(), message);
+				Assertions.assertEquals(functionReturn.floatReturn, interpreted.evaluateFloat(), message);
+			}
+		}
+	}
+
+	@Test
+	void testArithmetic() throws Exception {
+		assertEquivalent(Type.Float, "x * 2.0 + 1.0");
+		assertEquivalent(Type.Float, "(x - 3) / (x + 0.5)");
+		assertEquivalent(Type.Float, "-x % 3.0");
+	}
+
+	@Test
+	void testFunctions() throws Exception {
+		assertEquivalent(Type.Float, "sin(x) * cos(x * 0.5)");
+		assertEquivalent(Type.Float, "clamp(x, 0.0, 1.0)");
+		assertEquivalent(Type.Float, "pow(abs(x), 0.5) + sqrt(max(x, 0.0))");
+		assertEquivalent(Type.Float, "frac(x) + floor(x)");
+	}
+
+	@Test
+	void testComparisons() throws Exception {
+		assertEquivalent(Type.Boolean, "x > 1.0 && x < 5.0");
+		assertEquivalent(Type.Boolean, "!(x == 0.5) || x >= 7.0");
+	}
+
+	@Test
+	void testIntegers() throws Exception {
+		assertEquivalent(Type.Int, "floor(x) + 1");
+		assertEquivalent(Type.Int, "if(x > 0, 1, 2) * 3");
+	}
+
+	@Test
+	void testConditionals() throws Exception {
+		assertEquivalent(Type.Float, "if(x > 1.0, x, x < -1.0, -x, 0.0)");
+		assertEquivalent(Type.Float, "if(x > 0.0, sin(x), 0.0) + 1.0");
+	}
+}
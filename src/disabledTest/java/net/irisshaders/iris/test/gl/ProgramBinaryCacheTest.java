@@ -0,0 +1,209 @@
+package net.irisshaders.iris.test.gl;
+
+import net.irisshaders.iris.gl.shader.ProgramBinaryCache;
+import net.irisshaders.iris.gl.shader.ShaderType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Covers the parts of {@link ProgramBinaryCache} that don't need a GL context: the layout of entries, how they are
+ * written and read back, and eviction.
+ */
+public class ProgramBinaryCacheTest {
+	private static final String DRIVER = "Vendor;Renderer;4.6";
+	private static final int BINARY_FORMAT = 0x8E21;
+	// the header, plus a CRC32 at the end
+	private static final int OVERHEAD = 16 + Long.BYTES;
+
+	@TempDir
+	Path directory;
+
+	private static byte[] binary(int length, int seed) {
+		byte[] binary = new byte[length];
+
+		for (int i = 0; i < length; i++) {
+			binary[i] = (byte) (i * 31 + seed);
+		}
+
+		return binary;
+	}
+
+	private List<String> files() throws IOException {
+		try (Stream<Path> stream = Files.list(directory)) {
+			return stream.map(path -> path.getFileName().toString()).sorted().toList();
+		}
+	}
+
+	private ProgramBinaryCache open(long maxSize) {
+		ProgramBinaryCache cache = ProgramBinaryCache.open(directory, DRIVER, maxSize);
+		Assertions.assertNotNull(cache);
+		return cache;
+	}
+
+	@Test
+	void testEntryLayout() throws IOException {
+		byte[] binary = binary(100, 7);
+		byte[] entry = ProgramBinaryCache.encodeEntry(BINARY_FORMAT, binary);
+		ByteBuffer buffer = ByteBuffer.wrap(entry).order(ByteOrder.BIG_ENDIAN);
+
+		Assertions.assertEquals(binary.length + OVERHEAD, entry.length);
+		Assertions.assertEquals(0x49524250, buffer.getInt());
+		Assertions.assertEquals(1, buffer.getInt());
+		Assertions.assertEquals(BINARY_FORMAT, buffer.getInt());
+		Assertions.assertEquals(binary.length, buffer.getInt());
+		Assertions.assertArrayEquals(binary, Arrays.copyOfRange(entry, 16, 16 + binary.length));
+
+		CRC32 crc = new CRC32();
+		crc.update(entry, 0, entry.length - Long.BYTES);
+		Assertions.assertEquals(crc.getValue(), buffer.getLong(entry.length - Long.BYTES));
+
+		ProgramBinaryCache.CachedBinary decoded = ProgramBinaryCache.decodeEntry(entry);
+		Assertions.assertEquals(BINARY_FORMAT, decoded.binaryFormat());
+		Assertions.assertArrayEquals(binary, decoded.binary());
+
+		Assertions.assertArrayEquals(new byte[0], ProgramBinaryCache.decodeEntry(ProgramBinaryCache.encodeEntry(BINARY_FORMAT, new byte[0])).binary());
+	}
+
+	@Test
+	void testRejectsCorruptEntries() {
+		byte[] entry = ProgramBinaryCache.encodeEntry(BINARY_FORMAT, binary(100, 7));
+
+		// every truncation, including one that cuts off exactly the checksum
+		for (int length = 0; length < entry.length; length++) {
+			byte[] truncated = Arrays.copyOf(entry, length);
+			Assertions.assertThrows(IOException.class, () -> ProgramBinaryCache.decodeEntry(truncated), "length " + length);
+		}
+
+		// a flipped bit anywhere, be it the header, the binary or the checksum itself
+		for (int i = 0; i < entry.length; i++) {
+			byte[] corrupt = entry.clone();
+			corrupt[i] ^= 1;
+			Assertions.assertThrows(IOException.class, () -> ProgramBinaryCache.decodeEntry(corrupt), "offset " + i);
+		}
+
+		byte[] extended = Arrays.copyOf(entry, entry.length + 1);
+		Assertions.assertThrows(IOException.class, () -> ProgramBinaryCache.decodeEntry(extended));
+	}
+
+	@Test
+	void testDeletesCorruptEntriesOnRead() throws IOException {
+		ProgramBinaryCache cache = open(ProgramBinaryCache.MAX_SIZE);
+		cache.write("truncated", BINARY_FORMAT, binary(100, 1));
+		cache.write("corrupt", BINARY_FORMAT, binary(100, 2));
+		cache.write("valid", BINARY_FORMAT, binary(100, 3));
+
+		Path truncated = directory.resolve("truncated.bin");
+		Files.write(truncated, Arrays.copyOf(Files.readAllBytes(truncated), 50));
+
+		Path corrupt = directory.resolve("corrupt.bin");
+		byte[] bytes = Files.readAllBytes(corrupt);
+		bytes[40] ^= 1;
+		Files.write(corrupt, bytes);
+
+		Assertions.assertNull(cache.read("truncated"));
+		Assertions.assertNull(cache.read("corrupt"));
+		Assertions.assertNull(cache.read("missing"));
+		Assertions.assertArrayEquals(binary(100, 3), cache.read("valid").binary());
+
+		Assertions.assertEquals(List.of("valid.bin"), files());
+		Assertions.assertEquals(100 + OVERHEAD, cache.getTotalSize());
+	}
+
+	@Test
+	void testWritesAtomically() throws IOException {
+		// left over from a write that was interrupted before the move
+		Files.write(directory.resolve("interrupted.tmp"), binary(10, 0));
+
+		ProgramBinaryCache cache = open(ProgramBinaryCache.MAX_SIZE);
+
+		Assertions.assertEquals(List.of(), files());
+
+		cache.write("program", BINARY_FORMAT, binary(100, 1));
+		cache.write("program", BINARY_FORMAT + 1, binary(200, 2));
+
+		// the second write replaced the first one as a whole, and no temporary files remain
+		Assertions.assertEquals(List.of("program.bin"), files());
+		Assertions.assertEquals(200 + OVERHEAD, cache.getTotalSize());
+		Assertions.assertArrayEquals(ProgramBinaryCache.encodeEntry(BINARY_FORMAT + 1, binary(200, 2)),
+			Files.readAllBytes(directory.resolve("program.bin")));
+
+		ProgramBinaryCache reopened = open(ProgramBinaryCache.MAX_SIZE);
+		ProgramBinaryCache.CachedBinary cached = reopened.read("program");
+
+		Assertions.assertEquals(200 + OVERHEAD, reopened.getTotalSize());
+		Assertions.assertEquals(BINARY_FORMAT + 1, cached.binaryFormat());
+		Assertions.assertArrayEquals(binary(200, 2), cached.binary());
+	}
+
+	@Test
+	void testEvictsLeastRecentlyUsed() throws IOException {
+		Assertions.assertEquals(256L * 1024 * 1024, ProgramBinaryCache.MAX_SIZE);
+
+		// room for exactly three entries
+		ProgramBinaryCache cache = open(3 * (100 + OVERHEAD));
+		cache.write("a", BINARY_FORMAT, binary(100, 1));
+		cache.write("b", BINARY_FORMAT, binary(100, 2));
+		cache.write("c", BINARY_FORMAT, binary(100, 3));
+
+		Assertions.assertNotNull(cache.read("a"));
+
+		cache.write("d", BINARY_FORMAT, binary(100, 4));
+
+		Assertions.assertEquals(List.of("a.bin", "c.bin", "d.bin"), files());
+		Assertions.assertEquals(3 * (100 + OVERHEAD), cache.getTotalSize());
+		Assertions.assertNull(cache.read("b"));
+
+		// an entry bigger than the whole cache doesn't stay either
+		cache.write("huge", BINARY_FORMAT, binary(4 * 100, 5));
+
+		Assertions.assertEquals(List.of(), files());
+		Assertions.assertEquals(0, cache.getTotalSize());
+	}
+
+	@Test
+	void testEvictsOldestOnOpen() throws IOException {
+		ProgramBinaryCache cache = open(ProgramBinaryCache.MAX_SIZE);
+		long now = System.currentTimeMillis();
+
+		for (String key : List.of("a", "b", "c", "d")) {
+			cache.write(key, BINARY_FORMAT, binary(100, key.charAt(0)));
+		}
+
+		// b and d were used last in a previous session, so a and c are the ones to go
+		Files.setLastModifiedTime(directory.resolve("a.bin"), FileTime.fromMillis(now - 40_000));
+		Files.setLastModifiedTime(directory.resolve("b.bin"), FileTime.fromMillis(now - 10_000));
+		Files.setLastModifiedTime(directory.resolve("c.bin"), FileTime.fromMillis(now - 30_000));
+		Files.setLastModifiedTime(directory.resolve("d.bin"), FileTime.fromMillis(now - 20_000));
+
+		ProgramBinaryCache reopened = open(2 * (100 + OVERHEAD));
+
+		Assertions.assertEquals(List.of("b.bin", "d.bin"), files());
+		Assertions.assertEquals(2 * (100 + OVERHEAD), reopened.getTotalSize());
+		Assertions.assertArrayEquals(binary(100, 'b'), reopened.read("b").binary());
+	}
+
+	@Test
+	void testKeysDependOnDriverAndSources() {
+		ProgramBinaryCache cache = open(ProgramBinaryCache.MAX_SIZE);
+		ProgramBinaryCache otherDriver = ProgramBinaryCache.open(directory, "Vendor;Renderer;4.5", ProgramBinaryCache.MAX_SIZE);
+		Map<ShaderType, String> sources = Map.of(ShaderType.VERTEX, "void main() {}");
+
+		Assertions.assertEquals(cache.computeKey(sources), cache.computeKey(sources));
+		Assertions.assertNotEquals(cache.computeKey(sources), otherDriver.computeKey(sources));
+		Assertions.assertNotEquals(cache.computeKey(sources),
+			cache.computeKey(Map.of(ShaderType.FRAGMENT, "void main() {}")));
+	}
+}
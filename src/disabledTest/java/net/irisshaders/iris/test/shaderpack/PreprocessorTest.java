@@ -1,9 +1,26 @@
 package net.irisshaders.iris.test.shaderpack;
 
+import com.google.common.collect.ImmutableList;
+import net.irisshaders.iris.helpers.StringPair;
+import net.irisshaders.iris.shaderpack.include.AbsolutePackPath;
+import net.irisshaders.iris.shaderpack.include.IncludeGraph;
+import net.irisshaders.iris.shaderpack.include.IncludeProcessor;
+import net.irisshaders.iris.shaderpack.include.ShaderPackSourceNames;
+import net.irisshaders.iris.shaderpack.option.ShaderPackOptions;
+import net.irisshaders.iris.shaderpack.option.UnusedDefineFilter;
+import net.irisshaders.iris.shaderpack.preprocessor.GlslPreprocessor;
+import net.irisshaders.iris.shaderpack.preprocessor.JcppProcessor;
 import net.irisshaders.iris.shaderpack.preprocessor.PropertiesPreprocessor;
 import net.irisshaders.iris.test.IrisTests;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 public class PreprocessorTest {
 	@Test
@@ -61,4 +78,111 @@ public class PreprocessorTest {
 		Assertions.assertEquals("", PropertiesPreprocessor.preprocessSource(line,
 			IrisTests.TEST_ENVIRONMENT_DEFINES).trim());
 	}
+
+	@Test
+	void testGlslExtensionHoisting() {
+		String source =
+			"#version 120\n" +
+				"#ifdef MC_NORMAL_MAP\n" +
+				"#extension GL_ARB_shader_texture_lod : enable\n" +
+				"#endif\n" +
+				"#ifdef MC_NOT_DEFINED\n" +
+				"#extension GL_EXT_gpu_shader4 : enable\n" +
+				"#endif\n" +
+				"void main() {}\n";
+
+		String processed = GlslPreprocessor.preprocessSource(source, IrisTests.TEST_ENVIRONMENT_DEFINES);
+
+		Assertions.assertTrue(processed.startsWith("#version"));
+		Assertions.assertTrue(processed.contains("GL_ARB_shader_texture_lod"));
+		Assertions.assertFalse(processed.contains("GL_EXT_gpu_shader4"));
+	}
+
+	@Test
+	void testGlslCachedOutputMatches() {
+		String source =
+			"#version 330 core\n" +
+				"\u0000#define VALUE MC_VERSION\n" +
+				"int value = VALUE;\n";
+
+		String first = GlslPreprocessor.preprocessSource(source, IrisTests.TEST_ENVIRONMENT_DEFINES);
+		String second = GlslPreprocessor.preprocessSource(source, IrisTests.TEST_ENVIRONMENT_DEFINES);
+
+		Assertions.assertEquals(first, second);
+		Assertions.assertTrue(first.contains("int value = 11605;"));
+	}
+
+	@Test
+	void testGlslCachedProgramOutputMatches() throws IOException {
+		Path root = IrisTests.getTestShaderPackPath("preprocessor");
+		AbsolutePackPath program = AbsolutePackPath.fromAbsolutePath("/gbuffers_basic.fsh");
+		IncludeGraph graph = new IncludeGraph(root, ImmutableList.of(program));
+		ImmutableList<String> lines = new IncludeProcessor(graph).getIncludedFile(program);
+		ImmutableList<StringPair> otherDefines = ImmutableList.of(new StringPair("MC_VERSION", "11202"));
+
+		GlslPreprocessor.clearCaches();
+
+		String first = new GlslPreprocessor(graph).preprocess(program, lines, IrisTests.TEST_ENVIRONMENT_DEFINES);
+		String cached = new GlslPreprocessor(graph).preprocess(program, lines, IrisTests.TEST_ENVIRONMENT_DEFINES);
+		String other = new GlslPreprocessor(graph).preprocess(program, lines, otherDefines);
+		String otherCached = new GlslPreprocessor(graph).preprocess(program, lines, otherDefines);
+
+		GlslPreprocessor.clearCaches();
+
+		String cleared = new GlslPreprocessor(graph).preprocess(program, lines, IrisTests.TEST_ENVIRONMENT_DEFINES);
+
+		Assertions.assertEquals(first, cached);
+		Assertions.assertEquals(first, cleared);
+		Assertions.assertEquals(other, otherCached);
+		Assertions.assertTrue(first.contains("const bool flattened = true;"));
+		Assertions.assertTrue(other.contains("const bool flattened = false;"));
+	}
+
+	@Test
+	void testGlslDirectiveTextOutsideOfDirectives() {
+		// JcppProcessor replaces #version and #extension with markers everywhere, which then leak into comments. Only
+		// the directives themselves are collected here, the rest is left alone.
+		String source =
+			"#version 120\n" +
+				"/* requires #extension GL_ARB_shader_texture_lod */\n" +
+				"void main() {}\n";
+
+		String processed = GlslPreprocessor.preprocessSource(source, IrisTests.TEST_ENVIRONMENT_DEFINES);
+
+		Assertions.assertEquals("#version  120\n/* requires #extension GL_ARB_shader_texture_lod */\nvoid main() {}\n\n",
+			processed);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"ambient_occlusion_out_of_bounds", "directives", "options", "preprocessor"})
+	void testGlslMatchesJcpp(String name) throws IOException {
+		Path root = IrisTests.getTestShaderPackPath(name);
+		ImmutableList.Builder<AbsolutePackPath> starts = ImmutableList.builder();
+		ShaderPackSourceNames.findPresentSources(starts, root, AbsolutePackPath.fromAbsolutePath("/"),
+			ShaderPackSourceNames.POTENTIAL_STARTS);
+		ImmutableList<AbsolutePackPath> programs = starts.build();
+
+		Assertions.assertFalse(programs.isEmpty());
+
+		// Runs programs through both preprocessors the same way ShaderPack does, with the defines of unused options
+		// filtered out, and again with options changed
+		for (Map<String, String> changes : List.of(Map.<String, String>of(), Map.of("SHADOWS", "false", "BLOOM", "true", "QUALITY", "3"))) {
+			ShaderPackOptions options = new ShaderPackOptions(new IncludeGraph(root, programs), changes);
+			IncludeGraph graph = options.getIncludes();
+			IncludeProcessor includeProcessor = new IncludeProcessor(graph);
+			UnusedDefineFilter defineFilter = new UnusedDefineFilter(graph, options.getOptionSet());
+			GlslPreprocessor preprocessor = new GlslPreprocessor(graph);
+
+			for (AbsolutePackPath program : programs) {
+				ImmutableList<String> lines = defineFilter.filter(program, includeProcessor.getIncludedFile(program));
+				String source = String.join("\n", lines) + "\n";
+				String expected = JcppProcessor.glslPreprocessSource(source, IrisTests.TEST_ENVIRONMENT_DEFINES);
+
+				Assertions.assertEquals(expected, preprocessor.preprocess(program, lines, IrisTests.TEST_ENVIRONMENT_DEFINES),
+					program.getPathString());
+				Assertions.assertEquals(expected, GlslPreprocessor.preprocessSource(source, IrisTests.TEST_ENVIRONMENT_DEFINES),
+					program.getPathString());
+			}
+		}
+	}
 }
@@ -0,0 +1,259 @@
+package net.irisshaders.iris.test.shaderpack;
+
+import net.irisshaders.iris.shaderpack.zip.ZipPackFileSystem;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares {@link ZipPackFileSystem} with the JDK zip file system, which it replaces for reading zipped shader packs.
+ */
+public class ZipPackFileSystemTest {
+	private static final List<String> PATHS = List.of(
+		"shaders/gbuffers_basic.vsh",
+		"shaders/lib/common.glsl",
+		"shaders/lib/empty.glsl",
+		"shaders/world-1/composite.fsh",
+		"shaders/shaders.properties",
+		"readme.txt",
+		"shaders",
+		"shaders/lib",
+		"shaders/world-1",
+		"shaders/./lib/common.glsl",
+		"shaders/lib/../gbuffers_basic.vsh",
+		"shaders/lib/..",
+		"shaders/missing.glsl",
+		"missing/../readme.txt",
+		"/shaders/gbuffers_basic.vsh"
+	);
+
+	@TempDir
+	Path directory;
+
+	private static Map<String, byte[]> packFiles() {
+		Map<String, byte[]> files = new LinkedHashMap<>();
+
+		files.put("shaders/gbuffers_basic.vsh", "#version 120\n\nvoid main() {\n\tgl_Position = ftransform();\n}\n".repeat(20).getBytes(StandardCharsets.UTF_8));
+		files.put("shaders/lib/common.glsl", "#define SHADOWS\n".getBytes(StandardCharsets.UTF_8));
+		files.put("shaders/lib/empty.glsl", new byte[0]);
+		files.put("shaders/world-1/composite.fsh", "#version 120\nvoid main() {}\n".getBytes(StandardCharsets.UTF_8));
+		files.put("shaders/shaders.properties", "sliders=QUALITY\n".repeat(100).getBytes(StandardCharsets.UTF_8));
+		files.put("readme.txt", "A test pack".getBytes(StandardCharsets.UTF_8));
+
+		return files;
+	}
+
+	/**
+	 * Writes a zip with the given files, alternating between stored and deflated entries. Only the "shaders/lib/"
+	 * directory has an entry of its own, the other directories only exist through the files in them.
+	 */
+	private Path writeZip(String name, Map<String, byte[]> files) throws IOException {
+		Path zip = directory.resolve(name);
+
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+			out.putNextEntry(new ZipEntry("shaders/lib/"));
+			out.closeEntry();
+
+			boolean stored = false;
+
+			for (Map.Entry<String, byte[]> file : files.entrySet()) {
+				ZipEntry entry = new ZipEntry(file.getKey());
+
+				if (stored) {
+					CRC32 crc = new CRC32();
+					crc.update(file.getValue());
+
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(file.getValue().length);
+					entry.setCrc(crc.getValue());
+				}
+
+				out.putNextEntry(entry);
+				out.write(file.getValue());
+				out.closeEntry();
+
+				stored = !stored;
+			}
+		}
+
+		return zip;
+	}
+
+	private static List<String> list(Path root) throws IOException {
+		try (Stream<Path> stream = Files.walk(root)) {
+			return stream.map(Path::toString).sorted().toList();
+		}
+	}
+
+	@Test
+	void testReadsLikeZipFs() throws IOException {
+		Map<String, byte[]> files = packFiles();
+		Path zip = writeZip("pack.zip", files);
+
+		try (FileSystem pack = ZipPackFileSystem.open(zip);
+			 FileSystem zipFs = FileSystems.newFileSystem(zip)) {
+			Assertions.assertInstanceOf(ZipPackFileSystem.class, pack);
+
+			for (Map.Entry<String, byte[]> file : files.entrySet()) {
+				Path path = pack.getPath(file.getKey());
+
+				Assertions.assertArrayEquals(file.getValue(), Files.readAllBytes(path), file.getKey());
+				Assertions.assertArrayEquals(Files.readAllBytes(zipFs.getPath(file.getKey())), Files.readAllBytes(path), file.getKey());
+				Assertions.assertEquals(Files.size(zipFs.getPath(file.getKey())), Files.size(path), file.getKey());
+			}
+		}
+	}
+
+	@Test
+	void testListsLikeZipFs() throws IOException {
+		Path zip = writeZip("pack.zip", packFiles());
+
+		try (FileSystem pack = ZipPackFileSystem.open(zip);
+			 FileSystem zipFs = FileSystems.newFileSystem(zip)) {
+			Path packRoot = pack.getRootDirectories().iterator().next();
+			Path zipFsRoot = zipFs.getRootDirectories().iterator().next();
+
+			Assertions.assertEquals(list(zipFsRoot), list(packRoot));
+			Assertions.assertEquals(list(zipFs.getPath("shaders")), list(pack.getPath("shaders")));
+		}
+	}
+
+	@Test
+	void testResolvesPathsLikeZipFs() throws IOException {
+		Path zip = writeZip("pack.zip", packFiles());
+
+		try (FileSystem pack = ZipPackFileSystem.open(zip);
+			 FileSystem zipFs = FileSystems.newFileSystem(zip)) {
+			for (String name : PATHS) {
+				Path path = pack.getPath(name);
+				Path zipFsPath = zipFs.getPath(name);
+
+				Assertions.assertEquals(zipFsPath.normalize().toString(), path.normalize().toString(), name);
+				Assertions.assertEquals(Files.exists(zipFsPath), Files.exists(path), name);
+				Assertions.assertEquals(Files.isDirectory(zipFsPath), Files.isDirectory(path), name);
+				Assertions.assertEquals(Files.isRegularFile(zipFsPath), Files.isRegularFile(path), name);
+
+				if (Files.isRegularFile(zipFsPath)) {
+					Assertions.assertArrayEquals(Files.readAllBytes(zipFsPath), Files.readAllBytes(path), name);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testFallsBackForZip64() throws IOException {
+		// ZIP64 end records are written for zips with 0xFFFF entries or more
+		Map<String, byte[]> files = new LinkedHashMap<>();
+
+		for (int i = 0; i < 0xFFFF; i++) {
+			files.put("shaders/lib/file" + i + ".glsl", new byte[0]);
+		}
+
+		files.putAll(packFiles());
+
+		Path zip = writeZip("zip64.zip", files);
+
+		try (FileSystem pack = ZipPackFileSystem.open(zip)) {
+			Assertions.assertFalse(pack instanceof ZipPackFileSystem);
+			Assertions.assertArrayEquals(files.get("shaders/lib/common.glsl"), Files.readAllBytes(pack.getPath("shaders/lib/common.glsl")));
+		}
+	}
+
+	@Test
+	void testFallsBackForEncryptedEntries() throws IOException {
+		Path zip = writeZip("encrypted.zip", packFiles());
+		byte[] bytes = Files.readAllBytes(zip);
+
+		// Set the encrypted flag of every central directory entry
+		for (int i = 0; i + 4 <= bytes.length; i++) {
+			if (bytes[i] == 'P' && bytes[i + 1] == 'K' && bytes[i + 2] == 1 && bytes[i + 3] == 2) {
+				bytes[i + 8] |= 1;
+			}
+		}
+
+		Files.write(zip, bytes);
+
+		// The JDK zip file system rejects encrypted entries as well, which is what the fallback ends up doing
+		Assertions.assertThrows(ZipException.class, () -> FileSystems.newFileSystem(zip).close());
+		Assertions.assertThrows(ZipException.class, () -> ZipPackFileSystem.open(zip).close());
+	}
+
+	@Test
+	void testRejectsCorruptArchives() throws IOException {
+		Path notZip = directory.resolve("not_a_zip.zip");
+		Files.writeString(notZip, "This is not a zip file");
+
+		Path zip = writeZip("pack.zip", packFiles());
+		byte[] bytes = Files.readAllBytes(zip);
+		Path truncated = directory.resolve("truncated.zip");
+		Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+
+		for (Path corrupt : List.of(notZip, truncated)) {
+			Assertions.assertThrows(ZipException.class, () -> FileSystems.newFileSystem(corrupt).close(), corrupt.toString());
+			Assertions.assertThrows(ZipException.class, () -> ZipPackFileSystem.open(corrupt).close(), corrupt.toString());
+		}
+	}
+
+	@Test
+	void testRejectsCorruptEntries() throws IOException {
+		Map<String, byte[]> files = packFiles();
+		Path zip = writeZip("pack.zip", files);
+		byte[] bytes = Files.readAllBytes(zip);
+		byte[] content = files.get("shaders/lib/common.glsl");
+
+		// common.glsl is stored, so its content can be found as is and changed without touching its checksum
+		int offset = indexOf(bytes, content);
+		bytes[offset] ^= 1;
+
+		try (OutputStream out = Files.newOutputStream(zip)) {
+			out.write(bytes);
+		}
+
+		try (FileSystem pack = ZipPackFileSystem.open(zip)) {
+			Assertions.assertThrows(ZipException.class, () -> Files.readAllBytes(pack.getPath("shaders/lib/common.glsl")));
+			Assertions.assertArrayEquals(files.get("readme.txt"), Files.readAllBytes(pack.getPath("readme.txt")));
+		}
+	}
+
+	@Test
+	void testClosedFileSystemCantBeRead() throws IOException {
+		Path zip = writeZip("pack.zip", packFiles());
+		FileSystem pack = ZipPackFileSystem.open(zip);
+		Path path = pack.getPath("shaders/gbuffers_basic.vsh");
+
+		pack.close();
+
+		Assertions.assertThrows(ClosedFileSystemException.class, () -> Files.readAllBytes(path));
+
+		// Closing releases the file, so it can be replaced
+		Files.delete(zip);
+	}
+
+	private static int indexOf(byte[] bytes, byte[] part) {
+		for (int i = 0; i + part.length <= bytes.length; i++) {
+			if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length)) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException("Not found");
+	}
+}
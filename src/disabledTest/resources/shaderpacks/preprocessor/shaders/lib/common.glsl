@@ -0,0 +1,23 @@
+
+/* Helpers shared by all programs.
+ * Nothing here is specific to a single program. */
+#define SQUARE(x) ((x) * (x))
+#define CONCAT(a, b) a ## b
+#define STRINGIFY(x) #x
+#define SUM(...) sum(__VA_ARGS__)
+#define LONG_MACRO(a, b) \
+	vec2(a, \
+	     b)
+
+#if MC_VERSION >= 11300 && defined(MC_NORMAL_MAP) && !defined MC_NOT_DEFINED
+const bool flattened = true;
+#elif MC_VERSION >= 11200
+const bool flattened = false;
+#else
+#error "Unsupported version"
+#endif
+
+float luminance(vec3 color) {
+	return dot(color, vec3(0.2126, 0.7152, 0.0722)); // Rec. 709
+}
+
@@ -0,0 +1,3 @@
+const float beforeContinued = 0.5;
+// The last line is continued onto the line after the #include of this file
+#define CONTINUED 1.0 + \
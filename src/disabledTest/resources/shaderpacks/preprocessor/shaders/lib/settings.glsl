@@ -0,0 +1,6 @@
+#define SHADOWS // Enables shadows
+//#define BLOOM // Enables bloom
+#define QUALITY 2 // [1 2 3]
+#define UNUSED_OPTION 4 // [2 4 8]
+
+const int shadowMapResolution = 2048; // [1024 2048 4096]
@@ -0,0 +1,33 @@
+package kroppeb.stareval.compiler;
+
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.function.FunctionContext;
+import kroppeb.stareval.function.FunctionReturn;
+
+/**
+ * A float expression that has been prepared for repeated evaluation in a fixed context.
+ */
+public abstract class CompiledFloatExpression {
+	protected final FunctionContext context;
+	protected final FunctionReturn functionReturn = new FunctionReturn();
+
+	protected CompiledFloatExpression(FunctionContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Prepares an expression to be evaluated by walking the expression tree. This is used whenever an expression
+	 * can't be compiled.
+	 */
+	public static CompiledFloatExpression interpret(Expression expression, FunctionContext context) {
+		return new CompiledFloatExpression(context) {
+			@Override
+			public float evaluateFloat() {
+				expression.evaluateTo(this.context, functionReturn);
+				return functionReturn.floatReturn;
+			}
+		};
+	}
+
+	public abstract float evaluateFloat();
+}
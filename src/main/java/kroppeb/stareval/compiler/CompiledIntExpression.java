@@ -0,0 +1,33 @@
+package kroppeb.stareval.compiler;
+
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.function.FunctionContext;
+import kroppeb.stareval.function.FunctionReturn;
+
+/**
+ * An int expression that has been prepared for repeated evaluation in a fixed context.
+ */
+public abstract class CompiledIntExpression {
+	protected final FunctionContext context;
+	protected final FunctionReturn functionReturn = new FunctionReturn();
+
+	protected CompiledIntExpression(FunctionContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Prepares an expression to be evaluated by walking the expression tree. This is used whenever an expression
+	 * can't be compiled.
+	 */
+	public static CompiledIntExpression interpret(Expression expression, FunctionContext context) {
+		return new CompiledIntExpression(context) {
+			@Override
+			public int evaluateInt() {
+				expression.evaluateTo(this.context, functionReturn);
+				return functionReturn.intReturn;
+			}
+		};
+	}
+
+	public abstract int evaluateInt();
+}
@@ -0,0 +1,286 @@
+package kroppeb.stareval.compiler;
+
+import kroppeb.stareval.expression.BasicVariableExpression;
+import kroppeb.stareval.expression.CallExpression;
+import kroppeb.stareval.expression.ConstantExpression;
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.expression.VariableExpression;
+import kroppeb.stareval.function.B2BFunction;
+import kroppeb.stareval.function.BB2BFunction;
+import kroppeb.stareval.function.F2FFunction;
+import kroppeb.stareval.function.F2IFunction;
+import kroppeb.stareval.function.FF2BFunction;
+import kroppeb.stareval.function.FF2FFunction;
+import kroppeb.stareval.function.FFF2BFunction;
+import kroppeb.stareval.function.FFF2FFunction;
+import kroppeb.stareval.function.FunctionContext;
+import kroppeb.stareval.function.FunctionReturn;
+import kroppeb.stareval.function.I2FFunction;
+import kroppeb.stareval.function.I2IFunction;
+import kroppeb.stareval.function.II2BFunction;
+import kroppeb.stareval.function.II2IFunction;
+import kroppeb.stareval.function.III2BFunction;
+import kroppeb.stareval.function.III2IFunction;
+import kroppeb.stareval.function.Type;
+import kroppeb.stareval.function.TypedFunction;
+import kroppeb.stareval.function.V2FFunction;
+import kroppeb.stareval.function.V2IFunction;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compiles expressions into a hidden class, so that evaluating them doesn't need to walk the expression tree.
+ * <p>
+ * Calls to functions with a primitive signature, such as {@link F2FFunction}, are compiled into direct calls to their
+ * {@code eval} method, with the arguments kept on the operand stack instead of being passed through a
+ * {@link FunctionReturn}. Primitive constants are inlined. Everything else, such as vector functions or functions
+ * with custom argument handling like {@code if}, is evaluated through {@link Expression#evaluateTo} exactly like the
+ * interpreter would, so the result of a compiled expression is always identical to the interpreted one.
+ * <p>
+ * The generated classes are not strongly linked to their defining loader and are unloaded once the compiled
+ * expression becomes unreachable, for example after a shader pack reload.
+ */
+public class ExpressionCompiler {
+	private static final String CLASS_NAME = "kroppeb/stareval/compiler/GeneratedExpression";
+	private static final String CONTEXT_DESCRIPTOR = "Lkroppeb/stareval/function/FunctionContext;";
+	private static final String RETURN_NAME = "kroppeb/stareval/function/FunctionReturn";
+	private static final String EXPRESSION_NAME = "kroppeb/stareval/expression/Expression";
+
+	private static final List<Signature> SIGNATURES = List.of(
+		new Signature(B2BFunction.class, "Z", 'Z'),
+		new Signature(BB2BFunction.class, "ZZ", 'Z'),
+		new Signature(F2FFunction.class, "F", 'F'),
+		new Signature(F2IFunction.class, "F", 'I'),
+		new Signature(FF2BFunction.class, "FF", 'Z'),
+		new Signature(FF2FFunction.class, "FF", 'F'),
+		new Signature(FFF2BFunction.class, "FFF", 'Z'),
+		new Signature(FFF2FFunction.class, "FFF", 'F'),
+		new Signature(I2FFunction.class, "I", 'F'),
+		new Signature(I2IFunction.class, "I", 'I'),
+		new Signature(II2BFunction.class, "II", 'Z'),
+		new Signature(II2IFunction.class, "II", 'I'),
+		new Signature(III2BFunction.class, "III", 'Z'),
+		new Signature(III2IFunction.class, "III", 'I'),
+		new Signature(V2FFunction.class, "", 'F'),
+		new Signature(V2IFunction.class, "", 'I')
+	);
+
+	private final FunctionContext context;
+	private final String superName;
+	private final FunctionReturn scratch = new FunctionReturn();
+	private final List<Object> fieldValues = new ArrayList<>();
+	private final List<String> fieldTypes = new ArrayList<>();
+	private final Map<Object, Integer> fieldIndices = new IdentityHashMap<>();
+
+	private ExpressionCompiler(FunctionContext context, Class<?> superClass) {
+		this.context = context;
+		this.superName = superClass.getName().replace('.', '/');
+	}
+
+	/**
+	 * Returns whether expressions of the given type can be compiled.
+	 */
+	public static boolean supports(Type type) {
+		return kindOf(type) != 0;
+	}
+
+	/**
+	 * Compiles an expression of type {@link Type#Boolean}. Any variables are looked up in the context while compiling,
+	 * so all variables the expression refers to must already be known to the context.
+	 *
+	 * @throws ReflectiveOperationException if the generated class can't be defined
+	 */
+	public static CompiledBooleanExpression compileBoolean(Expression expression, FunctionContext context) throws ReflectiveOperationException {
+		return new ExpressionCompiler(context, CompiledBooleanExpression.class).compileRoot(expression, 'Z', "evaluateBoolean");
+	}
+
+	/**
+	 * Compiles an expression of type {@link Type#Int}, see {@link #compileBoolean}.
+	 *
+	 * @throws ReflectiveOperationException if the generated class can't be defined
+	 */
+	public static CompiledIntExpression compileInt(Expression expression, FunctionContext context) throws ReflectiveOperationException {
+		return new ExpressionCompiler(context, CompiledIntExpression.class).compileRoot(expression, 'I', "evaluateInt");
+	}
+
+	/**
+	 * Compiles an expression of type {@link Type#Float}, see {@link #compileBoolean}.
+	 *
+	 * @throws ReflectiveOperationException if the generated class can't be defined
+	 */
+	public static CompiledFloatExpression compileFloat(Expression expression, FunctionContext context) throws ReflectiveOperationException {
+		return new ExpressionCompiler(context, CompiledFloatExpression.class).compileRoot(expression, 'F', "evaluateFloat");
+	}
+
+	private static char kindOf(Type type) {
+		if (type.equals(Type.Boolean)) {
+			return 'Z';
+		} else if (type.equals(Type.Int)) {
+			return 'I';
+		} else if (type.equals(Type.Float)) {
+			return 'F';
+		} else {
+			return 0;
+		}
+	}
+
+	private static Signature signatureOf(TypedFunction function) {
+		for (Signature signature : SIGNATURES) {
+			if (signature.type.isInstance(function)) {
+				return signature;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Generates a subclass of the compiler's superclass that implements its evaluate method, which has the given name
+	 * and returns a value of the given kind.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T compileRoot(Expression expression, char kind, String methodName) throws ReflectiveOperationException {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(V17, ACC_FINAL | ACC_SUPER, CLASS_NAME, null, superName, null);
+
+		MethodVisitor method = writer.visitMethod(ACC_PUBLIC, methodName, "()" + kind, null, null);
+
+		method.visitCode();
+		compileExpression(method, expression, kind);
+		method.visitInsn(kind == 'F' ? FRETURN : IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		// The fields are only known once the expression has been compiled.
+		for (int i = 0; i < fieldTypes.size(); i++) {
+			writer.visitField(ACC_PRIVATE | ACC_FINAL, "f" + i, fieldTypes.get(i), null, null).visitEnd();
+		}
+
+		writeConstructor(writer);
+		writer.visitEnd();
+
+		MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true);
+
+		try {
+			return (T) lookup
+				.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, FunctionContext.class, Object[].class))
+				.invoke(context, fieldValues.toArray());
+		} catch (ReflectiveOperationException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void writeConstructor(ClassWriter writer) {
+		MethodVisitor constructor = writer.visitMethod(ACC_PUBLIC, "<init>", "(" + CONTEXT_DESCRIPTOR + "[Ljava/lang/Object;)V", null, null);
+		constructor.visitCode();
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitVarInsn(ALOAD, 1);
+		constructor.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "(" + CONTEXT_DESCRIPTOR + ")V", false);
+
+		for (int i = 0; i < fieldTypes.size(); i++) {
+			String descriptor = fieldTypes.get(i);
+
+			constructor.visitVarInsn(ALOAD, 0);
+			constructor.visitVarInsn(ALOAD, 2);
+			constructor.visitLdcInsn(i);
+			constructor.visitInsn(AALOAD);
+			constructor.visitTypeInsn(CHECKCAST, descriptor.substring(1, descriptor.length() - 1));
+			constructor.visitFieldInsn(PUTFIELD, CLASS_NAME, "f" + i, descriptor);
+		}
+
+		constructor.visitInsn(RETURN);
+		constructor.visitMaxs(0, 0);
+		constructor.visitEnd();
+	}
+
+	/**
+	 * Emits code that leaves the value of the expression on the operand stack, as a value of the given kind.
+	 */
+	private void compileExpression(MethodVisitor method, Expression expression, char kind) {
+		if (expression instanceof ConstantExpression constant && kindOf(constant.getType()) == kind) {
+			constant.evaluateTo(context, scratch);
+
+			switch (kind) {
+				case 'Z' -> method.visitInsn(scratch.booleanReturn ? ICONST_1 : ICONST_0);
+				case 'I' -> method.visitLdcInsn(scratch.intReturn);
+				default -> method.visitLdcInsn(scratch.floatReturn);
+			}
+
+			return;
+		}
+
+		if (expression instanceof CallExpression call) {
+			Signature signature = signatureOf(call.getFunction());
+			Expression[] arguments = call.getArguments();
+
+			if (signature != null && signature.returnKind == kind && arguments.length == signature.parameters.length()) {
+				String owner = signature.type.getName().replace('.', '/');
+
+				loadField(method, call.getFunction(), "L" + owner + ";");
+
+				for (int i = 0; i < arguments.length; i++) {
+					compileExpression(method, arguments[i], signature.parameters.charAt(i));
+				}
+
+				method.visitMethodInsn(INVOKEINTERFACE, owner, "eval", signature.descriptor(), true);
+				return;
+			}
+		}
+
+		if (expression instanceof VariableExpression && !(expression instanceof BasicVariableExpression)) {
+			// Variables are looked up by name on every evaluation, bind them to what they refer to right away.
+			// BasicVariableExpression is skipped, as it folds itself into a constant instead.
+			Expression resolved = expression.partialEval(context, scratch);
+
+			if (resolved instanceof VariableExpression) {
+				expression = resolved;
+			}
+		}
+
+		loadField(method, expression, "L" + EXPRESSION_NAME + ";");
+		method.visitVarInsn(ALOAD, 0);
+		method.visitFieldInsn(GETFIELD, superName, "context", CONTEXT_DESCRIPTOR);
+		method.visitVarInsn(ALOAD, 0);
+		method.visitFieldInsn(GETFIELD, superName, "functionReturn", "L" + RETURN_NAME + ";");
+		method.visitMethodInsn(INVOKEINTERFACE, EXPRESSION_NAME, "evaluateTo", "(" + CONTEXT_DESCRIPTOR + "L" + RETURN_NAME + ";)V", true);
+		method.visitVarInsn(ALOAD, 0);
+		method.visitFieldInsn(GETFIELD, superName, "functionReturn", "L" + RETURN_NAME + ";");
+
+		switch (kind) {
+			case 'Z' -> method.visitFieldInsn(GETFIELD, RETURN_NAME, "booleanReturn", "Z");
+			case 'I' -> method.visitFieldInsn(GETFIELD, RETURN_NAME, "intReturn", "I");
+			default -> method.visitFieldInsn(GETFIELD, RETURN_NAME, "floatReturn", "F");
+		}
+	}
+
+	private void loadField(MethodVisitor method, Object value, String descriptor) {
+		Integer index = fieldIndices.get(value);
+
+		if (index == null || !fieldTypes.get(index).equals(descriptor)) {
+			index = fieldValues.size();
+			fieldValues.add(value);
+			fieldTypes.add(descriptor);
+			fieldIndices.put(value, index);
+		}
+
+		method.visitVarInsn(ALOAD, 0);
+		method.visitFieldInsn(GETFIELD, CLASS_NAME, "f" + index, descriptor);
+	}
+
+	private record Signature(Class<? extends TypedFunction> type, String parameters, char returnKind) {
+		String descriptor() {
+			return "(" + parameters + ")" + returnKind;
+		}
+	}
+}
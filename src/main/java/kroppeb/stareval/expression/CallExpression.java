@@ -15,6 +15,14 @@ public class CallExpression implements Expression {
 		this.arguments = arguments;
 	}
 
+	public TypedFunction getFunction() {
+		return this.function;
+	}
+
+	public Expression[] getArguments() {
+		return this.arguments;
+	}
+
 	@Override
 	public void evaluateTo(FunctionContext context, FunctionReturn functionReturn) {
 		this.function.evaluateTo(this.arguments, context, functionReturn);
@@ -74,6 +82,11 @@ public class CallExpression implements Expression {
 			return this.function.getReturnType().createConstant(functionReturn);
 		}
 
+		Expression simplified = this.function.simplify(partialEvaluatedParams, context, functionReturn);
+		if (simplified != null) {
+			return simplified;
+		}
+
 		if (noneSimplified) {
 			return this;
 		}
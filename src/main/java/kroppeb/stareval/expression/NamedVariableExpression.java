@@ -0,0 +1,29 @@
+package kroppeb.stareval.expression;
+
+import kroppeb.stareval.function.FunctionContext;
+import kroppeb.stareval.function.FunctionReturn;
+
+/**
+ * A variable that is looked up by name in the context it's evaluated in.
+ */
+public class NamedVariableExpression implements VariableExpression {
+	private final String name;
+
+	public NamedVariableExpression(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public void evaluateTo(FunctionContext c, FunctionReturn r) {
+		c.getVariable(this.name).evaluateTo(c, r);
+	}
+
+	@Override
+	public Expression partialEval(FunctionContext context, FunctionReturn functionReturn) {
+		return context.hasVariable(this.name) ? context.getVariable(this.name) : this;
+	}
+}
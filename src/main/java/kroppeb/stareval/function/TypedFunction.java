@@ -29,6 +29,16 @@ public interface TypedFunction {
 		return true;
 	}
 
+	/**
+	 * Allows a function to simplify a call to it during partial evaluation, when not all of the arguments are
+	 * constant. The arguments have already been partially evaluated.
+	 *
+	 * @return the simplified expression, or null if the call can't be simplified
+	 */
+	default Expression simplify(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
+		return null;
+	}
+
 	default int priority() {
 		return 0;
 	}
@@ -11,7 +11,7 @@ import kroppeb.stareval.element.tree.UnaryExpressionElement;
 import kroppeb.stareval.expression.CallExpression;
 import kroppeb.stareval.expression.ConstantExpression;
 import kroppeb.stareval.expression.Expression;
-import kroppeb.stareval.expression.VariableExpression;
+import kroppeb.stareval.expression.NamedVariableExpression;
 import kroppeb.stareval.function.FunctionContext;
 import kroppeb.stareval.function.FunctionResolver;
 import kroppeb.stareval.function.FunctionReturn;
@@ -222,35 +222,14 @@ public class ExpressionResolver {
 				log("[DEBUG] resolved variable %s to type %s", name, targetType);
 				// TODO: We should add a variable provider (and have this as default)
 				//       doing so would remove the need for a FunctionContext.
-				return new VariableExpression() {
-					@Override
-					public void evaluateTo(FunctionContext c, FunctionReturn r) {
-						c.getVariable(name).evaluateTo(c, r);
-					}
-
-					@Override
-					public Expression partialEval(FunctionContext context, FunctionReturn functionReturn) {
-						return context.hasVariable(name) ? context.getVariable(name) : this;
-					}
-				};
+				return new NamedVariableExpression(name);
 			}
 			if (!allowImplicit) {
 				log("[DEBUG] failed to resolve variable %s (of type %s) to type %s without implicit casts",
 					name, type, targetType);
 				return null;
 			}
-			// TODO duplicate of above
-			castable = new VariableExpression() {
-				@Override
-				public void evaluateTo(FunctionContext c, FunctionReturn r) {
-					c.getVariable(name).evaluateTo(c, r);
-				}
-
-				@Override
-				public Expression partialEval(FunctionContext context, FunctionReturn functionReturn) {
-					return context.hasVariable(name) ? context.getVariable(name) : this;
-				}
-			};
+			castable = new NamedVariableExpression(name);
 			innerType = type;
 		} else {
 			throw new RuntimeException("unexpected token: " + expression.toString());
@@ -2,6 +2,7 @@ package net.irisshaders.batchedentityrendering.impl;
 
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.VertexConsumer;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import me.jellysquid.mods.sodium.client.render.vertex.buffer.ExtendedBufferBuilder;
 import me.jellysquid.mods.sodium.client.render.vertex.buffer.SodiumBufferBuilder;
 import net.irisshaders.batchedentityrendering.impl.ordering.GraphTranslucencyRenderOrderManager;
@@ -13,23 +14,41 @@ import net.minecraft.client.renderer.RenderType;
 import net.minecraft.util.profiling.ProfilerFiller;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSource implements MemoryTrackingBuffer, Groupable, WrappingMultiBufferSource {
-	private static final int NUM_BUFFERS = 32;
+	/**
+	 * The number of buffers to spread render types over. Can be changed with the {@code iris.entityBufferCount}
+	 * system property, more buffers use more memory but split up fewer render types in crowded scenes.
+	 */
+	private static final int DEFAULT_BUFFER_COUNT = Math.max(1, Integer.getInteger("iris.entityBufferCount", 32));
 
 	private final RenderOrderManager renderOrderManager;
 	private final SegmentedBufferBuilder[] builders;
 	/**
-	 * An LRU cache mapping RenderType objects to a relevant buffer.
+	 * Every render type gets a small id the first time it is seen in a batch, so the buffer it is assigned to can be
+	 * looked up in an array instead of a map.
+	 */
+	private final Object2IntOpenHashMap<RenderType> typeIds;
+	/**
+	 * The buffer assigned to each type id, or -1 if the type isn't assigned to a buffer.
+	 */
+	private int[] typeBuffers;
+	/**
+	 * The type id assigned to each buffer, and when that buffer was last used, to evict the least recently used one.
 	 */
-	private final LinkedHashMap<RenderType, Integer> affinities;
+	private final int[] bufferTypes;
+	private final long[] bufferLastUsed;
+	private int assignedBuffers;
+	private long useCounter;
+	// most entities render many parts with the same type in a row, this skips the lookup for those
+	private RenderType lastType;
+	private int lastBuffer;
 	private final BufferSegmentRenderer segmentRenderer;
 	private final UnflushableWrapper unflushableWrapper;
 	private final List<Function<RenderType, RenderType>> wrappingFunctionStack;
@@ -41,17 +60,29 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 	private List<RenderType> renderOrder = new ArrayList<>();
 
 	public FullyBufferedMultiBufferSource() {
+		this(DEFAULT_BUFFER_COUNT);
+	}
+
+	public FullyBufferedMultiBufferSource(int bufferCount) {
 		super(new BufferBuilder(0), Collections.emptyMap());
 
+		if (bufferCount < 1) {
+			throw new IllegalArgumentException("At least one buffer is required, got " + bufferCount);
+		}
+
 		this.renderOrderManager = new GraphTranslucencyRenderOrderManager();
-		this.builders = new SegmentedBufferBuilder[NUM_BUFFERS];
+		this.builders = new SegmentedBufferBuilder[bufferCount];
 
 		for (int i = 0; i < this.builders.length; i++) {
 			this.builders[i] = new SegmentedBufferBuilder();
 		}
 
-		// use accessOrder=true so our LinkedHashMap works as an LRU cache.
-		this.affinities = new LinkedHashMap<>(32, 0.75F, true);
+		this.typeIds = new Object2IntOpenHashMap<>();
+		this.typeIds.defaultReturnValue(-1);
+		this.typeBuffers = new int[64];
+		this.bufferTypes = new int[bufferCount];
+		this.bufferLastUsed = new long[bufferCount];
+		this.lastBuffer = -1;
 
 		this.drawCalls = 0;
 		this.segmentRenderer = new BufferSegmentRenderer();
@@ -68,28 +99,20 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 		}
 
 		renderOrderManager.begin(renderType);
-		Integer affinity = affinities.get(renderType);
 
-		if (affinity == null) {
-			if (affinities.size() < builders.length) {
-				affinity = affinities.size();
-			} else {
-				// We remove the element from the map that is used least-frequently.
-				// With how we've configured our LinkedHashMap, that is the first element.
-				Iterator<Map.Entry<RenderType, Integer>> iterator = affinities.entrySet().iterator();
-				Map.Entry<RenderType, Integer> evicted = iterator.next();
-				iterator.remove();
+		int affinity;
 
-				// The previous type is no longer associated with this buffer ...
-				affinities.remove(evicted.getKey());
-
-				// ... since our new type is now associated with it.
-				affinity = evicted.getValue();
-			}
-
-			affinities.put(renderType, affinity);
+		if (renderType == lastType) {
+			// a buffer is only ever evicted when a different type is requested, so this one is still assigned
+			affinity = lastBuffer;
+		} else {
+			affinity = getAffinity(renderType);
+			lastType = renderType;
+			lastBuffer = affinity;
 		}
 
+		bufferLastUsed[affinity] = ++useCounter;
+
 		VertexConsumer buffer = builders[affinity].getBuffer(renderType);
 
 		if (buffer instanceof ExtendedBufferBuilder bufferBuilder) {
@@ -102,6 +125,60 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 		return buffer;
 	}
 
+	private int getAffinity(RenderType renderType) {
+		int typeId = typeIds.getInt(renderType);
+
+		if (typeId == -1) {
+			typeId = typeIds.size();
+			typeIds.put(renderType, typeId);
+
+			if (typeId == typeBuffers.length) {
+				typeBuffers = Arrays.copyOf(typeBuffers, typeBuffers.length * 2);
+			}
+
+			typeBuffers[typeId] = -1;
+		}
+
+		int affinity = typeBuffers[typeId];
+
+		if (affinity == -1) {
+			if (assignedBuffers < builders.length) {
+				affinity = assignedBuffers++;
+			} else {
+				affinity = getLeastRecentlyUsedBuffer();
+
+				// The previous type is no longer associated with this buffer ...
+				typeBuffers[bufferTypes[affinity]] = -1;
+			}
+
+			// ... since our new type is now associated with it.
+			bufferTypes[affinity] = typeId;
+			typeBuffers[typeId] = affinity;
+		}
+
+		return affinity;
+	}
+
+	private int getLeastRecentlyUsedBuffer() {
+		int leastRecentlyUsed = 0;
+
+		for (int i = 1; i < bufferLastUsed.length; i++) {
+			if (bufferLastUsed[i] < bufferLastUsed[leastRecentlyUsed]) {
+				leastRecentlyUsed = i;
+			}
+		}
+
+		return leastRecentlyUsed;
+	}
+
+	private void resetAffinities() {
+		typeIds.clear();
+		assignedBuffers = 0;
+		useCounter = 0;
+		lastType = null;
+		lastBuffer = -1;
+	}
+
 	private void removeReady() {
 		isReady = false;
 		typeToSegment.clear();
@@ -128,7 +205,7 @@ public class FullyBufferedMultiBufferSource extends MultiBufferSource.BufferSour
 		renderOrder = renderOrderManager.getRenderOrder();
 
 		renderOrderManager.reset();
-		affinities.clear();
+		resetAffinities();
 
 		profiler.pop();
 	}
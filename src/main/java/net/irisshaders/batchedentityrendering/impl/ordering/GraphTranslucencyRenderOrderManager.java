@@ -1,24 +1,25 @@
 package net.irisshaders.batchedentityrendering.impl.ordering;
 
-import de.odysseus.ithaka.digraph.Digraph;
 import de.odysseus.ithaka.digraph.Digraphs;
 import de.odysseus.ithaka.digraph.MapDigraph;
 import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSet;
 import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSetPolicy;
 import de.odysseus.ithaka.digraph.util.fas.FeedbackArcSetProvider;
 import de.odysseus.ithaka.digraph.util.fas.SimpleFeedbackArcSetProvider;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.irisshaders.batchedentityrendering.impl.BlendingStateHolder;
 import net.irisshaders.batchedentityrendering.impl.TransparencyType;
 import net.irisshaders.batchedentityrendering.impl.WrappableRenderType;
 import net.minecraft.client.renderer.RenderType;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
 
 public class GraphTranslucencyRenderOrderManager implements RenderOrderManager {
 	private final FeedbackArcSetProvider feedbackArcSetProvider;
-	private final EnumMap<TransparencyType, Digraph<RenderType>> types;
+	private final EnumMap<TransparencyType, TypeOrder> types;
 	private final EnumMap<TransparencyType, RenderType> currentTypes;
 	private boolean inGroup = false;
 
@@ -28,7 +29,7 @@ public class GraphTranslucencyRenderOrderManager implements RenderOrderManager {
 		currentTypes = new EnumMap<>(TransparencyType.class);
 
 		for (TransparencyType type : TransparencyType.values()) {
-			types.put(type, new MapDigraph<>());
+			types.put(type, new TypeOrder());
 		}
 	}
 
@@ -47,8 +48,8 @@ public class GraphTranslucencyRenderOrderManager implements RenderOrderManager {
 
 	public void begin(RenderType renderType) {
 		TransparencyType transparencyType = getTransparencyType(renderType);
-		Digraph<RenderType> graph = types.get(transparencyType);
-		graph.add(renderType);
+		RenderTypeGraph graph = types.get(transparencyType).current;
+		int vertex = graph.add(renderType);
 
 		if (inGroup) {
 			RenderType previous = currentTypes.put(transparencyType, renderType);
@@ -57,9 +58,7 @@ public class GraphTranslucencyRenderOrderManager implements RenderOrderManager {
 				return;
 			}
 
-			int weight = graph.get(previous, renderType).orElse(0);
-			weight += 1;
-			graph.put(previous, renderType, weight);
+			graph.addEdge(graph.add(previous), vertex);
 		}
 	}
 
@@ -93,30 +92,65 @@ public class GraphTranslucencyRenderOrderManager implements RenderOrderManager {
 
 	@Override
 	public void reset() {
-		// TODO: Is reallocation efficient?
-		types.clear();
-
-		for (TransparencyType type : TransparencyType.values()) {
-			types.put(type, new MapDigraph<>());
+		for (TypeOrder order : types.values()) {
+			order.reset();
 		}
 	}
 
 	@Override
 	public void resetType(TransparencyType type) {
-		// TODO: Is reallocation efficient?
-		types.put(type, new MapDigraph<>());
+		types.get(type).reset();
 	}
 
 	public List<RenderType> getRenderOrder() {
 		int layerCount = 0;
 
-		for (Digraph<RenderType> graph : types.values()) {
-			layerCount += graph.getVertexCount();
+		for (TypeOrder order : types.values()) {
+			layerCount += order.current.getVertexCount();
 		}
 
 		List<RenderType> allLayers = new ArrayList<>(layerCount);
 
-		for (Digraph<RenderType> graph : types.values()) {
+		for (TypeOrder order : types.values()) {
+			allLayers.addAll(order.resolve(feedbackArcSetProvider));
+		}
+
+		return allLayers;
+	}
+
+	/**
+	 * The render types of a single transparency type, along with the order they were drawn in last frame.
+	 * <p>
+	 * Busy scenes tend to produce the same graph frame after frame, so the previous order is reused whenever it is
+	 * still valid, and the graph is only sorted again if it isn't.
+	 */
+	private static class TypeOrder {
+		private RenderTypeGraph current = new RenderTypeGraph();
+		private RenderTypeGraph previous = new RenderTypeGraph();
+		// the order of the previous graph, or of the current graph once it has been resolved
+		private List<RenderType> order = new ObjectArrayList<>();
+		private List<RenderType> candidate = new ObjectArrayList<>();
+		private int[] positions = new int[16];
+		private boolean resolved;
+
+		List<RenderType> resolve(FeedbackArcSetProvider feedbackArcSetProvider) {
+			if (resolved) {
+				return order;
+			}
+
+			resolved = true;
+
+			if (current.hasSameEdges(previous)) {
+				// This also reuses the order of graphs with cycles, which can never pass the check below.
+				return order;
+			}
+
+			if (tryReuseOrder()) {
+				return order;
+			}
+
+			MapDigraph<RenderType> graph = current.toDigraph();
+
 			// TODO: Make sure that FAS can't become a bottleneck!
 			// Running NP-hard algorithms in a real time rendering loop might not be an amazing idea.
 			// This shouldn't be necessary in sane scenes, though, and if there aren't cycles,
@@ -137,9 +171,63 @@ public class GraphTranslucencyRenderOrderManager implements RenderOrderManager {
 				}
 			}
 
-			allLayers.addAll(Digraphs.toposort(graph, false));
+			order.clear();
+			order.addAll(Digraphs.toposort(graph, false));
+
+			return order;
 		}
 
-		return allLayers;
+		/**
+		 * Tries to order the current graph like the previous one, with the types that weren't drawn last frame at
+		 * the end. This only fails if an edge was added that goes against the previous order.
+		 */
+		private boolean tryReuseOrder() {
+			int vertexCount = current.getVertexCount();
+
+			if (positions.length < vertexCount) {
+				positions = new int[Math.max(vertexCount, positions.length * 2)];
+			}
+
+			Arrays.fill(positions, 0, vertexCount, -1);
+			candidate.clear();
+
+			for (RenderType type : order) {
+				int id = current.getId(type);
+
+				if (id != -1) {
+					positions[id] = candidate.size();
+					candidate.add(type);
+				}
+			}
+
+			for (int id = 0; id < vertexCount; id++) {
+				if (positions[id] == -1) {
+					positions[id] = candidate.size();
+					candidate.add(current.getVertex(id));
+				}
+			}
+
+			if (!current.isOrderedBy(positions)) {
+				return false;
+			}
+
+			List<RenderType> swap = order;
+			order = candidate;
+			candidate = swap;
+
+			return true;
+		}
+
+		void reset() {
+			if (resolved) {
+				// the graph storage of two frames ago is reused for the next frame
+				RenderTypeGraph swap = previous;
+				previous = current;
+				current = swap;
+				resolved = false;
+			}
+
+			current.clear();
+		}
 	}
 }
@@ -0,0 +1,149 @@
+package net.irisshaders.batchedentityrendering.impl.ordering;
+
+import de.odysseus.ithaka.digraph.MapDigraph;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.client.renderer.RenderType;
+
+import java.util.List;
+
+/**
+ * A weighted graph of the render types drawn in a frame, where an edge from one type to another means that the first
+ * type was drawn directly before the second one in the same group.
+ * <p>
+ * Unlike {@link MapDigraph}, the storage of this graph is kept when it is cleared, so it can be reused every frame
+ * without allocating.
+ */
+class RenderTypeGraph {
+	private final Object2IntOpenHashMap<RenderType> ids = new Object2IntOpenHashMap<>();
+	private final List<RenderType> vertices = new ObjectArrayList<>();
+	private final Long2IntOpenHashMap edges = new Long2IntOpenHashMap();
+
+	RenderTypeGraph() {
+		ids.defaultReturnValue(-1);
+	}
+
+	private static long edgeKey(int source, int target) {
+		return ((long) source << 32) | (target & 0xFFFFFFFFL);
+	}
+
+	private static int source(long edge) {
+		return (int) (edge >>> 32);
+	}
+
+	private static int target(long edge) {
+		return (int) edge;
+	}
+
+	/**
+	 * Adds a vertex if it isn't part of the graph yet.
+	 *
+	 * @return the id of the vertex, ids are assigned in the order vertices are added
+	 */
+	int add(RenderType type) {
+		int id = ids.getInt(type);
+
+		if (id == -1) {
+			id = vertices.size();
+			ids.put(type, id);
+			vertices.add(type);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Increments the weight of the edge between two vertices.
+	 */
+	void addEdge(int source, int target) {
+		if (source != target) {
+			// Drawing a type after itself doesn't constrain the order at all.
+			edges.addTo(edgeKey(source, target), 1);
+		}
+	}
+
+	int getId(RenderType type) {
+		return ids.getInt(type);
+	}
+
+	int getVertexCount() {
+		return vertices.size();
+	}
+
+	RenderType getVertex(int id) {
+		return vertices.get(id);
+	}
+
+	/**
+	 * Returns whether every edge goes from a vertex with a lower position to a vertex with a higher position.
+	 *
+	 * @param positions the position of every vertex, by id
+	 */
+	boolean isOrderedBy(int[] positions) {
+		LongIterator iterator = edges.keySet().iterator();
+
+		while (iterator.hasNext()) {
+			long edge = iterator.nextLong();
+
+			if (positions[source(edge)] >= positions[target(edge)]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns whether both graphs have the same vertices and edges, regardless of edge weights and the order in which
+	 * the vertices were added.
+	 */
+	boolean hasSameEdges(RenderTypeGraph other) {
+		if (vertices.size() != other.vertices.size() || edges.size() != other.edges.size()) {
+			return false;
+		}
+
+		for (RenderType vertex : vertices) {
+			if (!other.ids.containsKey(vertex)) {
+				return false;
+			}
+		}
+
+		LongIterator iterator = edges.keySet().iterator();
+
+		while (iterator.hasNext()) {
+			long edge = iterator.nextLong();
+			int source = other.getId(vertices.get(source(edge)));
+			int target = other.getId(vertices.get(target(edge)));
+
+			if (!other.edges.containsKey(edgeKey(source, target))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	MapDigraph<RenderType> toDigraph() {
+		MapDigraph<RenderType> graph = new MapDigraph<>();
+
+		for (RenderType vertex : vertices) {
+			graph.add(vertex);
+		}
+
+		for (Long2IntMap.Entry entry : edges.long2IntEntrySet()) {
+			long edge = entry.getLongKey();
+			graph.put(vertices.get(source(edge)), vertices.get(target(edge)), entry.getIntValue());
+		}
+
+		return graph;
+	}
+
+	void clear() {
+		ids.clear();
+		vertices.clear();
+		edges.clear();
+	}
+}
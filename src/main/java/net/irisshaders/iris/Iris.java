@@ -1,6 +1,7 @@
 package net.irisshaders.iris;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.mojang.blaze3d.platform.GlDebug;
 import com.mojang.blaze3d.platform.InputConstants;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
@@ -15,19 +16,25 @@ import net.irisshaders.iris.gl.shader.StandardMacros;
 import net.irisshaders.iris.gui.debug.DebugLoadFailedGridScreen;
 import net.irisshaders.iris.gui.screen.ShaderPackScreen;
 import net.irisshaders.iris.helpers.OptionalBoolean;
+import net.irisshaders.iris.helpers.StringPair;
+import net.irisshaders.iris.helpers.WorkerPool;
 import net.irisshaders.iris.pipeline.IrisRenderingPipeline;
 import net.irisshaders.iris.pipeline.PipelineManager;
 import net.irisshaders.iris.pipeline.VanillaRenderingPipeline;
 import net.irisshaders.iris.pipeline.WorldRenderingPipeline;
 import net.irisshaders.iris.shaderpack.DimensionId;
+import net.irisshaders.iris.shaderpack.IrisDefines;
 import net.irisshaders.iris.shaderpack.ShaderPack;
 import net.irisshaders.iris.shaderpack.discovery.ShaderpackDirectoryManager;
+import net.irisshaders.iris.shaderpack.discovery.ShaderpackIndex;
 import net.irisshaders.iris.shaderpack.materialmap.NamespacedId;
 import net.irisshaders.iris.shaderpack.option.OptionSet;
 import net.irisshaders.iris.shaderpack.option.Profile;
 import net.irisshaders.iris.shaderpack.option.values.MutableOptionValues;
 import net.irisshaders.iris.shaderpack.option.values.OptionValues;
+import net.irisshaders.iris.shaderpack.preprocessor.GlslPreprocessor;
 import net.irisshaders.iris.shaderpack.programs.ProgramSet;
+import net.irisshaders.iris.shaderpack.zip.ZipPackFileSystem;
 import net.irisshaders.iris.texture.pbr.PBRTextureManager;
 import net.minecraft.ChatFormatting;
 import net.minecraft.SharedConstants;
@@ -53,8 +60,12 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Stream;
 import java.util.zip.ZipError;
 import java.util.zip.ZipException;
@@ -72,10 +83,14 @@ public class Iris {
 	private static final Map<String, String> shaderPackOptionQueue = new HashMap<>();
 	// Change this for snapshots!
 	private static final String backupVersionNumber = "1.20.3";
+	// Reads reloaded packs on the render thread like the initial load does, in case reading them in the background
+	// causes trouble
+	private static final boolean SYNC_RELOAD = Boolean.getBoolean("iris.syncReload");
 	public static NamespacedId lastDimension = null;
 	public static boolean testing = false;
 	private static Path shaderpacksDirectory;
 	private static ShaderpackDirectoryManager shaderpacksDirectoryManager;
+	private static ShaderpackIndex shaderpackIndex;
 	private static ShaderPack currentPack;
 	private static String currentPackName;
 	private static Optional<Exception> storedError = Optional.empty();
@@ -94,6 +109,7 @@ public class Iris {
 	private static Version IRIS_VERSION;
 	private static UpdateChecker updateChecker;
 	private static boolean fallback;
+	private static CompletableFuture<LoadedPack> pendingReload;
 
 	static {
 		if (!BuildConfig.ACTIVATE_RENDERDOC && FabricLoader.getInstance().isDevelopmentEnvironment() && System.getProperty("user.name").contains("ims") && Util.getPlatform() == Util.OS.LINUX) {
@@ -139,11 +155,14 @@ public class Iris {
 	}
 
 	public static void handleKeybinds(Minecraft minecraft) {
+		finishPendingReload(minecraft);
+
 		if (reloadKeybind.consumeClick()) {
 			try {
 				reload();
 
-				if (minecraft.player != null) {
+				// a reload that is still running reports its result once it is done
+				if (minecraft.player != null && pendingReload == null) {
 					minecraft.player.displayClientMessage(Component.translatable("iris.shaders.reloaded"), false);
 				}
 
@@ -226,6 +245,37 @@ public class Iris {
 	}
 
 	private static boolean loadExternalShaderpack(String name) {
+		Map<String, String> queuedOptions = new HashMap<>(shaderPackOptionQueue);
+		clearShaderPackOptionQueue();
+		boolean resetOptions = resetShaderPackOptions;
+		resetShaderPackOptions = false;
+
+		LoadedPack loaded = readExternalShaderpack(name, queuedOptions, resetOptions,
+			StandardMacros.createStandardEnvironmentDefines(), IrisDefines.createIrisReplacements());
+
+		if (loaded == null) {
+			return false;
+		}
+
+		zipFileSystem = loaded.zipFileSystem();
+		currentPack = loaded.pack();
+		fallback = false;
+		currentPackName = name;
+
+		logger.info("Using shaderpack: " + name);
+
+		return true;
+	}
+
+	/**
+	 * Reads a shader pack and stores its options. This doesn't touch OpenGL or the currently loaded pack, so it can
+	 * run on any thread.
+	 *
+	 * @return the pack, or null if it couldn't be read, in which case the reason has already been logged
+	 */
+	private static LoadedPack readExternalShaderpack(String name, Map<String, String> queuedOptions, boolean resetOptions,
+													 ImmutableList<StringPair> environmentDefines,
+													 ImmutableList<StringPair> irisReplacements) {
 		Path shaderPackRoot;
 		Path shaderPackConfigTxt;
 
@@ -235,12 +285,22 @@ public class Iris {
 		} catch (InvalidPathException e) {
 			logger.error("Failed to load the shaderpack \"{}\" because it contains invalid characters in its path", name);
 
-			return false;
+			return null;
 		}
 
-		if (!isValidShaderpack(shaderPackRoot)) {
+		ShaderpackIndex.PackInfo packInfo;
+
+		try {
+			// Only valid packs are taken from the index, anything else is scanned again with findShadersRoot. The pack
+			// may have been indexed while it was still being copied into the shaderpacks folder.
+			packInfo = shaderPackRoot.equals(getShaderpacksDirectory()) ? null : getShaderpackIndex().get(name);
+		} catch (IOException e) {
+			packInfo = null;
+		}
+
+		if (packInfo == null || !packInfo.isValid()) {
 			logger.error("Pack \"{}\" is not valid! Can't load it.", name);
-			return false;
+			return null;
 		}
 
 		Path shaderPackPath;
@@ -249,32 +309,32 @@ public class Iris {
 			Optional<Path> optionalPath;
 
 			try {
-				optionalPath = loadExternalZipShaderpack(shaderPackRoot);
+				optionalPath = loadExternalZipShaderpack(shaderPackRoot, packInfo.shadersRoot());
 			} catch (FileSystemNotFoundException | NoSuchFileException e) {
 				logger.error("Failed to load the shaderpack \"{}\" because it does not exist in your shaderpacks folder!", name);
 
-				return false;
+				return null;
 			} catch (ZipException e) {
 				logger.error("The shaderpack \"{}\" appears to be corrupted, please try downloading it again!", name);
 
-				return false;
+				return null;
 			} catch (IOException e) {
 				logger.error("Failed to load the shaderpack \"{}\"!", name);
 				logger.error("", e);
 
-				return false;
+				return null;
 			}
 
 			if (optionalPath.isPresent()) {
 				shaderPackPath = optionalPath.get();
 			} else {
 				logger.error("Could not load the shaderpack \"{}\" because it appears to lack a \"shaders\" directory", name);
-				return false;
+				return null;
 			}
 		} else {
 			if (!Files.exists(shaderPackRoot)) {
 				logger.error("Failed to load the shaderpack \"{}\" because it does not exist!", name);
-				return false;
+				return null;
 			}
 
 			// If it's a folder-based shaderpack, just use the shaders subdirectory
@@ -283,25 +343,26 @@ public class Iris {
 
 		if (!Files.exists(shaderPackPath)) {
 			logger.error("Could not load the shaderpack \"{}\" because it appears to lack a \"shaders\" directory", name);
-			return false;
+			return null;
 		}
 
 		Map<String, String> changedConfigs = tryReadConfigProperties(shaderPackConfigTxt)
 			.map(properties -> (Map<String, String>) (Map) properties)
 			.orElse(new HashMap<>());
 
-		changedConfigs.putAll(shaderPackOptionQueue);
-		clearShaderPackOptionQueue();
+		changedConfigs.putAll(queuedOptions);
 
-		if (resetShaderPackOptions) {
+		if (resetOptions) {
 			changedConfigs.clear();
 		}
-		resetShaderPackOptions = false;
+
+		FileSystem packFileSystem = shaderPackPath.getFileSystem() == FileSystems.getDefault() ? null : shaderPackPath.getFileSystem();
+		ShaderPack pack;
 
 		try {
-			currentPack = new ShaderPack(shaderPackPath, changedConfigs, StandardMacros.createStandardEnvironmentDefines());
+			pack = new ShaderPack(shaderPackPath, changedConfigs, environmentDefines, irisReplacements);
 
-			MutableOptionValues changedConfigsValues = currentPack.getShaderPackOptions().getOptionValues().mutableCopy();
+			MutableOptionValues changedConfigsValues = pack.getShaderPackOptions().getOptionValues().mutableCopy();
 
 			// Store changed values from those currently in use by the shader pack
 			Properties configsToSave = new Properties();
@@ -312,21 +373,23 @@ public class Iris {
 		} catch (Exception e) {
 			logger.error("Failed to load the shaderpack \"{}\"!", name);
 			logger.error("", e);
+			closeZipFileSystem(packFileSystem);
 
-			return false;
+			return null;
 		}
 
-		fallback = false;
-		currentPackName = name;
+		return new LoadedPack(pack, name, packFileSystem);
+	}
 
-		logger.info("Using shaderpack: " + name);
+	private static Optional<Path> loadExternalZipShaderpack(Path shaderpackPath, String indexedShadersRoot) throws IOException {
+		FileSystem zipSystem = ZipPackFileSystem.open(shaderpackPath);
 
-		return true;
-	}
+		// The shader pack index already knows where the shaders dir is, unless the zip changed since then
+		Path indexedShaderDir = zipSystem.getPath(indexedShadersRoot);
 
-	private static Optional<Path> loadExternalZipShaderpack(Path shaderpackPath) throws IOException {
-		FileSystem zipSystem = FileSystems.newFileSystem(shaderpackPath, Iris.class.getClassLoader());
-		zipFileSystem = zipSystem;
+		if (Files.isDirectory(indexedShaderDir)) {
+			return Optional.of(indexedShaderDir);
+		}
 
 		// Should only be one root directory for a zip shaderpack
 		Path root = zipSystem.getRootDirectories().iterator().next();
@@ -343,12 +406,23 @@ public class Iris {
 		// For example Sildurs-Vibrant-Shaders.zip/shaders
 		// While other packs have Trippy-Shaderpack-master.zip/Trippy-Shaderpack-master/shaders
 		// This makes it hard to determine what is the actual shaders dir
+		Optional<Path> shadersDir;
+
 		try (Stream<Path> stream = Files.walk(root)) {
-			return stream
+			shadersDir = stream
 				.filter(Files::isDirectory)
 				.filter(path -> path.endsWith("shaders"))
 				.findFirst();
+		} catch (IOException | RuntimeException e) {
+			closeZipFileSystem(zipSystem);
+			throw e;
+		}
+
+		if (shadersDir.isEmpty()) {
+			closeZipFileSystem(zipSystem);
 		}
+
+		return shadersDir;
 	}
 
 	private static void setShadersDisabled() {
@@ -426,41 +500,21 @@ public class Iris {
 	}
 
 	public static boolean isValidShaderpack(Path pack) {
-		if (Files.isDirectory(pack)) {
-			// Sometimes the shaderpack directory itself can be
-			// identified as a shader pack due to it containing
-			// folders which contain "shaders" folders, this is
-			// necessary to check against that
-			if (pack.equals(getShaderpacksDirectory())) {
-				return false;
-			}
-			try (Stream<Path> stream = Files.walk(pack)) {
-				return stream
-					.filter(Files::isDirectory)
-					// Prevent a pack simply named "shaders" from being
-					// identified as a valid pack
-					.filter(path -> !path.equals(pack))
-					.anyMatch(path -> path.endsWith("shaders"));
-			} catch (IOException ignored) {
-				// ignored, not a valid shader pack.
-				return false;
-			}
+		// Sometimes the shaderpack directory itself can be
+		// identified as a shader pack due to it containing
+		// folders which contain "shaders" folders, this is
+		// necessary to check against that
+		if (pack.equals(getShaderpacksDirectory())) {
+			return false;
 		}
 
-		if (pack.toString().endsWith(".zip")) {
-			try (FileSystem zipSystem = FileSystems.newFileSystem(pack, Iris.class.getClassLoader())) {
-				Path root = zipSystem.getRootDirectories().iterator().next();
-				try (Stream<Path> stream = Files.walk(root)) {
-					return stream
-						.filter(Files::isDirectory)
-						.anyMatch(path -> path.endsWith("shaders"));
-				}
-			} catch (ZipError zipError) {
-				// Java 8 seems to throw a ZipError instead of a subclass of IOException
-				Iris.logger.warn("The ZIP at " + pack + " is corrupt");
-			} catch (IOException ignored) {
-				// ignored, not a valid shader pack.
-			}
+		try {
+			return ShaderpackIndex.findShadersRoot(pack) != null;
+		} catch (ZipError zipError) {
+			// Java 8 seems to throw a ZipError instead of a subclass of IOException
+			Iris.logger.warn("The ZIP at " + pack + " is corrupt");
+		} catch (IOException ignored) {
+			// ignored, not a valid shader pack.
 		}
 
 		return false;
@@ -518,6 +572,22 @@ public class Iris {
 		// allows shaderpacks to be changed at runtime
 		irisConfig.initialize();
 
+		// The preprocessor only benefits from what it cached when the same pack is loaded again
+		String packName = irisConfig.areShadersEnabled() ? irisConfig.getShaderPackName().orElse(null) : null;
+
+		if (!Objects.equals(packName, currentPackName)) {
+			GlslPreprocessor.clearCaches();
+		}
+
+		// Whatever is being read in the background was selected before this reload, so it is outdated now
+		cancelPendingReload();
+
+		// Without a pack in use there is no pipeline worth keeping around while the new pack is read
+		if (!SYNC_RELOAD && currentPack != null && irisConfig.areShadersEnabled() && irisConfig.getShaderPackName().isPresent()) {
+			startAsyncReload(irisConfig.getShaderPackName().get());
+			return;
+		}
+
 		// Destroy all allocated resources
 		destroyEverything();
 
@@ -530,6 +600,10 @@ public class Iris {
 			Iris.getPipelineManager().preparePipeline(Iris.getCurrentDimension());
 		}
 
+		warnIfIncompatiblePack();
+	}
+
+	private static void warnIfIncompatiblePack() {
 		if (loadedIncompatiblePack() && Minecraft.getInstance().player != null) {
 			Minecraft.getInstance().gui.setTimes(10, 70, 140);
 			Iris.logger.warn("Incompatible pack for DH!");
@@ -538,6 +612,153 @@ public class Iris {
 		}
 	}
 
+	/**
+	 * Starts reading the selected shader pack on the worker pool, while the current pipeline keeps rendering. The new
+	 * pack replaces the current one in {@link #finishPendingReload} once it has been read.
+	 * <p>
+	 * Only reading the pack happens in the background. The pipeline of the new pack, including patching and compiling
+	 * all of its programs, is still built on the render thread in the tick that the packs are swapped.
+	 */
+	private static void startAsyncReload(String name) {
+		Map<String, String> queuedOptions = new HashMap<>(shaderPackOptionQueue);
+		clearShaderPackOptionQueue();
+		boolean resetOptions = resetShaderPackOptions;
+		resetShaderPackOptions = false;
+
+		// These need OpenGL, so they have to be created here on the render thread
+		ImmutableList<StringPair> environmentDefines = StandardMacros.createStandardEnvironmentDefines();
+		ImmutableList<StringPair> irisReplacements = IrisDefines.createIrisReplacements();
+		NamespacedId dimension = getCurrentDimension();
+
+		logger.info("Reading shaderpack \"{}\" in the background", name);
+
+		pendingReload = CompletableFuture.supplyAsync(() -> {
+			LoadedPack loaded = readExternalShaderpack(name, queuedOptions, resetOptions, environmentDefines, irisReplacements);
+
+			if (loaded != null && dimension != null) {
+				try {
+					// preprocesses the sources of every program that the pipeline of the dimension is going to use
+					loaded.pack().getProgramSet(dimension);
+				} catch (RuntimeException e) {
+					loaded.close();
+					throw e;
+				}
+			}
+
+			return loaded;
+		}, WorkerPool.get());
+	}
+
+	private static void cancelPendingReload() {
+		if (pendingReload != null) {
+			// the pack may still be in the middle of being read, so it can only be closed once that is done
+			pendingReload.thenAccept(loaded -> {
+				if (loaded != null) {
+					loaded.close();
+				}
+			});
+			pendingReload = null;
+		}
+	}
+
+	/**
+	 * Replaces the current shader pack with the one read by {@link #startAsyncReload}, if it is done. This runs
+	 * between frames, so no frame is ever rendered with a mix of both packs.
+	 */
+	private static void finishPendingReload(Minecraft minecraft) {
+		if (pendingReload == null || !pendingReload.isDone()) {
+			return;
+		}
+
+		CompletableFuture<LoadedPack> completed = pendingReload;
+		pendingReload = null;
+
+		LoadedPack loaded;
+
+		try {
+			loaded = completed.join();
+		} catch (CompletionException | CancellationException e) {
+			logger.error("Failed to read the shaderpack, keeping the current one!", e);
+			restoreCurrentPackName(minecraft);
+			sendReloadFailure(minecraft, Throwables.getRootCause(e).getMessage());
+			return;
+		}
+
+		if (loaded == null) {
+			restoreCurrentPackName(minecraft);
+			sendReloadFailure(minecraft, "The shaderpack could not be loaded, check the log for details");
+			return;
+		}
+
+		if (loaded.pack().hasInvalidFeatureFlags()) {
+			loaded.close();
+			restoreCurrentPackName(minecraft);
+			loaded.pack().reportInvalidFeatureFlags();
+			return;
+		}
+
+		NamespacedId dimension = getCurrentDimension();
+
+		// Pipelines share global state such as the block ids and buffer bindings, so the new pipeline can't be
+		// created next to the current ones. If creating it fails, the pipeline of the current pack is created again.
+		getPipelineManager().destroyPipeline();
+
+		if (minecraft.level != null) {
+			try {
+				getPipelineManager().preparePipeline(dimension, dimensionId -> new IrisRenderingPipeline(loaded.pack().getProgramSet(dimensionId)));
+			} catch (Exception e) {
+				logger.error("Failed to create the pipeline of the reloaded shaderpack, keeping the current one!", e);
+				loaded.close();
+				restoreCurrentPackName(minecraft);
+				showPipelineError(e);
+				getPipelineManager().preparePipeline(dimension);
+				return;
+			}
+		}
+
+		closeZipFileSystem(zipFileSystem);
+		zipFileSystem = loaded.zipFileSystem();
+		currentPack = loaded.pack();
+		currentPackName = loaded.name();
+		fallback = false;
+
+		logger.info("Using shaderpack: " + loaded.name());
+
+		if (minecraft.screen instanceof ShaderPackScreen screen) {
+			screen.refreshForChangedPack();
+		}
+
+		if (minecraft.player != null) {
+			minecraft.player.displayClientMessage(Component.translatable("iris.shaders.reloaded"), false);
+		}
+
+		warnIfIncompatiblePack();
+	}
+
+	/**
+	 * Points the config back at the pack that is still in use after a reload failed, so that neither the shader pack
+	 * screen nor the next launch pick up the pack that failed, and applying that pack again reloads it.
+	 */
+	private static void restoreCurrentPackName(Minecraft minecraft) {
+		irisConfig.setShaderPackName(currentPackName);
+
+		try {
+			irisConfig.save();
+		} catch (IOException e) {
+			logger.error("Error saving configuration file!", e);
+		}
+
+		if (minecraft.screen instanceof ShaderPackScreen screen) {
+			screen.refreshForRestoredPack();
+		}
+	}
+
+	private static void sendReloadFailure(Minecraft minecraft, String reason) {
+		if (minecraft.player != null) {
+			minecraft.player.displayClientMessage(Component.translatable("iris.shaders.reloaded.failure", reason).withStyle(ChatFormatting.RED), false);
+		}
+	}
+
 	/**
 	 * Destroys and deallocates all created OpenGL resources. Useful as part of a reload.
 	 */
@@ -549,9 +770,14 @@ public class Iris {
 		// Close the zip filesystem that the shaderpack was loaded from
 		//
 		// This prevents a FileSystemAlreadyExistsException when reloading shaderpacks.
-		if (zipFileSystem != null) {
+		closeZipFileSystem(zipFileSystem);
+		zipFileSystem = null;
+	}
+
+	private static void closeZipFileSystem(FileSystem fileSystem) {
+		if (fileSystem != null) {
 			try {
-				zipFileSystem.close();
+				fileSystem.close();
 			} catch (NoSuchFileException e) {
 				logger.warn("Failed to close the shaderpack zip when reloading because it was deleted, proceeding anyways.");
 			} catch (IOException e) {
@@ -585,15 +811,7 @@ public class Iris {
 		try {
 			return new IrisRenderingPipeline(programs);
 		} catch (Exception e) {
-			if (irisConfig.areDebugOptionsEnabled()) {
-				Minecraft.getInstance().setScreen(new DebugLoadFailedGridScreen(Minecraft.getInstance().screen, Component.literal(e instanceof ShaderCompileException ? "Failed to compile shaders" : "Exception"), e));
-			} else {
-				if (Minecraft.getInstance().player != null) {
-					Minecraft.getInstance().player.displayClientMessage(Component.translatable(e instanceof ShaderCompileException ? "iris.load.failure.shader" : "iris.load.failure.generic").append(Component.literal("Copy Info").withStyle(arg -> arg.withUnderlined(true).withColor(ChatFormatting.BLUE).withClickEvent(new ClickEvent(ClickEvent.Action.COPY_TO_CLIPBOARD, e.getMessage())))), false);
-				} else {
-					storedError = Optional.of(e);
-				}
-			}
+			showPipelineError(e);
 			logger.error("Failed to create shader rendering pipeline, disabling shaders!", e);
 			// TODO: This should be reverted if a dimension change causes shaders to compile again
 			fallback = true;
@@ -602,6 +820,18 @@ public class Iris {
 		}
 	}
 
+	private static void showPipelineError(Exception e) {
+		if (irisConfig.areDebugOptionsEnabled()) {
+			Minecraft.getInstance().setScreen(new DebugLoadFailedGridScreen(Minecraft.getInstance().screen, Component.literal(e instanceof ShaderCompileException ? "Failed to compile shaders" : "Exception"), e));
+		} else {
+			if (Minecraft.getInstance().player != null) {
+				Minecraft.getInstance().player.displayClientMessage(Component.translatable(e instanceof ShaderCompileException ? "iris.load.failure.shader" : "iris.load.failure.generic").append(Component.literal("Copy Info").withStyle(arg -> arg.withUnderlined(true).withColor(ChatFormatting.BLUE).withClickEvent(new ClickEvent(ClickEvent.Action.COPY_TO_CLIPBOARD, e.getMessage())))), false);
+			} else {
+				storedError = Optional.of(e);
+			}
+		}
+	}
+
 	@NotNull
 	public static PipelineManager getPipelineManager() {
 		if (pipelineManager == null) {
@@ -695,6 +925,15 @@ public class Iris {
 		return shaderpacksDirectoryManager;
 	}
 
+	public static synchronized ShaderpackIndex getShaderpackIndex() {
+		if (shaderpackIndex == null) {
+			shaderpackIndex = new ShaderpackIndex(getShaderpacksDirectory(),
+				FabricLoader.getInstance().getGameDir().resolve("iris_cache").resolve("shaderpacks.json"));
+		}
+
+		return shaderpackIndex;
+	}
+
 	public static boolean loadedIncompatiblePack() {
 		return DHCompat.lastPackIncompatible();
 	}
@@ -781,4 +1020,13 @@ public class Iris {
 			return 0;
 		})));*/
 	}
+
+	/**
+	 * A shader pack that was read from the disk, along with the zip file system it was read from, if any.
+	 */
+	private record LoadedPack(ShaderPack pack, String name, FileSystem zipFileSystem) {
+		void close() {
+			closeZipFileSystem(zipFileSystem);
+		}
+	}
 }
@@ -16,6 +16,7 @@ import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL30C;
 import org.lwjgl.opengl.GL32C;
 import org.lwjgl.opengl.GL33C;
+import org.lwjgl.opengl.GL41C;
 import org.lwjgl.opengl.GL42C;
 import org.lwjgl.opengl.GL43C;
 import org.lwjgl.opengl.GL45C;
@@ -31,15 +32,20 @@ import java.nio.IntBuffer;
  * This class is responsible for abstracting calls to OpenGL and asserting that calls are run on the render thread.
  */
 public class IrisRenderSystem {
-	private static final int[] emptyArray = new int[SamplerLimits.get().getMaxTextureUnits()];
 	private static Matrix4f backupProjection;
 	private static DSAAccess dsaState;
 	private static boolean hasMultibind;
 	private static boolean supportsCompute;
 	private static boolean supportsTesselation;
+	private static boolean supportsProgramBinary;
+	private static boolean supportsSSBO;
+	private static boolean supportsImageLoadStore;
+	private static boolean supportsBufferBlending;
+	private static boolean supportsBufferStorage;
 	private static int polygonMode = GL43C.GL_FILL;
 	private static int backupPolygonMode = GL43C.GL_FILL;
 	private static int[] samplers;
+	private static int[] emptyArray;
 
 	public static void initRenderer() {
 		if (GL.getCapabilities().OpenGL45) {
@@ -57,8 +63,18 @@ public class IrisRenderSystem {
 
 		supportsCompute = GL.getCapabilities().glDispatchCompute != MemoryUtil.NULL;
 		supportsTesselation = GL.getCapabilities().GL_ARB_tessellation_shader || GL.getCapabilities().OpenGL40;
+		// some drivers expose the functions without supporting a single binary format
+		supportsProgramBinary = GL.getCapabilities().glProgramBinary != MemoryUtil.NULL
+			&& GL41C.glGetInteger(GL41C.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+		// These are queried while reading shader packs, which may happen off the render thread where there are no
+		// GL capabilities to look at.
+		supportsSSBO = GL.getCapabilities().OpenGL44 || (GL.getCapabilities().GL_ARB_shader_storage_buffer_object && GL.getCapabilities().GL_ARB_buffer_storage);
+		supportsImageLoadStore = GL.getCapabilities().glBindImageTexture != 0L || GL.getCapabilities().OpenGL42 || ((GL.getCapabilities().GL_ARB_shader_image_load_store || GL.getCapabilities().GL_EXT_shader_image_load_store) && GL.getCapabilities().GL_ARB_buffer_storage);
+		supportsBufferBlending = GL.getCapabilities().GL_ARB_draw_buffers_blend || GL.getCapabilities().OpenGL40;
+		supportsBufferStorage = GL.getCapabilities().OpenGL44 || GL.getCapabilities().GL_ARB_buffer_storage;
 
 		samplers = new int[SamplerLimits.get().getMaxTextureUnits()];
+		emptyArray = new int[SamplerLimits.get().getMaxTextureUnits()];
 	}
 
 	public static void getIntegerv(int pname, int[] params) {
@@ -81,6 +97,16 @@ public class IrisRenderSystem {
 		GL32C.glBindAttribLocation(program, index, name);
 	}
 
+	public static int getUniformBlockIndex(int program, CharSequence name) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		return GL32C.glGetUniformBlockIndex(program, name);
+	}
+
+	public static void uniformBlockBinding(int program, int index, int binding) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL32C.glUniformBlockBinding(program, index, binding);
+	}
+
 	public static void texImage1D(int texture, int target, int level, int internalformat, int width, int border, int format, int type, @Nullable ByteBuffer pixels) {
 		RenderSystem.assertOnRenderThreadOrInit();
 		IrisRenderSystem.bindTextureForSetup(target, texture);
@@ -181,6 +207,21 @@ public class IrisRenderSystem {
 		return GL32C.glGetShaderInfoLog(shader);
 	}
 
+	public static void programParameteri(int program, int pname, int value) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL41C.glProgramParameteri(program, pname, value);
+	}
+
+	public static void getProgramBinary(int program, int[] length, int[] binaryFormat, ByteBuffer binary) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL41C.glGetProgramBinary(program, length, binaryFormat, binary);
+	}
+
+	public static void programBinary(int program, int binaryFormat, ByteBuffer binary) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL41C.glProgramBinary(program, binaryFormat, binary);
+	}
+
 	public static void drawBuffers(int framebuffer, int[] buffers) {
 		RenderSystem.assertOnRenderThreadOrInit();
 		dsaState.drawBuffers(framebuffer, buffers);
@@ -206,6 +247,29 @@ public class IrisRenderSystem {
 		GL32C.glBufferData(target, data, usage);
 	}
 
+	public static void bufferData(int target, ByteBuffer data, int usage) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL32C.glBufferData(target, data, usage);
+	}
+
+	public static void bufferData(int target, long size, int usage) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL32C.glBufferData(target, size, usage);
+	}
+
+	public static void bufferSubData(int target, long offset, ByteBuffer data) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL32C.glBufferSubData(target, offset, data);
+	}
+
+	/**
+	 * Maps a range of the buffer bound to the target, and returns the address of the mapping.
+	 */
+	public static long mapBufferRange(int target, long offset, long length, int access) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		return GL32C.nglMapBufferRange(target, offset, length, access);
+	}
+
 	public static int bufferStorage(int target, float[] data, int usage) {
 		RenderSystem.assertOnRenderThreadOrInit();
 		return dsaState.bufferStorage(target, data, usage);
@@ -222,6 +286,33 @@ public class IrisRenderSystem {
 		GL43C.glBindBufferBase(target, index, buffer);
 	}
 
+	public static void bindBufferRange(int target, int index, int buffer, long offset, long size) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL32C.glBindBufferRange(target, index, buffer, offset, size);
+	}
+
+	public static long fenceSync() {
+		RenderSystem.assertOnRenderThreadOrInit();
+		return GL32C.glFenceSync(GL32C.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+	}
+
+	/**
+	 * Blocks until the GPU has passed the fence, flushing the commands before it so that it is certain to be reached.
+	 */
+	public static void waitSync(long sync) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		int result;
+
+		do {
+			result = GL32C.glClientWaitSync(sync, GL32C.GL_SYNC_FLUSH_COMMANDS_BIT, 1_000_000L);
+		} while (result == GL32C.GL_TIMEOUT_EXPIRED);
+	}
+
+	public static void deleteSync(long sync) {
+		RenderSystem.assertOnRenderThreadOrInit();
+		GL32C.glDeleteSync(sync);
+	}
+
 	public static void vertexAttrib4f(int index, float v0, float v1, float v2, float v3) {
 		RenderSystem.assertOnRenderThreadOrInit();
 		GL32C.glVertexAttrib4f(index, v0, v1, v2, v3);
@@ -261,11 +352,15 @@ public class IrisRenderSystem {
 	}
 
 	public static boolean supportsSSBO() {
-		return GL.getCapabilities().OpenGL44 || (GL.getCapabilities().GL_ARB_shader_storage_buffer_object && GL.getCapabilities().GL_ARB_buffer_storage);
+		return supportsSSBO;
 	}
 
 	public static boolean supportsImageLoadStore() {
-		return GL.getCapabilities().glBindImageTexture != 0L || GL.getCapabilities().OpenGL42 || ((GL.getCapabilities().GL_ARB_shader_image_load_store || GL.getCapabilities().GL_EXT_shader_image_load_store) && GL.getCapabilities().GL_ARB_buffer_storage);
+		return supportsImageLoadStore;
+	}
+
+	public static boolean supportsBufferStorage() {
+		return supportsBufferStorage;
 	}
 
 	public static void genBuffers(int[] buffers) {
@@ -297,7 +392,7 @@ public class IrisRenderSystem {
 	}
 
 	public static boolean supportsBufferBlending() {
-		return GL.getCapabilities().GL_ARB_draw_buffers_blend || GL.getCapabilities().OpenGL40;
+		return supportsBufferBlending;
 	}
 
 	public static void disableBufferBlend(int buffer) {
@@ -367,6 +462,10 @@ public class IrisRenderSystem {
 		return supportsTesselation;
 	}
 
+	public static boolean supportsProgramBinary() {
+		return supportsProgramBinary;
+	}
+
 	public static int genSampler() {
 		return GL33C.glGenSamplers();
 	}
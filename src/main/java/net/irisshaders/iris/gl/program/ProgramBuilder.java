@@ -7,6 +7,7 @@ import net.irisshaders.iris.gl.image.ImageHolder;
 import net.irisshaders.iris.gl.sampler.GlSampler;
 import net.irisshaders.iris.gl.sampler.SamplerHolder;
 import net.irisshaders.iris.gl.shader.GlShader;
+import net.irisshaders.iris.gl.shader.ProgramBinaryCache;
 import net.irisshaders.iris.gl.shader.ProgramCreator;
 import net.irisshaders.iris.gl.shader.ShaderCompileException;
 import net.irisshaders.iris.gl.shader.ShaderType;
@@ -15,6 +16,10 @@ import net.irisshaders.iris.gl.texture.InternalTextureFormat;
 import net.irisshaders.iris.gl.texture.TextureType;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.IntSupplier;
 
 public class ProgramBuilder extends ProgramUniforms.Builder implements SamplerHolder, ImageHolder {
@@ -34,37 +39,16 @@ public class ProgramBuilder extends ProgramUniforms.Builder implements SamplerHo
 									   @Nullable String fragmentSource, ImmutableSet<Integer> reservedTextureUnits) {
 		RenderSystem.assertOnRenderThread();
 
-		GlShader vertex;
-		GlShader geometry;
-		GlShader fragment;
-
-		vertex = buildShader(ShaderType.VERTEX, name + ".vsh", vertexSource);
+		Map<ShaderType, String> sources = new EnumMap<>(ShaderType.class);
+		sources.put(ShaderType.VERTEX, vertexSource);
 
 		if (geometrySource != null) {
-			geometry = buildShader(ShaderType.GEOMETRY, name + ".gsh", geometrySource);
-		} else {
-			geometry = null;
-		}
-
-		fragment = buildShader(ShaderType.FRAGMENT, name + ".fsh", fragmentSource);
-
-		int programId;
-
-		if (geometry != null) {
-			programId = ProgramCreator.create(name, vertex, geometry, fragment);
-		} else {
-			programId = ProgramCreator.create(name, vertex, fragment);
+			sources.put(ShaderType.GEOMETRY, geometrySource);
 		}
 
-		vertex.destroy();
+		sources.put(ShaderType.FRAGMENT, fragmentSource);
 
-		if (geometry != null) {
-			geometry.destroy();
-		}
-
-		fragment.destroy();
-
-		return new ProgramBuilder(name, programId, reservedTextureUnits);
+		return new ProgramBuilder(name, createProgram(name, sources), reservedTextureUnits);
 	}
 
 	public static ProgramBuilder beginCompute(String name, @Nullable String source, ImmutableSet<Integer> reservedTextureUnits) {
@@ -74,13 +58,60 @@ public class ProgramBuilder extends ProgramUniforms.Builder implements SamplerHo
 			throw new IllegalStateException("This PC does not support compute shaders, but it's attempting to be used???");
 		}
 
-		GlShader compute = buildShader(ShaderType.COMPUTE, name + ".csh", source);
+		Map<ShaderType, String> sources = new EnumMap<>(ShaderType.class);
+		sources.put(ShaderType.COMPUTE, source);
 
-		int programId = ProgramCreator.create(name, compute);
+		return new ProgramBuilder(name, createProgram(name, sources), reservedTextureUnits);
+	}
 
-		compute.destroy();
+	/**
+	 * Links a program from the given sources, or loads its binary from the program binary cache if it was linked
+	 * before with the same driver.
+	 */
+	private static int createProgram(String name, Map<ShaderType, String> sources) {
+		ProgramBinaryCache cache = ProgramBinaryCache.get();
+		String key = null;
+
+		if (cache != null && !sources.containsValue(null)) {
+			key = cache.computeKey(sources);
+			int program = cache.load(name, key);
+
+			if (program != 0) {
+				return program;
+			}
+		}
+
+		List<GlShader> shaders = new ArrayList<>(sources.size());
+
+		try {
+			for (Map.Entry<ShaderType, String> entry : sources.entrySet()) {
+				ShaderType type = entry.getKey();
+				shaders.add(buildShader(type, name + getExtension(type), entry.getValue()));
+			}
+
+			int program = ProgramCreator.create(name, shaders.toArray(new GlShader[0]));
+
+			if (key != null) {
+				cache.save(key, program);
+			}
+
+			return program;
+		} finally {
+			for (GlShader shader : shaders) {
+				shader.destroy();
+			}
+		}
+	}
 
-		return new ProgramBuilder(name, programId, reservedTextureUnits);
+	private static String getExtension(ShaderType type) {
+		return switch (type) {
+			case VERTEX -> ".vsh";
+			case GEOMETRY -> ".gsh";
+			case FRAGMENT -> ".fsh";
+			case COMPUTE -> ".csh";
+			case TESSELATION_CONTROL -> ".tcs";
+			case TESSELATION_EVAL -> ".tes";
+		};
 	}
 
 	private static GlShader buildShader(ShaderType shaderType, String name, @Nullable String source) {
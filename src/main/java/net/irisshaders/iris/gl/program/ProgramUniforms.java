@@ -16,6 +16,7 @@ import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.ARBShaderImageLoadStore;
 import org.lwjgl.opengl.GL20C;
 import org.lwjgl.opengl.GL30C;
+import org.lwjgl.opengl.GL31C;
 
 import java.nio.IntBuffer;
 import java.util.ArrayList;
@@ -25,22 +26,30 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.OptionalInt;
 
+/**
+ * The uniforms of a single program, mostly ones that depend on the render state at the time the program is bound, such
+ * as the fog and texture uniforms.
+ * <p>
+ * Uniforms that only depend on the state of the world, like the camera, time and matrix uniforms, are usually not part
+ * of this. In shader pack programs they are inputs of the {@link net.irisshaders.iris.uniforms.custom.CustomUniforms} of the pipeline instead,
+ * which evaluates them once per frame or tick for all programs, and only uploads them to a program when they changed.
+ */
 public class ProgramUniforms {
 	private static ProgramUniforms active;
-	private final ImmutableList<Uniform> perTick;
-	private final ImmutableList<Uniform> perFrame;
-	private final ImmutableList<Uniform> dynamic;
+	private final Uniform[] perTick;
+	private final Uniform[] perFrame;
+	private final Uniform[] dynamic;
 	private final ImmutableList<ValueUpdateNotifier> notifiersToReset;
 	long lastTick = -1;
 	int lastFrame = -1;
-	private ImmutableList<Uniform> once;
+	private Uniform[] once;
 
 	public ProgramUniforms(ImmutableList<Uniform> once, ImmutableList<Uniform> perTick, ImmutableList<Uniform> perFrame,
 						   ImmutableList<Uniform> dynamic, ImmutableList<ValueUpdateNotifier> notifiersToReset) {
-		this.once = once;
-		this.perTick = perTick;
-		this.perFrame = perFrame;
-		this.dynamic = dynamic;
+		this.once = once.toArray(new Uniform[0]);
+		this.perTick = perTick.toArray(new Uniform[0]);
+		this.perFrame = perFrame.toArray(new Uniform[0]);
+		this.dynamic = dynamic.toArray(new Uniform[0]);
 		this.notifiersToReset = notifiersToReset;
 	}
 
@@ -192,7 +201,7 @@ public class ProgramUniforms {
 			|| type == ARBShaderImageLoadStore.GL_IMAGE_2D_ARRAY;
 	}
 
-	private void updateStage(ImmutableList<Uniform> uniforms) {
+	private static void updateStage(Uniform[] uniforms) {
 		for (Uniform uniform : uniforms) {
 			uniform.update();
 		}
@@ -309,6 +318,19 @@ public class ProgramUniforms {
 			return OptionalInt.of(id);
 		}
 
+		@Override
+		public boolean bindUniformBlock(String name, int binding) {
+			int index = IrisRenderSystem.getUniformBlockIndex(program, name);
+
+			if (index == GL31C.GL_INVALID_INDEX) {
+				return false;
+			}
+
+			IrisRenderSystem.uniformBlockBinding(program, index, binding);
+
+			return true;
+		}
+
 		public ProgramUniforms buildUniforms() {
 			// Check for any unsupported uniforms and warn about them so that we can easily figure out what uniforms we
 			// need to add.
@@ -0,0 +1,391 @@
+package net.irisshaders.iris.gl.shader;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.platform.GlUtil;
+import net.fabricmc.loader.api.FabricLoader;
+import net.irisshaders.iris.Iris;
+import net.irisshaders.iris.gl.GLDebug;
+import net.irisshaders.iris.gl.IrisRenderSystem;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL20C;
+import org.lwjgl.opengl.GL41C;
+import org.lwjgl.opengl.KHRDebug;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An on-disk cache of linked program binaries, so that programs don't have to be compiled by the driver again when
+ * the same shader pack is loaded after a restart. Only programs built by Iris itself through {@link ProgramCreator}
+ * are cached, which are the composite, deferred and other full screen passes. Gbuffer programs are linked by
+ * {@link net.minecraft.client.renderer.ShaderInstance} and are always compiled from source.
+ * <p>
+ * Entries are keyed on a SHA-256 hash of the GL vendor, renderer and version strings and the final source of every
+ * stage, so a driver update or any change to the patched sources results in a miss. Drivers may still reject a binary
+ * they produced themselves, in which case the entry is deleted and the program is compiled from source as usual.
+ * <p>
+ * Entries are written to a temporary file first and then moved into place, and the least recently used entries are
+ * evicted once the total size limit is exceeded.
+ */
+public class ProgramBinaryCache {
+	public static final long MAX_SIZE = 256L * 1024 * 1024;
+	private static final int MAGIC = 0x49524250; // "IRBP"
+	/**
+	 * Bump this whenever the layout of the cache files changes, or whenever {@link ProgramCreator} changes how
+	 * programs are set up before linking, since attribute bindings are part of the binary.
+	 */
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final String EXTENSION = ".bin";
+	private static final String TEMP_EXTENSION = ".tmp";
+	private static final boolean ENABLED = !Boolean.getBoolean("iris.disableProgramBinaryCache");
+	private static ProgramBinaryCache instance;
+	private static boolean initialized;
+
+	private final Path directory;
+	// access-ordered, so the first entry is always the least recently used one
+	private final LinkedHashMap<String, Long> entrySizes = new LinkedHashMap<>(64, 0.75f, true);
+	private final String driverStamp;
+	private final long maxSize;
+	private long totalSize;
+
+	private ProgramBinaryCache(Path directory, String driverStamp, long maxSize) {
+		this.directory = directory;
+		this.driverStamp = driverStamp;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the cache, or null if the driver can't provide program binaries or the cache directory is unusable.
+	 */
+	public static ProgramBinaryCache get() {
+		if (!initialized && ENABLED && IrisRenderSystem.supportsProgramBinary()) {
+			initialized = true;
+
+			instance = open(FabricLoader.getInstance().getGameDir().resolve("iris_cache").resolve("programs"),
+				GlUtil.getVendor() + ";" + GlUtil.getRenderer() + ";" + GlUtil.getOpenGLVersion(), MAX_SIZE);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Opens the cache in the given directory, removing temporary files left over from interrupted writes and evicting
+	 * entries until the cache fits in the given size.
+	 *
+	 * @param driverStamp identifies the driver that produced the binaries, and is part of every key
+	 * @return the cache, or null if the directory is unusable
+	 */
+	@Nullable
+	public static ProgramBinaryCache open(Path directory, String driverStamp, long maxSize) {
+		ProgramBinaryCache cache = new ProgramBinaryCache(directory, driverStamp, maxSize);
+
+		return cache.initialize() ? cache : null;
+	}
+
+	/**
+	 * Lays out a cache entry: the magic number, the format version, the binary format and length of the binary as
+	 * big-endian ints, then the binary itself, followed by a CRC32 of everything before it as a big-endian long.
+	 */
+	public static byte[] encodeEntry(int binaryFormat, byte[] binary) {
+		ByteBuffer entry = ByteBuffer.allocate(HEADER_SIZE + binary.length + Long.BYTES).order(ByteOrder.BIG_ENDIAN);
+		entry.putInt(MAGIC);
+		entry.putInt(FORMAT_VERSION);
+		entry.putInt(binaryFormat);
+		entry.putInt(binary.length);
+		entry.put(binary);
+
+		CRC32 crc = new CRC32();
+		crc.update(entry.array(), 0, entry.position());
+		entry.putLong(crc.getValue());
+
+		return entry.array();
+	}
+
+	/**
+	 * Reads a cache entry laid out by {@link #encodeEntry}.
+	 *
+	 * @throws IOException if the entry is truncated, corrupt or of another format version
+	 */
+	public static CachedBinary decodeEntry(byte[] bytes) throws IOException {
+		if (bytes.length < HEADER_SIZE + Long.BYTES) {
+			throw new IOException("Truncated entry");
+		}
+
+		ByteBuffer entry = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+
+		if (entry.getInt() != MAGIC || entry.getInt() != FORMAT_VERSION) {
+			throw new IOException("Unknown format");
+		}
+
+		int binaryFormat = entry.getInt();
+		int length = entry.getInt();
+
+		if (length < 0 || length != bytes.length - HEADER_SIZE - Long.BYTES) {
+			throw new IOException("Invalid binary length " + length);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - Long.BYTES);
+
+		if (entry.getLong(bytes.length - Long.BYTES) != crc.getValue()) {
+			throw new IOException("Checksum mismatch");
+		}
+
+		return new CachedBinary(binaryFormat, Arrays.copyOfRange(bytes, HEADER_SIZE, HEADER_SIZE + length));
+	}
+
+	private static void updateDigest(MessageDigest digest, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		int length = bytes.length;
+		digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+		digest.update(bytes);
+	}
+
+	/**
+	 * Computes the key of a program from the final sources of its stages.
+	 */
+	public String computeKey(Map<ShaderType, String> sources) {
+		MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is unavailable", e);
+		}
+
+		updateDigest(digest, driverStamp);
+
+		for (ShaderType type : ShaderType.values()) {
+			String source = sources.get(type);
+
+			if (source != null) {
+				updateDigest(digest, type.name());
+				updateDigest(digest, source);
+			}
+		}
+
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	 * Creates a program from the cached binary with the given key.
+	 *
+	 * @return the linked program, or 0 if there is no usable binary for the key
+	 */
+	public int load(String name, String key) {
+		CachedBinary cached = read(key);
+
+		if (cached == null) {
+			return 0;
+		}
+
+		ByteBuffer binary = MemoryUtil.memAlloc(cached.binary().length);
+
+		try {
+			binary.put(0, cached.binary());
+
+			int program = GlStateManager.glCreateProgram();
+			IrisRenderSystem.programBinary(program, cached.binaryFormat(), binary);
+
+			if (GlStateManager.glGetProgrami(program, GL20C.GL_LINK_STATUS) != GL20C.GL_TRUE) {
+				// the driver may reject binaries for reasons that aren't covered by the key
+				GlStateManager.glDeleteProgram(program);
+				Iris.logger.info("The driver rejected the cached binary of " + name + ", compiling it from source");
+				remove(key);
+				return 0;
+			}
+
+			GLDebug.nameObject(KHRDebug.GL_PROGRAM, program, name);
+
+			return program;
+		} finally {
+			MemoryUtil.memFree(binary);
+		}
+	}
+
+	/**
+	 * Stores the binary of a program that was linked by {@link ProgramCreator}.
+	 */
+	public void save(String key, int program) {
+		int length = GlStateManager.glGetProgrami(program, GL41C.GL_PROGRAM_BINARY_LENGTH);
+
+		if (length <= 0) {
+			return;
+		}
+
+		ByteBuffer binary = MemoryUtil.memAlloc(length);
+
+		try {
+			int[] writtenLength = new int[1];
+			int[] binaryFormat = new int[1];
+			IrisRenderSystem.getProgramBinary(program, writtenLength, binaryFormat, binary);
+
+			byte[] bytes = new byte[writtenLength[0]];
+			binary.get(0, bytes);
+
+			write(key, binaryFormat[0], bytes);
+		} finally {
+			MemoryUtil.memFree(binary);
+		}
+	}
+
+	/**
+	 * Reads the entry with the given key and marks it as the most recently used one. Entries that can't be read are
+	 * deleted.
+	 *
+	 * @return the cached binary, or null if there is no valid entry for the key
+	 */
+	@Nullable
+	public CachedBinary read(String key) {
+		// get rather than containsKey, since only get moves the entry to the end of the access order
+		if (entrySizes.get(key) == null) {
+			return null;
+		}
+
+		Path path = directory.resolve(key + EXTENSION);
+
+		try {
+			CachedBinary cached = decodeEntry(Files.readAllBytes(path));
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+
+			return cached;
+		} catch (IOException e) {
+			Iris.logger.warn("Discarding corrupt program binary cache entry " + key + ": " + e.getMessage());
+			remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the entry with the given key to a temporary file and then moves it into place, so that an interrupted
+	 * write never leaves a partial entry behind. Least recently used entries are evicted afterwards if the cache got
+	 * too large.
+	 */
+	public void write(String key, int binaryFormat, byte[] binary) {
+		Path path = directory.resolve(key + EXTENSION);
+		Path tempPath = directory.resolve(key + TEMP_EXTENSION);
+		byte[] entry = encodeEntry(binaryFormat, binary);
+
+		try {
+			Files.write(tempPath, entry);
+
+			try {
+				Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			Long previous = entrySizes.put(key, (long) entry.length);
+			totalSize += entry.length - (previous == null ? 0 : previous);
+			evict();
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to write program binary cache entry " + key, e);
+
+			try {
+				Files.deleteIfExists(tempPath);
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	/**
+	 * Returns the total size of all entries in bytes.
+	 */
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	private void remove(String key) {
+		Long size = entrySizes.remove(key);
+
+		if (size != null) {
+			totalSize -= size;
+		}
+
+		try {
+			Files.deleteIfExists(directory.resolve(key + EXTENSION));
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to delete program binary cache entry " + key, e);
+		}
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> iterator = entrySizes.entrySet().iterator();
+
+		while (totalSize > maxSize && iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			iterator.remove();
+			totalSize -= eldest.getValue();
+
+			try {
+				Files.deleteIfExists(directory.resolve(eldest.getKey() + EXTENSION));
+			} catch (IOException e) {
+				Iris.logger.warn("Failed to evict program binary cache entry " + eldest.getKey(), e);
+			}
+		}
+	}
+
+	private boolean initialize() {
+		List<Map.Entry<Path, FileTime>> found = new ArrayList<>();
+
+		try {
+			Files.createDirectories(directory);
+
+			try (Stream<Path> stream = Files.list(directory)) {
+				for (Path file : (Iterable<Path>) stream::iterator) {
+					String fileName = file.getFileName().toString();
+
+					if (fileName.endsWith(TEMP_EXTENSION)) {
+						// left over from an interrupted write
+						Files.deleteIfExists(file);
+					} else if (fileName.endsWith(EXTENSION)) {
+						found.add(Map.entry(file, Files.getLastModifiedTime(file)));
+					}
+				}
+			}
+
+			found.sort(Map.Entry.comparingByValue());
+
+			for (Map.Entry<Path, FileTime> entry : found) {
+				String fileName = entry.getKey().getFileName().toString();
+				long size = Files.size(entry.getKey());
+
+				entrySizes.put(fileName.substring(0, fileName.length() - EXTENSION.length()), size);
+				totalSize += size;
+			}
+
+			evict();
+
+			return true;
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to initialize the program binary cache at " + directory + ", disabling it", e);
+			return false;
+		}
+	}
+
+	/**
+	 * @param binaryFormat the format of the binary as reported by the driver
+	 */
+	public record CachedBinary(int binaryFormat, byte[] binary) {
+	}
+}
@@ -8,6 +8,7 @@ import net.irisshaders.iris.gl.IrisRenderSystem;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.lwjgl.opengl.GL20C;
+import org.lwjgl.opengl.GL41C;
 import org.lwjgl.opengl.KHRDebug;
 
 public class ProgramCreator {
@@ -31,6 +32,10 @@ public class ProgramCreator {
 			GlStateManager.glAttachShader(program, shader.getHandle());
 		}
 
+		if (ProgramBinaryCache.get() != null) {
+			IrisRenderSystem.programParameteri(program, GL41C.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL20C.GL_TRUE);
+		}
+
 		GlStateManager.glLinkProgram(program);
 
 		GLDebug.nameObject(KHRDebug.GL_PROGRAM, program, name);
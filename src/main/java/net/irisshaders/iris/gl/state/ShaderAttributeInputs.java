@@ -81,6 +81,12 @@ public class ShaderAttributeInputs {
 		return glint;
 	}
 
+	@Override
+	public String toString() {
+		return "ShaderAttributeInputs{color=" + color + ", tex=" + tex + ", overlay=" + overlay + ", light=" + light
+			+ ", normal=" + normal + ", newLines=" + newLines + ", glint=" + glint + ", text=" + text + "}";
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
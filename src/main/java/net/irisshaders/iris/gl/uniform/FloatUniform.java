@@ -4,6 +4,7 @@ import net.irisshaders.iris.gl.IrisRenderSystem;
 import net.irisshaders.iris.gl.state.ValueUpdateNotifier;
 
 public class FloatUniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final FloatSupplier value;
 	private float cachedValue;
 
@@ -23,7 +24,7 @@ public class FloatUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
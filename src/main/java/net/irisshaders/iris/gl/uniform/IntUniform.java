@@ -6,6 +6,7 @@ import net.irisshaders.iris.gl.state.ValueUpdateNotifier;
 import java.util.function.IntSupplier;
 
 public class IntUniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final IntSupplier value;
 	private int cachedValue;
 
@@ -25,7 +26,7 @@ public class IntUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
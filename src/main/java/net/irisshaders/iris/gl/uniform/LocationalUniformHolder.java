@@ -19,6 +19,15 @@ public interface LocationalUniformHolder extends UniformHolder {
 
 	OptionalInt location(String name, UniformType type);
 
+	/**
+	 * Makes the uniform block with the given name read from the uniform buffer bound to the given binding point.
+	 *
+	 * @return whether the program has an active uniform block with that name
+	 */
+	default boolean bindUniformBlock(String name, int binding) {
+		return false;
+	}
+
 	@Override
 	default LocationalUniformHolder uniform1f(UniformUpdateFrequency updateFrequency, String name, FloatSupplier value) {
 		location(name, UniformType.FLOAT).ifPresent(id -> addUniform(updateFrequency, new FloatUniform(id, value)));
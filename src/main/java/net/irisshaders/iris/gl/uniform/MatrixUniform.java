@@ -9,6 +9,7 @@ import java.nio.FloatBuffer;
 import java.util.function.Supplier;
 
 public class MatrixUniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
 	private final Supplier<Matrix4f> value;
 	private Matrix4f cachedValue;
@@ -32,7 +33,7 @@ public class MatrixUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
@@ -40,7 +41,11 @@ public class MatrixUniform extends Uniform {
 		Matrix4f newValue = value.get();
 
 		if (!newValue.equals(cachedValue)) {
-			cachedValue = new Matrix4f(newValue);
+			if (cachedValue == null) {
+				cachedValue = new Matrix4f(newValue);
+			} else {
+				cachedValue.set(newValue);
+			}
 
 			cachedValue.get(buffer);
 			buffer.rewind();
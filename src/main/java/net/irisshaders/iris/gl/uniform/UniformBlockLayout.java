@@ -0,0 +1,155 @@
+package net.irisshaders.iris.gl.uniform;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The std140 layout of a uniform block. Members are ordered by decreasing alignment, which keeps the padding between
+ * them to a minimum, and then by name so that the layout only depends on the set of members.
+ */
+public final class UniformBlockLayout {
+	public static final String BLOCK_NAME = "iris_UniformBlock";
+	// the minimum value of GL_MAX_UNIFORM_BLOCK_SIZE
+	private static final int MAX_SIZE = 16384;
+
+	private final List<Member> members;
+	private final Map<String, Member> membersByName;
+	private final int size;
+
+	private UniformBlockLayout(List<Member> members, int size) {
+		this.members = List.copyOf(members);
+		this.membersByName = new HashMap<>();
+		this.size = size;
+
+		for (Member member : members) {
+			this.membersByName.put(member.name(), member);
+		}
+	}
+
+	/**
+	 * Lays out the given uniforms. Uniforms of types that can't be part of a block are left out.
+	 *
+	 * @return the layout, or null if none of the uniforms can be part of a block or the block would be too large
+	 */
+	public static UniformBlockLayout create(Map<String, UniformType> uniforms) {
+		List<Map.Entry<String, UniformType>> entries = new ArrayList<>();
+
+		for (Map.Entry<String, UniformType> entry : uniforms.entrySet()) {
+			if (getAlignment(entry.getValue()) != 0) {
+				entries.add(entry);
+			}
+		}
+
+		if (entries.isEmpty()) {
+			return null;
+		}
+
+		entries.sort(Comparator.<Map.Entry<String, UniformType>>comparingInt(entry -> -getAlignment(entry.getValue()))
+			.thenComparing(Map.Entry::getKey));
+
+		List<Member> members = new ArrayList<>(entries.size());
+		int offset = 0;
+
+		for (Map.Entry<String, UniformType> entry : entries) {
+			UniformType type = entry.getValue();
+			int alignment = getAlignment(type);
+
+			offset = (offset + alignment - 1) / alignment * alignment;
+			members.add(new Member(entry.getKey(), type, offset));
+			offset += getSize(type);
+		}
+
+		// the size of a block is rounded up to the alignment of a vec4
+		int size = (offset + 15) / 16 * 16;
+
+		if (size > MAX_SIZE) {
+			return null;
+		}
+
+		return new UniformBlockLayout(members, size);
+	}
+
+	/**
+	 * Returns the std140 base alignment of a type in bytes, or 0 if the type isn't supported in a block.
+	 */
+	private static int getAlignment(UniformType type) {
+		return switch (type) {
+			case INT, FLOAT -> 4;
+			case VEC2, VEC2I -> 8;
+			case VEC3, VEC3I, VEC4, VEC4I, MAT4 -> 16;
+			// the columns of a mat3 are padded to a vec4 each, which doesn't match how they are usually uploaded
+			case MAT3 -> 0;
+		};
+	}
+
+	private static int getSize(UniformType type) {
+		return switch (type) {
+			case INT, FLOAT -> 4;
+			case VEC2, VEC2I -> 8;
+			case VEC3, VEC3I -> 12;
+			case VEC4, VEC4I -> 16;
+			case MAT4 -> 64;
+			case MAT3 -> throw new IllegalArgumentException("mat3 isn't supported in uniform blocks");
+		};
+	}
+
+	public static String getGlslType(UniformType type) {
+		return switch (type) {
+			case INT -> "int";
+			case FLOAT -> "float";
+			case VEC2 -> "vec2";
+			case VEC2I -> "ivec2";
+			case VEC3 -> "vec3";
+			case VEC3I -> "ivec3";
+			case VEC4 -> "vec4";
+			case VEC4I -> "ivec4";
+			case MAT3 -> "mat3";
+			case MAT4 -> "mat4";
+		};
+	}
+
+	public List<Member> getMembers() {
+		return members;
+	}
+
+	public Member getMember(String name) {
+		return membersByName.get(name);
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Describes this layout in a way that stays the same across game restarts, for use in cache keys.
+	 */
+	public String getStableKey() {
+		StringBuilder builder = new StringBuilder();
+
+		for (Member member : members) {
+			builder.append(getGlslType(member.type())).append(' ').append(member.name()).append(';');
+		}
+
+		return builder.toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof UniformBlockLayout other))
+			return false;
+		return members.equals(other.members);
+	}
+
+	@Override
+	public int hashCode() {
+		return members.hashCode();
+	}
+
+	public record Member(String name, UniformType type, int offset) {
+	}
+}
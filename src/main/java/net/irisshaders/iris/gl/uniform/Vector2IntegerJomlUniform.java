@@ -7,6 +7,7 @@ import org.joml.Vector2i;
 import java.util.function.Supplier;
 
 public class Vector2IntegerJomlUniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final Supplier<Vector2i> value;
 	private Vector2i cachedValue;
 
@@ -26,7 +27,7 @@ public class Vector2IntegerJomlUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
@@ -7,6 +7,7 @@ import org.joml.Vector2f;
 import java.util.function.Supplier;
 
 public class Vector2Uniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final Supplier<Vector2f> value;
 	private Vector2f cachedValue;
 
@@ -30,7 +31,7 @@ public class Vector2Uniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
@@ -7,6 +7,7 @@ import org.joml.Vector3i;
 import java.util.function.Supplier;
 
 public class Vector3IntegerUniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final Vector3i cachedValue;
 	private final Supplier<Vector3i> value;
 
@@ -29,7 +30,7 @@ public class Vector3IntegerUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
@@ -9,6 +9,7 @@ import org.joml.Vector4f;
 import java.util.function.Supplier;
 
 public class Vector3Uniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final Vector3f cachedValue;
 	private final Supplier<Vector3f> value;
 
@@ -55,7 +56,7 @@ public class Vector3Uniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
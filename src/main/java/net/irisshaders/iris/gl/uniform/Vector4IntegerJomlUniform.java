@@ -7,6 +7,7 @@ import org.joml.Vector4i;
 import java.util.function.Supplier;
 
 public class Vector4IntegerJomlUniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final Supplier<Vector4i> value;
 	private Vector4i cachedValue;
 
@@ -26,7 +27,7 @@ public class Vector4IntegerJomlUniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
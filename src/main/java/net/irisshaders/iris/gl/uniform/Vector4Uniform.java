@@ -7,6 +7,7 @@ import org.joml.Vector4f;
 import java.util.function.Supplier;
 
 public class Vector4Uniform extends Uniform {
+	private final Runnable listener = this::updateValue;
 	private final Vector4f cachedValue;
 	private final Supplier<Vector4f> value;
 
@@ -26,7 +27,7 @@ public class Vector4Uniform extends Uniform {
 		updateValue();
 
 		if (notifier != null) {
-			notifier.setListener(this::updateValue);
+			notifier.setListener(listener);
 		}
 	}
 
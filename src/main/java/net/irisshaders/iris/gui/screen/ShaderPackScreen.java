@@ -321,6 +321,14 @@ public class ShaderPackScreen extends Screen implements HudHideable {
 		refreshScreenSwitchButton();
 	}
 
+	/**
+	 * Shows the pack that is in use as applied again, after a pack that was applied failed to load.
+	 */
+	public void refreshForRestoredPack() {
+		this.shaderPackList.refresh();
+		refreshForChangedPack();
+	}
+
 	public void refreshScreenSwitchButton() {
 		if (this.screenSwitchButton != null) {
 			this.screenSwitchButton.setMessage(
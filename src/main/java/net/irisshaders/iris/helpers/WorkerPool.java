@@ -0,0 +1,75 @@
+package net.irisshaders.iris.helpers;
+
+import net.irisshaders.iris.Iris;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of worker threads for CPU-bound loading work, such as preprocessing shader pack sources.
+ * <p>
+ * This is kept separate from Minecraft's background executor so that loading a shader pack can neither starve nor be
+ * starved by world generation and resource reloading tasks.
+ */
+public class WorkerPool {
+	private static final int PARALLELISM = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 16));
+	private static final AtomicInteger threadCounter = new AtomicInteger();
+	private static ForkJoinPool pool;
+
+	public static synchronized ForkJoinPool get() {
+		if (pool == null) {
+			pool = new ForkJoinPool(PARALLELISM, forkJoinPool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+				thread.setName("Iris Worker " + threadCounter.incrementAndGet());
+				// Make sure that anything looking up resources through the context class loader sees the same
+				// classes as the thread that submitted the work.
+				thread.setContextClassLoader(WorkerPool.class.getClassLoader());
+				return thread;
+			}, (thread, throwable) -> Iris.logger.error("Uncaught exception in " + thread.getName(), throwable), false);
+		}
+
+		return pool;
+	}
+
+	/**
+	 * Runs the action for every item on the worker pool and waits for all of them to complete. If any of the actions
+	 * throws, the first exception is rethrown once all actions are done, with the others attached as suppressed.
+	 */
+	public static <T> void forEach(Collection<T> items, Consumer<T> action) {
+		if (items.size() <= 1) {
+			items.forEach(action);
+			return;
+		}
+
+		ForkJoinPool pool = get();
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(items.size());
+
+		for (T item : items) {
+			tasks.add(pool.submit(() -> action.accept(item)));
+		}
+
+		RuntimeException failure = null;
+
+		for (ForkJoinTask<?> task : tasks) {
+			try {
+				task.join();
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package net.irisshaders.iris.mixin;
+
+import net.irisshaders.iris.shaderpack.materialmap.BlockStateIndexHolder;
+import net.minecraft.world.level.block.state.BlockBehaviour;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+
+/**
+ * Stores the registry id of every block state on the state itself. The ids are filled in by
+ * {@link net.irisshaders.iris.shaderpack.materialmap.BlockMaterialMapping} whenever a material id table is built.
+ */
+@Mixin(BlockBehaviour.BlockStateBase.class)
+public abstract class MixinBlockStateBase_RegistryIndex implements BlockStateIndexHolder {
+	@Unique
+	private int registryIndex = -1;
+
+	@Override
+	public int iris$getRegistryIndex() {
+		return registryIndex;
+	}
+
+	@Override
+	public void iris$setRegistryIndex(int index) {
+		this.registryIndex = index;
+	}
+}
@@ -11,6 +11,7 @@ import net.irisshaders.iris.shaderpack.materialmap.WorldRenderingSettings;
 import net.irisshaders.iris.uniforms.CapturedRenderingState;
 import net.irisshaders.iris.vertices.BlockSensitiveBufferBuilder;
 import net.irisshaders.iris.vertices.BufferBuilderPolygonView;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
 import net.irisshaders.iris.vertices.ExtendedDataHelper;
 import net.irisshaders.iris.vertices.ExtendingBufferBuilder;
 import net.irisshaders.iris.vertices.IrisExtendedBufferBuilder;
@@ -29,6 +30,7 @@ import org.spongepowered.asm.mixin.injection.ModifyVariable;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import java.nio.ByteBuffer;
+import java.util.Set;
 
 /**
  * Dynamically and transparently extends the vanilla vertex formats with additional data
@@ -48,6 +50,17 @@ public abstract class MixinBufferBuilder extends DefaultedVertexConsumer impleme
 	@Unique
 	private boolean injectNormalAndUV1;
 	@Unique
+	private Set<ExtendedAttribute> referencedAttributes = ExtendedAttribute.ALL;
+	// Attributes that no program of the current format reads are left zeroed, or as vanilla wrote them for the normal
+	@Unique
+	private boolean computeMidTexCoord;
+	@Unique
+	private boolean computeNormal;
+	@Unique
+	private boolean computeTangent;
+	@Unique
+	private boolean computeMidBlock;
+	@Unique
 	private int vertexCount;
 	@Unique
 	private short currentBlock = -1;
@@ -109,22 +122,33 @@ public abstract class MixinBufferBuilder extends DefaultedVertexConsumer impleme
 			extending = true;
 			iris$isTerrain = true;
 			injectNormalAndUV1 = false;
-			return IrisVertexFormats.TERRAIN;
+			return iris$extendTo(IrisVertexFormats.TERRAIN);
 		} else if (format == DefaultVertexFormat.NEW_ENTITY) {
 			extending = true;
 			iris$isTerrain = false;
 			injectNormalAndUV1 = false;
-			return IrisVertexFormats.ENTITY;
+			return iris$extendTo(IrisVertexFormats.ENTITY);
 		} else if (format == DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP) {
 			extending = true;
 			iris$isTerrain = false;
 			injectNormalAndUV1 = true;
-			return IrisVertexFormats.GLYPH;
+			return iris$extendTo(IrisVertexFormats.GLYPH);
 		}
 
 		return format;
 	}
 
+	@Unique
+	private VertexFormat iris$extendTo(VertexFormat extendedFormat) {
+		referencedAttributes = WorldRenderingSettings.INSTANCE.getReferencedAttributes(extendedFormat);
+		computeMidTexCoord = referencedAttributes.contains(ExtendedAttribute.MID_TEX_COORD);
+		computeNormal = referencedAttributes.contains(ExtendedAttribute.NORMAL);
+		computeTangent = referencedAttributes.contains(ExtendedAttribute.TANGENT);
+		computeMidBlock = referencedAttributes.contains(ExtendedAttribute.MID_BLOCK);
+
+		return extendedFormat;
+	}
+
 	@Inject(method = "reset()V", at = @At("HEAD"))
 	private void iris$onReset(CallbackInfo ci) {
 		vertexCount = 0;
@@ -163,11 +187,15 @@ public abstract class MixinBufferBuilder extends DefaultedVertexConsumer impleme
 		this.nextElement();
 		if (iris$isTerrain) {
 			// MID_BLOCK_ELEMENT
-			int posIndex = this.nextElementByte - 48;
-			float x = buffer.getFloat(posIndex);
-			float y = buffer.getFloat(posIndex + 4);
-			float z = buffer.getFloat(posIndex + 8);
-			this.putInt(0, ExtendedDataHelper.computeMidBlock(x, y, z, currentLocalPosX, currentLocalPosY, currentLocalPosZ));
+			if (computeMidBlock) {
+				int posIndex = this.nextElementByte - 48;
+				float x = buffer.getFloat(posIndex);
+				float y = buffer.getFloat(posIndex + 4);
+				float z = buffer.getFloat(posIndex + 8);
+				this.putInt(0, ExtendedDataHelper.computeMidBlock(x, y, z, currentLocalPosX, currentLocalPosY, currentLocalPosZ));
+			} else {
+				this.putInt(0, 0);
+			}
 			this.nextElement();
 		}
 
@@ -182,6 +210,10 @@ public abstract class MixinBufferBuilder extends DefaultedVertexConsumer impleme
 	private void fillExtendedData(int vertexAmount) {
 		vertexCount = 0;
 
+		if (!computeMidTexCoord && !computeNormal && !computeTangent) {
+			return;
+		}
+
 		int stride = format.getVertexSize();
 
 		polygon.setup(buffer, nextElementByte, stride, vertexAmount);
@@ -189,13 +221,15 @@ public abstract class MixinBufferBuilder extends DefaultedVertexConsumer impleme
 		float midU = 0;
 		float midV = 0;
 
-		for (int vertex = 0; vertex < vertexAmount; vertex++) {
-			midU += polygon.u(vertex);
-			midV += polygon.v(vertex);
-		}
+		if (computeMidTexCoord) {
+			for (int vertex = 0; vertex < vertexAmount; vertex++) {
+				midU += polygon.u(vertex);
+				midV += polygon.v(vertex);
+			}
 
-		midU /= vertexAmount;
-		midV /= vertexAmount;
+			midU /= vertexAmount;
+			midV /= vertexAmount;
+		}
 
 		int midUOffset;
 		int midVOffset;
@@ -217,24 +251,46 @@ public abstract class MixinBufferBuilder extends DefaultedVertexConsumer impleme
 			// NormalHelper.computeFaceNormalTri(normal, polygon);	// Removed to enable smooth shaded triangles. Mods rendering triangles with bad normals need to recalculate their normals manually or otherwise shading might be inconsistent.
 
 			for (int vertex = 0; vertex < vertexAmount; vertex++) {
-				int packedNormal = buffer.getInt(nextElementByte - normalOffset - stride * vertex); // retrieve per-vertex normal
+				if (computeMidTexCoord) {
+					buffer.putFloat(nextElementByte - midUOffset - stride * vertex, midU);
+					buffer.putFloat(nextElementByte - midVOffset - stride * vertex, midV);
+				}
+
+				if (computeTangent) {
+					int packedNormal = buffer.getInt(nextElementByte - normalOffset - stride * vertex); // retrieve per-vertex normal
 
-				int tangent = NormalHelper.computeTangentSmooth(NormI8.unpackX(packedNormal), NormI8.unpackY(packedNormal), NormI8.unpackZ(packedNormal), polygon);
+					int tangent = NormalHelper.computeTangentSmooth(NormI8.unpackX(packedNormal), NormI8.unpackY(packedNormal), NormI8.unpackZ(packedNormal), polygon);
 
-				buffer.putFloat(nextElementByte - midUOffset - stride * vertex, midU);
-				buffer.putFloat(nextElementByte - midVOffset - stride * vertex, midV);
-				buffer.putInt(nextElementByte - tangentOffset - stride * vertex, tangent);
+					buffer.putInt(nextElementByte - tangentOffset - stride * vertex, tangent);
+				}
 			}
 		} else {
-			NormalHelper.computeFaceNormal(normal, polygon);
-			int packedNormal = NormI8.pack(normal.x, normal.y, normal.z, 0.0f);
-			int tangent = NormalHelper.computeTangent(normal.x, normal.y, normal.z, polygon);
+			int packedNormal = 0;
+			int tangent = 0;
+
+			// The tangent is computed relative to the face normal
+			if (computeNormal || computeTangent) {
+				NormalHelper.computeFaceNormal(normal, polygon);
+				packedNormal = NormI8.pack(normal.x, normal.y, normal.z, 0.0f);
+			}
+
+			if (computeTangent) {
+				tangent = NormalHelper.computeTangent(normal.x, normal.y, normal.z, polygon);
+			}
 
 			for (int vertex = 0; vertex < vertexAmount; vertex++) {
-				buffer.putFloat(nextElementByte - midUOffset - stride * vertex, midU);
-				buffer.putFloat(nextElementByte - midVOffset - stride * vertex, midV);
-				buffer.putInt(nextElementByte - normalOffset - stride * vertex, packedNormal);
-				buffer.putInt(nextElementByte - tangentOffset - stride * vertex, tangent);
+				if (computeMidTexCoord) {
+					buffer.putFloat(nextElementByte - midUOffset - stride * vertex, midU);
+					buffer.putFloat(nextElementByte - midVOffset - stride * vertex, midV);
+				}
+
+				if (computeNormal) {
+					buffer.putInt(nextElementByte - normalOffset - stride * vertex, packedNormal);
+				}
+
+				if (computeTangent) {
+					buffer.putInt(nextElementByte - tangentOffset - stride * vertex, tangent);
+				}
 			}
 		}
 	}
@@ -287,6 +343,11 @@ public abstract class MixinBufferBuilder extends DefaultedVertexConsumer impleme
 		return injectNormalAndUV1;
 	}
 
+	@Override
+	public Set<ExtendedAttribute> iris$referencedAttributes() {
+		return referencedAttributes;
+	}
+
 	@Override
 	public int iris$vertexCount() {
 		return vertexCount;
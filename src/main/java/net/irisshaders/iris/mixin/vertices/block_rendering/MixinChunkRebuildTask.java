@@ -2,7 +2,7 @@ package net.irisshaders.iris.mixin.vertices.block_rendering;
 
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.PoseStack;
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.irisshaders.iris.shaderpack.materialmap.BlockStateIdTable;
 import net.irisshaders.iris.shaderpack.materialmap.WorldRenderingSettings;
 import net.irisshaders.iris.vertices.BlockSensitiveBufferBuilder;
 import net.irisshaders.iris.vertices.ExtendedDataHelper;
@@ -36,12 +36,12 @@ public class MixinChunkRebuildTask {
 	private static final String RENDER = "Lnet/minecraft/client/renderer/chunk/SectionRenderDispatcher$RenderSection$RebuildTask;compile(FFFLnet/minecraft/client/renderer/SectionBufferBuilderPack;)Lnet/minecraft/client/renderer/chunk/SectionRenderDispatcher$RenderSection$RebuildTask$CompileResults;";
 	// Resolve the ID map on the main thread to avoid thread safety issues
 	@Unique
-	private final Object2IntMap<BlockState> blockStateIds = getBlockStateIds();
+	private final BlockStateIdTable blockStateIds = getBlockStateIds();
 	@Unique
 	private BlockSensitiveBufferBuilder lastBufferBuilder;
 
 	@Unique
-	private Object2IntMap<BlockState> getBlockStateIds() {
+	private BlockStateIdTable getBlockStateIds() {
 		return WorldRenderingSettings.INSTANCE.getBlockStateIds();
 	}
 
@@ -41,6 +41,11 @@ public class BooleanVectorizedFunction implements TypedFunction {
 		return this.parameters;
 	}
 
+	@Override
+	public boolean isPure() {
+		return this.inner.isPure();
+	}
+
 	@Override
 	public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
 		for (int p = 0; p < params.length; p++) {
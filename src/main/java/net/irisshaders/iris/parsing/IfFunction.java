@@ -0,0 +1,89 @@
+package net.irisshaders.iris.parsing;
+
+import kroppeb.stareval.expression.CallExpression;
+import kroppeb.stareval.expression.ConstantExpression;
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.function.AbstractTypedFunction;
+import kroppeb.stareval.function.FunctionContext;
+import kroppeb.stareval.function.FunctionReturn;
+import kroppeb.stareval.function.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code if(condition1, value1, condition2, value2, ..., otherwise)}, which returns the value of the first condition
+ * that is true.
+ */
+public class IfFunction extends AbstractTypedFunction {
+	private final int conditions;
+
+	public IfFunction(Type type, int conditions) {
+		super(type, createParameters(type, conditions));
+		this.conditions = conditions;
+	}
+
+	private static Type[] createParameters(Type type, int conditions) {
+		Type[] params = new Type[conditions * 2 + 1];
+		for (int i = 0; i < conditions * 2; i += 2) {
+			params[i] = Type.Boolean;
+			params[i + 1] = type;
+		}
+		params[conditions * 2] = type;
+		return params;
+	}
+
+	@Override
+	public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
+		for (int i = 0; i < this.conditions * 2; i += 2) {
+			params[i].evaluateTo(context, functionReturn);
+			if (functionReturn.booleanReturn) {
+				params[i + 1].evaluateTo(context, functionReturn);
+				return;
+			}
+		}
+
+		params[this.conditions * 2].evaluateTo(context, functionReturn);
+	}
+
+	/**
+	 * Removes the branches that can never be taken because their condition is constant.
+	 */
+	@Override
+	public Expression simplify(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
+		List<Expression> remaining = new ArrayList<>();
+
+		for (int i = 0; i < this.conditions * 2; i += 2) {
+			if (params[i] instanceof ConstantExpression condition) {
+				condition.evaluateTo(context, functionReturn);
+
+				if (functionReturn.booleanReturn) {
+					// this branch is always taken if it is reached, so none of the branches after it are
+					return remaining.isEmpty() ? params[i + 1] : this.create(remaining, params[i + 1]);
+				}
+
+				// this branch is never taken
+			} else {
+				remaining.add(params[i]);
+				remaining.add(params[i + 1]);
+			}
+		}
+
+		Expression otherwise = params[this.conditions * 2];
+
+		if (remaining.isEmpty()) {
+			return otherwise;
+		} else if (remaining.size() == this.conditions * 2) {
+			return null;
+		}
+
+		return this.create(remaining, otherwise);
+	}
+
+	private Expression create(List<Expression> branches, Expression otherwise) {
+		Expression[] params = new Expression[branches.size() + 1];
+		branches.toArray(params);
+		params[branches.size()] = otherwise;
+		return new CallExpression(new IfFunction(this.getReturnType(), branches.size() / 2), params);
+	}
+}
@@ -0,0 +1,44 @@
+package net.irisshaders.iris.parsing;
+
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.function.FunctionContext;
+import kroppeb.stareval.function.FunctionReturn;
+import kroppeb.stareval.function.Type;
+import kroppeb.stareval.function.TypedFunction;
+
+/**
+ * Marks a function that can return a different value on every call, such as {@code random()}, as impure. This keeps
+ * calls to it from being folded into constants, and keeps the uniforms using it updating every frame.
+ */
+public class ImpureFunction implements TypedFunction {
+	private final TypedFunction inner;
+
+	public ImpureFunction(TypedFunction inner) {
+		this.inner = inner;
+	}
+
+	@Override
+	public Type getReturnType() {
+		return this.inner.getReturnType();
+	}
+
+	@Override
+	public Parameter[] getParameters() {
+		return this.inner.getParameters();
+	}
+
+	@Override
+	public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
+		this.inner.evaluateTo(params, context, functionReturn);
+	}
+
+	@Override
+	public boolean isPure() {
+		return false;
+	}
+
+	@Override
+	public int priority() {
+		return this.inner.priority();
+	}
+}
@@ -425,88 +425,28 @@ public class IrisFunctions {
 				{
 					Random random = new Random();
 					// randomInt(), randomInt(int bound), randomInt(int inclusiveMin, int exclusiveMax)
-					IrisFunctions.<V2IFunction>addVectorizable("randomInt", random::nextInt);
-					IrisFunctions.<I2IFunction>addVectorizable("randomInt", random::nextInt);
-					IrisFunctions.<II2IFunction>addVectorizable("randomInt", (a, b) -> random.nextInt(b - a) + a);
+					IrisFunctions.addVectorizable("randomInt", new ImpureFunction((V2IFunction) random::nextInt));
+					IrisFunctions.addVectorizable("randomInt", new ImpureFunction((I2IFunction) random::nextInt));
+					IrisFunctions.addVectorizable("randomInt", new ImpureFunction((II2IFunction) (a, b) -> random.nextInt(b - a) + a));
 
 					// random, random(float min, float max)
-					IrisFunctions.<V2FFunction>add("random", random::nextFloat);
-					IrisFunctions.<FF2FFunction>add("random", (min, max) ->
-						min + random.nextFloat() * (max - min));
+					IrisFunctions.add("random", new ImpureFunction((V2FFunction) random::nextFloat));
+					IrisFunctions.add("random", new ImpureFunction((FF2FFunction) (min, max) ->
+						min + random.nextFloat() * (max - min)));
 				}
 				{
 					// IF
 					// if(boolean, primitive, primitive) -> primitive
 					// if(boolean, xvec, xvec) -> xvec
 					// TODO: REDO: if(bvec, xvec, xvec) -> xvec
-					// TODO: optifine requires vararg
-					for (Type.Primitive type : Type.AllPrimitives) {
-						add("if", new AbstractTypedFunction(type, new Type[]{Type.Boolean, type, type}) {
-							@Override
-							public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
-								params[0].evaluateTo(context, functionReturn);
-
-								params[
-									functionReturn.booleanReturn ? 1 : 2
-									].evaluateTo(context, functionReturn);
-
-							}
-						});
-					}
-
-					for (Type type : VectorType.AllVectorTypes) {
-						add("if", new AbstractTypedFunction(type, new Type[]{Type.Boolean, type, type}) {
-							@Override
-							public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
-								params[0].evaluateTo(context, functionReturn);
-
-								params[
-									functionReturn.booleanReturn ? 1 : 2
-									].evaluateTo(context, functionReturn);
-
-							}
-						});
-					}
-
-					{
-						// FAKE vararg
-						for (int length = 2; length <= 16; length++) {
-							for (Type.Primitive type : Type.AllPrimitives) {
-								Type[] params = new Type[length * 2 + 1];
-								for (int i = 0; i < length * 2; i += 2) {
-									params[i] = Type.Boolean;
-									params[i + 1] = type;
-								}
-								params[length * 2] = type;
-								int finalLength = length * 2;
-								add("if", new AbstractTypedFunction(type, params) {
-									@Override
-									public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
-										for (int i = 0; i < finalLength; i += 2) {
-											params[i].evaluateTo(context, functionReturn);
-											if (functionReturn.booleanReturn) {
-												params[i + 1].evaluateTo(context, functionReturn);
-												return;
-											}
-											params[finalLength].evaluateTo(context, functionReturn);
-										}
-									}
-								});
-							}
-
-							for (Type type : VectorType.AllVectorTypes) {
-								add("if", new AbstractTypedFunction(type, new Type[]{Type.Boolean, type, type}) {
-									@Override
-									public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
-										params[0].evaluateTo(context, functionReturn);
-
-										params[
-											functionReturn.booleanReturn ? 1 : 2
-											].evaluateTo(context, functionReturn);
+					// FAKE vararg: if(boolean, x, boolean, x, ..., x) with up to 16 conditions
+					for (int conditions = 1; conditions <= 16; conditions++) {
+						for (Type.Primitive type : Type.AllPrimitives) {
+							add("if", new IfFunction(type, conditions));
+						}
 
-									}
-								});
-							}
+						for (Type type : VectorType.AllVectorTypes) {
+							add("if", new IfFunction(type, conditions));
 						}
 					}
 				}
@@ -741,19 +681,23 @@ public class IrisFunctions {
 		{
 			for (Type.Primitive type : new Type.Primitive[]{Type.Boolean, Type.Int}) {
 				for (int size = 2; size <= 4; size++) {
-					TypedFunction function = new VectorConstructor(type, size);
+					int finalSize = size;
 					// TODO make it possible to do `vec3(vec2(0),0)`
-					add(
+					builder.addDynamicFunction(
 						Character.toLowerCase(
 							type.getClass().getSimpleName().charAt(0)
-						) + "vec" + size, function);
+						) + "vec" + size,
+						new VectorType.ArrayVector(type, size),
+						() -> new VectorConstructor(type, finalSize));
 				}
 			}
 
-			add("vec2", new AbstractTypedFunction(
+			builder.addDynamicFunction("vec2", VectorType.VEC2, () -> new AbstractTypedFunction(
 				VectorType.VEC2,
 				new Type[]{Type.Float, Type.Float}
 			) {
+				private final Vector2f vector = new Vector2f();
+
 				@Override
 				public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
 					params[0].evaluateTo(context, functionReturn);
@@ -762,15 +706,16 @@ public class IrisFunctions {
 					params[1].evaluateTo(context, functionReturn);
 					float y = functionReturn.floatReturn;
 
-					// TODO: this can't be cached atm. If we swap this to a function provider we could
-					functionReturn.objectReturn = new Vector2f(x, y);
+					functionReturn.objectReturn = this.vector.set(x, y);
 				}
 			});
 
-			add("vec3", new AbstractTypedFunction(
+			builder.addDynamicFunction("vec3", VectorType.VEC3, () -> new AbstractTypedFunction(
 				VectorType.VEC3,
 				new Type[]{Type.Float, Type.Float, Type.Float}
 			) {
+				private final Vector3f vector = new Vector3f();
+
 				@Override
 				public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
 					params[0].evaluateTo(context, functionReturn);
@@ -782,15 +727,16 @@ public class IrisFunctions {
 					params[2].evaluateTo(context, functionReturn);
 					float z = functionReturn.floatReturn;
 
-					// TODO: this can't be cached atm. If we swap this to a function provider we could
-					functionReturn.objectReturn = new Vector3f(x, y, z);
+					functionReturn.objectReturn = this.vector.set(x, y, z);
 				}
 			});
 
-			add("vec4", new AbstractTypedFunction(
+			builder.addDynamicFunction("vec4", VectorType.VEC4, () -> new AbstractTypedFunction(
 				VectorType.VEC4,
 				new Type[]{Type.Float, Type.Float, Type.Float, Type.Float}
 			) {
+				private final Vector4f vector = new Vector4f();
+
 				@Override
 				public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
 					params[0].evaluateTo(context, functionReturn);
@@ -805,8 +751,7 @@ public class IrisFunctions {
 					params[3].evaluateTo(context, functionReturn);
 					float w = functionReturn.floatReturn;
 
-					// TODO: this can't be cached atm. If we swap this to a function provider we could
-					functionReturn.objectReturn = new Vector4f(x, y, z, w);
+					functionReturn.objectReturn = this.vector.set(x, y, z, w);
 				}
 			});
 		}
@@ -1044,14 +989,16 @@ public class IrisFunctions {
 				for (int i = 0; i < 4; i++) {
 					for (String access : accessNames[i]) {
 						int finalI = i;
-						IrisFunctions.add("<access$" + access + ">", new AbstractTypedFunction(
+						builder.addDynamicFunction("<access$" + access + ">", VectorType.VEC4, () -> new AbstractTypedFunction(
 							VectorType.VEC4,
 							new Type[]{MatrixType.MAT4}
 						) {
+							private final Vector4f column = new Vector4f();
+
 							@Override
 							public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
 								params[0].evaluateTo(context, functionReturn);
-								functionReturn.objectReturn = ((Matrix4f) functionReturn.objectReturn).getColumn(finalI, new Vector4f());
+								functionReturn.objectReturn = ((Matrix4f) functionReturn.objectReturn).getColumn(finalI, this.column);
 							}
 						});
 					}
@@ -1064,9 +1011,11 @@ public class IrisFunctions {
 
 	static <T extends TypedFunction> void addVectorized(String name, T function) {
 		if (function.getReturnType() instanceof Type.Primitive) {
-			add(name, new VectorizedFunction(function, 2));
-			add(name, new VectorizedFunction(function, 3));
-			add(name, new VectorizedFunction(function, 4));
+			for (int size = 2; size <= 4; size++) {
+				int finalSize = size;
+				builder.addDynamicFunction(name, new VectorType.ArrayVector(function.getReturnType(), size),
+					() -> new VectorizedFunction(function, finalSize));
+			}
 		} else {
 			throw new IllegalArgumentException(name + " is not vectorizable");
 		}
@@ -1081,16 +1030,17 @@ public class IrisFunctions {
 		assert function.getReturnType().equals(Type.Boolean);
 		add(name, function);
 		if (function.getReturnType() instanceof Type.Primitive) {
-			add(name, new BooleanVectorizedFunction(function, 2));
-			add(name, new BooleanVectorizedFunction(function, 3));
-			add(name, new BooleanVectorizedFunction(function, 4));
+			for (int size = 2; size <= 4; size++) {
+				int finalSize = size;
+				builder.addDynamicFunction(name, Type.Boolean, () -> new BooleanVectorizedFunction(function, finalSize));
+			}
 		} else {
 			throw new IllegalArgumentException(name + " is not vectorizable");
 		}
 	}
 
 	static <T> void addUnaryOpJOML(String name, VectorType.JOMLVector<T> type, BiConsumer<T, T> function) {
-		builder.add(name, new AbstractTypedFunction(
+		builder.addDynamicFunction(name, type, () -> new AbstractTypedFunction(
 			type,
 			new Type[]{type}
 		) {
@@ -1109,7 +1059,7 @@ public class IrisFunctions {
 	}
 
 	static <T> void addBinaryOpJOML(String name, VectorType.JOMLVector<T> type, TriConsumer<T, T, T> function) {
-		builder.add(name, new AbstractTypedFunction(
+		builder.addDynamicFunction(name, type, () -> new AbstractTypedFunction(
 			type,
 			new Type[]{type, type}
 		) {
@@ -1131,7 +1081,7 @@ public class IrisFunctions {
 	}
 
 	static <T> void addTernaryOpJOML(String name, VectorType.JOMLVector<T> type, QuadConsumer<T, T, T, T> function) {
-		builder.add(name, new AbstractTypedFunction(
+		builder.addDynamicFunction(name, type, () -> new AbstractTypedFunction(
 			type,
 			new Type[]{type, type, type}
 		) {
@@ -10,12 +10,18 @@ import kroppeb.stareval.function.Type;
 import java.util.Arrays;
 
 public class VectorConstructor extends AbstractTypedFunction {
+	private static final VectorType.ArrayVector.IntObjectObjectObjectConsumer<Expression[], FunctionContext, FunctionReturn> mapper =
+		(i, p, ctx, fr) -> p[i].evaluateTo(ctx, fr);
+
+	private final Object vector;
 
 	public VectorConstructor(Type inner, int size) {
 		super(
 			new VectorType.ArrayVector(inner, size),
 			Util.make(new Type[size], params -> Arrays.fill(params, inner))
 		);
+
+		this.vector = this.getReturnType().createObject();
 	}
 
 	@Override
@@ -27,6 +33,6 @@ public class VectorConstructor extends AbstractTypedFunction {
 	public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn
 		functionReturn) {
 		VectorType.ArrayVector vectorType = this.getReturnType();
-		vectorType.map(params, context, functionReturn, (i, p, ctx, fr) -> p[i].evaluateTo(ctx, fr));
+		vectorType.map(this.vector, params, context, functionReturn, mapper);
 	}
 }
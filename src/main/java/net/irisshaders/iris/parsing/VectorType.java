@@ -73,12 +73,19 @@ abstract public class VectorType extends Type.ObjectType {
 		}
 
 		public <T1, T2> void map(T1 item1, T2 item2, FunctionReturn functionReturn, IntObjectObjectObjectConsumer<T1, T2, FunctionReturn> mapper) {
-			Object array = this.createObject();
+			this.map(this.createObject(), item1, item2, functionReturn, mapper);
+		}
+
+		/**
+		 * Like {@link #map(Object, Object, FunctionReturn, IntObjectObjectObjectConsumer)}, but writes the elements
+		 * into an existing array created by {@link #createObject()} instead of allocating a new one.
+		 */
+		public <T1, T2> void map(Object destination, T1 item1, T2 item2, FunctionReturn functionReturn, IntObjectObjectObjectConsumer<T1, T2, FunctionReturn> mapper) {
 			for (int i = 0; i < this.size; i++) {
 				mapper.accept(i, item1, item2, functionReturn);
-				this.setValue(array, i, functionReturn);
+				this.setValue(destination, i, functionReturn);
 			}
-			functionReturn.objectReturn = array;
+			functionReturn.objectReturn = destination;
 		}
 
 		@Override
@@ -16,6 +16,7 @@ public class VectorizedFunction implements TypedFunction {
 	final Parameter[] parameters;
 
 	private final ElementAccessExpression[] vectorAccessors;
+	private final Object vector;
 	private int index;
 	private final VectorType.ArrayVector.IntObjectObjectObjectConsumer<VectorizedFunction, FunctionContext, FunctionReturn> mapper =
 		(i, self, ctx, fr) -> {
@@ -28,6 +29,7 @@ public class VectorizedFunction implements TypedFunction {
 		this.size = size;
 
 		this.returnType = new VectorType.ArrayVector(inner.getReturnType(), size);
+		this.vector = this.returnType.createObject();
 
 		Parameter[] innerTypes = inner.getParameters();
 		this.parameters = new Parameter[innerTypes.length];
@@ -49,6 +51,11 @@ public class VectorizedFunction implements TypedFunction {
 		return this.parameters;
 	}
 
+	@Override
+	public boolean isPure() {
+		return this.inner.isPure();
+	}
+
 	@Override
 	public void evaluateTo(Expression[] params, FunctionContext context, FunctionReturn functionReturn) {
 		for (int p = 0; p < params.length; p++) {
@@ -57,7 +64,7 @@ public class VectorizedFunction implements TypedFunction {
 			this.vectorAccessors[p].vector = functionReturn.objectReturn;
 		}
 
-		returnType.map(this, context, functionReturn, this.mapper);
+		returnType.map(this.vector, this, context, functionReturn, this.mapper);
 	}
 
 	class ElementAccessExpression implements Expression {
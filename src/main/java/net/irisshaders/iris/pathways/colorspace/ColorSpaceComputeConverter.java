@@ -6,7 +6,7 @@ import net.irisshaders.iris.gl.program.ComputeProgram;
 import net.irisshaders.iris.gl.program.ProgramBuilder;
 import net.irisshaders.iris.gl.texture.InternalTextureFormat;
 import net.irisshaders.iris.helpers.StringPair;
-import net.irisshaders.iris.shaderpack.preprocessor.JcppProcessor;
+import net.irisshaders.iris.shaderpack.preprocessor.GlslPreprocessor;
 import org.apache.commons.io.IOUtils;
 import org.lwjgl.opengl.GL43C;
 
@@ -52,7 +52,7 @@ public class ColorSpaceComputeConverter implements ColorSpaceConverter {
 		for (ColorSpace space : ColorSpace.values()) {
 			defineList.add(new StringPair(space.name(), String.valueOf(space.ordinal())));
 		}
-		source = JcppProcessor.glslPreprocessSource(source, defineList);
+		source = GlslPreprocessor.preprocessSource(source, defineList);
 
 		ProgramBuilder builder = ProgramBuilder.beginCompute("colorSpaceCompute", source, ImmutableSet.of());
 		builder.addTextureImage(() -> target, InternalTextureFormat.RGBA8, "readImage");
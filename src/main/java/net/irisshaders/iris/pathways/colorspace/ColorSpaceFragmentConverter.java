@@ -9,7 +9,7 @@ import net.irisshaders.iris.gl.program.ProgramBuilder;
 import net.irisshaders.iris.gl.uniform.UniformUpdateFrequency;
 import net.irisshaders.iris.helpers.StringPair;
 import net.irisshaders.iris.pathways.FullScreenQuadRenderer;
-import net.irisshaders.iris.shaderpack.preprocessor.JcppProcessor;
+import net.irisshaders.iris.shaderpack.preprocessor.GlslPreprocessor;
 import org.apache.commons.io.IOUtils;
 import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL11C;
@@ -64,7 +64,7 @@ public class ColorSpaceFragmentConverter implements ColorSpaceConverter {
 		for (ColorSpace space : ColorSpace.values()) {
 			defineList.add(new StringPair(space.name(), String.valueOf(space.ordinal())));
 		}
-		source = JcppProcessor.glslPreprocessSource(source, defineList);
+		source = GlslPreprocessor.preprocessSource(source, defineList);
 
 		ProgramBuilder builder = ProgramBuilder.begin("colorSpaceFragment", vertexSource, null, source, ImmutableSet.of());
 
@@ -85,6 +85,8 @@ import net.irisshaders.iris.uniforms.CapturedRenderingState;
 import net.irisshaders.iris.uniforms.CommonUniforms;
 import net.irisshaders.iris.uniforms.FrameUpdateNotifier;
 import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
+import net.irisshaders.iris.vertices.IrisVertexFormats;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.DimensionSpecialEffects;
@@ -104,9 +106,12 @@ import org.lwjgl.opengl.GL30C;
 import org.lwjgl.opengl.GL43C;
 
 import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
@@ -125,6 +130,8 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 	private final ProgramFallbackResolver resolver;
 	private final Supplier<ShadowRenderTargets> shadowTargetsSupplier;
 	private final Set<ShaderInstance> loadedShaders;
+	// The extended attributes read by the programs of each Iris vertex format, filled in while the programs are created
+	private final Map<VertexFormat, Set<ExtendedAttribute>> referencedAttributes;
 	private final CompositeRenderer beginRenderer;
 	private final CompositeRenderer prepareRenderer;
 	private final CompositeRenderer deferredRenderer;
@@ -261,6 +268,7 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		this.customUniforms = programSet.getPack().customUniforms.build(
 			holder -> CommonUniforms.addNonDynamicUniforms(holder, programSet.getPack().getIdMap(), programSet.getPackDirectives(), this.updateNotifier)
 		);
+		TransformPatcher.setUniformBlock(this.customUniforms.getUniformBlockLayout());
 
 		// Don't clobber anything in texture unit 0. It probably won't cause issues, but we're just being cautious here.
 		GlStateManager._activeTexture(GL20C.GL_TEXTURE2);
@@ -408,7 +416,11 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		};
 
 		this.loadedShaders = new HashSet<>();
+		this.referencedAttributes = new HashMap<>();
 
+		for (VertexFormat format : new VertexFormat[]{IrisVertexFormats.TERRAIN, IrisVertexFormats.ENTITY, IrisVertexFormats.GLYPH}) {
+			referencedAttributes.put(format, EnumSet.noneOf(ExtendedAttribute.class));
+		}
 
 		this.shaderMap = new ShaderMap(key -> {
 			try {
@@ -434,7 +446,7 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		});
 
 		WorldRenderingSettings.INSTANCE.setBlockStateIds(
-			BlockMaterialMapping.createBlockStateIdMap(programSet.getPack().getIdMap().getBlockProperties()));
+			BlockMaterialMapping.createBlockStateIdTable(programSet.getPack().getIdMap().getBlockProperties()));
 		WorldRenderingSettings.INSTANCE.setBlockTypeIds(BlockMaterialMapping.createBlockTypeMap(programSet.getPack().getIdMap().getBlockRenderTypeMap()));
 
 		WorldRenderingSettings.INSTANCE.setEntityIds(programSet.getPack().getIdMap().getEntityIdMap());
@@ -482,6 +494,9 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		this.sodiumTerrainPipeline = new SodiumTerrainPipeline(this, programSet, createTerrainSamplers,
 			shadowRenderTargets == null ? null : createShadowTerrainSamplers, createTerrainImages, createShadowTerrainImages, renderTargets, flippedAfterPrepare, flippedAfterTranslucent,
 			shadowRenderTargets != null ? shadowRenderTargets.createShadowFramebuffer(ImmutableSet.of(), programSet.getShadow().filter(source -> !source.getDirectives().hasUnknownDrawBuffers()).map(source -> source.getDirectives().getDrawBuffers()).orElse(new int[]{0, 1})) : null, customUniforms);
+		WorldRenderingSettings.INSTANCE.setTerrainVertexAttributes(sodiumTerrainPipeline.getVertexAttributes());
+		referencedAttributes.get(IrisVertexFormats.TERRAIN).addAll(sodiumTerrainPipeline.getReferencedAttributes());
+		WorldRenderingSettings.INSTANCE.setReferencedAttributes(Map.copyOf(referencedAttributes));
 
 
 		this.setup = createSetupComputes(programSet.getSetup(), programSet, TextureStage.SETUP);
@@ -500,6 +515,8 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 				if (!hasRun) {
 					hasRun = true;
 					renderTargets.onFullClear();
+					// the uniform block is otherwise only bound once the first frame begins
+					customUniforms.uploadBlock();
 					Vector3d fogColor3 = CapturedRenderingState.INSTANCE.getFogColor();
 
 					// NB: The alpha value must be 1.0 here, or else you will get a bunch of bugs. Sildur's Vibrant Shaders
@@ -700,6 +717,7 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 			fallbackAlpha, vertexFormat, inputs, updateNotifier, this, flipped, fogMode, isIntensity, isFullbright, false, isLines, customUniforms);
 
 		loadedShaders.add(extendedShader);
+		addReferencedAttributes(vertexFormat, source);
 
 		return extendedShader;
 	}
@@ -751,10 +769,20 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 			fallbackAlpha, vertexFormat, inputs, updateNotifier, this, flipped, FogMode.PER_VERTEX, isIntensity, isFullbright, true, isLines, customUniforms);
 
 		loadedShaders.add(extendedShader);
+		addReferencedAttributes(vertexFormat, source);
 
 		return extendedShader;
 	}
 
+	private void addReferencedAttributes(VertexFormat vertexFormat, ProgramSource source) {
+		Set<ExtendedAttribute> attributes = referencedAttributes.get(vertexFormat);
+
+		// Programs of the vanilla vertex formats can't read any extended attributes
+		if (attributes != null) {
+			attributes.addAll(TransformPatcher.findReferencedAttributes(source.getVertexSource().orElse(null)));
+		}
+	}
+
 	public void addGbufferOrShadowSamplers(SamplerHolder samplers, ImageHolder images, Supplier<ImmutableSet<Integer>> flipped,
 										   boolean isShadowPass, boolean hasTexture, boolean hasLightmap, boolean hasOverlay) {
 		TextureStage textureStage = TextureStage.GBUFFERS_AND_SHADOW;
@@ -900,6 +928,7 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 
 		// Update custom uniforms
 		this.customUniforms.update();
+		this.customUniforms.uploadBlock();
 
 		RenderTarget main = Minecraft.getInstance().getMainRenderTarget();
 
@@ -1198,6 +1227,7 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		finalPassRenderer.destroy();
 		centerDepthSampler.destroy();
 		customTextureManager.destroy();
+		customUniforms.destroy();
 		whitePixel.close();
 
 		horizonRenderer.destroy();
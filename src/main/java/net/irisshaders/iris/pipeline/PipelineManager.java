@@ -25,12 +25,20 @@ public class PipelineManager {
 	}
 
 	public WorldRenderingPipeline preparePipeline(NamespacedId currentDimension) {
+		return preparePipeline(currentDimension, pipelineFactory);
+	}
+
+	/**
+	 * Prepares the pipeline of a dimension, creating it with the given factory instead of the usual one if it doesn't
+	 * exist yet. Exceptions thrown by the factory are passed on, and leave the manager without a current pipeline.
+	 */
+	public WorldRenderingPipeline preparePipeline(NamespacedId currentDimension, Function<NamespacedId, WorldRenderingPipeline> factory) {
 		if (!pipelinesPerDimension.containsKey(currentDimension)) {
 			SystemTimeUniforms.COUNTER.reset();
 			SystemTimeUniforms.TIMER.reset();
 
 			Iris.logger.info("Creating pipeline for dimension {}", currentDimension);
-			pipeline = pipelineFactory.apply(currentDimension);
+			pipeline = factory.apply(currentDimension);
 			pipelinesPerDimension.put(currentDimension, pipeline);
 
 			if (WorldRenderingSettings.INSTANCE.isReloadRequired()) {
@@ -23,14 +23,17 @@ import net.irisshaders.iris.targets.RenderTargets;
 import net.irisshaders.iris.uniforms.CommonUniforms;
 import net.irisshaders.iris.uniforms.builtin.BuiltinReplacementUniforms;
 import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
 import net.minecraft.resources.ResourceLocation;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
@@ -40,6 +43,9 @@ public class SodiumTerrainPipeline {
 	private static final Supplier<Optional<AlphaTest>> terrainCutoutDefault = () -> Optional.of(AlphaTests.ONE_TENTH_ALPHA);
 	private static final Supplier<Optional<AlphaTest>> translucentDefault = () -> Optional.of(AlphaTest.ALWAYS);
 	private static final Supplier<Optional<AlphaTest>> shadowDefault = () -> Optional.of(AlphaTests.ONE_TENTH_ALPHA);
+	// Leaves the extended attributes that no terrain program reads out of terrain vertices. This is opt-in for now,
+	// since an attribute can't be added back without rebuilding every chunk.
+	private static final boolean COMPACT_VERTICES = Boolean.getBoolean("iris.compactTerrainVertices");
 	private static final String defaultVertex = """
 		#version 330 core
 
@@ -191,6 +197,8 @@ public class SodiumTerrainPipeline {
 	private final IntFunction<ProgramSamplers> createShadowSamplers;
 	private final IntFunction<ProgramImages> createTerrainImages;
 	private final IntFunction<ProgramImages> createShadowImages;
+	private final Set<ExtendedAttribute> referencedAttributes;
+	private final Set<ExtendedAttribute> vertexAttributes;
 	Optional<String> terrainSolidVertex;
 	Optional<String> terrainSolidGeometry;
 	Optional<String> terrainSolidTessControl;
@@ -243,6 +251,8 @@ public class SodiumTerrainPipeline {
 
 		this.programSet = programSet;
 		this.shadowFramebuffer = shadowFramebuffer;
+		this.referencedAttributes = findReferencedAttributes(terrainSolidSource, terrainCutoutSource, translucentSource, programSet.getShadow());
+		this.vertexAttributes = COMPACT_VERTICES ? referencedAttributes : ExtendedAttribute.ALL;
 
 		terrainSolidSource.ifPresent(sources -> terrainSolidFramebuffer = targets.createGbufferFramebuffer(flippedAfterPrepare,
 			sources.getDirectives().getDrawBuffers()));
@@ -282,6 +292,18 @@ public class SodiumTerrainPipeline {
 		return Optional.empty();
 	}
 
+	@SafeVarargs
+	private static Set<ExtendedAttribute> findReferencedAttributes(Optional<ProgramSource>... sources) {
+		EnumSet<ExtendedAttribute> attributes = EnumSet.noneOf(ExtendedAttribute.class);
+
+		for (Optional<ProgramSource> source : sources) {
+			source.flatMap(ProgramSource::getVertexSource)
+				.ifPresent(vertex -> attributes.addAll(TransformPatcher.findReferencedAttributes(vertex)));
+		}
+
+		return Collections.unmodifiableSet(attributes);
+	}
+
 	public static String parseSodiumImport(String shader) {
 		Pattern IMPORT_PATTERN = Pattern.compile("#import <(?<namespace>.*):(?<path>.*)>");
 		Matcher matcher = IMPORT_PATTERN.matcher(shader);
@@ -622,6 +644,21 @@ public class SodiumTerrainPipeline {
 		return uniforms;
 	}
 
+	/**
+	 * Returns the extended attributes that the terrain programs of this pipeline read.
+	 */
+	public Set<ExtendedAttribute> getReferencedAttributes() {
+		return referencedAttributes;
+	}
+
+	/**
+	 * Returns the extended attributes that terrain vertices need to contain for the programs of this pipeline. This
+	 * is every attribute unless compact terrain vertices are enabled.
+	 */
+	public Set<ExtendedAttribute> getVertexAttributes() {
+		return vertexAttributes;
+	}
+
 	public boolean hasShadowPass() {
 		return createShadowSamplers != null;
 	}
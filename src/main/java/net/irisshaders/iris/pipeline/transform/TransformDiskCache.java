@@ -0,0 +1,342 @@
+package net.irisshaders.iris.pipeline.transform;
+
+import net.irisshaders.iris.Iris;
+import net.irisshaders.iris.pipeline.transform.parameter.Parameters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A content-addressed on-disk cache for the output of {@link TransformPatcher}, so that patched programs survive
+ * game restarts and shader pack switches.
+ * <p>
+ * Entries are keyed on a SHA-256 hash of the Iris version, the stable description of the {@link Parameters} and
+ * all input sources. Every entry is a single file containing the patched source of each shader stage, followed
+ * by a CRC32 checksum. Files are written to a temporary file first and then moved into place, so a crash during a
+ * write never leaves a truncated entry behind; entries that fail to validate anyway are deleted and treated as a
+ * miss.
+ * <p>
+ * The total size of the cache is bounded. The last modified time of an entry is bumped whenever it is read, and the
+ * least recently used entries are evicted once the size limit is exceeded.
+ */
+public class TransformDiskCache {
+	private static final int MAGIC = 0x49524953; // "IRIS"
+	/**
+	 * Bump this whenever the layout of the cache files or the meaning of the cache key changes.
+	 */
+	private static final int FORMAT_VERSION = 1;
+	private static final String EXTENSION = ".glsl.bin";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private final Path directory;
+	private final long maxSize;
+	// access-ordered, so the first entry is always the least recently used one
+	private final LinkedHashMap<String, Long> entrySizes = new LinkedHashMap<>(64, 0.75f, true);
+	private String versionStamp;
+	private long totalSize;
+	private boolean initialized;
+	private boolean disabled;
+
+	public TransformDiskCache(Path directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	private static void writeNullableString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readNullableString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+
+		if (length == -1) {
+			return null;
+		} else if (length < 0 || length > in.available()) {
+			throw new IOException("Invalid string length " + length);
+		}
+
+		return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Computes the cache key for a transformation. Returns null if the disk cache is unavailable.
+	 */
+	public synchronized String computeKey(Parameters parameters, Map<PatchShaderType, String> inputs, String printType) {
+		if (!initialize()) {
+			return null;
+		}
+
+		MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			Iris.logger.warn("SHA-256 is unavailable, disabling the transform disk cache", e);
+			disabled = true;
+			return null;
+		}
+
+		updateDigest(digest, versionStamp);
+		updateDigest(digest, printType);
+		updateDigest(digest, parameters.getStableKey());
+
+		for (PatchShaderType type : PatchShaderType.values()) {
+			updateDigest(digest, inputs.get(type));
+		}
+
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	private static void updateDigest(MessageDigest digest, String string) {
+		if (string == null) {
+			// a length of -1 can't collide with an actual string
+			digest.update(new byte[]{-1, -1, -1, -1});
+			return;
+		}
+
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		int length = bytes.length;
+		digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+		digest.update(bytes);
+	}
+
+	public synchronized Map<PatchShaderType, String> get(String key) {
+		if (key == null || !initialize() || !entrySizes.containsKey(key)) {
+			return null;
+		}
+
+		Path path = directory.resolve(key + EXTENSION);
+
+		try {
+			Map<PatchShaderType, String> result = decode(key, Files.readAllBytes(path));
+
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+
+			return result;
+		} catch (IOException | RuntimeException e) {
+			Iris.logger.warn("Discarding corrupt transform cache entry " + key + ": " + e.getMessage());
+			remove(key);
+			return null;
+		}
+	}
+
+	public synchronized void put(String key, Map<PatchShaderType, String> result) {
+		if (key == null || result == null || !initialize()) {
+			return;
+		}
+
+		Path path = directory.resolve(key + EXTENSION);
+		Path tempPath = directory.resolve(key + TEMP_EXTENSION);
+
+		try {
+			byte[] bytes = encode(key, result);
+
+			Files.write(tempPath, bytes);
+
+			try {
+				Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			Long previous = entrySizes.put(key, (long) bytes.length);
+			totalSize += bytes.length - (previous == null ? 0 : previous);
+			evict();
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to write transform cache entry " + key, e);
+
+			try {
+				Files.deleteIfExists(tempPath);
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	private byte[] encode(String key, Map<PatchShaderType, String> result) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		writeNullableString(out, key);
+		out.writeInt(result.size());
+
+		for (Map.Entry<PatchShaderType, String> entry : result.entrySet()) {
+			out.writeByte(entry.getKey().ordinal());
+			writeNullableString(out, entry.getValue());
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		return bytes.toByteArray();
+	}
+
+	private Map<PatchShaderType, String> decode(String key, byte[] bytes) throws IOException {
+		if (bytes.length < Long.BYTES) {
+			throw new IOException("Truncated entry");
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - Long.BYTES);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			throw new IOException("Unknown format");
+		}
+
+		if (!key.equals(readNullableString(in))) {
+			throw new IOException("Key mismatch");
+		}
+
+		int count = in.readInt();
+		PatchShaderType[] types = PatchShaderType.values();
+
+		if (count < 0 || count > types.length) {
+			throw new IOException("Invalid stage count " + count);
+		}
+
+		Map<PatchShaderType, String> result = new EnumMap<>(PatchShaderType.class);
+
+		for (int i = 0; i < count; i++) {
+			int ordinal = in.readUnsignedByte();
+
+			if (ordinal >= types.length) {
+				throw new IOException("Invalid shader type " + ordinal);
+			}
+
+			result.put(types[ordinal], readNullableString(in));
+		}
+
+		if (in.available() != Long.BYTES || in.readLong() != crc.getValue()) {
+			throw new IOException("Checksum mismatch");
+		}
+
+		return result;
+	}
+
+	private void remove(String key) {
+		Long size = entrySizes.remove(key);
+
+		if (size != null) {
+			totalSize -= size;
+		}
+
+		try {
+			Files.deleteIfExists(directory.resolve(key + EXTENSION));
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to delete transform cache entry " + key, e);
+		}
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> iterator = entrySizes.entrySet().iterator();
+
+		while (totalSize > maxSize && iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			iterator.remove();
+			totalSize -= eldest.getValue();
+
+			try {
+				Files.deleteIfExists(directory.resolve(eldest.getKey() + EXTENSION));
+			} catch (IOException e) {
+				Iris.logger.warn("Failed to evict transform cache entry " + eldest.getKey(), e);
+			}
+		}
+	}
+
+	/**
+	 * Lazily scans the cache directory, since the Iris version isn't known yet when the class is loaded.
+	 *
+	 * @return whether the cache can be used
+	 */
+	private boolean initialize() {
+		if (initialized) {
+			return !disabled;
+		}
+
+		initialized = true;
+
+		String version = Iris.getVersion();
+
+		// glsl-transformer and the transformers themselves can change without a version bump in these builds,
+		// which would make stale entries indistinguishable from valid ones
+		if (version.contains("unknown") || version.endsWith("-dirty")) {
+			disabled = true;
+			return false;
+		}
+
+		versionStamp = version + ";format=" + FORMAT_VERSION;
+
+		List<Path> files = new ArrayList<>();
+
+		try {
+			Files.createDirectories(directory);
+
+			try (Stream<Path> stream = Files.list(directory)) {
+				stream.forEach(files::add);
+			}
+
+			List<Map.Entry<Path, FileTime>> found = new ArrayList<>();
+
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+
+				if (fileName.endsWith(TEMP_EXTENSION)) {
+					// left over from an interrupted write
+					Files.deleteIfExists(file);
+				} else if (fileName.endsWith(EXTENSION)) {
+					found.add(Map.entry(file, Files.getLastModifiedTime(file)));
+				}
+			}
+
+			found.sort(Map.Entry.comparingByValue(Comparator.naturalOrder()));
+
+			for (Map.Entry<Path, FileTime> entry : found) {
+				String fileName = entry.getKey().getFileName().toString();
+				long size = Files.size(entry.getKey());
+
+				entrySizes.put(fileName.substring(0, fileName.length() - EXTENSION.length()), size);
+				totalSize += size;
+			}
+
+			evict();
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to initialize the transform disk cache at " + directory + ", disabling it", e);
+			disabled = true;
+		}
+
+		return !disabled;
+	}
+}
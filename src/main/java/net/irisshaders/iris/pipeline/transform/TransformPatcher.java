@@ -15,11 +15,13 @@ import io.github.douira.glsl_transformer.token_filter.TokenChannel;
 import io.github.douira.glsl_transformer.token_filter.TokenFilter;
 import io.github.douira.glsl_transformer.util.LRUCache;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import net.fabricmc.loader.api.FabricLoader;
 import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.gl.blending.AlphaTest;
 import net.irisshaders.iris.gl.shader.ShaderCompileException;
 import net.irisshaders.iris.gl.state.ShaderAttributeInputs;
 import net.irisshaders.iris.gl.texture.TextureType;
+import net.irisshaders.iris.gl.uniform.UniformBlockLayout;
 import net.irisshaders.iris.helpers.Tri;
 import net.irisshaders.iris.pipeline.transform.parameter.ComputeParameters;
 import net.irisshaders.iris.pipeline.transform.parameter.Parameters;
@@ -34,14 +36,17 @@ import net.irisshaders.iris.pipeline.transform.transformer.DHTransformer;
 import net.irisshaders.iris.pipeline.transform.transformer.SodiumCoreTransformer;
 import net.irisshaders.iris.pipeline.transform.transformer.SodiumTransformer;
 import net.irisshaders.iris.pipeline.transform.transformer.TextureTransformer;
+import net.irisshaders.iris.pipeline.transform.transformer.UniformBlockTransformer;
 import net.irisshaders.iris.pipeline.transform.transformer.VanillaCoreTransformer;
 import net.irisshaders.iris.pipeline.transform.transformer.VanillaTransformer;
 import net.irisshaders.iris.shaderpack.texture.TextureStage;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
 import org.antlr.v4.runtime.Token;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -59,6 +64,11 @@ import java.util.regex.Pattern;
  * be disabled when developing shaderpacks. However, when changes are made to
  * the patcher, the cache should be disabled with {@link #useCache}.
  * <p>
+ * In addition, transformation results are persisted by {@link TransformDiskCache}
+ * so that they survive game restarts. Its key includes the Iris version instead
+ * of relying on the patcher being unchanged, and it is disabled with
+ * {@link #useDiskCache}.
+ * <p>
  * NOTE: This patcher expects (and ensures) that the string doesn't contain any
  * (!) preprocessor directives. The only allowed ones are #extension and #pragma
  * as they are considered "parsed" directives. If any other directive appears in
@@ -67,10 +77,16 @@ import java.util.regex.Pattern;
 public class TransformPatcher {
 	private static final boolean useCache = true;
 	private static final Map<CacheKey, Map<PatchShaderType, String>> cache = new LRUCache<>(400);
+	// the disk cache is disabled in the development environment since the patcher changes without a version bump there
+	private static final boolean useDiskCache = !FabricLoader.getInstance().isDevelopmentEnvironment();
+	private static final TransformDiskCache diskCache = useDiskCache
+		? new TransformDiskCache(FabricLoader.getInstance().getGameDir().resolve("iris_cache").resolve("transforms"), 64L * 1024 * 1024)
+		: null;
 	private static final List<String> internalPrefixes = List.of("iris_", "irisMain", "moj_import");
 	private static final Pattern versionPattern = Pattern.compile("^.*#version\\s+(\\d+)", Pattern.DOTALL);
 	private static final EnumASTTransformer<Parameters, PatchShaderType> transformer;
 	static Logger LOGGER = LogManager.getLogger(TransformPatcher.class);
+	private static volatile UniformBlockLayout uniformBlock;
 	// TODO: Only do the NewLines patches if the source code isn't from
 	// gbuffers_lines (what does this mean?)
 	static TokenFilter<Parameters> parseTokenFilter = new ChannelFilter<>(TokenChannel.PREPROCESSOR) {
@@ -196,6 +212,10 @@ public class TransformPatcher {
 
 			// the compatibility transformer does a grouped transformation
 			CompatibilityTransformer.transformGrouped(transformer, trees, parameters);
+
+			if (parameters.uniformBlock != null) {
+				UniformBlockTransformer.transformGrouped(transformer, trees, parameters);
+			}
 		});
 		transformer.setTokenFilter(parseTokenFilter);
 	}
@@ -213,6 +233,28 @@ public class TransformPatcher {
 		}
 	}
 
+	private static Map<PatchShaderType, String> transformWithDiskCache(
+		String name,
+		Map<PatchShaderType, String> inputs,
+		Parameters parameters) {
+		PrintType printType = Iris.getIrisConfig().areDebugOptionsEnabled() ? PrintType.INDENTED : PrintType.SIMPLE;
+
+		// the parameters must be keyed before transforming since the transformation sets the shader type on them
+		String diskKey = diskCache != null ? diskCache.computeKey(parameters, inputs, printType.name()) : null;
+		Map<PatchShaderType, String> result = diskKey != null ? diskCache.get(diskKey) : null;
+
+		if (result == null) {
+			transformer.setPrintType(printType);
+			result = transformInternal(name, inputs, parameters);
+
+			if (diskKey != null) {
+				diskCache.put(diskKey, result);
+			}
+		}
+
+		return result;
+	}
+
 	private static Map<PatchShaderType, String> transform(String name, String vertex, String geometry, String tessControl, String tessEval, String fragment,
 														  Parameters parameters) {
 		// stop if all are null
@@ -220,6 +262,8 @@ public class TransformPatcher {
 			return null;
 		}
 
+		parameters.uniformBlock = uniformBlock;
+
 		// check if this has been cached
 		CacheKey key;
 		Map<PatchShaderType, String> result = null;
@@ -232,7 +276,6 @@ public class TransformPatcher {
 
 		// if there is no cache result, transform the shaders
 		if (result == null) {
-			transformer.setPrintType(Iris.getIrisConfig().areDebugOptionsEnabled() ? PrintType.INDENTED : PrintType.SIMPLE);
 			EnumMap<PatchShaderType, String> inputs = new EnumMap<>(PatchShaderType.class);
 			inputs.put(PatchShaderType.VERTEX, vertex);
 			inputs.put(PatchShaderType.GEOMETRY, geometry);
@@ -240,7 +283,7 @@ public class TransformPatcher {
 			inputs.put(PatchShaderType.TESS_EVAL, tessEval);
 			inputs.put(PatchShaderType.FRAGMENT, fragment);
 
-			result = transformInternal(name, inputs, parameters);
+			result = transformWithDiskCache(name, inputs, parameters);
 			if (useCache) {
 				cache.put(key, result);
 			}
@@ -254,6 +297,8 @@ public class TransformPatcher {
 			return null;
 		}
 
+		parameters.uniformBlock = uniformBlock;
+
 		// check if this has been cached
 		CacheKey key;
 		Map<PatchShaderType, String> result = null;
@@ -266,11 +311,10 @@ public class TransformPatcher {
 
 		// if there is no cache result, transform the shaders
 		if (result == null) {
-			transformer.setPrintType(Iris.getIrisConfig().areDebugOptionsEnabled() ? PrintType.INDENTED : PrintType.SIMPLE);
 			EnumMap<PatchShaderType, String> inputs = new EnumMap<>(PatchShaderType.class);
 			inputs.put(PatchShaderType.COMPUTE, compute);
 
-			result = transformInternal(name, inputs, parameters);
+			result = transformWithDiskCache(name, inputs, parameters);
 			if (useCache) {
 				cache.put(key, result);
 			}
@@ -278,6 +322,36 @@ public class TransformPatcher {
 		return result;
 	}
 
+	/**
+	 * Sets the layout of the uniform block that declarations of its members are moved into, or null to keep all
+	 * uniforms as they are. The layout only depends on the custom uniforms of the shader pack, so it is the same for
+	 * every pipeline of a pack and is simply replaced whenever a pipeline is created.
+	 */
+	public static void setUniformBlock(UniformBlockLayout layout) {
+		uniformBlock = layout;
+	}
+
+	/**
+	 * Reports which of the vertex attributes added by Iris are referenced by the vertex shader of a program, so that
+	 * vertices can be built without the attributes that no program reads. This works on the untransformed source, and
+	 * a program without a vertex shader doesn't reference any of them.
+	 */
+	public static EnumSet<ExtendedAttribute> findReferencedAttributes(String vertex) {
+		EnumSet<ExtendedAttribute> referenced = EnumSet.noneOf(ExtendedAttribute.class);
+
+		if (vertex == null) {
+			return referenced;
+		}
+
+		for (ExtendedAttribute attribute : ExtendedAttribute.values()) {
+			if (attribute.isReferencedBy(vertex)) {
+				referenced.add(attribute);
+			}
+		}
+
+		return referenced;
+	}
+
 	public static Map<PatchShaderType, String> patchVanilla(
 		String name, String vertex, String geometry, String tessControl, String tessEval, String fragment,
 		AlphaTest alpha, boolean isLines,
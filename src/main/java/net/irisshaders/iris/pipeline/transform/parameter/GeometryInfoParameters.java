@@ -18,6 +18,11 @@ public abstract class GeometryInfoParameters extends Parameters {
 		this.hasTesselation = hasTesselation;
 	}
 
+	@Override
+	public String getStableKey() {
+		return super.getStableKey() + ";geometry=" + hasGeometry + ";tesselation=" + hasTesselation;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -4,15 +4,22 @@ import io.github.douira.glsl_transformer.ast.transform.JobParameters;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import net.irisshaders.iris.gl.blending.AlphaTest;
 import net.irisshaders.iris.gl.texture.TextureType;
+import net.irisshaders.iris.gl.uniform.UniformBlockLayout;
 import net.irisshaders.iris.helpers.Tri;
 import net.irisshaders.iris.pipeline.transform.Patch;
 import net.irisshaders.iris.pipeline.transform.PatchShaderType;
 import net.irisshaders.iris.shaderpack.texture.TextureStage;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
 public abstract class Parameters implements JobParameters {
 	public final Patch patch;
 	private final Object2ObjectMap<Tri<String, TextureType, TextureStage>, String> textureMap;
 	public PatchShaderType type; // may only be set by TransformPatcher
+	public UniformBlockLayout uniformBlock; // may only be set by TransformPatcher
 	// WARNING: adding new fields requires updating hashCode and equals methods!
 
 	public Parameters(Patch patch, Object2ObjectMap<Tri<String, TextureType, TextureStage>, String> textureMap) {
@@ -30,6 +37,32 @@ public abstract class Parameters implements JobParameters {
 		return textureMap;
 	}
 
+	/**
+	 * Describes these parameters in a way that stays the same across game restarts, for use as part of the key of
+	 * the on-disk transform cache. Unlike {@link #hashCode()} this may not depend on identity hash codes.
+	 * Subclasses with additional fields must append them.
+	 */
+	public String getStableKey() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(getClass().getName())
+			.append(';').append(patch)
+			.append(';').append(getTextureStage())
+			.append(';').append(getAlphaTest());
+
+		if (textureMap != null) {
+			List<String> textures = new ArrayList<>(textureMap.size());
+			textureMap.forEach((key, value) -> textures.add(key + "=" + value));
+			Collections.sort(textures);
+			textures.forEach(texture -> builder.append(';').append(texture));
+		}
+
+		if (uniformBlock != null) {
+			builder.append(";block=").append(uniformBlock.getStableKey());
+		}
+
+		return builder.toString();
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -37,6 +70,7 @@ public abstract class Parameters implements JobParameters {
 		result = prime * result + ((patch == null) ? 0 : patch.hashCode());
 		result = prime * result + ((type == null) ? 0 : type.hashCode());
 		result = prime * result + ((textureMap == null) ? 0 : textureMap.hashCode());
+		result = prime * result + ((uniformBlock == null) ? 0 : uniformBlock.hashCode());
 		return result;
 	}
 
@@ -53,6 +87,8 @@ public abstract class Parameters implements JobParameters {
 			return false;
 		if (type != other.type)
 			return false;
+		if (!Objects.equals(uniformBlock, other.uniformBlock))
+			return false;
 		if (textureMap == null) {
 			return other.textureMap == null;
 		} else return textureMap.equals(other.textureMap);
@@ -36,6 +36,11 @@ public class SodiumParameters extends Parameters {
 		return TextureStage.GBUFFERS_AND_SHADOW;
 	}
 
+	@Override
+	public String getStableKey() {
+		return super.getStableKey() + ";" + inputs;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -41,6 +41,11 @@ public class VanillaParameters extends GeometryInfoParameters {
 		return TextureStage.GBUFFERS_AND_SHADOW;
 	}
 
+	@Override
+	public String getStableKey() {
+		return super.getStableKey() + ";" + inputs + ";chunkOffset=" + hasChunkOffset + ";lines=" + isLines;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
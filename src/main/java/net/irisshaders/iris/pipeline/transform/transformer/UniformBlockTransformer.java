@@ -0,0 +1,186 @@
+package net.irisshaders.iris.pipeline.transform.transformer;
+
+import io.github.douira.glsl_transformer.ast.node.TranslationUnit;
+import io.github.douira.glsl_transformer.ast.node.declaration.DeclarationMember;
+import io.github.douira.glsl_transformer.ast.node.declaration.TypeAndInitDeclaration;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.DeclarationExternalDeclaration;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.ExternalDeclaration;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.StorageQualifier;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.StorageQualifier.StorageType;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.TypeQualifier;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.TypeQualifierPart;
+import io.github.douira.glsl_transformer.ast.node.type.specifier.BuiltinNumericTypeSpecifier;
+import io.github.douira.glsl_transformer.ast.query.Root;
+import io.github.douira.glsl_transformer.ast.query.match.Matcher;
+import io.github.douira.glsl_transformer.ast.transform.ASTInjectionPoint;
+import io.github.douira.glsl_transformer.ast.transform.ASTParser;
+import io.github.douira.glsl_transformer.parser.ParseShape;
+import io.github.douira.glsl_transformer.util.Type;
+import net.irisshaders.iris.Iris;
+import net.irisshaders.iris.gl.uniform.UniformBlockLayout;
+import net.irisshaders.iris.gl.uniform.UniformType;
+import net.irisshaders.iris.pipeline.transform.PatchShaderType;
+import net.irisshaders.iris.pipeline.transform.parameter.Parameters;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves the declarations of uniforms that are part of the shared uniform block into that block, so that their values
+ * are read from a buffer that is filled once per frame instead of being uploaded to every program separately.
+ * <p>
+ * The block always declares all of its members since std140 offsets follow from the declaration order. If any stage
+ * declares one of the members in a way that doesn't fit the layout, for example with a different type, as an array or
+ * as something other than a uniform, the program is left as it is and keeps using plain uniforms.
+ */
+public class UniformBlockTransformer {
+	private static final Matcher<ExternalDeclaration> uniformDeclaration = new Matcher<>(
+		"uniform float name;", ParseShape.EXTERNAL_DECLARATION) {
+		{
+			markClassWildcard("qualifier", pattern.getRoot().nodeIndex.getUnique(TypeQualifier.class));
+			markClassWildcard("type", pattern.getRoot().nodeIndex.getUnique(BuiltinNumericTypeSpecifier.class));
+			markClassWildcard("name*",
+				pattern.getRoot().identifierIndex.getUnique("name").getAncestor(DeclarationMember.class));
+		}
+
+		@Override
+		public boolean matchesExtract(ExternalDeclaration tree) {
+			if (!super.matchesExtract(tree)) {
+				return false;
+			}
+
+			// only plain uniforms, other qualifiers such as layout qualifiers would be lost in the block
+			List<TypeQualifierPart> parts = getNodeMatch("qualifier", TypeQualifier.class).getParts();
+			return parts.size() == 1 && parts.get(0) instanceof StorageQualifier storageQualifier
+				&& storageQualifier.storageType == StorageType.UNIFORM;
+		}
+	};
+
+	public static void transformGrouped(ASTParser t, Map<PatchShaderType, TranslationUnit> trees, Parameters parameters) {
+		UniformBlockLayout layout = parameters.uniformBlock;
+		Map<String, Type> declaredTypes = new HashMap<>();
+		List<DeclarationMember> movedMembers = new ArrayList<>();
+		List<TranslationUnit> targetTrees = new ArrayList<>();
+
+		for (TranslationUnit tree : trees.values()) {
+			if (tree == null) {
+				continue;
+			}
+
+			Root root = tree.getRoot();
+			Set<ExternalDeclaration> movedDeclarations = new HashSet<>();
+			int movedBefore = movedMembers.size();
+
+			for (DeclarationExternalDeclaration declaration : root.nodeIndex.get(DeclarationExternalDeclaration.class)) {
+				if (!uniformDeclaration.matchesExtract(declaration)) {
+					continue;
+				}
+
+				BuiltinNumericTypeSpecifier typeSpecifier = uniformDeclaration.getNodeMatch("type",
+					BuiltinNumericTypeSpecifier.class);
+
+				for (DeclarationMember member : uniformDeclaration
+					.getNodeMatch("name*", DeclarationMember.class)
+					.getAncestor(TypeAndInitDeclaration.class)
+					.getMembers()) {
+					String name = member.getName().getName();
+					UniformBlockLayout.Member blockMember = layout.getMember(name);
+
+					if (blockMember == null) {
+						continue;
+					}
+
+					if (typeSpecifier.getArraySpecifier() != null || member.getArraySpecifier() != null
+						|| member.getInitializer() != null || !isCompatible(blockMember.type(), typeSpecifier.type)) {
+						bail(name, "its declaration doesn't match the block");
+						return;
+					}
+
+					Type previous = declaredTypes.putIfAbsent(name, typeSpecifier.type);
+
+					if (previous != null && previous != typeSpecifier.type) {
+						bail(name, "it is declared with different types");
+						return;
+					}
+
+					movedMembers.add(member);
+					movedDeclarations.add(declaration);
+				}
+			}
+
+			// any other global declaration of a member, such as a constant or a function, would clash with the block
+			for (UniformBlockLayout.Member blockMember : layout.getMembers()) {
+				String name = blockMember.name();
+
+				if (root.identifierIndex.has(name) && root.externalDeclarationIndex.getStream(name)
+					.anyMatch(entry -> !movedDeclarations.contains(entry.declaration()))) {
+					bail(name, "it is declared as something other than a uniform");
+					return;
+				}
+			}
+
+			if (movedMembers.size() > movedBefore) {
+				targetTrees.add(tree);
+			}
+		}
+
+		if (targetTrees.isEmpty()) {
+			return;
+		}
+
+		for (DeclarationMember member : movedMembers) {
+			TypeAndInitDeclaration declaration = (TypeAndInitDeclaration) member.getParent();
+
+			if (declaration.getMembers().size() == 1) {
+				declaration.getAncestor(DeclarationExternalDeclaration.class).detachAndDelete();
+			} else {
+				member.detachAndDelete();
+			}
+		}
+
+		// every stage must declare the block in exactly the same way, or the program fails to link
+		StringBuilder block = new StringBuilder("layout(std140) uniform ")
+			.append(UniformBlockLayout.BLOCK_NAME).append(" {");
+
+		for (UniformBlockLayout.Member member : layout.getMembers()) {
+			Type declaredType = declaredTypes.get(member.name());
+			block.append(declaredType != null
+					? declaredType.getMostCompactName()
+					: UniformBlockLayout.getGlslType(member.type()))
+				.append(' ').append(member.name()).append(';');
+		}
+
+		block.append("};");
+
+		for (TranslationUnit tree : targetTrees) {
+			tree.parseAndInjectNode(t, ASTInjectionPoint.BEFORE_DECLARATIONS, block.toString());
+		}
+	}
+
+	/**
+	 * Returns whether a member can be declared with the given type without changing the layout or the meaning of its
+	 * value. Integer members may also be declared as bools since both are stored as 32-bit values in a block.
+	 */
+	private static boolean isCompatible(UniformType memberType, Type declaredType) {
+		return switch (memberType) {
+			case INT -> declaredType == Type.INT32 || declaredType == Type.BOOL;
+			case FLOAT -> declaredType == Type.FLOAT32;
+			case VEC2 -> declaredType == Type.F32VEC2;
+			case VEC2I -> declaredType == Type.I32VEC2;
+			case VEC3 -> declaredType == Type.F32VEC3;
+			case VEC3I -> declaredType == Type.I32VEC3;
+			case VEC4 -> declaredType == Type.F32VEC4;
+			case VEC4I -> declaredType == Type.I32VEC4;
+			case MAT4 -> declaredType == Type.F32MAT4X4;
+			case MAT3 -> false;
+		};
+	}
+
+	private static void bail(String name, String reason) {
+		Iris.logger.warn("[Patcher] Not using the uniform block for this program since " + reason + ": " + name);
+	}
+}
@@ -1,5 +1,6 @@
 package net.irisshaders.iris.shaderpack;
 
+import io.github.douira.glsl_transformer.util.LRUCache;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
@@ -10,6 +11,7 @@ import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
 import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.helpers.StringPair;
+import net.irisshaders.iris.helpers.WorkerPool;
 import net.irisshaders.iris.shaderpack.materialmap.BlockEntry;
 import net.irisshaders.iris.shaderpack.materialmap.BlockRenderType;
 import net.irisshaders.iris.shaderpack.materialmap.LegacyIdMap;
@@ -24,19 +26,26 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A utility class for parsing entries in item.properties, block.properties, and entities.properties files in shaderpacks
  */
 public class IdMap {
+	// The key holds hashes of the files instead of their contents to keep the memory footprint down.
+	private static final Map<CacheKey, IdMap> cache = Collections.synchronizedMap(new LRUCache<>(4));
+
 	/**
 	 * Maps a given item ID to an integer ID
 	 */
@@ -50,24 +59,61 @@ public class IdMap {
 	/**
 	 * Maps block states to block ids defined in block.properties
 	 */
-	private Int2ObjectMap<List<BlockEntry>> blockPropertiesMap;
+	private final Int2ObjectMap<List<BlockEntry>> blockPropertiesMap;
 
 	/**
 	 * A set of render type overrides for specific blocks. Allows shader packs to move blocks to different render types.
 	 */
-	private Map<NamespacedId, BlockRenderType> blockRenderTypeMap;
+	private final Map<NamespacedId, BlockRenderType> blockRenderTypeMap;
+
+	private IdMap(Object2IntMap<NamespacedId> itemIdMap, Object2IntMap<NamespacedId> entityIdMap,
+				  Int2ObjectMap<List<BlockEntry>> blockPropertiesMap, Map<NamespacedId, BlockRenderType> blockRenderTypeMap) {
+		this.itemIdMap = itemIdMap;
+		this.entityIdMap = entityIdMap;
+		this.blockPropertiesMap = blockPropertiesMap;
+		this.blockRenderTypeMap = blockRenderTypeMap;
+	}
+
+	/**
+	 * Loads the id maps of a shader pack. The three properties files are preprocessed and parsed in parallel, and the
+	 * result is reused as long as neither the files nor the option values and environment defines change.
+	 */
+	static IdMap load(Path shaderPath, ShaderPackOptions shaderPackOptions, Iterable<StringPair> environmentDefines) {
+		String itemSource = readProperties(shaderPath, "item.properties");
+		String entitySource = readProperties(shaderPath, "entity.properties");
+		String blockSource = readProperties(shaderPath, "block.properties");
 
-	IdMap(Path shaderPath, ShaderPackOptions shaderPackOptions, Iterable<StringPair> environmentDefines) {
-		itemIdMap = loadProperties(shaderPath, "item.properties", shaderPackOptions, environmentDefines)
-			.map(IdMap::parseItemIdMap).orElse(Object2IntMaps.emptyMap());
+		List<StringPair> defines = new ArrayList<>();
+		environmentDefines.forEach(defines::add);
 
-		entityIdMap = loadProperties(shaderPath, "entity.properties", shaderPackOptions, environmentDefines)
-			.map(IdMap::parseEntityIdMap).orElse(Object2IntMaps.emptyMap());
+		CacheKey key = new CacheKey(hashSource(itemSource), hashSource(entitySource), hashSource(blockSource),
+			PropertiesPreprocessor.getBooleanValues(shaderPackOptions), PropertiesPreprocessor.getStringValues(shaderPackOptions),
+			defines);
 
-		loadProperties(shaderPath, "block.properties", shaderPackOptions, environmentDefines).ifPresent(blockProperties -> {
-			blockPropertiesMap = parseBlockMap(blockProperties, "block.", "block.properties");
-			blockRenderTypeMap = parseRenderTypeMap(blockProperties, "layer.", "block.properties");
-		});
+		IdMap cached = cache.get(key);
+
+		if (cached != null) {
+			return cached;
+		}
+
+		CompletableFuture<Object2IntMap<NamespacedId>> itemIdMap = CompletableFuture.supplyAsync(() ->
+			loadProperties(shaderPath, "item.properties", itemSource, shaderPackOptions, defines)
+				.map(IdMap::parseItemIdMap).orElse(Object2IntMaps.emptyMap()), WorkerPool.get());
+
+		CompletableFuture<Object2IntMap<NamespacedId>> entityIdMap = CompletableFuture.supplyAsync(() ->
+			loadProperties(shaderPath, "entity.properties", entitySource, shaderPackOptions, defines)
+				.map(IdMap::parseEntityIdMap).orElse(Object2IntMaps.emptyMap()), WorkerPool.get());
+
+		// block.properties is usually by far the largest, so it is handled on this thread while the others are loading
+		Int2ObjectMap<List<BlockEntry>> blockPropertiesMap = null;
+		Map<NamespacedId, BlockRenderType> blockRenderTypeMap = null;
+		Optional<Properties> blockProperties = loadProperties(shaderPath, "block.properties", blockSource,
+			shaderPackOptions, defines);
+
+		if (blockProperties.isPresent()) {
+			blockPropertiesMap = parseBlockMap(blockProperties.get(), "block.", "block.properties");
+			blockRenderTypeMap = parseRenderTypeMap(blockProperties.get(), "layer.", "block.properties");
+		}
 
 		// TODO: Properly override block render layers
 
@@ -80,14 +126,19 @@ public class IdMap {
 		if (blockRenderTypeMap == null) {
 			blockRenderTypeMap = Collections.emptyMap();
 		}
+
+		IdMap idMap = new IdMap(itemIdMap.join(), entityIdMap.join(), blockPropertiesMap, blockRenderTypeMap);
+		cache.put(key, idMap);
+
+		return idMap;
 	}
 
 	/**
-	 * Loads properties from a properties file in a shaderpack path
+	 * Preprocesses and loads the contents of a properties file in a shaderpack path
 	 */
-	private static Optional<Properties> loadProperties(Path shaderPath, String name, ShaderPackOptions shaderPackOptions,
+	private static Optional<Properties> loadProperties(Path shaderPath, String name, String fileContents,
+													   ShaderPackOptions shaderPackOptions,
 													   Iterable<StringPair> environmentDefines) {
-		String fileContents = readProperties(shaderPath, name);
 		if (fileContents == null) {
 			return Optional.empty();
 		}
@@ -111,6 +162,19 @@ public class IdMap {
 		return Optional.of(properties);
 	}
 
+	private static String hashSource(String source) {
+		if (source == null) {
+			return null;
+		}
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.ISO_8859_1)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is unavailable", e);
+		}
+	}
+
 	private static String readProperties(Path shaderPath, String name) {
 		try {
 			// ID maps should be encoded in ISO_8859_1.
@@ -318,4 +382,8 @@ public class IdMap {
 	public int hashCode() {
 		return Objects.hash(itemIdMap, entityIdMap, blockPropertiesMap, blockRenderTypeMap);
 	}
+
+	private record CacheKey(String itemHash, String entityHash, String blockHash, List<String> booleanValues,
+							Map<String, String> stringValues, List<StringPair> environmentDefines) {
+	}
 }
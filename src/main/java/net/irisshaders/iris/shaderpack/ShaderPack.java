@@ -5,6 +5,7 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
+import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
@@ -15,6 +16,7 @@ import net.irisshaders.iris.gl.texture.TextureDefinition;
 import net.irisshaders.iris.gui.FeatureMissingErrorScreen;
 import net.irisshaders.iris.gui.screen.ShaderPackScreen;
 import net.irisshaders.iris.helpers.StringPair;
+import net.irisshaders.iris.helpers.WorkerPool;
 import net.irisshaders.iris.pathways.colorspace.ColorSpace;
 import net.irisshaders.iris.shaderpack.include.AbsolutePackPath;
 import net.irisshaders.iris.shaderpack.include.IncludeGraph;
@@ -24,9 +26,11 @@ import net.irisshaders.iris.shaderpack.materialmap.NamespacedId;
 import net.irisshaders.iris.shaderpack.option.OrderBackedProperties;
 import net.irisshaders.iris.shaderpack.option.ProfileSet;
 import net.irisshaders.iris.shaderpack.option.ShaderPackOptions;
+import net.irisshaders.iris.shaderpack.option.UnusedDefineFilter;
 import net.irisshaders.iris.shaderpack.option.menu.OptionMenuContainer;
 import net.irisshaders.iris.shaderpack.option.values.MutableOptionValues;
 import net.irisshaders.iris.shaderpack.option.values.OptionValues;
+import net.irisshaders.iris.shaderpack.preprocessor.GlslPreprocessor;
 import net.irisshaders.iris.shaderpack.preprocessor.JcppProcessor;
 import net.irisshaders.iris.shaderpack.preprocessor.PropertiesPreprocessor;
 import net.irisshaders.iris.shaderpack.programs.ProgramSet;
@@ -61,11 +65,14 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class ShaderPack {
 	private static final Gson GSON = new Gson();
+	// Preprocesses programs with JCPP instead of GlslPreprocessor, in case a pack runs into a difference between them
+	private static final boolean USE_JCPP = Boolean.getBoolean("iris.jcppPreprocessor");
 	public final CustomUniforms.Builder customUniforms;
 	private final ProgramSet base;
 	private final Map<NamespacedId, ProgramSetInterface> overrides;
@@ -81,8 +88,12 @@ public class ShaderPack {
 	private final List<ImageInformation> irisCustomImages;
 	private final Set<FeatureFlags> activeFeatures;
 	private final Function<AbsolutePackPath, String> sourceProvider;
+	// Optional since disabled and missing programs have a null source, which ConcurrentHashMap can't hold
+	private final Map<AbsolutePackPath, Optional<String>> preprocessedSources = new ConcurrentHashMap<>();
+	private final ImmutableList<AbsolutePackPath> programSourcePaths;
 	private final ShaderProperties shaderProperties;
 	private final List<String> dimensionIds;
+	private final List<FeatureFlags> invalidFeatureFlags;
 	private Map<NamespacedId, String> dimensionMap;
 
 	public ShaderPack(Path root, ImmutableList<StringPair> environmentDefines) throws IOException, IllegalStateException {
@@ -98,11 +109,20 @@ public class ShaderPack {
 	 * @throws IOException if there are any IO errors during shader pack loading.
 	 */
 	public ShaderPack(Path root, Map<String, String> changedConfigs, ImmutableList<StringPair> environmentDefines) throws IOException, IllegalStateException {
+		this(root, changedConfigs, environmentDefines, IrisDefines.createIrisReplacements());
+	}
+
+	/**
+	 * Reads a shader pack from the disk, with the Iris defines created by the caller. Creating them needs access to
+	 * OpenGL, so this allows the pack itself to be read on a different thread than the render thread.
+	 */
+	public ShaderPack(Path root, Map<String, String> changedConfigs, ImmutableList<StringPair> environmentDefines,
+					  ImmutableList<StringPair> irisReplacements) throws IOException, IllegalStateException {
 		// A null path is not allowed.
 		Objects.requireNonNull(root);
 
 		ArrayList<StringPair> envDefines1 = new ArrayList<>(environmentDefines);
-		envDefines1.addAll(IrisDefines.createIrisReplacements());
+		envDefines1.addAll(irisReplacements);
 		environmentDefines = ImmutableList.copyOf(envDefines1);
 		ImmutableList.Builder<AbsolutePackPath> starts = ImmutableList.builder();
 		ImmutableList<String> potentialFileNames = ShaderPackSourceNames.POTENTIAL_STARTS;
@@ -146,8 +166,10 @@ public class ShaderPack {
 			}
 		}
 
+		this.programSourcePaths = starts.build();
+
 		// Read all files and included files recursively
-		IncludeGraph graph = new IncludeGraph(root, starts.build());
+		IncludeGraph graph = new IncludeGraph(root, programSourcePaths);
 
 		if (!graph.getFailures().isEmpty()) {
 			graph.getFailures().forEach((path, error) -> {
@@ -189,19 +211,11 @@ public class ShaderPack {
 			throw new IllegalStateException("Custom images are being used, but the feature flag for custom images hasn't been set! Please set either a requirement or check for custom images' feature flag using \"iris.features.required/optional = CUSTOM_IMAGES\".");
 		}
 
-		List<FeatureFlags> invalidFlagList = shaderProperties.getRequiredFeatureFlags().stream().filter(FeatureFlags::isInvalid).map(FeatureFlags::getValue).collect(Collectors.toList());
-		List<String> invalidFeatureFlags = invalidFlagList.stream().map(FeatureFlags::getHumanReadableName).collect(Collectors.toList());
+		invalidFeatureFlags = shaderProperties.getRequiredFeatureFlags().stream().filter(FeatureFlags::isInvalid).map(FeatureFlags::getValue).collect(Collectors.toList());
 
-		if (!invalidFeatureFlags.isEmpty()) {
-			if (Minecraft.getInstance().screen instanceof ShaderPackScreen) {
-				MutableComponent component = Component.translatable("iris.unsupported.pack.description", FeatureFlags.getInvalidStatus(invalidFlagList), invalidFeatureFlags.stream()
-					.collect(Collectors.joining(", ", ": ", ".")));
-				if (SystemUtils.IS_OS_MAC) {
-					component = component.append(Component.translatable("iris.unsupported.pack.macos"));
-				}
-				Minecraft.getInstance().setScreen(new FeatureMissingErrorScreen(Minecraft.getInstance().screen, Component.translatable("iris.unsupported.pack"), component));
-			}
-			IrisApi.getInstance().getConfig().setShadersEnabledAndApply(false);
+		// Packs read off the render thread are reported by whoever picks them up
+		if (!invalidFeatureFlags.isEmpty() && RenderSystem.isOnRenderThread()) {
+			reportInvalidFeatureFlags();
 		}
 		List<StringPair> newEnvDefines = new ArrayList<>(environmentDefines);
 
@@ -251,10 +265,12 @@ public class ShaderPack {
 
 		// Prepare our include processor
 		IncludeProcessor includeProcessor = new IncludeProcessor(graph);
+		GlslPreprocessor glslPreprocessor = new GlslPreprocessor(graph);
+		UnusedDefineFilter defineFilter = new UnusedDefineFilter(graph, shaderPackOptions.getOptionSet());
 
 		// Set up our source provider for creating ProgramSets
 		Iterable<StringPair> finalEnvironmentDefines1 = environmentDefines;
-		this.sourceProvider = (path) -> {
+		Function<AbsolutePackPath, String> preprocessor = (path) -> {
 			String pathString = path.getPathString();
 			// Removes the first "/" in the path if present, and the file
 			// extension in order to represent the path as its program name
@@ -271,12 +287,9 @@ public class ShaderPack {
 				return null;
 			}
 
-			StringBuilder builder = new StringBuilder();
-
-			for (String line : lines) {
-				builder.append(line);
-				builder.append('\n');
-			}
+			// Keeps the source identical when only options that the program doesn't use change, so that the
+			// preprocessed source can be taken from the cache on reloads.
+			lines = defineFilter.filter(path, lines);
 
 			// Apply GLSL preprocessor to source, while making environment defines available.
 			//
@@ -284,17 +297,35 @@ public class ShaderPack {
 			// #define statements in the actual source - instead, we tell the preprocessor about them
 			// directly. This removes one obstacle to accurate reporting of line numbers for errors,
 			// though there exist many more (such as relocating all #extension directives and similar things)
+			if (!USE_JCPP) {
+				return glslPreprocessor.preprocess(path, lines, finalEnvironmentDefines1);
+			}
+
+			StringBuilder builder = new StringBuilder();
+
+			for (String line : lines) {
+				builder.append(line);
+				builder.append('\n');
+			}
+
 			String source = builder.toString();
 			source = JcppProcessor.glslPreprocessSource(source, finalEnvironmentDefines1);
 
 			return source;
 		};
 
-		this.base = new ProgramSet(AbsolutePackPath.fromAbsolutePath("/" + dimensionMap.getOrDefault(new NamespacedId("*", "*"), "")), sourceProvider, shaderProperties, this);
+		// Sources are memoized so that they can be preprocessed ahead of time on the worker pool, see preprocessAll.
+		this.sourceProvider = (path) -> preprocessedSources
+			.computeIfAbsent(path, p -> Optional.ofNullable(preprocessor.apply(p)))
+			.orElse(null);
+
+		AbsolutePackPath baseDirectory = AbsolutePackPath.fromAbsolutePath("/" + dimensionMap.getOrDefault(new NamespacedId("*", "*"), ""));
+		preprocessAll(baseDirectory);
+		this.base = new ProgramSet(baseDirectory, sourceProvider, shaderProperties, this);
 
 		this.overrides = new HashMap<>();
 
-		this.idMap = new IdMap(root, shaderPackOptions, environmentDefines);
+		this.idMap = IdMap.load(root, shaderPackOptions, environmentDefines);
 
 		customNoiseTexture = shaderProperties.getNoiseTexturePath().map(path -> {
 			try {
@@ -525,6 +556,43 @@ public class ShaderPack {
 		}
 	}
 
+	/**
+	 * Runs the include processor and the GLSL preprocessor for every program source present in the given directory
+	 * concurrently, ahead of the {@link ProgramSet} asking for them one at a time. Only the sources of a single
+	 * directory are handled so that dimension overrides that are never visited are never preprocessed.
+	 */
+	private void preprocessAll(AbsolutePackPath directory) {
+		List<AbsolutePackPath> paths = programSourcePaths.stream()
+			.filter(path -> {
+				String pathString = path.getPathString();
+				return directory.resolve(pathString.substring(pathString.lastIndexOf('/') + 1)).equals(path);
+			})
+			.collect(Collectors.toList());
+
+		WorkerPool.forEach(paths, sourceProvider::apply);
+	}
+
+	public boolean hasInvalidFeatureFlags() {
+		return !invalidFeatureFlags.isEmpty();
+	}
+
+	/**
+	 * Tells the user that the pack requires features that aren't available, and disables shaders.
+	 */
+	public void reportInvalidFeatureFlags() {
+		List<String> invalidFeatureNames = invalidFeatureFlags.stream().map(FeatureFlags::getHumanReadableName).collect(Collectors.toList());
+
+		if (Minecraft.getInstance().screen instanceof ShaderPackScreen) {
+			MutableComponent component = Component.translatable("iris.unsupported.pack.description", FeatureFlags.getInvalidStatus(invalidFeatureFlags), invalidFeatureNames.stream()
+				.collect(Collectors.joining(", ", ": ", ".")));
+			if (SystemUtils.IS_OS_MAC) {
+				component = component.append(Component.translatable("iris.unsupported.pack.macos"));
+			}
+			Minecraft.getInstance().setScreen(new FeatureMissingErrorScreen(Minecraft.getInstance().screen, Component.translatable("iris.unsupported.pack"), component));
+		}
+		IrisApi.getInstance().getConfig().setShadersEnabledAndApply(false);
+	}
+
 	public ProgramSet getProgramSet(NamespacedId dimension) {
 		ProgramSetInterface overrides;
 
@@ -532,7 +600,9 @@ public class ShaderPack {
 			if (dimensionMap.containsKey(dimension)) {
 				String name = dimensionMap.get(dimension);
 				if (dimensionIds.contains(name)) {
-					return new ProgramSet(AbsolutePackPath.fromAbsolutePath("/" + name), sourceProvider, shaderProperties, this);
+					AbsolutePackPath directory = AbsolutePackPath.fromAbsolutePath("/" + name);
+					preprocessAll(directory);
+					return new ProgramSet(directory, sourceProvider, shaderProperties, this);
 				} else {
 					Iris.logger.error("Attempted to load dimension folder " + name + " for dimension " + dimension + ", but it does not exist!");
 					return ProgramSetInterface.Empty.INSTANCE;
@@ -0,0 +1,210 @@
+package net.irisshaders.iris.shaderpack.discovery;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import net.irisshaders.iris.Iris;
+import net.irisshaders.iris.shaderpack.zip.ZipPackFileSystem;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Remembers which entries of the shaderpacks directory are valid shader packs, and where their shaders directory is.
+ * <p>
+ * Finding the shaders directory of a pack means walking the whole pack, which gets slow for large zips. Results are
+ * keyed on the size and last modified time of the pack and persisted between launches, so valid packs are only
+ * scanned again after they changed.
+ */
+public class ShaderpackIndex {
+	private static final int FORMAT_VERSION = 2;
+
+	private final Path directory;
+	private final Path cacheFile;
+	private final Map<String, PackInfo> packs = new ConcurrentHashMap<>();
+
+	public ShaderpackIndex(Path directory, Path cacheFile) {
+		this.directory = directory;
+		this.cacheFile = cacheFile;
+
+		load();
+	}
+
+	/**
+	 * Finds the shaders directory of a folder or zip pack.
+	 *
+	 * @return the path of the shaders directory relative to the root of the pack, or null if the pack doesn't have one
+	 */
+	@Nullable
+	public static String findShadersRoot(Path pack) throws IOException {
+		if (Files.isDirectory(pack)) {
+			return findShadersDirectory(pack);
+		}
+
+		if (pack.toString().endsWith(".zip")) {
+			try (FileSystem zipSystem = ZipPackFileSystem.open(pack)) {
+				return findShadersDirectory(zipSystem.getRootDirectories().iterator().next());
+			}
+		}
+
+		return null;
+	}
+
+	@Nullable
+	private static String findShadersDirectory(Path root) throws IOException {
+		// Most packs have their shaders directory right at the root
+		if (Files.isDirectory(root.resolve("shaders"))) {
+			return "shaders";
+		}
+
+		try (Stream<Path> stream = Files.walk(root)) {
+			return stream
+				.filter(Files::isDirectory)
+				// Prevent a pack simply named "shaders" from being identified as a valid pack
+				.filter(path -> !path.equals(root))
+				.filter(path -> path.endsWith("shaders"))
+				.findFirst()
+				.map(path -> root.relativize(path).toString())
+				.orElse(null);
+		}
+	}
+
+	private static PackInfo scan(Path pack, BasicFileAttributes attributes) {
+		String shadersRoot;
+
+		try {
+			shadersRoot = findShadersRoot(pack);
+		} catch (IOException | RuntimeException e) {
+			Iris.logger.warn("Failed to scan the shader pack " + pack.getFileName() + ": " + e);
+			shadersRoot = null;
+		}
+
+		return new PackInfo(attributes.size(), attributes.lastModifiedTime().toMillis(), shadersRoot);
+	}
+
+	/**
+	 * Returns the information of a pack in the shaderpacks directory, scanning it again if it changed since it was
+	 * indexed. Packs without a shaders directory are always scanned again, since they may still have been in the middle
+	 * of being copied when they were scanned.
+	 *
+	 * @throws NoSuchFileException if there is no such pack
+	 */
+	public PackInfo get(String name) throws IOException {
+		Path pack = directory.resolve(name);
+		BasicFileAttributes attributes = Files.readAttributes(pack, BasicFileAttributes.class);
+		PackInfo info = packs.get(name);
+
+		if (info != null && info.isUpToDate(pack, attributes)) {
+			return info;
+		}
+
+		info = scan(pack, attributes);
+
+		if (info.isValid()) {
+			packs.put(name, info);
+		} else {
+			packs.remove(name);
+		}
+
+		save();
+
+		return info;
+	}
+
+	private void load() {
+		if (!Files.exists(cacheFile)) {
+			return;
+		}
+
+		try {
+			JsonObject json = JsonParser.parseString(Files.readString(cacheFile, StandardCharsets.UTF_8)).getAsJsonObject();
+
+			if (json.get("version").getAsInt() != FORMAT_VERSION) {
+				return;
+			}
+
+			for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("packs").entrySet()) {
+				JsonObject pack = entry.getValue().getAsJsonObject();
+
+				packs.put(entry.getKey(), new PackInfo(
+					pack.get("size").getAsLong(),
+					pack.get("lastModified").getAsLong(),
+					pack.get("shadersRoot").getAsString()));
+			}
+		} catch (IOException | JsonParseException | IllegalStateException | NullPointerException e) {
+			Iris.logger.warn("Failed to read the shader pack index, all packs will be scanned again: " + e);
+			packs.clear();
+		}
+	}
+
+	private synchronized void save() {
+		// Forget packs that were removed from the shaderpacks directory
+		packs.keySet().removeIf(name -> !Files.exists(directory.resolve(name)));
+
+		JsonObject json = new JsonObject();
+		JsonObject packsJson = new JsonObject();
+		json.addProperty("version", FORMAT_VERSION);
+		json.add("packs", packsJson);
+
+		packs.forEach((name, info) -> {
+			JsonObject pack = new JsonObject();
+			pack.addProperty("size", info.size());
+			pack.addProperty("lastModified", info.lastModified());
+			pack.addProperty("shadersRoot", info.shadersRoot());
+			packsJson.add(name, pack);
+		});
+
+		Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+
+		try {
+			Files.createDirectories(cacheFile.getParent());
+			Files.writeString(tempFile, json.toString(), StandardCharsets.UTF_8);
+
+			try {
+				Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to save the shader pack index", e);
+		}
+	}
+
+	/**
+	 * @param size         the size of the pack file, which isn't meaningful for folder packs
+	 * @param lastModified the last modified time of the pack file or folder, in milliseconds
+	 * @param shadersRoot  the path of the shaders directory relative to the root of the pack, or null if the pack is
+	 *                     invalid
+	 */
+	public record PackInfo(long size, long lastModified, @Nullable String shadersRoot) {
+		public boolean isValid() {
+			return shadersRoot != null;
+		}
+
+		private boolean isUpToDate(Path pack, BasicFileAttributes attributes) {
+			if (shadersRoot == null) {
+				return false;
+			}
+
+			if (attributes.size() != size || attributes.lastModifiedTime().toMillis() != lastModified) {
+				return false;
+			}
+
+			// The last modified time of a folder only changes when its direct children change, so make sure that the
+			// shaders directory of a folder pack still exists.
+			return !attributes.isDirectory() || Files.isDirectory(pack.resolve(shadersRoot));
+		}
+	}
+}
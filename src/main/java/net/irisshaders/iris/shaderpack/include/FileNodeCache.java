@@ -0,0 +1,87 @@
+package net.irisshaders.iris.shaderpack.include;
+
+import com.google.common.collect.ImmutableList;
+import io.github.douira.glsl_transformer.util.LRUCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Keeps the parsed files of shader packs between reloads, so that files which didn't change since the last time a pack
+ * was loaded are neither read nor scanned for #include directives again.
+ * <p>
+ * Nodes are keyed on their path within the pack and a hash of their contents. The size and last modified time of every
+ * file are remembered along with the hash of its contents, so that an unchanged file can be matched to its node
+ * without reading it.
+ */
+class FileNodeCache {
+	private static final int MAX_ENTRIES = 4096;
+
+	// the location of every file that was read, as a URI so that files in different packs never collide
+	private static final Map<String, FileStamp> stamps = Collections.synchronizedMap(new LRUCache<>(MAX_ENTRIES));
+	private static final Map<NodeKey, FileNode> nodes = Collections.synchronizedMap(new LRUCache<>(MAX_ENTRIES));
+
+	private FileNodeCache() {
+	}
+
+	/**
+	 * Returns the node of a file, reading and parsing it only if it changed. This can be called from any thread.
+	 */
+	static FileNode load(Path root, AbsolutePackPath path) throws IOException {
+		Path file = path.resolved(root);
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		String location = file.toUri().toString();
+		FileStamp stamp = stamps.get(location);
+
+		if (stamp != null && stamp.matches(attributes)) {
+			FileNode node = nodes.get(new NodeKey(path, stamp.contentHash()));
+
+			if (node != null) {
+				return node;
+			}
+		}
+
+		byte[] content = Files.readAllBytes(file);
+		String contentHash = hash(content);
+		stamps.put(location, new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis(), contentHash));
+
+		NodeKey key = new NodeKey(path, contentHash);
+		FileNode node = nodes.get(key);
+
+		if (node == null) {
+			// Decode strictly like Files.readString does, so that files that aren't valid UTF-8 still fail to load
+			String source = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(content)).toString();
+			node = new FileNode(path, ImmutableList.copyOf(source.split("\\R")));
+			nodes.put(key, node);
+		}
+
+		return node;
+	}
+
+	private static String hash(byte[] content) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is unavailable", e);
+		}
+	}
+
+	private record FileStamp(long size, long lastModified, String contentHash) {
+		boolean matches(BasicFileAttributes attributes) {
+			return attributes.size() == size && attributes.lastModifiedTime().toMillis() == lastModified;
+		}
+	}
+
+	private record NodeKey(AbsolutePackPath path, String contentHash) {
+	}
+}
@@ -3,20 +3,24 @@ package net.irisshaders.iris.shaderpack.include;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import net.irisshaders.iris.Iris;
+import net.irisshaders.iris.helpers.WorkerPool;
 import net.irisshaders.iris.shaderpack.error.RusticError;
 import net.irisshaders.iris.shaderpack.transform.line.LineTransform;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
@@ -71,70 +75,84 @@ public class IncludeGraph {
 		Map<AbsolutePackPath, FileNode> nodes = new HashMap<>();
 		Map<AbsolutePackPath, RusticError> failures = new HashMap<>();
 
-		List<AbsolutePackPath> queue = new ArrayList<>(startingPaths);
+		List<AbsolutePackPath> frontier = new ArrayList<>(startingPaths);
 		Set<AbsolutePackPath> seen = new HashSet<>(startingPaths);
 
-		while (!queue.isEmpty()) {
-			AbsolutePackPath next = queue.remove(queue.size() - 1);
+		// The graph is explored one level of includes at a time. All files of a level are loaded in parallel, and the
+		// results are then processed in order so that the graph and any errors don't depend on thread scheduling.
+		while (!frontier.isEmpty()) {
+			Map<AbsolutePackPath, LoadResult> loaded = new ConcurrentHashMap<>();
 
-			String source;
-
-			try {
-				source = readFile(next.resolved(root));
-			} catch (IOException e) {
-				AbsolutePackPath src = cameFrom.get(next);
-
-				if (src == null) {
-					throw new RuntimeException("unexpected error: failed to read " + next.getPathString(), e);
+			WorkerPool.forEach(frontier, path -> {
+				try {
+					loaded.put(path, new LoadResult(FileNodeCache.load(root, path), null));
+				} catch (IOException e) {
+					loaded.put(path, new LoadResult(null, e));
 				}
+			});
 
-				String topLevelMessage;
-				String detailMessage;
+			List<AbsolutePackPath> nextFrontier = new ArrayList<>();
 
-				if (e instanceof NoSuchFileException) {
-					topLevelMessage = "failed to resolve #include directive";
-					detailMessage = "file not found";
-				} else {
-					topLevelMessage = "unexpected I/O error while resolving #include directive: " + e;
-					detailMessage = "IO error";
-				}
+			for (AbsolutePackPath next : frontier) {
+				LoadResult result = loaded.get(next);
 
-				String badLine = nodes.get(src).getLines().get(lineNumberInclude.get(next)).trim();
+				if (result.failure() != null) {
+					IOException e = result.failure();
+					AbsolutePackPath src = cameFrom.get(next);
 
-				RusticError topLevelError = new RusticError("error", topLevelMessage, detailMessage, src.getPathString(),
-					lineNumberInclude.get(next) + 1, badLine);
+					if (src == null) {
+						throw new RuntimeException("unexpected error: failed to read " + next.getPathString(), e);
+					}
 
-				failures.put(next, topLevelError);
+					String topLevelMessage;
+					String detailMessage;
 
-				continue;
-			}
+					if (e instanceof NoSuchFileException) {
+						topLevelMessage = "failed to resolve #include directive";
+						detailMessage = "file not found";
+					} else {
+						topLevelMessage = "unexpected I/O error while resolving #include directive: " + e;
+						detailMessage = "IO error";
+					}
 
-			ImmutableList<String> lines = ImmutableList.copyOf(source.split("\\R"));
+					String badLine = nodes.get(src).getLines().get(lineNumberInclude.get(next)).trim();
 
-			FileNode node = new FileNode(next, lines);
-			boolean selfInclude = false;
+					RusticError topLevelError = new RusticError("error", topLevelMessage, detailMessage, src.getPathString(),
+						lineNumberInclude.get(next) + 1, badLine);
 
-			for (Map.Entry<Integer, AbsolutePackPath> include : node.getIncludes().entrySet()) {
-				int line = include.getKey();
-				AbsolutePackPath included = include.getValue();
+					failures.put(next, topLevelError);
 
-				if (next.equals(included)) {
-					selfInclude = true;
-					failures.put(next, new RusticError("error", "trivial #include cycle detected",
-						"file includes itself", next.getPathString(), line + 1, lines.get(line)));
+					continue;
+				}
 
-					break;
-				} else if (!seen.contains(included)) {
-					queue.add(included);
-					seen.add(included);
-					cameFrom.put(included, next);
-					lineNumberInclude.put(included, line);
+				FileNode node = result.node();
+				ImmutableList<String> lines = node.getLines();
+				boolean selfInclude = false;
+
+				for (Map.Entry<Integer, AbsolutePackPath> include : node.getIncludes().entrySet()) {
+					int line = include.getKey();
+					AbsolutePackPath included = include.getValue();
+
+					if (next.equals(included)) {
+						selfInclude = true;
+						failures.put(next, new RusticError("error", "trivial #include cycle detected",
+							"file includes itself", next.getPathString(), line + 1, lines.get(line)));
+
+						break;
+					} else if (!seen.contains(included)) {
+						nextFrontier.add(included);
+						seen.add(included);
+						cameFrom.put(included, next);
+						lineNumberInclude.put(included, line);
+					}
 				}
-			}
 
-			if (!selfInclude) {
-				nodes.put(next, node);
+				if (!selfInclude) {
+					nodes.put(next, node);
+				}
 			}
+
+			frontier = nextFrontier;
 		}
 
 		this.nodes = ImmutableMap.copyOf(nodes);
@@ -143,87 +161,112 @@ public class IncludeGraph {
 		detectCycle();
 	}
 
-	private static String readFile(Path path) throws IOException {
-		return Files.readString(path);
-	}
-
 	private void detectCycle() {
-		List<AbsolutePackPath> cycle = new ArrayList<>();
-		Set<AbsolutePackPath> visited = new HashSet<>();
-
-		for (AbsolutePackPath start : nodes.keySet()) {
-			if (exploreForCycles(start, cycle, visited)) {
-				AbsolutePackPath lastFilePath = null;
-
-				StringBuilder error = new StringBuilder();
+		List<AbsolutePackPath> cycle = findCycle();
 
-				for (AbsolutePackPath node : cycle) {
-					if (lastFilePath == null) {
-						lastFilePath = node;
-						continue;
-					}
-
-					FileNode lastFile = nodes.get(lastFilePath);
-					int lineNumber = -1;
+		if (cycle == null) {
+			return;
+		}
 
-					for (Map.Entry<Integer, AbsolutePackPath> include : lastFile.getIncludes().entrySet()) {
-						if (include.getValue() == node) {
-							lineNumber = include.getKey() + 1;
-						}
-					}
+		AbsolutePackPath start = cycle.get(0);
+		AbsolutePackPath lastFilePath = null;
 
-					String badLine = lastFile.getLines().get(lineNumber - 1);
+		StringBuilder error = new StringBuilder();
 
-					String detailMessage = node.equals(start) ? "final #include in cycle" : "#include involved in cycle";
+		for (AbsolutePackPath node : cycle) {
+			if (lastFilePath == null) {
+				lastFilePath = node;
+				continue;
+			}
 
-					if (lastFilePath.equals(start)) {
-						// first node in cycle
-						error.append(new RusticError("error", "#include cycle detected",
-							detailMessage, lastFilePath.getPathString(), lineNumber, badLine));
-					} else {
-						error.append("\n  = ").append(new RusticError("note", "cycle involves another file",
-							detailMessage, lastFilePath.getPathString(), lineNumber, badLine));
-					}
+			FileNode lastFile = nodes.get(lastFilePath);
+			int lineNumber = -1;
 
-					lastFilePath = node;
+			for (Map.Entry<Integer, AbsolutePackPath> include : lastFile.getIncludes().entrySet()) {
+				if (include.getValue() == node) {
+					lineNumber = include.getKey() + 1;
 				}
+			}
 
-				error.append(
-					"\n  = note: #include directives are resolved before any other preprocessor directives, any form of #include guard will not work" +
-						"\n  = note: other cycles may still exist, only the first detected non-trivial cycle will be reported");
+			String badLine = lastFile.getLines().get(lineNumber - 1);
 
-				// TODO: Expose this to the caller (more semantic error handling)
-				Iris.logger.error(error.toString());
+			String detailMessage = node.equals(start) ? "final #include in cycle" : "#include involved in cycle";
 
-				throw new IllegalStateException("Cycle detected in #include graph, see previous messages for details");
+			if (lastFilePath.equals(start)) {
+				// first node in cycle
+				error.append(new RusticError("error", "#include cycle detected",
+					detailMessage, lastFilePath.getPathString(), lineNumber, badLine));
+			} else {
+				error.append("\n  = ").append(new RusticError("note", "cycle involves another file",
+					detailMessage, lastFilePath.getPathString(), lineNumber, badLine));
 			}
-		}
-	}
 
-	private boolean exploreForCycles(AbsolutePackPath frontier, List<AbsolutePackPath> path, Set<AbsolutePackPath> visited) {
-		if (visited.contains(frontier)) {
-			path.add(frontier);
-			return true;
+			lastFilePath = node;
 		}
 
-		path.add(frontier);
-		visited.add(frontier);
+		error.append(
+			"\n  = note: #include directives are resolved before any other preprocessor directives, any form of #include guard will not work" +
+				"\n  = note: other cycles may still exist, only the first detected non-trivial cycle will be reported");
+
+		// TODO: Expose this to the caller (more semantic error handling)
+		Iris.logger.error(error.toString());
 
-		for (AbsolutePackPath included : nodes.get(frontier).getIncludes().values()) {
-			if (!nodes.containsKey(included)) {
-				// file that failed to load for another reason, error should already be reported
+		throw new IllegalStateException("Cycle detected in #include graph, see previous messages for details");
+	}
+
+	/**
+	 * Searches the graph depth-first for a cycle, without recursing so that deep include chains can't overflow the
+	 * stack. Files that were fully explored without finding a cycle are never explored again, so every file and
+	 * #include directive is only visited once no matter how many files share the same includes.
+	 *
+	 * @return the path from the file the search started at up to and including the file that closes the cycle, or null
+	 * if the graph doesn't contain any cycles
+	 */
+	private List<AbsolutePackPath> findCycle() {
+		Set<AbsolutePackPath> finished = new HashSet<>();
+		Set<AbsolutePackPath> onPath = new HashSet<>();
+		List<AbsolutePackPath> path = new ArrayList<>();
+		Deque<Iterator<AbsolutePackPath>> pending = new ArrayDeque<>();
+
+		for (AbsolutePackPath start : nodes.keySet()) {
+			if (finished.contains(start)) {
 				continue;
 			}
 
-			if (exploreForCycles(included, path, visited)) {
-				return true;
+			path.add(start);
+			onPath.add(start);
+			pending.push(nodes.get(start).getIncludes().values().iterator());
+
+			while (!pending.isEmpty()) {
+				Iterator<AbsolutePackPath> includes = pending.peek();
+
+				if (!includes.hasNext()) {
+					AbsolutePackPath explored = path.remove(path.size() - 1);
+					onPath.remove(explored);
+					finished.add(explored);
+					pending.pop();
+
+					continue;
+				}
+
+				AbsolutePackPath included = includes.next();
+
+				if (!nodes.containsKey(included) || finished.contains(included)) {
+					// files that failed to load for another reason already had their error reported
+					continue;
+				}
+
+				path.add(included);
+
+				if (!onPath.add(included)) {
+					return path;
+				}
+
+				pending.push(nodes.get(included).getIncludes().values().iterator());
 			}
 		}
 
-		path.remove(path.size() - 1);
-		visited.remove(frontier);
-
-		return false;
+		return null;
 	}
 
 	public ImmutableMap<AbsolutePackPath, FileNode> getNodes() {
@@ -256,4 +299,7 @@ public class IncludeGraph {
 	public ImmutableMap<AbsolutePackPath, RusticError> getFailures() {
 		return failures;
 	}
+
+	private record LoadResult(FileNode node, IOException failure) {
+	}
 }
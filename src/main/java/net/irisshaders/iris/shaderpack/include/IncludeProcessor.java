@@ -3,9 +3,9 @@ package net.irisshaders.iris.shaderpack.include;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 // TODO: Write tests for this code
 public class IncludeProcessor {
@@ -14,7 +14,8 @@ public class IncludeProcessor {
 
 	public IncludeProcessor(IncludeGraph graph) {
 		this.graph = graph;
-		this.cache = new HashMap<>();
+		// Programs are preprocessed concurrently, see ShaderPack#preprocessAll
+		this.cache = new ConcurrentHashMap<>();
 	}
 
 	// TODO: Actual error handling
@@ -22,9 +23,14 @@ public class IncludeProcessor {
 	public ImmutableList<String> getIncludedFile(AbsolutePackPath path) {
 		ImmutableList<String> lines = cache.get(path);
 
+		// NB: This can't use computeIfAbsent since processing recurses into included files. Two threads may end up
+		//     processing the same file at once, but they will produce the same result.
 		if (lines == null) {
 			lines = process(path);
-			cache.put(path, lines);
+
+			if (lines != null) {
+				cache.put(path, lines);
+			}
 		}
 
 		return lines;
@@ -1,10 +1,9 @@
 package net.irisshaders.iris.shaderpack.materialmap;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
 import net.irisshaders.iris.Iris;
+import net.irisshaders.iris.helpers.WorkerPool;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.ResourceLocation;
@@ -14,21 +13,53 @@ import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.Property;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class BlockMaterialMapping {
-	public static Object2IntMap<BlockState> createBlockStateIdMap(Int2ObjectMap<List<BlockEntry>> blockPropertiesMap) {
-		Object2IntMap<BlockState> blockStateIds = new Object2IntOpenHashMap<>();
+	/**
+	 * Builds the table of material ids for every block state. Entries are grouped by block first, so that the states
+	 * of different blocks can be matched in parallel.
+	 */
+	public static BlockStateIdTable createBlockStateIdTable(Int2ObjectMap<List<BlockEntry>> blockPropertiesMap) {
+		// Grouping keeps the order of the entries for each block, so the first matching entry still wins
+		Map<Block, List<IdEntry>> entriesByBlock = new LinkedHashMap<>();
 
 		blockPropertiesMap.forEach((intId, entries) -> {
 			for (BlockEntry entry : entries) {
-				addBlockStates(entry, blockStateIds, intId);
+				NamespacedId id = entry.id();
+				Block block = BuiltInRegistries.BLOCK.get(new ResourceLocation(id.getNamespace(), id.getName()));
+
+				// If the block doesn't exist, by default the registry will return AIR. That probably isn't what we want.
+				// TODO: Assuming that Registry.BLOCK.getDefaultId() == "minecraft:air" here
+				if (block == Blocks.AIR) {
+					continue;
+				}
+
+				entriesByBlock.computeIfAbsent(block, b -> new ArrayList<>()).add(new IdEntry(intId, entry));
 			}
 		});
 
-		return blockStateIds;
+		int[] ids = new int[Block.BLOCK_STATE_REGISTRY.size()];
+		Arrays.fill(ids, BlockStateIdTable.UNMAPPED);
+
+		// The table and the states are indexed by the same ids, so they have to be stored before anything is matched
+		for (BlockState state : Block.BLOCK_STATE_REGISTRY) {
+			((BlockStateIndexHolder) state).iris$setRegistryIndex(Block.BLOCK_STATE_REGISTRY.getId(state));
+		}
+
+		// Every block owns a distinct set of state ids, so the workers never write to the same element
+		WorkerPool.forEach(entriesByBlock.entrySet(), blockEntries -> {
+			for (IdEntry entry : blockEntries.getValue()) {
+				addBlockStates(blockEntries.getKey(), entry.entry(), ids, entry.intId());
+			}
+		});
+
+		return new BlockStateIdTable(ids);
 	}
 
 	public static Map<Block, RenderType> createBlockTypeMap(Map<NamespacedId, BlockRenderType> blockPropertiesMap) {
@@ -58,27 +89,19 @@ public class BlockMaterialMapping {
 		};
 	}
 
-	private static void addBlockStates(BlockEntry entry, Object2IntMap<BlockState> idMap, int intId) {
+	private static void addBlockStates(Block block, BlockEntry entry, int[] ids, int intId) {
 		NamespacedId id = entry.id();
 		ResourceLocation resourceLocation = new ResourceLocation(id.getNamespace(), id.getName());
 
-		Block block = BuiltInRegistries.BLOCK.get(resourceLocation);
-
-		// If the block doesn't exist, by default the registry will return AIR. That probably isn't what we want.
-		// TODO: Assuming that Registry.BLOCK.getDefaultId() == "minecraft:air" here
-		if (block == Blocks.AIR) {
-			return;
-		}
-
 		Map<String, String> propertyPredicates = entry.propertyPredicates();
 
 		if (propertyPredicates.isEmpty()) {
 			// Just add all the states if there aren't any predicates
 			for (BlockState state : block.getStateDefinition().getPossibleStates()) {
-				// NB: Using putIfAbsent means that the first successful mapping takes precedence
+				// NB: Only setting unmapped states means that the first successful mapping takes precedence
 				//     Needed for OptiFine parity:
 				//     https://github.com/IrisShaders/Iris/issues/1327
-				idMap.putIfAbsent(state, intId);
+				putIfAbsent(ids, state, intId);
 			}
 
 			return;
@@ -107,14 +130,22 @@ public class BlockMaterialMapping {
 		// block and check for ones that match the filters. This isn't particularly efficient, but it works!
 		for (BlockState state : stateManager.getPossibleStates()) {
 			if (checkState(state, properties)) {
-				// NB: Using putIfAbsent means that the first successful mapping takes precedence
+				// NB: Only setting unmapped states means that the first successful mapping takes precedence
 				//     Needed for OptiFine parity:
 				//     https://github.com/IrisShaders/Iris/issues/1327
-				idMap.putIfAbsent(state, intId);
+				putIfAbsent(ids, state, intId);
 			}
 		}
 	}
 
+	private static void putIfAbsent(int[] ids, BlockState state, int intId) {
+		int index = ((BlockStateIndexHolder) state).iris$getRegistryIndex();
+
+		if (ids[index] == BlockStateIdTable.UNMAPPED) {
+			ids[index] = intId;
+		}
+	}
+
 	// We ignore generics here, the actual types don't matter because we just convert
 	// them to strings anyways, and the compiler checks just get in the way.
 	//
@@ -135,4 +166,7 @@ public class BlockMaterialMapping {
 
 		return true;
 	}
+
+	private record IdEntry(int intId, BlockEntry entry) {
+	}
 }
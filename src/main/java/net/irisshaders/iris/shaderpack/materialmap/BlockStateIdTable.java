@@ -0,0 +1,54 @@
+package net.irisshaders.iris.shaderpack.materialmap;
+
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.Arrays;
+
+/**
+ * The material ids of block states, stored in a dense array indexed by the id of each state in
+ * {@link Block#BLOCK_STATE_REGISTRY}. The id is read from the state itself (see {@link BlockStateIndexHolder}), so a
+ * lookup is a field load followed by an array load.
+ * <p>
+ * Tables are built from the registry as it is when a pipeline is created, and building one stores the current registry
+ * id on every state. Pipelines are created again after joining a world, which happens after the registries were synced
+ * with the server, so a table never outlives the state ids it was built for. States that are outside the table are
+ * treated as unmapped.
+ */
+public final class BlockStateIdTable {
+	public static final BlockStateIdTable EMPTY = new BlockStateIdTable(new int[0]);
+
+	// no pack would ever use this as an id, and it makes unmapped states stand out when debugging
+	static final int UNMAPPED = Integer.MIN_VALUE;
+
+	private final int[] ids;
+
+	BlockStateIdTable(int[] ids) {
+		this.ids = ids;
+	}
+
+	/**
+	 * Returns the material id of a state, or the given default if the pack doesn't assign one.
+	 */
+	public int getOrDefault(BlockState state, int defaultId) {
+		int index = ((BlockStateIndexHolder) state).iris$getRegistryIndex();
+
+		if (index < 0 || index >= ids.length) {
+			return defaultId;
+		}
+
+		int id = ids[index];
+
+		return id == UNMAPPED ? defaultId : id;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof BlockStateIdTable other && Arrays.equals(ids, other.ids);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(ids);
+	}
+}
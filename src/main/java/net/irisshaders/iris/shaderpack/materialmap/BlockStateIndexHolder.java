@@ -0,0 +1,15 @@
+package net.irisshaders.iris.shaderpack.materialmap;
+
+/**
+ * Implemented by every block state through a mixin, so that the id of a state in the block state registry can be read
+ * from a field instead of being looked up in the registry's identity map.
+ */
+public interface BlockStateIndexHolder {
+	/**
+	 * Returns the id this state had in the block state registry when the last material id table was built, or -1 if it
+	 * wasn't registered then.
+	 */
+	int iris$getRegistryIndex();
+
+	void iris$setRegistryIndex(int index);
+}
@@ -1,19 +1,21 @@
 package net.irisshaders.iris.shaderpack.materialmap;
 
+import com.mojang.blaze3d.vertex.VertexFormat;
 import it.unimi.dsi.fastutil.objects.Object2IntFunction;
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
+import net.irisshaders.iris.vertices.IrisVertexFormats;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.state.BlockState;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
+import java.util.Set;
 
 public class WorldRenderingSettings {
 	public static final WorldRenderingSettings INSTANCE = new WorldRenderingSettings();
 
 	private boolean reloadRequired;
-	private Object2IntMap<BlockState> blockStateIds;
+	private BlockStateIdTable blockStateIds;
 	private Map<Block, RenderType> blockTypeIds;
 	private Object2IntFunction<NamespacedId> entityIds;
 	private Object2IntFunction<NamespacedId> itemIds;
@@ -22,6 +24,8 @@ public class WorldRenderingSettings {
 	private boolean hasVillagerConversionId;
 	private boolean useSeparateAo;
 	private boolean useExtendedVertexFormat;
+	private Set<ExtendedAttribute> terrainVertexAttributes;
+	private Map<VertexFormat, Set<ExtendedAttribute>> referencedAttributes;
 	private boolean separateEntityDraws;
 	private boolean voxelizeLightBlocks;
 
@@ -33,6 +37,8 @@ public class WorldRenderingSettings {
 		disableDirectionalShading = false;
 		useSeparateAo = false;
 		useExtendedVertexFormat = false;
+		terrainVertexAttributes = ExtendedAttribute.ALL;
+		referencedAttributes = Map.of();
 		separateEntityDraws = false;
 		voxelizeLightBlocks = false;
 		hasVillagerConversionId = false;
@@ -47,11 +53,11 @@ public class WorldRenderingSettings {
 	}
 
 	@Nullable
-	public Object2IntMap<BlockState> getBlockStateIds() {
+	public BlockStateIdTable getBlockStateIds() {
 		return blockStateIds;
 	}
 
-	public void setBlockStateIds(Object2IntMap<BlockState> blockStateIds) {
+	public void setBlockStateIds(BlockStateIdTable blockStateIds) {
 		if (this.blockStateIds != null && this.blockStateIds.equals(blockStateIds)) {
 			return;
 		}
@@ -147,6 +153,44 @@ public class WorldRenderingSettings {
 		this.useExtendedVertexFormat = useExtendedVertexFormat;
 	}
 
+	/**
+	 * Returns the extended attributes that terrain vertices are built with when the extended vertex format is used.
+	 */
+	public Set<ExtendedAttribute> getTerrainVertexAttributes() {
+		return terrainVertexAttributes;
+	}
+
+	public void setTerrainVertexAttributes(Set<ExtendedAttribute> terrainVertexAttributes) {
+		if (terrainVertexAttributes.equals(this.terrainVertexAttributes)) {
+			return;
+		}
+
+		this.reloadRequired = true;
+		this.terrainVertexAttributes = terrainVertexAttributes;
+	}
+
+	/**
+	 * Returns the extended attributes that are read by the programs drawing vertices of one of the Iris vertex formats.
+	 * Attributes that aren't read still have their space in the vertex, they just don't need to be computed.
+	 */
+	public Set<ExtendedAttribute> getReferencedAttributes(VertexFormat format) {
+		return referencedAttributes.getOrDefault(format, ExtendedAttribute.ALL);
+	}
+
+	public void setReferencedAttributes(Map<VertexFormat, Set<ExtendedAttribute>> referencedAttributes) {
+		if (referencedAttributes.equals(this.referencedAttributes)) {
+			return;
+		}
+
+		// note: only terrain needs a reload, everything else is rebuilt every frame.
+		if (!getReferencedAttributes(IrisVertexFormats.TERRAIN).equals(
+			referencedAttributes.getOrDefault(IrisVertexFormats.TERRAIN, ExtendedAttribute.ALL))) {
+			this.reloadRequired = true;
+		}
+
+		this.referencedAttributes = referencedAttributes;
+	}
+
 	public boolean shouldVoxelizeLightBlocks() {
 		return voxelizeLightBlocks;
 	}
@@ -0,0 +1,171 @@
+package net.irisshaders.iris.shaderpack.option;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.irisshaders.iris.shaderpack.include.AbsolutePackPath;
+import net.irisshaders.iris.shaderpack.include.FileNode;
+import net.irisshaders.iris.shaderpack.include.IncludeGraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Blanks out the #define lines of options that a program never refers to.
+ * <p>
+ * Packs usually define all of their options in a single file that every program includes, so changing any option
+ * changes the source of every program even though most of them don't depend on it. Since the preprocessor doesn't
+ * output #define lines, removing the ones whose macro is never used leaves the preprocessed source unchanged, but it
+ * does make the source that is passed to the preprocessor identical for all values of those options. This lets the
+ * preprocessor, transformation and program binary caches be reused for every program that an option change doesn't
+ * actually affect.
+ * <p>
+ * Whether an option is used is decided conservatively: its name only has to appear as a word on any line of the
+ * program that is kept. Lines are replaced with empty lines rather than removed so that line numbers in compile errors
+ * stay the same.
+ */
+public class UnusedDefineFilter {
+	private final IncludeGraph graph;
+	// the option defined on each #define option line, by file and line index
+	private final Map<AbsolutePackPath, Int2ObjectMap<String>> defineLines = new HashMap<>();
+
+	public UnusedDefineFilter(IncludeGraph graph, OptionSet options) {
+		this.graph = graph;
+
+		options.getBooleanOptions().forEach((name, option) -> {
+			if (option.getOption().getType() == OptionType.DEFINE) {
+				addLocations(name, option.getLocations());
+			}
+		});
+
+		options.getStringOptions().forEach((name, option) -> {
+			if (option.getOption().getType() == OptionType.DEFINE) {
+				addLocations(name, option.getLocations());
+			}
+		});
+	}
+
+	private static void addWords(String line, Set<String> words) {
+		int length = line.length();
+		int i = 0;
+
+		while (i < length) {
+			char c = line.charAt(i);
+
+			if (Character.isJavaIdentifierStart(c)) {
+				int start = i;
+
+				do {
+					i++;
+				} while (i < length && Character.isJavaIdentifierPart(line.charAt(i)));
+
+				words.add(line.substring(start, i));
+			} else {
+				i++;
+			}
+		}
+	}
+
+	private void addLocations(String name, Set<OptionLocation> locations) {
+		for (OptionLocation location : locations) {
+			defineLines.computeIfAbsent(location.filePath(), path -> new Int2ObjectOpenHashMap<>())
+				.put(location.lineIndex(), name);
+		}
+	}
+
+	/**
+	 * Filters the lines of a program, as returned by {@link net.irisshaders.iris.shaderpack.include.IncludeProcessor}
+	 * for the given path.
+	 */
+	public ImmutableList<String> filter(AbsolutePackPath path, ImmutableList<String> lines) {
+		if (defineLines.isEmpty()) {
+			return lines;
+		}
+
+		// the option defined on every line of the program, or null for lines that don't define an option
+		List<String> lineOptions = new ArrayList<>(lines.size());
+		collectLineOptions(path, lineOptions);
+
+		if (lineOptions.size() != lines.size()) {
+			// the program doesn't match the graph, so the lines can't be attributed to files
+			return lines;
+		}
+
+		Set<String> words = new HashSet<>();
+		List<Integer> pending = new ArrayList<>();
+
+		for (int i = 0; i < lines.size(); i++) {
+			if (lineOptions.get(i) == null) {
+				String line = lines.get(i);
+
+				if (line.contains("##")) {
+					// token pasting can refer to any macro without spelling out its name
+					return lines;
+				}
+
+				addWords(line, words);
+			} else {
+				pending.add(i);
+			}
+		}
+
+		// Keeping an option line can make other options used, for example if one option is defined in terms of another
+		boolean changed = true;
+
+		while (changed) {
+			changed = false;
+
+			for (int p = pending.size() - 1; p >= 0; p--) {
+				int index = pending.get(p);
+
+				if (words.contains(lineOptions.get(index))) {
+					addWords(lines.get(index), words);
+					pending.remove(p);
+					changed = true;
+				}
+			}
+		}
+
+		if (pending.isEmpty()) {
+			return lines;
+		}
+
+		List<String> filtered = new ArrayList<>(lines);
+
+		for (int index : pending) {
+			filtered.set(index, "");
+		}
+
+		return ImmutableList.copyOf(filtered);
+	}
+
+	/**
+	 * Walks the include graph in the same order as the include processor, so that the result lines up with its output.
+	 */
+	private void collectLineOptions(AbsolutePackPath path, List<String> lineOptions) {
+		FileNode node = graph.getNodes().get(path);
+
+		if (node == null) {
+			return;
+		}
+
+		Int2ObjectMap<String> options = defineLines.get(path);
+		ImmutableMap<Integer, AbsolutePackPath> includes = node.getIncludes();
+		int lineCount = node.getLines().size();
+
+		for (int i = 0; i < lineCount; i++) {
+			AbsolutePackPath include = includes.get(i);
+
+			if (include != null) {
+				collectLineOptions(include, lineOptions);
+			} else {
+				lineOptions.add(options == null ? null : options.get(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,1274 @@
+package net.irisshaders.iris.shaderpack.preprocessor;
+
+import net.irisshaders.iris.Iris;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the preprocessor over the tokens of a single program: evaluates directives, expands macros and collects the
+ * #version and #extension directives that are active.
+ * <p>
+ * The evaluation follows JCPP's preprocessor step by step, including its quirks, so that the output of
+ * {@link GlslPreprocessor} matches what Iris produced with JCPP. Macros that a program defines are kept apart from the
+ * environment defines, which are shared by all programs and only looked up when a program doesn't override them.
+ */
+final class GlslEvaluator {
+	private static final GlslMacro LINE = new GlslMacro("__LINE__");
+	private static final GlslMacro FILE = new GlslMacro("__FILE__");
+	private static final GlslMacro COUNTER = new GlslMacro("__COUNTER__");
+	// Marks a macro that was removed by #undef, which also hides environment defines of the same name
+	private static final GlslMacro UNDEFINED = new GlslMacro("");
+
+	private static final GlslToken EOF = new GlslToken(GlslToken.EOF, -1, "<eof>");
+
+	private final Map<String, GlslMacro> environment;
+	private final Map<String, GlslMacro> macros = new HashMap<>();
+	private final List<State> states = new ArrayList<>();
+	private final StringBuilder metadata = new StringBuilder();
+
+	private Source source;
+	private GlslToken sourceToken;
+	private GlslToken exprToken;
+	private int counter;
+
+	GlslEvaluator(Map<String, GlslMacro> environment, Source main) {
+		this.environment = environment;
+		this.states.add(new State());
+		pushSource(main, true);
+	}
+
+	/**
+	 * Preprocesses the main source. The collected #version and #extension directives come first, followed by the
+	 * remaining source.
+	 */
+	String process() {
+		StringBuilder builder = new StringBuilder();
+
+		while (true) {
+			GlslToken token = token();
+
+			if (token.type == GlslToken.EOF) {
+				break;
+			}
+
+			builder.append(token.text);
+		}
+
+		builder.append('\n');
+
+		return metadata + builder.toString();
+	}
+
+	private static void logError(String message) {
+		Iris.logger.info("GLSL preprocessor error: " + message);
+	}
+
+	private static void logWarning(String message) {
+		Iris.logger.debug("GLSL preprocessor warning: " + message);
+	}
+
+	// JCPP fails on anything that it reports once the end of the program was reached, so this does as well
+	private void error(String message) {
+		if (source == null) {
+			throw new IllegalStateException("Error at end of file: " + message);
+		}
+
+		logError(message);
+	}
+
+	private void warning(String message) {
+		if (source == null) {
+			throw new IllegalStateException("Warning at end of file: " + message);
+		}
+
+		logWarning(message);
+	}
+
+	private GlslMacro getMacro(String name) {
+		GlslMacro macro = macros.get(name);
+
+		if (macro != null) {
+			return macro == UNDEFINED ? null : macro;
+		}
+
+		macro = environment.get(name);
+
+		if (macro != null) {
+			return macro;
+		}
+
+		return switch (name) {
+			case "__LINE__" -> LINE;
+			case "__FILE__" -> FILE;
+			case "__COUNTER__" -> COUNTER;
+			default -> null;
+		};
+	}
+
+	private boolean isDefined(String name) {
+		return getMacro(name) != null;
+	}
+
+	private State currentState() {
+		return states.get(states.size() - 1);
+	}
+
+	private void pushState() {
+		states.add(new State(currentState()));
+	}
+
+	private void popState() {
+		State state = states.remove(states.size() - 1);
+
+		if (states.isEmpty()) {
+			error("#endif without #if");
+			states.add(state);
+		}
+	}
+
+	private boolean isActive() {
+		State state = currentState();
+		return state.parentActive && state.active;
+	}
+
+	private void pushSource(Source source, boolean autopop) {
+		source.parent = this.source;
+		source.autopop = autopop;
+		this.source = source;
+	}
+
+	private void popSource() {
+		source = source.parent;
+	}
+
+	private GlslToken sourceToken() {
+		if (sourceToken != null) {
+			GlslToken token = sourceToken;
+			sourceToken = null;
+			return token;
+		}
+
+		while (source != null) {
+			GlslToken token = source.token();
+
+			if (token.type != GlslToken.EOF || !source.autopop) {
+				return token;
+			}
+
+			popSource();
+		}
+
+		return EOF;
+	}
+
+	private void sourceUntoken(GlslToken token) {
+		if (sourceToken != null) {
+			throw new IllegalStateException("Cannot return two tokens");
+		}
+
+		sourceToken = token;
+	}
+
+	private GlslToken sourceTokenNonwhite() {
+		GlslToken token;
+
+		do {
+			token = sourceToken();
+		} while (token.isWhite());
+
+		return token;
+	}
+
+	private GlslToken sourceSkipline(boolean white) {
+		if (source == null) {
+			throw new IllegalStateException("No source left to skip a line of");
+		}
+
+		return source.skipline(white);
+	}
+
+	private boolean macro(GlslMacro macro, GlslToken orig) {
+		List<Argument> args = null;
+
+		if (macro.isFunctionLike()) {
+			GlslToken token;
+
+			open:
+			while (true) {
+				token = sourceToken();
+
+				switch (token.type) {
+					case GlslToken.CCOMMENT, GlslToken.CPPCOMMENT, GlslToken.NL, GlslToken.WHITESPACE -> {
+					}
+					case '(' -> {
+						break open;
+					}
+					default -> {
+						sourceUntoken(token);
+						return false;
+					}
+				}
+			}
+
+			token = sourceTokenNonwhite();
+
+			if (token.type != ')' || !macro.parameters.isEmpty()) {
+				args = new ArrayList<>();
+				Argument arg = new Argument();
+				int depth = 0;
+				boolean space = false;
+
+				collect:
+				while (true) {
+					switch (token.type) {
+						case GlslToken.EOF -> {
+							error("EOF in macro args");
+							return false;
+						}
+						case ',' -> {
+							if (depth == 0) {
+								if (macro.variadic && args.size() == macro.parameters.size() - 1) {
+									arg.tokens.add(token);
+								} else {
+									args.add(arg);
+									arg = new Argument();
+								}
+							} else {
+								arg.tokens.add(token);
+							}
+
+							space = false;
+						}
+						case ')' -> {
+							if (depth == 0) {
+								args.add(arg);
+								break collect;
+							}
+
+							depth--;
+							arg.tokens.add(token);
+							space = false;
+						}
+						case '(' -> {
+							depth++;
+							arg.tokens.add(token);
+							space = false;
+						}
+						case GlslToken.CCOMMENT, GlslToken.CPPCOMMENT, GlslToken.NL, GlslToken.WHITESPACE -> space = true;
+						default -> {
+							if (space && !arg.tokens.isEmpty()) {
+								arg.tokens.add(GlslToken.SPACE);
+							}
+
+							arg.tokens.add(token);
+							space = false;
+						}
+					}
+
+					token = sourceToken();
+				}
+
+				int parameters = macro.parameters.size();
+
+				if (args.size() != parameters) {
+					if (macro.variadic && args.size() == parameters - 1) {
+						args.add(new Argument());
+					} else if (macro.variadic) {
+						error("variadic macro " + macro.name + " has at least " + (parameters - 1) + " parameters but given " + args.size() + " args");
+						return false;
+					} else {
+						error("macro " + macro.name + " has " + parameters + " parameters but given " + args.size() + " args");
+						return false;
+					}
+				}
+
+				for (Argument a : args) {
+					if (a.expansion == null) {
+						a.expansion = expand(a.tokens);
+					}
+				}
+			}
+		}
+
+		if (macro == LINE) {
+			String line = Integer.toString(orig.line);
+			pushSource(new FixedSource(List.of(new GlslToken(GlslToken.NUMBER, orig.line, line,
+				new GlslToken.NumericValue(10, line, 0, null)))), true);
+		} else if (macro == FILE) {
+			// The main source has no name, so this is what JCPP produces
+			String text = "\"<no file>\"";
+			pushSource(new FixedSource(List.of(new GlslToken(GlslToken.STRING, orig.line, text, text))), true);
+		} else if (macro == COUNTER) {
+			String value = Integer.toString(counter++);
+			pushSource(new FixedSource(List.of(new GlslToken(GlslToken.NUMBER, orig.line, value,
+				new GlslToken.NumericValue(10, value, 0, null)))), true);
+		} else {
+			pushSource(new MacroSource(macro, args), true);
+		}
+
+		return true;
+	}
+
+	private List<GlslToken> expand(List<GlslToken> arg) {
+		List<GlslToken> expansion = new ArrayList<>();
+		boolean space = false;
+
+		pushSource(new FixedSource(arg), false);
+
+		while (true) {
+			GlslToken token = expandedToken();
+
+			if (token.type == GlslToken.EOF) {
+				break;
+			} else if (token.isWhite()) {
+				space = true;
+			} else {
+				if (space && !expansion.isEmpty()) {
+					expansion.add(GlslToken.SPACE);
+				}
+
+				expansion.add(token);
+				space = false;
+			}
+		}
+
+		popSource();
+
+		return expansion;
+	}
+
+	private GlslToken define() {
+		GlslToken token = sourceTokenNonwhite();
+
+		if (token.type != GlslToken.IDENTIFIER) {
+			error("Expected identifier");
+			return sourceSkipline(false);
+		}
+
+		String name = token.text;
+
+		if ("defined".equals(name)) {
+			error("Cannot redefine name 'defined'");
+			return sourceSkipline(false);
+		}
+
+		GlslMacro macro = new GlslMacro(name);
+		List<String> parameters = Collections.emptyList();
+		token = sourceToken();
+
+		if (token.type == '(') {
+			token = sourceTokenNonwhite();
+
+			if (token.type != ')') {
+				parameters = new ArrayList<>();
+
+				params:
+				while (true) {
+					switch (token.type) {
+						case GlslToken.IDENTIFIER -> parameters.add(token.text);
+						case GlslToken.ELLIPSIS -> {
+							parameters.add("__VA_ARGS__");
+							sourceUntoken(token);
+						}
+						case GlslToken.EOF, GlslToken.NL -> {
+							error("Unterminated macro parameter list");
+							return token;
+						}
+						default -> {
+							error("error in macro parameters: " + token.text);
+							return sourceSkipline(false);
+						}
+					}
+
+					token = sourceTokenNonwhite();
+
+					switch (token.type) {
+						case ',' -> {
+						}
+						case GlslToken.ELLIPSIS -> {
+							token = sourceTokenNonwhite();
+
+							if (token.type != ')') {
+								error("ellipsis must be on last argument");
+							}
+
+							macro.variadic = true;
+							break params;
+						}
+						case ')' -> {
+							break params;
+						}
+						case GlslToken.EOF, GlslToken.NL -> {
+							error("Unterminated macro parameters");
+							return token;
+						}
+						default -> {
+							error("Bad token in macro parameters: " + token.text);
+							return sourceSkipline(false);
+						}
+					}
+
+					token = sourceTokenNonwhite();
+				}
+			}
+
+			macro.parameters = parameters;
+		} else {
+			sourceUntoken(token);
+		}
+
+		boolean space = false;
+		boolean paste = false;
+		token = sourceTokenNonwhite();
+
+		while (token.type != GlslToken.EOF && token.type != GlslToken.NL) {
+			switch (token.type) {
+				case GlslToken.CCOMMENT, GlslToken.CPPCOMMENT, GlslToken.WHITESPACE -> {
+					if (!paste) {
+						space = true;
+					}
+				}
+				case GlslToken.PASTE -> {
+					space = false;
+					paste = true;
+					macro.addPaste(new GlslToken(GlslToken.M_PASTE, token.line, "##"));
+				}
+				case '#' -> {
+					if (space) {
+						macro.tokens.add(GlslToken.SPACE);
+					}
+
+					space = false;
+					GlslToken next = sourceTokenNonwhite();
+					int index;
+
+					if (next.type == GlslToken.IDENTIFIER && (index = parameters.indexOf(next.text)) != -1) {
+						macro.tokens.add(new GlslToken(GlslToken.M_STRING, next.line, "#" + next.text, index));
+					} else {
+						macro.tokens.add(token);
+						sourceUntoken(next);
+					}
+				}
+				case GlslToken.IDENTIFIER -> {
+					if (space) {
+						macro.tokens.add(GlslToken.SPACE);
+					}
+
+					space = false;
+					paste = false;
+					int index = parameters.indexOf(token.text);
+
+					if (index == -1) {
+						macro.tokens.add(token);
+					} else {
+						macro.tokens.add(new GlslToken(GlslToken.M_ARG, token.line, token.text, index));
+					}
+				}
+				default -> {
+					if (space) {
+						macro.tokens.add(GlslToken.SPACE);
+					}
+
+					space = false;
+					paste = false;
+					macro.tokens.add(token);
+				}
+			}
+
+			token = sourceToken();
+		}
+
+		macros.put(name, macro);
+
+		return token;
+	}
+
+	private GlslToken undef() {
+		GlslToken token = sourceTokenNonwhite();
+
+		if (token.type != GlslToken.IDENTIFIER) {
+			error("Expected identifier, not " + token.text);
+
+			if (token.type == GlslToken.NL || token.type == GlslToken.EOF) {
+				return token;
+			}
+		} else if (isDefined(token.text)) {
+			macros.put(token.text, UNDEFINED);
+		}
+
+		return sourceSkipline(true);
+	}
+
+	private GlslToken pragma() {
+		GlslToken name;
+		GlslToken token;
+
+		while (true) {
+			token = sourceToken();
+
+			if (token.type == GlslToken.EOF) {
+				warning("End of file in #pragma");
+				return token;
+			} else if (token.type == GlslToken.NL) {
+				warning("Empty #pragma");
+				return token;
+			} else if (token.type == GlslToken.IDENTIFIER) {
+				name = token;
+				break;
+			} else if (!token.isWhite()) {
+				warning("Illegal #pragma " + token.text);
+				return sourceSkipline(false);
+			}
+		}
+
+		do {
+			token = sourceToken();
+		} while (token.type != GlslToken.EOF && token.type != GlslToken.NL);
+
+		if (token.type == GlslToken.EOF) {
+			warning("End of file in #pragma");
+		}
+
+		// Pragmas are not passed on, as JCPP doesn't know any of them
+		warning("Unknown #pragma: " + name.text);
+
+		return token;
+	}
+
+	/**
+	 * Reads the rest of a #warning or #error directive, or of a #version or #extension directive, which are added to
+	 * the metadata instead.
+	 */
+	private void message(String prefix, GlslToken first, String directive) {
+		StringBuilder builder = new StringBuilder(prefix);
+		GlslToken token = first;
+
+		while (token.type != GlslToken.EOF && token.type != GlslToken.NL) {
+			builder.append(token.text);
+			token = sourceToken();
+		}
+
+		if (directive == null) {
+			warning(builder.toString());
+		} else if (directive.equals("error")) {
+			error(builder.toString());
+		} else {
+			metadata.append(builder).append('\n');
+		}
+	}
+
+	private GlslToken expandedToken() {
+		while (true) {
+			GlslToken token = sourceToken();
+
+			if (token.type != GlslToken.IDENTIFIER) {
+				return token;
+			}
+
+			GlslMacro macro = getMacro(token.text);
+
+			if (macro == null || source.isExpanding(macro) || !macro(macro, token)) {
+				return token;
+			}
+		}
+	}
+
+	private GlslToken expandedTokenNonwhite() {
+		GlslToken token;
+
+		do {
+			token = expandedToken();
+		} while (token.isWhite());
+
+		return token;
+	}
+
+	private GlslToken exprToken() {
+		GlslToken token = exprToken;
+
+		if (token != null) {
+			exprToken = null;
+			return token;
+		}
+
+		token = expandedTokenNonwhite();
+
+		if (token.type == GlslToken.IDENTIFIER && token.text.equals("defined")) {
+			GlslToken name = sourceTokenNonwhite();
+			boolean paren = false;
+
+			if (name.type == '(') {
+				paren = true;
+				name = sourceTokenNonwhite();
+			}
+
+			boolean defined;
+
+			if (name.type != GlslToken.IDENTIFIER) {
+				error("defined() needs identifier, not " + name.text);
+				defined = false;
+			} else {
+				defined = isDefined(name.text);
+			}
+
+			token = new GlslToken(GlslToken.NUMBER, name.line, defined ? "1" : "0",
+				defined ? GlslToken.NumericValue.ONE : GlslToken.NumericValue.ZERO);
+
+			if (paren && (name = sourceTokenNonwhite()).type != ')') {
+				exprUntoken(name);
+				error("Missing ) in defined(). Got " + name.text);
+			}
+		}
+
+		return token;
+	}
+
+	private void exprUntoken(GlslToken token) {
+		if (exprToken != null) {
+			throw new IllegalStateException("Cannot unget two expression tokens.");
+		}
+
+		exprToken = token;
+	}
+
+	private static int exprPriority(GlslToken op) {
+		return switch (op.type) {
+			case '/', '%', '*' -> 11;
+			case '+', '-' -> 10;
+			case GlslToken.LSH, GlslToken.RSH -> 9;
+			case '<', '>', GlslToken.LE, GlslToken.GE -> 8;
+			case GlslToken.EQ, GlslToken.NE -> 7;
+			case '&' -> 6;
+			case '^' -> 5;
+			case '|' -> 4;
+			case GlslToken.LAND -> 3;
+			case GlslToken.LOR -> 2;
+			case '?' -> 1;
+			default -> 0;
+		};
+	}
+
+	private long expr(int priority) {
+		GlslToken token = exprToken();
+		long lhs;
+
+		switch (token.type) {
+			case '(' -> {
+				lhs = expr(0);
+				token = exprToken();
+
+				if (token.type != ')') {
+					exprUntoken(token);
+					error("Missing ) in expression. Got " + token.text);
+					return 0L;
+				}
+			}
+			case '~' -> lhs = ~expr(11);
+			case '!' -> lhs = expr(11) == 0L ? 1L : 0L;
+			case '-' -> lhs = -expr(11);
+			case GlslToken.NUMBER -> lhs = ((GlslToken.NumericValue) token.value).longValue();
+			case GlslToken.CHARACTER -> {
+				String value = String.valueOf(token.value);
+				lhs = value.isEmpty() ? 0 : value.charAt(0);
+			}
+			// Undefined identifiers are 0
+			case GlslToken.IDENTIFIER -> lhs = 0L;
+			default -> {
+				exprUntoken(token);
+				error("Bad token in expression: " + token.text);
+				return 0L;
+			}
+		}
+
+		while (true) {
+			GlslToken op = exprToken();
+			int pri = exprPriority(op);
+
+			if (pri == 0 || priority >= pri) {
+				exprUntoken(op);
+				return lhs;
+			}
+
+			long rhs = expr(pri);
+
+			switch (op.type) {
+				case '/' -> {
+					if (rhs == 0L) {
+						error("Division by zero");
+						lhs = 0L;
+					} else {
+						lhs /= rhs;
+					}
+				}
+				case '%' -> {
+					if (rhs == 0L) {
+						error("Modulus by zero");
+						lhs = 0L;
+					} else {
+						lhs %= rhs;
+					}
+				}
+				case '*' -> lhs *= rhs;
+				case '+' -> lhs += rhs;
+				case '-' -> lhs -= rhs;
+				case '<' -> lhs = lhs < rhs ? 1L : 0L;
+				case '>' -> lhs = lhs > rhs ? 1L : 0L;
+				case '&' -> lhs &= rhs;
+				case '^' -> lhs ^= rhs;
+				case '|' -> lhs |= rhs;
+				case GlslToken.LSH -> lhs <<= (int) rhs;
+				case GlslToken.RSH -> lhs >>= (int) rhs;
+				case GlslToken.LE -> lhs = lhs <= rhs ? 1L : 0L;
+				case GlslToken.GE -> lhs = lhs >= rhs ? 1L : 0L;
+				case GlslToken.EQ -> lhs = lhs == rhs ? 1L : 0L;
+				case GlslToken.NE -> lhs = lhs != rhs ? 1L : 0L;
+				case GlslToken.LAND -> lhs = lhs != 0L && rhs != 0L ? 1L : 0L;
+				case GlslToken.LOR -> lhs = lhs != 0L || rhs != 0L ? 1L : 0L;
+				case '?' -> {
+					token = exprToken();
+
+					if (token.type != ':') {
+						exprUntoken(token);
+						error("Missing : in conditional expression. Got " + token.text);
+						return 0L;
+					}
+
+					long falseResult = expr(0);
+					lhs = lhs != 0L ? rhs : falseResult;
+				}
+				default -> {
+					error("Unexpected operator " + op.text);
+					return 0L;
+				}
+			}
+		}
+	}
+
+	private static GlslToken toWhitespace(GlslToken token) {
+		String text = token.text;
+		boolean cr = false;
+		int newlines = 0;
+
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			switch (c) {
+				case '\r' -> {
+					cr = true;
+					newlines++;
+				}
+				case '\n' -> {
+					if (cr) {
+						cr = false;
+					} else {
+						newlines++;
+					}
+				}
+				case '\u000b', '\f', '\u0085', '\u2028', '\u2029' -> {
+					cr = false;
+					newlines++;
+				}
+				default -> {
+				}
+			}
+		}
+
+		return new GlslToken(GlslToken.WHITESPACE, token.line, ProgramSource.newlines(newlines));
+	}
+
+	private GlslToken token() {
+		while (true) {
+			GlslToken token;
+
+			if (!isActive()) {
+				if (source == null) {
+					return EOF;
+				}
+
+				token = sourceToken();
+
+				switch (token.type) {
+					case GlslToken.EOF, GlslToken.HASH, GlslToken.NL -> {
+					}
+					case GlslToken.WHITESPACE -> {
+						return token;
+					}
+					case GlslToken.CCOMMENT, GlslToken.CPPCOMMENT -> {
+						return toWhitespace(token);
+					}
+					default -> {
+						return sourceSkipline(false);
+					}
+				}
+			} else {
+				token = sourceToken();
+			}
+
+			switch (token.type) {
+				case GlslToken.IDENTIFIER -> {
+					GlslMacro macro = getMacro(token.text);
+
+					if (macro == null || source.isExpanding(macro) || !macro(macro, token)) {
+						return token;
+					}
+				}
+				case GlslToken.HASH -> {
+					GlslToken result = directive(token);
+
+					if (result != null) {
+						return result;
+					}
+				}
+				case GlslToken.EOF, GlslToken.NL, GlslToken.WHITESPACE, GlslToken.CCOMMENT, GlslToken.CPPCOMMENT,
+					 GlslToken.NUMBER, GlslToken.INVALID,
+					 '!', '%', '&', '(', ')', '*', '+', ',', '-', '.', '/', ':', ';', '<', '=', '>', '?', '@', '[', ']',
+					 '^', '`', '{', '|', '}', '~',
+					 GlslToken.AND_EQ, GlslToken.ARROW, GlslToken.CHARACTER, GlslToken.DEC, GlslToken.DIV_EQ,
+					 GlslToken.ELLIPSIS, GlslToken.EQ, GlslToken.GE, GlslToken.INC, GlslToken.LAND, GlslToken.LE,
+					 GlslToken.LOR, GlslToken.LSH, GlslToken.LSH_EQ, GlslToken.MOD_EQ, GlslToken.MULT_EQ, GlslToken.NE,
+					 GlslToken.OR_EQ, GlslToken.PLUS_EQ, GlslToken.RANGE, GlslToken.RSH, GlslToken.RSH_EQ,
+					 GlslToken.SQSTRING, GlslToken.STRING, GlslToken.SUB_EQ, GlslToken.XOR_EQ -> {
+					return token;
+				}
+				default -> throw new IllegalStateException("Bad token " + token);
+			}
+		}
+	}
+
+	/**
+	 * Evaluates a directive. Returns the token to output in its place, or null if nothing is output.
+	 */
+	private GlslToken directive(GlslToken hash) {
+		GlslToken token = sourceTokenNonwhite();
+
+		if (token.type == GlslToken.NL) {
+			return null;
+		} else if (token.type != GlslToken.IDENTIFIER) {
+			error("Preprocessor directive not a word " + token.text);
+			return sourceSkipline(false);
+		}
+
+		if (hash.value != null) {
+			// #version and #extension directives are collected when active, and never output
+			if (!isActive()) {
+				return sourceSkipline(false);
+			}
+
+			String directive = (String) hash.value;
+			message("#" + directive + " " + token.text.substring(directive.length()), sourceToken(), directive);
+			return null;
+		}
+
+		switch (token.text) {
+			case "define" -> {
+				return isActive() ? define() : sourceSkipline(false);
+			}
+			case "undef" -> {
+				return isActive() ? undef() : sourceSkipline(false);
+			}
+			case "include" -> {
+				if (isActive()) {
+					// Includes are already resolved by the include processor, so whatever is left can't be found
+					error("File not found: " + token.text);
+				}
+
+				return sourceSkipline(false);
+			}
+			case "include_next" -> {
+				if (isActive()) {
+					error("Directive include_next not enabled");
+				}
+
+				return sourceSkipline(false);
+			}
+			case "warning", "error" -> {
+				if (!isActive()) {
+					return sourceSkipline(false);
+				}
+
+				message("#" + token.text + " ", sourceTokenNonwhite(), token.text.equals("error") ? "error" : null);
+				return null;
+			}
+			case "if" -> {
+				pushState();
+
+				if (!isActive()) {
+					return sourceSkipline(false);
+				}
+
+				exprToken = null;
+				currentState().active = expr(0) != 0L;
+				token = exprToken();
+
+				return token.type == GlslToken.NL ? token : sourceSkipline(true);
+			}
+			case "elif" -> {
+				State state = currentState();
+
+				if (state.sawElse) {
+					error("#elif after #else");
+					return sourceSkipline(false);
+				} else if (!state.parentActive) {
+					return sourceSkipline(false);
+				} else if (state.active) {
+					state.parentActive = false;
+					state.active = false;
+					return sourceSkipline(false);
+				}
+
+				exprToken = null;
+				state.active = expr(0) != 0L;
+				token = exprToken();
+
+				return token.type == GlslToken.NL ? token : sourceSkipline(true);
+			}
+			case "else" -> {
+				State state = currentState();
+
+				if (state.sawElse) {
+					error("#else after #else");
+					return sourceSkipline(false);
+				}
+
+				state.sawElse = true;
+				state.active = !state.active;
+
+				return sourceSkipline(false);
+			}
+			case "ifdef", "ifndef" -> {
+				String directive = token.text;
+				pushState();
+
+				if (!isActive()) {
+					return sourceSkipline(false);
+				}
+
+				token = sourceTokenNonwhite();
+
+				if (token.type != GlslToken.IDENTIFIER) {
+					error("Expected identifier, not " + token.text);
+					return sourceSkipline(false);
+				}
+
+				currentState().active = isDefined(token.text) == directive.equals("ifdef");
+				return sourceSkipline(true);
+			}
+			case "endif" -> {
+				popState();
+				return sourceSkipline(false);
+			}
+			case "line" -> {
+				return sourceSkipline(false);
+			}
+			case "pragma" -> {
+				return isActive() ? pragma() : sourceSkipline(false);
+			}
+			case "import" -> throw new IllegalStateException("Internal error: Unknown directive " + token);
+			default -> {
+				error("Unknown preprocessor directive " + token.text);
+				return sourceSkipline(false);
+			}
+		}
+	}
+
+	private static final class State {
+		boolean parentActive;
+		boolean active;
+		boolean sawElse;
+
+		State() {
+			this.parentActive = true;
+			this.active = true;
+		}
+
+		State(State parent) {
+			this.parentActive = parent.parentActive && parent.active;
+			this.active = true;
+		}
+	}
+
+	private static final class Argument {
+		final List<GlslToken> tokens = new ArrayList<>();
+		List<GlslToken> expansion;
+	}
+
+	/**
+	 * A source of tokens. Sources are stacked while macros are expanded, and removed again once they run out.
+	 */
+	abstract static class Source {
+		private Source parent;
+		private boolean autopop;
+
+		abstract GlslToken token();
+
+		boolean isExpanding(GlslMacro macro) {
+			return parent != null && parent.isExpanding(macro);
+		}
+
+		GlslToken skipline(boolean white) {
+			while (true) {
+				GlslToken token = token();
+
+				if (token.type == GlslToken.EOF) {
+					logWarning("No newline before end of file");
+					return new GlslToken(GlslToken.NL, token.line, "\n");
+				} else if (token.type == GlslToken.NL) {
+					return token;
+				} else if (white && !token.isWhite()) {
+					logWarning("Unexpected nonwhite token");
+				}
+			}
+		}
+	}
+
+	/**
+	 * The tokens of a program, made up of ranges of the token arrays of the files that it includes.
+	 */
+	static final class ProgramSource extends Source {
+		private static final String[] NEWLINES = new String[64];
+
+		static {
+			for (int i = 0; i < NEWLINES.length; i++) {
+				NEWLINES[i] = "\n".repeat(i);
+			}
+		}
+
+		private final List<Segment> segments;
+		private int segment;
+		private int index;
+
+		ProgramSource(List<Segment> segments) {
+			this.segments = segments;
+			this.index = segments.isEmpty() ? 0 : segments.get(0).from();
+		}
+
+		static String newlines(int count) {
+			return count < NEWLINES.length ? NEWLINES[count] : "\n".repeat(count);
+		}
+
+		private GlslToken next() {
+			while (segment < segments.size()) {
+				Segment current = segments.get(segment);
+
+				if (index < current.to()) {
+					GlslToken token = current.tokens()[index++];
+
+					// Only the line of __LINE__ is ever used, and only these tokens keep it, see GlslLexer
+					return token.line < 0 || current.lineDelta() == 0 ? token : token.relocate(current.lineDelta());
+				}
+
+				if (++segment < segments.size()) {
+					index = segments.get(segment).from();
+				}
+			}
+
+			return null;
+		}
+
+		private GlslToken peek() {
+			int peekSegment = segment;
+			int peekIndex = index;
+
+			while (peekSegment < segments.size()) {
+				Segment current = segments.get(peekSegment);
+
+				if (peekIndex < current.to()) {
+					return current.tokens()[peekIndex];
+				}
+
+				if (++peekSegment < segments.size()) {
+					peekIndex = segments.get(peekSegment).from();
+				}
+			}
+
+			return null;
+		}
+
+		@Override
+		GlslToken token() {
+			GlslToken token = next();
+
+			if (token == null) {
+				return EOF;
+			} else if (token.type != GlslToken.NL) {
+				return token;
+			}
+
+			// Consecutive line breaks are a single token, as in JCPP
+			int count = 1;
+			GlslToken following;
+
+			while ((following = peek()) != null && following.type == GlslToken.NL) {
+				next();
+				count++;
+			}
+
+			return count == 1 ? token : new GlslToken(GlslToken.NL, token.line, newlines(count));
+		}
+	}
+
+	/**
+	 * The tokens from index from up to to of a token array, which come from lines with their line numbers offset by
+	 * lineDelta in the program.
+	 */
+	record Segment(GlslToken[] tokens, int from, int to, int lineDelta) {
+	}
+
+	private static final class FixedSource extends Source {
+		private static final GlslToken END = new GlslToken(GlslToken.EOF, -1, "<ts-eof>");
+
+		private final List<GlslToken> tokens;
+		private int index;
+
+		FixedSource(List<GlslToken> tokens) {
+			this.tokens = tokens;
+		}
+
+		@Override
+		GlslToken token() {
+			return index < tokens.size() ? tokens.get(index++) : END;
+		}
+	}
+
+	private static final class MacroSource extends Source {
+		private static final GlslToken END = new GlslToken(GlslToken.EOF, -1, "");
+
+		private final GlslMacro macro;
+		private final List<Argument> args;
+		private int index;
+		private List<GlslToken> arg;
+		private int argIndex;
+		private GlslLexer pasted;
+
+		MacroSource(GlslMacro macro, List<Argument> args) {
+			this.macro = macro;
+			this.args = args;
+		}
+
+		private static void concat(StringBuilder builder, Argument arg) {
+			for (GlslToken token : arg.tokens) {
+				builder.append(token.text);
+			}
+		}
+
+		private static GlslToken stringify(GlslToken position, Argument arg) {
+			StringBuilder builder = new StringBuilder();
+			concat(builder, arg);
+
+			StringBuilder text = new StringBuilder("\"");
+
+			for (int i = 0; i < builder.length(); i++) {
+				char c = builder.charAt(i);
+
+				switch (c) {
+					case '\\' -> text.append("\\\\");
+					case '"' -> text.append("\\\"");
+					case '\n' -> text.append("\\n");
+					case '\r' -> text.append("\\r");
+					default -> text.append(c);
+				}
+			}
+
+			text.append('"');
+
+			return new GlslToken(GlslToken.STRING, position.line, text.toString(), builder.toString());
+		}
+
+		@Override
+		boolean isExpanding(GlslMacro macro) {
+			return this.macro == macro || super.isExpanding(macro);
+		}
+
+		private void paste(GlslToken operator) {
+			StringBuilder builder = new StringBuilder();
+			int count = 2;
+			boolean comma = false;
+
+			for (int i = 0; i < count; i++) {
+				if (index >= macro.tokens.size()) {
+					logError("Paste at end of expansion");
+					builder.append(' ').append(operator.text);
+					break;
+				}
+
+				GlslToken token = macro.tokens.get(index++);
+
+				switch (token.type) {
+					case GlslToken.M_PASTE -> {
+						count += 2;
+						operator = token;
+					}
+					case GlslToken.M_ARG -> {
+						int argIndex = (Integer) token.value;
+						Argument arg = args.get(argIndex);
+
+						if (comma && macro.variadic && argIndex == args.size() - 1 && arg.tokens.isEmpty()) {
+							builder.setLength(builder.length() - 1);
+						} else {
+							concat(builder, arg);
+						}
+					}
+					case GlslToken.CCOMMENT, GlslToken.CPPCOMMENT -> {
+					}
+					case ',' -> {
+						comma = true;
+						builder.append(token.text);
+						continue;
+					}
+					default -> builder.append(token.text);
+				}
+
+				comma = false;
+			}
+
+			pasted = new GlslLexer(builder.toString(), false);
+		}
+
+		@Override
+		GlslToken token() {
+			while (true) {
+				if (arg != null) {
+					if (argIndex < arg.size()) {
+						return arg.get(argIndex++);
+					}
+
+					arg = null;
+				}
+
+				if (pasted != null) {
+					GlslToken token = pasted.token();
+
+					if (token.type != GlslToken.EOF) {
+						return token;
+					}
+
+					pasted = null;
+				}
+
+				if (index >= macro.tokens.size()) {
+					return END;
+				}
+
+				GlslToken token = macro.tokens.get(index++);
+
+				switch (token.type) {
+					case GlslToken.M_STRING -> {
+						return stringify(token, args.get((Integer) token.value));
+					}
+					case GlslToken.M_ARG -> {
+						arg = args.get((Integer) token.value).expansion;
+						argIndex = 0;
+					}
+					case GlslToken.M_PASTE -> paste(token);
+					default -> {
+						return token;
+					}
+				}
+			}
+		}
+	}
+}
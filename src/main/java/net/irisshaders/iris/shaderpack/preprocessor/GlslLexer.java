@@ -0,0 +1,905 @@
+package net.irisshaders.iris.shaderpack.preprocessor;
+
+import net.irisshaders.iris.Iris;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Splits GLSL source into {@link GlslToken}s, following the rules of JCPP's lexer so that the output of the
+ * preprocessor stays the same as it was when JCPP was used. Backslash-newline sequences are joined the same way, with
+ * the removed newlines emitted after the next line break.
+ * <p>
+ * Program source is lexed with preprocessor directives enabled. Null characters are skipped, and a # at the start of
+ * a line that is directly followed by "version" or "extension" is marked so that the preprocessor can collect these
+ * directives. Macro values and pasted tokens are lexed with directives disabled, and any warning is an error there.
+ */
+final class GlslLexer {
+	private static final String VERSION_DIRECTIVE = "#version";
+	private static final String EXTENSION_DIRECTIVE = "#extension";
+
+	private final String text;
+	private final boolean program;
+
+	// The raw text that is read, in both cases the index of the character is tracked as well
+	private int position;
+	private int pending = -1;
+	private int pendingIndex;
+	private int plainIndex;
+
+	// Lines that are joined by a backslash are counted here and emitted after the next line break
+	private int joinedNewlines;
+	private boolean flushNewlines;
+	private int plainNewlineEnd;
+	private int readIndex;
+
+	private int unread0;
+	private int unread0Index;
+	private int unread1;
+	private int unread1Index;
+	private int unreadCount;
+
+	private boolean bol = true;
+	private boolean cr;
+	private int line = 1;
+	private int tokenLine;
+
+	GlslLexer(String text, boolean program) {
+		this.text = text;
+		this.program = program;
+	}
+
+	/**
+	 * Tokenizes the given lines of a file, each followed by a line break. The token index at which every line starts
+	 * is stored in lineStarts, which needs to be one longer than the list of lines. Lines that don't start at a token
+	 * boundary with nothing carried over from the line before, for example because the line before ends with a
+	 * backslash or opens a comment, are marked with -1. The tokens of a range of lines that starts and ends at a clean
+	 * boundary are the same as the tokens that lexing the whole program produces for these lines.
+	 * <p>
+	 * As these tokens are kept for as long as the file might be included again, tokens with the same text are shared
+	 * and only __LINE__ keeps its line number, which is not used for anything else.
+	 */
+	static GlslToken[] tokenizeLines(List<String> lines, int[] lineStarts) {
+		int[] lineOffsets = new int[lines.size() + 1];
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < lines.size(); i++) {
+			lineOffsets[i] = builder.length();
+			builder.append(lines.get(i)).append('\n');
+		}
+
+		lineOffsets[lines.size()] = builder.length();
+		Arrays.fill(lineStarts, -1);
+
+		GlslLexer lexer = new GlslLexer(builder.toString(), true);
+		List<GlslToken> tokens = new ArrayList<>();
+		Map<String, GlslToken> shared = new HashMap<>();
+		int nextLine = 0;
+
+		while (true) {
+			while (nextLine < lineOffsets.length && lineOffsets[nextLine] < lexer.position) {
+				nextLine++;
+			}
+
+			if (nextLine < lineOffsets.length && lineOffsets[nextLine] == lexer.position && lexer.isClean()) {
+				lineStarts[nextLine++] = tokens.size();
+			}
+
+			GlslToken token = lexer.token();
+
+			if (token.type == GlslToken.EOF) {
+				break;
+			}
+
+			tokens.add(share(shared, token));
+		}
+
+		return tokens.toArray(GlslToken[]::new);
+	}
+
+	private static GlslToken share(Map<String, GlslToken> shared, GlslToken token) {
+		switch (token.type) {
+			case GlslToken.HASH, GlslToken.INVALID, GlslToken.CCOMMENT, GlslToken.CPPCOMMENT -> {
+				return new GlslToken(token.type, -1, token.text, token.value);
+			}
+			case GlslToken.IDENTIFIER -> {
+				if (token.text.equals("__LINE__")) {
+					return token;
+				}
+			}
+			default -> {
+			}
+		}
+
+		GlslToken existing = shared.get(token.text);
+
+		if (existing == null) {
+			existing = new GlslToken(token.type, -1, token.text, token.value);
+			shared.put(token.text, existing);
+		} else if (existing.type != token.type || !Objects.equals(existing.value, token.value)) {
+			return new GlslToken(token.type, -1, token.text, token.value);
+		}
+
+		return existing;
+	}
+
+	/**
+	 * Tokenizes a whole string, for example the value of a macro.
+	 */
+	static List<GlslToken> tokenize(String text, boolean program) {
+		GlslLexer lexer = new GlslLexer(text, program);
+		List<GlslToken> tokens = new ArrayList<>();
+
+		for (GlslToken token = lexer.token(); token.type != GlslToken.EOF; token = lexer.token()) {
+			tokens.add(token);
+		}
+
+		return tokens;
+	}
+
+	private static boolean isLineSeparator(int c) {
+		return switch (c) {
+			case '\n', '\u000b', '\f', '\r', '\u0085', '\u2028', '\u2029', -1 -> true;
+			default -> false;
+		};
+	}
+
+	private boolean isClean() {
+		return bol && !cr && unreadCount == 0 && pending < 0 && joinedNewlines == 0 && plainNewlineEnd == position;
+	}
+
+	private void warning(String message) {
+		if (!program) {
+			throw new IllegalStateException("Warning at line " + line + ": " + message);
+		}
+
+		Iris.logger.debug("GLSL preprocessor warning at line " + line + ": " + message);
+	}
+
+	private int plainRead() {
+		if (pending >= 0) {
+			int c = pending;
+			plainIndex = pendingIndex;
+			pending = -1;
+			return c;
+		}
+
+		while (position < text.length()) {
+			plainIndex = position;
+			char c = text.charAt(position++);
+
+			// Some packs, such as Chocapic High Performance, have random null characters in their source.
+			if (c != '\u0000' || !program) {
+				return c;
+			}
+		}
+
+		return -1;
+	}
+
+	private void plainUnread(int c) {
+		if (c != -1) {
+			pending = c;
+			pendingIndex = plainIndex;
+		}
+	}
+
+	private int joinRead() {
+		if (flushNewlines) {
+			if (joinedNewlines > 0) {
+				joinedNewlines--;
+				readIndex = -1;
+				return '\n';
+			}
+
+			flushNewlines = false;
+		}
+
+		while (true) {
+			int c = plainRead();
+
+			switch (c) {
+				case '\\' -> {
+					int index = plainIndex;
+					int d = plainRead();
+
+					if (d == '\n') {
+						joinedNewlines++;
+						continue;
+					} else if (d == '\r') {
+						joinedNewlines++;
+						int e = plainRead();
+
+						if (e != '\n') {
+							plainUnread(e);
+						}
+
+						continue;
+					}
+
+					plainUnread(d);
+					readIndex = index;
+					return c;
+				}
+				case '\n', '\u000b', '\f', '\r', '\u0085', '\u2028', '\u2029' -> {
+					flushNewlines = true;
+					readIndex = plainIndex;
+
+					if (c == '\n') {
+						plainNewlineEnd = plainIndex + 1;
+					}
+
+					return c;
+				}
+				case -1 -> {
+					if (joinedNewlines > 0) {
+						joinedNewlines--;
+						readIndex = -1;
+						return '\n';
+					}
+
+					return c;
+				}
+				default -> {
+					readIndex = plainIndex;
+					return c;
+				}
+			}
+		}
+	}
+
+	private int read() {
+		int c;
+
+		if (unreadCount == 2) {
+			unreadCount = 1;
+			c = unread1;
+			readIndex = unread1Index;
+		} else if (unreadCount == 1) {
+			unreadCount = 0;
+			c = unread0;
+			readIndex = unread0Index;
+		} else {
+			c = joinRead();
+		}
+
+		switch (c) {
+			case '\r' -> {
+				cr = true;
+				line++;
+			}
+			case '\n' -> {
+				if (cr) {
+					cr = false;
+				} else {
+					line++;
+				}
+			}
+			case '\u000b', '\f', '\u0085', '\u2028', '\u2029' -> {
+				cr = false;
+				line++;
+			}
+			default -> cr = false;
+		}
+
+		return c;
+	}
+
+	private void unread(int c) {
+		if (c == -1) {
+			return;
+		}
+
+		if (isLineSeparator(c)) {
+			line--;
+			cr = false;
+		}
+
+		if (unreadCount == 0) {
+			unread0 = c;
+			unread0Index = readIndex;
+			unreadCount = 1;
+		} else if (unreadCount == 1) {
+			unread1 = c;
+			unread1Index = readIndex;
+			unreadCount = 2;
+		} else {
+			throw new IllegalStateException("Cannot unget another character!");
+		}
+	}
+
+	private GlslToken cCommentOrInvalid() {
+		StringBuilder builder = new StringBuilder("/*");
+
+		while (true) {
+			int d = read();
+
+			if (d == -1) {
+				return new GlslToken(GlslToken.INVALID, tokenLine, builder.toString(), "Unterminated comment");
+			}
+
+			builder.append((char) d);
+
+			if (d != '*') {
+				continue;
+			}
+
+			do {
+				d = read();
+
+				if (d == -1) {
+					return new GlslToken(GlslToken.INVALID, tokenLine, builder.toString(), "Unterminated comment");
+				}
+
+				builder.append((char) d);
+			} while (d == '*');
+
+			if (d == '/') {
+				return new GlslToken(GlslToken.CCOMMENT, tokenLine, builder.toString());
+			}
+		}
+	}
+
+	private GlslToken cppComment() {
+		StringBuilder builder = new StringBuilder("//");
+		int d = read();
+
+		while (!isLineSeparator(d)) {
+			builder.append((char) d);
+			d = read();
+		}
+
+		unread(d);
+
+		return new GlslToken(GlslToken.CPPCOMMENT, tokenLine, builder.toString());
+	}
+
+	private int escape(StringBuilder builder) {
+		int d = read();
+
+		switch (d) {
+			case 'a' -> {
+				builder.append('a');
+				return 7;
+			}
+			case 'b' -> {
+				builder.append('b');
+				return 8;
+			}
+			case 'f' -> {
+				builder.append('f');
+				return 12;
+			}
+			case 'n' -> {
+				builder.append('n');
+				return 10;
+			}
+			case 'r' -> {
+				builder.append('r');
+				return 13;
+			}
+			case 't' -> {
+				builder.append('t');
+				return 9;
+			}
+			case 'v' -> {
+				builder.append('v');
+				return 11;
+			}
+			case '\\' -> {
+				builder.append('\\');
+				return '\\';
+			}
+			case '0', '1', '2', '3', '4', '5', '6', '7' -> {
+				int length = 0;
+				int value = 0;
+
+				do {
+					value = (value << 3) + Character.digit(d, 8);
+					builder.append((char) d);
+					d = read();
+				} while (++length < 3 && Character.digit(d, 8) != -1);
+
+				unread(d);
+				return value;
+			}
+			case 'x' -> {
+				builder.append((char) d);
+				int length = 0;
+				int value = 0;
+
+				while (length++ < 2) {
+					d = read();
+
+					if (Character.digit(d, 16) == -1) {
+						unread(d);
+						break;
+					}
+
+					value = (value << 4) + Character.digit(d, 16);
+					builder.append((char) d);
+				}
+
+				return value;
+			}
+			case '"' -> {
+				builder.append('"');
+				return '"';
+			}
+			case '\'' -> {
+				builder.append('\'');
+				return '\'';
+			}
+			default -> {
+				warning("Unnecessary escape character " + (char) d);
+				builder.append((char) d);
+				return d;
+			}
+		}
+	}
+
+	private GlslToken string(char open, char close) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(open);
+		StringBuilder value = new StringBuilder();
+		int c;
+
+		while ((c = read()) != close) {
+			if (c == '\\') {
+				builder.append('\\');
+				value.append((char) escape(builder));
+				continue;
+			}
+
+			if (c == -1) {
+				return new GlslToken(GlslToken.INVALID, tokenLine, builder.toString(), "End of file in string literal after " + value);
+			}
+
+			if (isLineSeparator(c)) {
+				unread(c);
+				return new GlslToken(GlslToken.INVALID, tokenLine, builder.toString(), "Unterminated string literal after " + value);
+			}
+
+			builder.append((char) c);
+			value.append((char) c);
+		}
+
+		builder.append(close);
+
+		if (close == '"') {
+			return new GlslToken(GlslToken.STRING, tokenLine, builder.toString(), value.toString());
+		} else if (value.length() == 1) {
+			return new GlslToken(GlslToken.CHARACTER, tokenLine, builder.toString(), value.toString());
+		} else {
+			return new GlslToken(GlslToken.SQSTRING, tokenLine, builder.toString(), value.toString());
+		}
+	}
+
+	private GlslToken numberSuffix(StringBuilder builder, GlslToken.NumericValue value, int d) {
+		int flags = 0;
+
+		while (true) {
+			if (d == 'U' || d == 'u') {
+				if ((flags & 1) != 0) {
+					warning("Duplicate unsigned suffix " + d);
+				}
+
+				flags |= 1;
+				builder.append((char) d);
+				d = read();
+			} else if (d == 'L' || d == 'l') {
+				if ((flags & 0x3E) != 0) {
+					warning("Multiple length suffixes after " + builder);
+				}
+
+				builder.append((char) d);
+				int e = read();
+
+				if (e == d) {
+					flags |= 8;
+					builder.append((char) e);
+					d = read();
+				} else {
+					flags |= 4;
+					d = e;
+				}
+			} else if (d == 'I' || d == 'i' || d == 'F' || d == 'f' || d == 'D' || d == 'd') {
+				if ((flags & 0x3E) != 0) {
+					warning("Multiple length suffixes after " + builder);
+				}
+
+				flags |= (d == 'I' || d == 'i') ? 2 : (d == 'F' || d == 'f') ? 0x10 : 0x20;
+				builder.append((char) d);
+				d = read();
+			} else {
+				break;
+			}
+		}
+
+		if (Character.isUnicodeIdentifierPart(d)) {
+			String reason = "Invalid suffix \"" + (char) d + "\" on numeric constant";
+
+			while (Character.isUnicodeIdentifierPart(d)) {
+				builder.append((char) d);
+				d = read();
+			}
+
+			unread(d);
+			return new GlslToken(GlslToken.INVALID, tokenLine, builder.toString(), reason);
+		}
+
+		unread(d);
+		return new GlslToken(GlslToken.NUMBER, tokenLine, builder.toString(), value);
+	}
+
+	private String numberPart(StringBuilder builder, int base, boolean sign) {
+		StringBuilder part = new StringBuilder();
+		int d = read();
+
+		if (sign && (d == '+' || d == '-')) {
+			builder.append((char) d);
+			part.append((char) d);
+			d = read();
+		}
+
+		while (Character.digit(d, base) != -1) {
+			builder.append((char) d);
+			part.append((char) d);
+			d = read();
+		}
+
+		unread(d);
+		return part.toString();
+	}
+
+	private GlslToken hexNumber(char x) {
+		StringBuilder builder = new StringBuilder("0");
+		builder.append(x);
+		String integer = numberPart(builder, 16, false);
+		String exponent = null;
+		int d = read();
+
+		if (d == '.') {
+			builder.append((char) d);
+			numberPart(builder, 16, false);
+			d = read();
+		}
+
+		if (d == 'P' || d == 'p') {
+			builder.append((char) d);
+			exponent = numberPart(builder, 10, true);
+			d = read();
+		}
+
+		return numberSuffix(builder, new GlslToken.NumericValue(16, integer, exponent == null ? 0 : 2, exponent), d);
+	}
+
+	private static boolean isOctal(String text) {
+		if (!text.startsWith("0")) {
+			return false;
+		}
+
+		for (int i = 0; i < text.length(); i++) {
+			if (Character.digit(text.charAt(i), 8) == -1) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private GlslToken decimalNumber() {
+		StringBuilder builder = new StringBuilder();
+		String integer = numberPart(builder, 10, false);
+		String fraction = null;
+		String exponent = null;
+		int d = read();
+
+		if (d == '.') {
+			builder.append((char) d);
+			fraction = numberPart(builder, 10, false);
+			d = read();
+		}
+
+		if (d == 'E' || d == 'e') {
+			builder.append((char) d);
+			exponent = numberPart(builder, 10, true);
+			d = read();
+		}
+
+		int base = 10;
+
+		if (fraction == null && exponent == null && integer.startsWith("0")) {
+			if (!isOctal(integer)) {
+				warning("Decimal constant starts with 0, but not octal: " + integer);
+			} else {
+				base = 8;
+			}
+		}
+
+		return numberSuffix(builder, new GlslToken.NumericValue(base, integer, exponent == null ? 0 : 10, exponent), d);
+	}
+
+	private GlslToken number() {
+		int c = read();
+
+		if (c == '0') {
+			int d = read();
+
+			if (d == 'x' || d == 'X') {
+				return hexNumber((char) d);
+			}
+
+			unread(d);
+			unread(c);
+		} else {
+			unread(c);
+		}
+
+		return decimalNumber();
+	}
+
+	private GlslToken identifier(int c) {
+		StringBuilder builder = new StringBuilder();
+		builder.append((char) c);
+		int d;
+
+		while (true) {
+			d = read();
+
+			if (Character.isIdentifierIgnorable(d)) {
+				continue;
+			}
+
+			if (!Character.isJavaIdentifierPart(d)) {
+				break;
+			}
+
+			builder.append((char) d);
+		}
+
+		unread(d);
+		return new GlslToken(GlslToken.IDENTIFIER, tokenLine, builder.toString());
+	}
+
+	private GlslToken whitespace(int c) {
+		StringBuilder builder = new StringBuilder();
+		builder.append((char) c);
+		int d;
+
+		while (true) {
+			d = read();
+
+			if (program && isLineSeparator(d) || !Character.isWhitespace(d)) {
+				break;
+			}
+
+			builder.append((char) d);
+		}
+
+		unread(d);
+		return new GlslToken(GlslToken.WHITESPACE, tokenLine, builder.toString());
+	}
+
+	private int cond(char c, int yes, int no) {
+		int d = read();
+
+		if (c == d) {
+			return yes;
+		}
+
+		unread(d);
+		return no;
+	}
+
+	GlslToken token() {
+		int startLine = line;
+		tokenLine = startLine;
+		int c = read();
+		int type = -1;
+		GlslToken token = null;
+
+		switch (c) {
+			case '\n' -> {
+				if (program) {
+					// Unlike JCPP, every line break is a token of its own, so that included files can be split up at
+					// the start of every line. Runs of line breaks are merged again when tokens are read.
+					bol = true;
+					return new GlslToken(GlslToken.NL, startLine, "\n");
+				}
+			}
+			case '!' -> type = cond('=', GlslToken.NE, '!');
+			case '#' -> {
+				if (bol) {
+					type = GlslToken.HASH;
+
+					if (program && readIndex >= 0) {
+						if (text.startsWith(VERSION_DIRECTIVE, readIndex)) {
+							return hashToken(startLine, GlslToken.VERSION);
+						} else if (text.startsWith(EXTENSION_DIRECTIVE, readIndex)) {
+							return hashToken(startLine, GlslToken.EXTENSION);
+						}
+					}
+				} else {
+					type = cond('#', GlslToken.PASTE, '#');
+				}
+			}
+			case '+' -> {
+				int d = read();
+
+				if (d == '+') {
+					type = GlslToken.INC;
+				} else if (d == '=') {
+					type = GlslToken.PLUS_EQ;
+				} else {
+					unread(d);
+				}
+			}
+			case '-' -> {
+				int d = read();
+
+				if (d == '-') {
+					type = GlslToken.DEC;
+				} else if (d == '=') {
+					type = GlslToken.SUB_EQ;
+				} else if (d == '>') {
+					type = GlslToken.ARROW;
+				} else {
+					unread(d);
+				}
+			}
+			case '*' -> type = cond('=', GlslToken.MULT_EQ, '*');
+			case '/' -> {
+				int d = read();
+
+				if (d == '*') {
+					token = cCommentOrInvalid();
+				} else if (d == '/') {
+					token = cppComment();
+				} else if (d == '=') {
+					type = GlslToken.DIV_EQ;
+				} else {
+					unread(d);
+				}
+			}
+			case '%' -> {
+				int d = read();
+
+				if (d == '=') {
+					type = GlslToken.MOD_EQ;
+				} else if (!program && d == '>') {
+					type = '}';
+				} else if (!program && d == ':') {
+					d = read();
+
+					if (d != '%') {
+						unread(d);
+						type = '#';
+					} else {
+						d = read();
+
+						if (d != ':') {
+							unread(d);
+							unread('%');
+							type = '#';
+						} else {
+							type = GlslToken.PASTE;
+						}
+					}
+				} else {
+					unread(d);
+				}
+			}
+			case ':' -> {
+				int d = read();
+
+				if (!program && d == '>') {
+					type = ']';
+				} else {
+					unread(d);
+				}
+			}
+			case '<' -> {
+				int d = read();
+
+				if (d == '=') {
+					type = GlslToken.LE;
+				} else if (d == '<') {
+					type = cond('=', GlslToken.LSH_EQ, GlslToken.LSH);
+				} else if (!program && d == ':') {
+					type = '[';
+				} else if (!program && d == '%') {
+					type = '{';
+				} else {
+					unread(d);
+				}
+			}
+			case '=' -> type = cond('=', GlslToken.EQ, '=');
+			case '>' -> {
+				int d = read();
+
+				if (d == '=') {
+					type = GlslToken.GE;
+				} else if (d == '>') {
+					type = cond('=', GlslToken.RSH_EQ, GlslToken.RSH);
+				} else {
+					unread(d);
+				}
+			}
+			case '^' -> type = cond('=', GlslToken.XOR_EQ, '^');
+			case '|' -> {
+				int d = read();
+
+				if (d == '=') {
+					type = GlslToken.OR_EQ;
+				} else if (d == '|') {
+					type = cond('=', GlslToken.LOR_EQ, GlslToken.LOR);
+				} else {
+					unread(d);
+				}
+			}
+			case '&' -> {
+				int d = read();
+
+				if (d == '&') {
+					type = cond('=', GlslToken.LAND_EQ, GlslToken.LAND);
+				} else if (d == '=') {
+					type = GlslToken.AND_EQ;
+				} else {
+					unread(d);
+				}
+			}
+			case '.' -> {
+				int d = read();
+
+				if (d == '.') {
+					type = cond('.', GlslToken.ELLIPSIS, GlslToken.RANGE);
+				} else {
+					unread(d);
+
+					if (Character.isDigit(d)) {
+						unread('.');
+						token = number();
+					}
+				}
+			}
+			case '\'' -> token = string('\'', '\'');
+			case '"' -> token = string('"', '"');
+			case -1 -> {
+				return new GlslToken(GlslToken.EOF, startLine, "<eof>");
+			}
+			default -> {
+			}
+		}
+
+		if (token == null) {
+			if (type != -1) {
+				token = new GlslToken(type, startLine, GlslToken.getText(type));
+			} else if (Character.isWhitespace(c)) {
+				token = whitespace(c);
+			} else if (Character.isDigit(c)) {
+				unread(c);
+				token = number();
+			} else if (Character.isJavaIdentifierStart(c)) {
+				token = identifier(c);
+			} else {
+				token = new GlslToken(c, startLine, String.valueOf((char) c));
+			}
+		}
+
+		if (bol && token.type != GlslToken.CCOMMENT && token.type != GlslToken.WHITESPACE) {
+			bol = false;
+		}
+
+		return token;
+	}
+
+	private GlslToken hashToken(int startLine, String directive) {
+		bol = false;
+		return new GlslToken(GlslToken.HASH, startLine, "#", directive);
+	}
+}
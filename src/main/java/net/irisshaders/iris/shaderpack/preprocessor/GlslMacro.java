@@ -0,0 +1,31 @@
+package net.irisshaders.iris.shaderpack.preprocessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A macro defined by a #define directive or by an environment define. Function-like macros have a list of parameter
+ * names, which is null for object-like macros.
+ */
+final class GlslMacro {
+	final String name;
+	final List<GlslToken> tokens = new ArrayList<>();
+	List<String> parameters;
+	boolean variadic;
+
+	GlslMacro(String name) {
+		this.name = name;
+	}
+
+	boolean isFunctionLike() {
+		return parameters != null;
+	}
+
+	/**
+	 * Adds a token paste operator. It is placed before its left hand side, the token that was last added, so that both
+	 * of its operands follow it when the paste is evaluated.
+	 */
+	void addPaste(GlslToken token) {
+		tokens.add(tokens.size() - 1, token);
+	}
+}
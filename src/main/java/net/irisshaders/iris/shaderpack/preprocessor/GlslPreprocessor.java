@@ -0,0 +1,279 @@
+package net.irisshaders.iris.shaderpack.preprocessor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import io.github.douira.glsl_transformer.util.LRUCache;
+import net.irisshaders.iris.helpers.StringPair;
+import net.irisshaders.iris.shaderpack.include.AbsolutePackPath;
+import net.irisshaders.iris.shaderpack.include.FileNode;
+import net.irisshaders.iris.shaderpack.include.IncludeGraph;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Preprocesses the GLSL source of shader programs: evaluates conditionals and expands macros, while making the
+ * environment defines available without adding #define directives to the source. Active #version and #extension
+ * directives are moved to the top of the output, so that packs written for lenient drivers that accept #extension
+ * directives anywhere also work on strict drivers like Mesa that require them to come first.
+ * <p>
+ * Every file of the pack is tokenized once, and the tokens are kept per {@link AbsolutePackPath} so that programs
+ * sharing an include, and later reloads, don't lex it again. A program is then preprocessed from the tokens of the
+ * files it includes.
+ * <p>
+ * The output is the same as the output of {@link JcppProcessor}, which this replaces, with one exception: JCPP replaces
+ * #version and #extension with internal markers everywhere in the source, which then leak into comments and other
+ * text that isn't a directive. Such text is left as it is here.
+ */
+public class GlslPreprocessor {
+	// Files are only lexed again when their lines change, which is checked on every use since paths of different packs
+	// and option values of the same pack share the cache.
+	private static final Map<AbsolutePackPath, LexedFile> lexedFiles = Collections.synchronizedMap(new LRUCache<>(1024));
+
+	// Preprocessing only depends on the lines of a program and the environment defines, so the output is reused on
+	// reloads for programs whose includes and used options didn't change. The key is a hash of both, so that the
+	// cache doesn't hold on to the include-expanded source of every program.
+	private static final Map<String, String> outputs = Collections.synchronizedMap(new LRUCache<>(200));
+
+	// The environment defines are the same for every program of a pack, so they are only lexed into macros once.
+	private static volatile EnvironmentMacros environmentMacros;
+
+	private final IncludeGraph graph;
+
+	public GlslPreprocessor(IncludeGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Preprocesses a program, given the lines of the program with all of its includes expanded. The lines may differ
+	 * from the lines of the files they come from, as long as there is still one line for every line of these files.
+	 * Changed lines are lexed again, unchanged lines are taken from the tokens of their file.
+	 */
+	public String preprocess(AbsolutePackPath program, ImmutableList<String> lines,
+							 Iterable<StringPair> environmentDefines) {
+		EnvironmentMacros environment = getEnvironmentMacros(environmentDefines);
+		String key = computeKey(lines, environment.defines());
+		String output = outputs.get(key);
+
+		if (output != null) {
+			return output;
+		}
+
+		List<GlslEvaluator.Segment> segments = new ArrayList<>();
+		int[] line = new int[1];
+
+		if (!collectSegments(program, lines, line, segments) || line[0] != lines.size()) {
+			// The lines don't match the files of the program, so the segments can't be used
+			GlslToken[] tokens = GlslLexer.tokenizeLines(lines, new int[lines.size() + 1]);
+			segments.clear();
+			segments.add(new GlslEvaluator.Segment(tokens, 0, tokens.length, 0));
+		}
+
+		output = process(new GlslEvaluator.ProgramSource(segments), environment);
+		outputs.put(key, output);
+
+		return output;
+	}
+
+	/**
+	 * Forgets the tokens and outputs of the programs of the current pack. The caches only pay off when the same pack is
+	 * loaded again, so this is called whenever a different pack is selected.
+	 */
+	public static void clearCaches() {
+		lexedFiles.clear();
+		outputs.clear();
+	}
+
+	/**
+	 * Preprocesses source that doesn't come from a shader pack.
+	 */
+	public static String preprocessSource(String source, Iterable<StringPair> environmentDefines) {
+		GlslToken[] tokens = GlslLexer.tokenize(source, true).toArray(GlslToken[]::new);
+		GlslEvaluator.Segment segment = new GlslEvaluator.Segment(tokens, 0, tokens.length, 0);
+
+		return process(new GlslEvaluator.ProgramSource(List.of(segment)), getEnvironmentMacros(environmentDefines));
+	}
+
+	private static String process(GlslEvaluator.ProgramSource source, EnvironmentMacros environment) {
+		try {
+			return new GlslEvaluator(environment.macros(), source).process();
+		} catch (RuntimeException e) {
+			throw new RuntimeException("GLSL source pre-processing failed", e);
+		}
+	}
+
+	/**
+	 * Splits the lines of a program into ranges of tokens of the files that they come from, following the includes of
+	 * the file like {@link net.irisshaders.iris.shaderpack.include.IncludeProcessor} does. Returns false if the
+	 * tokens of a file can't be split at a line that an include starts or ends at.
+	 */
+	private boolean collectSegments(AbsolutePackPath path, List<String> lines, int[] line,
+									List<GlslEvaluator.Segment> segments) {
+		FileNode node = graph.getNodes().get(path);
+
+		if (node == null) {
+			return false;
+		}
+
+		ImmutableList<String> fileLines = node.getLines();
+		ImmutableMap<Integer, AbsolutePackPath> includes = node.getIncludes();
+		LexedFile file = getLexedFile(path, fileLines);
+		int runStart = 0;
+		int runLine = line[0];
+
+		for (int i = 0; i < fileLines.size(); i++) {
+			AbsolutePackPath include = includes.get(i);
+			String fileLine = fileLines.get(i);
+
+			if (include == null && line[0] < lines.size() && lines.get(line[0]).equals(fileLine)) {
+				line[0]++;
+				continue;
+			}
+
+			if (!addRun(file, runStart, i, runLine, segments)) {
+				return false;
+			}
+
+			if (include != null) {
+				if (!collectSegments(include, lines, line, segments)) {
+					return false;
+				}
+			} else if (line[0] < lines.size()) {
+				// A line that was changed after the file was read, such as a define that was filtered out
+				int[] lineStarts = new int[2];
+				GlslToken[] tokens = GlslLexer.tokenizeLines(List.of(lines.get(line[0])), lineStarts);
+
+				if (lineStarts[1] < 0) {
+					return false;
+				}
+
+				segments.add(new GlslEvaluator.Segment(tokens, 0, tokens.length, line[0]));
+				line[0]++;
+			} else {
+				return false;
+			}
+
+			runStart = i + 1;
+			runLine = line[0];
+		}
+
+		return addRun(file, runStart, fileLines.size(), runLine, segments);
+	}
+
+	private static boolean addRun(LexedFile file, int start, int end, int programLine,
+								  List<GlslEvaluator.Segment> segments) {
+		if (start == end) {
+			return true;
+		}
+
+		int from = file.lineStarts()[start];
+		int to = file.lineStarts()[end];
+
+		if (from < 0 || to < 0) {
+			return false;
+		}
+
+		segments.add(new GlslEvaluator.Segment(file.tokens(), from, to, programLine - start));
+
+		return true;
+	}
+
+	private static String computeKey(List<String> lines, List<StringPair> environmentDefines) {
+		MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is unavailable", e);
+		}
+
+		// Every string is prefixed with its length, so that the boundaries between them are part of the hash
+		updateDigest(digest, lines.size());
+
+		for (String line : lines) {
+			updateDigest(digest, line);
+		}
+
+		updateDigest(digest, environmentDefines.size());
+
+		for (StringPair define : environmentDefines) {
+			updateDigest(digest, define.key());
+			updateDigest(digest, define.value());
+		}
+
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	private static void updateDigest(MessageDigest digest, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		updateDigest(digest, bytes.length);
+		digest.update(bytes);
+	}
+
+	private static void updateDigest(MessageDigest digest, int value) {
+		digest.update(new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+	}
+
+	private static LexedFile getLexedFile(AbsolutePackPath path, ImmutableList<String> lines) {
+		LexedFile file = lexedFiles.get(path);
+
+		if (file == null || !file.lines().equals(lines)) {
+			int[] lineStarts = new int[lines.size() + 1];
+			file = new LexedFile(lines, GlslLexer.tokenizeLines(lines, lineStarts), lineStarts);
+			lexedFiles.put(path, file);
+		}
+
+		return file;
+	}
+
+	private static EnvironmentMacros getEnvironmentMacros(Iterable<StringPair> environmentDefines) {
+		EnvironmentMacros cached = environmentMacros;
+
+		if (cached != null && Iterables.elementsEqual(cached.defines(), environmentDefines)) {
+			return cached;
+		}
+
+		List<StringPair> defines = new ArrayList<>();
+		Map<String, GlslMacro> macros = new HashMap<>();
+
+		for (StringPair define : environmentDefines) {
+			if (define.key().equals("defined")) {
+				throw new RuntimeException("Unexpected LexerException processing macros",
+					new IllegalArgumentException("Cannot redefine name 'defined'"));
+			}
+
+			GlslMacro macro = new GlslMacro(define.key());
+
+			try {
+				macro.tokens.addAll(GlslLexer.tokenize(define.value(), false));
+			} catch (IllegalStateException e) {
+				throw new RuntimeException("Unexpected LexerException processing macros", e);
+			}
+
+			defines.add(define);
+			macros.put(define.key(), macro);
+		}
+
+		cached = new EnvironmentMacros(Collections.unmodifiableList(defines), macros);
+		environmentMacros = cached;
+
+		return cached;
+	}
+
+	/**
+	 * The tokens of a file, and the index of the first token of every line, see {@link GlslLexer#tokenizeLines}.
+	 */
+	private record LexedFile(ImmutableList<String> lines, GlslToken[] tokens, int[] lineStarts) {
+	}
+
+	private record EnvironmentMacros(List<StringPair> defines, Map<String, GlslMacro> macros) {
+	}
+}
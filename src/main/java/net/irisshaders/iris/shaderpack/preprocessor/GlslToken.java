@@ -0,0 +1,146 @@
+package net.irisshaders.iris.shaderpack.preprocessor;
+
+/**
+ * A token of GLSL source as seen by {@link GlslPreprocessor}. Single character tokens use the character as their type,
+ * everything else uses one of the constants below, which are numbered the same way as JCPP's token types.
+ * <p>
+ * Tokens are immutable so that the tokens of an included file can be shared by every program that includes it.
+ */
+final class GlslToken {
+	static final int AND_EQ = 257;
+	static final int ARROW = 258;
+	static final int CHARACTER = 259;
+	static final int CCOMMENT = 260;
+	static final int CPPCOMMENT = 261;
+	static final int DEC = 262;
+	static final int DIV_EQ = 263;
+	static final int ELLIPSIS = 264;
+	static final int EOF = 265;
+	static final int EQ = 266;
+	static final int GE = 267;
+	static final int HASH = 268;
+	static final int IDENTIFIER = 270;
+	static final int INC = 271;
+	static final int NUMBER = 272;
+	static final int LAND = 273;
+	static final int LAND_EQ = 274;
+	static final int LE = 275;
+	static final int LOR = 277;
+	static final int LOR_EQ = 278;
+	static final int LSH = 279;
+	static final int LSH_EQ = 280;
+	static final int MOD_EQ = 281;
+	static final int MULT_EQ = 282;
+	static final int NE = 283;
+	static final int NL = 284;
+	static final int OR_EQ = 285;
+	static final int PASTE = 286;
+	static final int PLUS_EQ = 287;
+	static final int RANGE = 288;
+	static final int RSH = 289;
+	static final int RSH_EQ = 290;
+	static final int SQSTRING = 291;
+	static final int STRING = 292;
+	static final int SUB_EQ = 293;
+	static final int WHITESPACE = 294;
+	static final int XOR_EQ = 295;
+	static final int M_ARG = 296;
+	static final int M_PASTE = 297;
+	static final int M_STRING = 298;
+	static final int INVALID = 300;
+
+	static final GlslToken SPACE = new GlslToken(WHITESPACE, -1, " ", null);
+
+	// Marks a #version or #extension directive, see GlslLexer
+	static final String VERSION = "version";
+	static final String EXTENSION = "extension";
+
+	final int type;
+	final int line;
+	final String text;
+	/**
+	 * The decoded value of CHARACTER, STRING and NUMBER tokens, the argument index of M_ARG and M_STRING tokens, and
+	 * the directive name of HASH tokens that start a #version or #extension directive.
+	 */
+	final Object value;
+
+	GlslToken(int type, int line, String text, Object value) {
+		this.type = type;
+		this.line = line;
+		this.text = text;
+		this.value = value;
+	}
+
+	GlslToken(int type, int line, String text) {
+		this(type, line, text, null);
+	}
+
+	static String getText(int type) {
+		return switch (type) {
+			case AND_EQ -> "&=";
+			case ARROW -> "->";
+			case DEC -> "--";
+			case DIV_EQ -> "/=";
+			case ELLIPSIS -> "...";
+			case EQ -> "==";
+			case GE -> ">=";
+			case HASH -> "#";
+			case INC -> "++";
+			case LAND -> "&&";
+			case LAND_EQ -> "&&=";
+			case LE -> "<=";
+			case LOR -> "||";
+			case LOR_EQ -> "||=";
+			case LSH -> "<<";
+			case LSH_EQ -> "<<=";
+			case MOD_EQ -> "%=";
+			case MULT_EQ -> "*=";
+			case NE -> "!=";
+			case OR_EQ -> "|=";
+			case PASTE -> "##";
+			case PLUS_EQ -> "+=";
+			case RANGE -> "..";
+			case RSH -> ">>";
+			case RSH_EQ -> ">>=";
+			case SUB_EQ -> "-=";
+			case XOR_EQ -> "^=";
+			default -> type < 256 ? String.valueOf((char) type) : null;
+		};
+	}
+
+	/**
+	 * Whether the token only separates other tokens.
+	 */
+	boolean isWhite() {
+		return type == WHITESPACE || type == CCOMMENT || type == CPPCOMMENT;
+	}
+
+	GlslToken relocate(int lineDelta) {
+		return new GlslToken(type, line + lineDelta, text, value);
+	}
+
+	@Override
+	public String toString() {
+		return "[" + type + "@" + line + "]:\"" + text + "\"";
+	}
+
+	/**
+	 * The parts of a numeric constant, kept as text until the constant is used in a conditional.
+	 */
+	record NumericValue(int base, String integer, int exponentBase, String exponent) {
+		static final NumericValue ZERO = new NumericValue(10, "0", 0, null);
+		static final NumericValue ONE = new NumericValue(10, "1", 0, null);
+
+		long longValue() {
+			long value = integer.isEmpty() ? 0L : Long.parseLong(integer, base);
+
+			if (exponentBase == 2) {
+				value <<= Integer.parseInt(exponent, 10);
+			} else if (exponentBase != 0) {
+				value = (long) ((double) value * Math.pow(exponentBase, Integer.parseInt(exponent, 10)));
+			}
+
+			return value;
+		}
+	}
+}
@@ -119,7 +119,10 @@ public class PropertiesPreprocessor {
 		return (listener.collectLines() + source).replace("IRIS_PASSTHROUGHBACKSLASH", "\\");
 	}
 
-	private static List<String> getBooleanValues(ShaderPackOptions shaderPackOptions) {
+	/**
+	 * Returns the names of the boolean options that are enabled, which are defined as macros when preprocessing.
+	 */
+	public static List<String> getBooleanValues(ShaderPackOptions shaderPackOptions) {
 		List<String> booleanValues = new ArrayList<>();
 
 		shaderPackOptions.getOptionSet().getBooleanOptions().forEach((string, value) -> {
@@ -133,7 +136,10 @@ public class PropertiesPreprocessor {
 		return booleanValues;
 	}
 
-	private static Map<String, String> getStringValues(ShaderPackOptions shaderPackOptions) {
+	/**
+	 * Returns the values of all string options, which are defined as macros when preprocessing.
+	 */
+	public static Map<String, String> getStringValues(ShaderPackOptions shaderPackOptions) {
 		Map<String, String> stringValues = new HashMap<>();
 
 		shaderPackOptions.getOptionSet().getStringOptions().forEach(
@@ -0,0 +1,201 @@
+package net.irisshaders.iris.shaderpack.zip;
+
+import net.irisshaders.iris.Iris;
+
+import java.io.IOException;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A read-only file system for zipped shader packs, backed by a {@link ZipPackIndex}.
+ * <p>
+ * Opening a pack through the JDK zip file system reads and inflates entries through a single shared channel, which
+ * makes loading large packs slower than it needs to be and serializes any reads made from worker threads. This file
+ * system reads the central directory once instead, so that listing and checking files only looks at the index, and
+ * reading a file only reads and inflates that one entry.
+ */
+public final class ZipPackFileSystem extends FileSystem {
+	private static final Set<String> SUPPORTED_VIEWS = Set.of("basic");
+
+	private final ZipPackFileSystemProvider provider;
+	private final Path zip;
+	private final ZipPackIndex index;
+	private final ZipPackPath root;
+	private volatile boolean open = true;
+
+	private ZipPackFileSystem(ZipPackFileSystemProvider provider, Path zip, ZipPackIndex index) {
+		this.provider = provider;
+		this.zip = zip;
+		this.index = index;
+		this.root = new ZipPackPath(this, true, new String[0]);
+	}
+
+	/**
+	 * Opens a zipped shader pack. Zips that can't be read by the index, such as ZIP64 archives, are opened with the
+	 * JDK zip file system instead.
+	 */
+	public static FileSystem open(Path zip) throws IOException {
+		try {
+			return new ZipPackFileSystem(ZipPackFileSystemProvider.INSTANCE, zip, ZipPackIndex.open(zip));
+		} catch (ZipPackIndex.UnsupportedZipException e) {
+			Iris.logger.info("Falling back to the default zip file system for " + zip.getFileName() + ": " + e.getMessage());
+			return FileSystems.newFileSystem(zip, Iris.class.getClassLoader());
+		}
+	}
+
+	Path getZip() {
+		return zip;
+	}
+
+	ZipPackIndex getIndex() {
+		ensureOpen();
+		return index;
+	}
+
+	boolean exists(String entryName) {
+		return getIndex().getFile(entryName) != null || index.getDirectory(entryName) != null;
+	}
+
+	void ensureOpen() {
+		if (!open) {
+			throw new ClosedFileSystemException();
+		}
+	}
+
+	@Override
+	public ZipPackFileSystemProvider provider() {
+		return provider;
+	}
+
+	@Override
+	public void close() throws IOException {
+		open = false;
+		index.close();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public String getSeparator() {
+		return "/";
+	}
+
+	@Override
+	public Iterable<Path> getRootDirectories() {
+		ensureOpen();
+		return Collections.singletonList(root);
+	}
+
+	@Override
+	public Iterable<FileStore> getFileStores() {
+		return List.of();
+	}
+
+	@Override
+	public Set<String> supportedFileAttributeViews() {
+		return SUPPORTED_VIEWS;
+	}
+
+	@Override
+	public Path getPath(String first, String... more) {
+		if (more.length == 0) {
+			return ZipPackPath.parse(this, first);
+		}
+
+		return ZipPackPath.parse(this, first + "/" + String.join("/", more));
+	}
+
+	@Override
+	public PathMatcher getPathMatcher(String syntaxAndPattern) {
+		int separator = syntaxAndPattern.indexOf(':');
+
+		if (separator <= 0) {
+			throw new IllegalArgumentException("Invalid path matcher " + syntaxAndPattern);
+		}
+
+		String syntax = syntaxAndPattern.substring(0, separator);
+		String pattern = syntaxAndPattern.substring(separator + 1);
+		Pattern regex;
+
+		if (syntax.equalsIgnoreCase("regex")) {
+			regex = Pattern.compile(pattern);
+		} else if (syntax.equalsIgnoreCase("glob")) {
+			regex = Pattern.compile(globToRegex(pattern));
+		} else {
+			throw new UnsupportedOperationException("Unsupported path matcher syntax " + syntax);
+		}
+
+		return path -> regex.matcher(path.toString()).matches();
+	}
+
+	private static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder(glob.length() * 2);
+		boolean inGroup = false;
+
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+
+			switch (c) {
+				case '*' -> {
+					if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+						regex.append(".*");
+						i++;
+					} else {
+						regex.append("[^/]*");
+					}
+				}
+				case '?' -> regex.append("[^/]");
+				case '{' -> {
+					regex.append("(?:");
+					inGroup = true;
+				}
+				case '}' -> {
+					regex.append(')');
+					inGroup = false;
+				}
+				case ',' -> regex.append(inGroup ? "|" : ",");
+				case '\\' -> {
+					if (i + 1 < glob.length()) {
+						regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+					}
+				}
+				default -> regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+
+		return regex.toString();
+	}
+
+	@Override
+	public UserPrincipalLookupService getUserPrincipalLookupService() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public WatchService newWatchService() {
+		throw new UnsupportedOperationException("Zipped shader packs can't be watched");
+	}
+
+	@Override
+	public String toString() {
+		return zip.toString();
+	}
+}
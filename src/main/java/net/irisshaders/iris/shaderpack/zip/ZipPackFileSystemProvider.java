@@ -0,0 +1,432 @@
+package net.irisshaders.iris.shaderpack.zip;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The provider of {@link ZipPackFileSystem}. File systems are only ever created through
+ * {@link ZipPackFileSystem#open(Path)}, so this isn't registered as an installed provider and doesn't support
+ * looking up file systems by URI.
+ */
+final class ZipPackFileSystemProvider extends FileSystemProvider {
+	static final String SCHEME = "iris-zip";
+	static final ZipPackFileSystemProvider INSTANCE = new ZipPackFileSystemProvider();
+
+	private ZipPackFileSystemProvider() {
+	}
+
+	private static ZipPackPath toZipPath(Path path) {
+		if (!(path instanceof ZipPackPath zipPath)) {
+			throw new ProviderMismatchException();
+		}
+
+		zipPath.getFileSystem().ensureOpen();
+
+		return zipPath;
+	}
+
+	private static ZipPackIndex.Entry getFile(ZipPackPath path) throws IOException {
+		String name = path.getEntryName();
+		ZipPackIndex.Entry entry = path.getFileSystem().getIndex().getFile(name);
+
+		if (entry == null) {
+			if (path.getFileSystem().getIndex().getDirectory(name) != null) {
+				throw new IOException(path + " is a directory");
+			}
+
+			throw new NoSuchFileException(path.toString());
+		}
+
+		return entry;
+	}
+
+	private static byte[] readFile(ZipPackPath path) throws IOException {
+		return path.getFileSystem().getIndex().read(path.getEntryName(), getFile(path));
+	}
+
+	private static void checkReadOnly(Set<? extends OpenOption> options) {
+		for (OpenOption option : options) {
+			if (option == StandardOpenOption.WRITE || option == StandardOpenOption.APPEND
+				|| option == StandardOpenOption.CREATE || option == StandardOpenOption.CREATE_NEW
+				|| option == StandardOpenOption.DELETE_ON_CLOSE) {
+				throw new ReadOnlyFileSystemException();
+			}
+		}
+	}
+
+	@Override
+	public String getScheme() {
+		return SCHEME;
+	}
+
+	@Override
+	public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+		throw new UnsupportedOperationException("Use ZipPackFileSystem.open instead");
+	}
+
+	@Override
+	public FileSystem getFileSystem(URI uri) {
+		throw new UnsupportedOperationException("Use ZipPackFileSystem.open instead");
+	}
+
+	@Override
+	public Path getPath(URI uri) {
+		throw new UnsupportedOperationException("Use ZipPackFileSystem.getPath instead");
+	}
+
+	@Override
+	public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+		checkReadOnly(options);
+
+		return new ReadOnlyByteChannel(readFile(toZipPath(path)));
+	}
+
+	@Override
+	public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+		checkReadOnly(Set.of(options));
+
+		return new ByteArrayInputStream(readFile(toZipPath(path)));
+	}
+
+	@Override
+	public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+		ZipPackPath zipPath = toZipPath(dir);
+		String name = zipPath.getEntryName();
+		List<String> children = zipPath.getFileSystem().getIndex().getDirectory(name);
+
+		if (children == null) {
+			if (zipPath.getFileSystem().getIndex().getFile(name) != null) {
+				throw new NotDirectoryException(dir.toString());
+			}
+
+			throw new NoSuchFileException(dir.toString());
+		}
+
+		List<Path> entries = new ArrayList<>(children.size());
+
+		for (String child : children) {
+			Path entry = dir.resolve(child);
+
+			if (filter.accept(entry)) {
+				entries.add(entry);
+			}
+		}
+
+		return new DirectoryStream<>() {
+			private boolean iterated;
+
+			@Override
+			public Iterator<Path> iterator() {
+				if (iterated) {
+					throw new IllegalStateException("The directory stream was already iterated");
+				}
+
+				iterated = true;
+				return entries.iterator();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	@Override
+	public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void delete(Path path) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void copy(Path source, Path target, CopyOption... options) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public void move(Path source, Path target, CopyOption... options) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	@Override
+	public boolean isSameFile(Path path, Path path2) {
+		return toZipPath(path).toAbsolutePath().normalize().equals(path2.toAbsolutePath().normalize());
+	}
+
+	@Override
+	public boolean isHidden(Path path) {
+		return false;
+	}
+
+	@Override
+	public FileStore getFileStore(Path path) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void checkAccess(Path path, AccessMode... modes) throws IOException {
+		ZipPackPath zipPath = toZipPath(path);
+
+		if (!zipPath.getFileSystem().exists(zipPath.getEntryName())) {
+			throw new NoSuchFileException(path.toString());
+		}
+
+		for (AccessMode mode : modes) {
+			if (mode == AccessMode.WRITE) {
+				throw new AccessDeniedException(path.toString(), null, "Zipped shader packs are read-only");
+			}
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+		if (type != BasicFileAttributeView.class) {
+			return null;
+		}
+
+		ZipPackPath zipPath = toZipPath(path);
+
+		return (V) new BasicFileAttributeView() {
+			@Override
+			public String name() {
+				return "basic";
+			}
+
+			@Override
+			public BasicFileAttributes readAttributes() throws IOException {
+				return ZipPackFileSystemProvider.this.readAttributes(zipPath, BasicFileAttributes.class);
+			}
+
+			@Override
+			public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+				throw new ReadOnlyFileSystemException();
+			}
+		};
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+		if (type != BasicFileAttributes.class) {
+			throw new UnsupportedOperationException("Only basic file attributes are supported");
+		}
+
+		ZipPackPath zipPath = toZipPath(path);
+		String name = zipPath.getEntryName();
+		ZipPackIndex index = zipPath.getFileSystem().getIndex();
+		ZipPackIndex.Entry entry = index.getFile(name);
+
+		if (entry == null && index.getDirectory(name) == null) {
+			throw new NoSuchFileException(path.toString());
+		}
+
+		return (A) new EntryAttributes(name, entry);
+	}
+
+	@Override
+	public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+		String names = attributes;
+
+		if (names.indexOf(':') != -1) {
+			if (!names.startsWith("basic:")) {
+				throw new UnsupportedOperationException("Only basic file attributes are supported");
+			}
+
+			names = names.substring("basic:".length());
+		}
+
+		BasicFileAttributes read = readAttributes(path, BasicFileAttributes.class);
+		Map<String, Object> all = new HashMap<>();
+		all.put("lastModifiedTime", read.lastModifiedTime());
+		all.put("lastAccessTime", read.lastAccessTime());
+		all.put("creationTime", read.creationTime());
+		all.put("size", read.size());
+		all.put("isRegularFile", read.isRegularFile());
+		all.put("isDirectory", read.isDirectory());
+		all.put("isSymbolicLink", read.isSymbolicLink());
+		all.put("isOther", read.isOther());
+		all.put("fileKey", read.fileKey());
+
+		if (names.equals("*")) {
+			return all;
+		}
+
+		Map<String, Object> selected = new HashMap<>();
+
+		for (String name : names.split(",")) {
+			if (!all.containsKey(name)) {
+				throw new IllegalArgumentException("Unknown attribute " + name);
+			}
+
+			selected.put(name, all.get(name));
+		}
+
+		return selected;
+	}
+
+	@Override
+	public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+		throw new ReadOnlyFileSystemException();
+	}
+
+	private record EntryAttributes(String name, ZipPackIndex.Entry entry) implements BasicFileAttributes {
+		@Override
+		public FileTime lastModifiedTime() {
+			return FileTime.fromMillis(entry == null ? 0 : entry.lastModifiedTime());
+		}
+
+		@Override
+		public FileTime lastAccessTime() {
+			return lastModifiedTime();
+		}
+
+		@Override
+		public FileTime creationTime() {
+			return lastModifiedTime();
+		}
+
+		@Override
+		public boolean isRegularFile() {
+			return entry != null;
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return entry == null;
+		}
+
+		@Override
+		public boolean isSymbolicLink() {
+			return false;
+		}
+
+		@Override
+		public boolean isOther() {
+			return false;
+		}
+
+		@Override
+		public long size() {
+			return entry == null ? 0 : entry.size();
+		}
+
+		@Override
+		public Object fileKey() {
+			return null;
+		}
+	}
+
+	/**
+	 * A channel over the decompressed content of an entry.
+	 */
+	private static final class ReadOnlyByteChannel implements SeekableByteChannel {
+		private final byte[] content;
+		private int position;
+		private boolean open = true;
+
+		private ReadOnlyByteChannel(byte[] content) {
+			this.content = content;
+		}
+
+		private void ensureOpen() throws ClosedChannelException {
+			if (!open) {
+				throw new ClosedChannelException();
+			}
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			ensureOpen();
+
+			if (position >= content.length) {
+				return -1;
+			}
+
+			int length = Math.min(dst.remaining(), content.length - position);
+			dst.put(content, position, length);
+			position += length;
+
+			return length;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			throw new NonWritableChannelException();
+		}
+
+		@Override
+		public long position() throws IOException {
+			ensureOpen();
+			return position;
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) throws IOException {
+			ensureOpen();
+
+			if (newPosition < 0) {
+				throw new IllegalArgumentException("Negative position " + newPosition);
+			}
+
+			position = (int) Math.min(newPosition, content.length);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			ensureOpen();
+			return content.length;
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long size) {
+			throw new NonWritableChannelException();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+}
@@ -0,0 +1,414 @@
+package net.irisshaders.iris.shaderpack.zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The central directory of a zip file, parsed once up front.
+ * <p>
+ * Entries are only read and decompressed when they are needed. Reads use positional reads of the zip's channel and
+ * their own inflater, so any number of threads can read entries at the same time.
+ * <p>
+ * The channel is closed as soon as the index is closed, since an open file can't be deleted or replaced on Windows.
+ * Reads hold a shared lock so that the channel can't be closed while an entry is being read.
+ */
+final class ZipPackIndex {
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int CENTRAL_DIRECTORY_ENTRY = 0x02014b50;
+	private static final int LOCAL_FILE_HEADER = 0x04034b50;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	private static final int CENTRAL_DIRECTORY_ENTRY_SIZE = 46;
+	private static final int LOCAL_FILE_HEADER_SIZE = 30;
+	private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+	private static final int FLAG_ENCRYPTED = 1;
+
+	private final FileChannel channel;
+	private final long length;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private boolean closed;
+	private final Map<String, Entry> files;
+	// the names of the entries directly contained in every directory, the root directory is ""
+	private final Map<String, List<String>> directories;
+
+	private ZipPackIndex(FileChannel channel, long length, CentralDirectory directory) {
+		this.channel = channel;
+		this.length = length;
+		this.files = directory.files();
+		this.directories = directory.directories();
+	}
+
+	/**
+	 * Opens the zip file and reads its central directory.
+	 *
+	 * @throws UnsupportedZipException if the zip uses features that this reader doesn't support, such as ZIP64
+	 *                                 extensions, encryption or compression methods other than deflate
+	 * @throws ZipException            if the zip is corrupt
+	 */
+	static ZipPackIndex open(Path zip) throws IOException {
+		FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ);
+
+		try {
+			long length = channel.size();
+			return new ZipPackIndex(channel, length, readCentralDirectory(channel, length));
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static CentralDirectory readCentralDirectory(FileChannel channel, long length) throws IOException {
+		if (length < END_OF_CENTRAL_DIRECTORY_SIZE) {
+			throw new ZipException("Not a zip file, or the end of its central directory is missing");
+		}
+
+		// The end of the central directory record is followed by a comment of up to 64 KiB
+		long tailStart = Math.max(0, length - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_LENGTH);
+		ByteBuffer tail = read(channel, tailStart, (int) (length - tailStart));
+		int endInTail = findEndOfCentralDirectory(tail);
+		long end = tailStart + endInTail;
+		int entryCount = Short.toUnsignedInt(tail.getShort(endInTail + 10));
+		long directorySize = Integer.toUnsignedLong(tail.getInt(endInTail + 12));
+		long directoryOffset = Integer.toUnsignedLong(tail.getInt(endInTail + 16));
+
+		if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+			throw new UnsupportedZipException("ZIP64 isn't supported");
+		}
+
+		if (directoryOffset + directorySize > end || directorySize > Integer.MAX_VALUE) {
+			throw new ZipException("Invalid central directory");
+		}
+
+		Map<String, Entry> files = new HashMap<>(entryCount * 2);
+		Map<String, List<String>> directories = new HashMap<>();
+		directories.put("", new ArrayList<>());
+
+		ByteBuffer data = read(channel, directoryOffset, (int) directorySize);
+		int position = 0;
+
+		for (int i = 0; i < entryCount; i++) {
+			if (position + CENTRAL_DIRECTORY_ENTRY_SIZE > data.limit() || data.getInt(position) != CENTRAL_DIRECTORY_ENTRY) {
+				throw new ZipException("Invalid central directory entry");
+			}
+
+			int flags = Short.toUnsignedInt(data.getShort(position + 8));
+			int method = Short.toUnsignedInt(data.getShort(position + 10));
+			int dosTime = data.getInt(position + 12);
+			int crc = data.getInt(position + 16);
+			long compressedSize = Integer.toUnsignedLong(data.getInt(position + 20));
+			long size = Integer.toUnsignedLong(data.getInt(position + 24));
+			int nameLength = Short.toUnsignedInt(data.getShort(position + 28));
+			int extraLength = Short.toUnsignedInt(data.getShort(position + 30));
+			int commentLength = Short.toUnsignedInt(data.getShort(position + 32));
+			long localHeaderOffset = Integer.toUnsignedLong(data.getInt(position + 42));
+
+			if (position + CENTRAL_DIRECTORY_ENTRY_SIZE + nameLength > data.limit()) {
+				throw new ZipException("Invalid central directory entry");
+			}
+
+			byte[] nameBytes = new byte[nameLength];
+			data.get(position + CENTRAL_DIRECTORY_ENTRY_SIZE, nameBytes);
+			String name = normalizeName(new String(nameBytes, StandardCharsets.UTF_8));
+
+			position += CENTRAL_DIRECTORY_ENTRY_SIZE + nameLength + extraLength + commentLength;
+
+			if (name.isEmpty()) {
+				continue;
+			}
+
+			boolean directory = nameBytes[nameLength - 1] == '/';
+
+			if (!directory) {
+				if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+					throw new UnsupportedZipException("ZIP64 isn't supported");
+				}
+
+				if ((flags & FLAG_ENCRYPTED) != 0) {
+					throw new UnsupportedZipException("Encrypted entries aren't supported");
+				}
+
+				if (method != STORED && method != DEFLATED) {
+					throw new UnsupportedZipException("Compression method " + method + " isn't supported");
+				}
+
+				if (size > Integer.MAX_VALUE || compressedSize > Integer.MAX_VALUE || localHeaderOffset >= end) {
+					throw new ZipException("Invalid entry " + name);
+				}
+
+				if (files.put(name, new Entry(method, crc, compressedSize, (int) size, localHeaderOffset, dosTime)) != null) {
+					// a duplicate entry, the last one wins like it does for zipfs
+					continue;
+				}
+			}
+
+			addToDirectories(name, directory, directories);
+		}
+
+		for (String file : files.keySet()) {
+			if (directories.containsKey(file)) {
+				throw new ZipException("Entry " + file + " is both a file and a directory");
+			}
+		}
+
+		directories.replaceAll((directory, children) -> Collections.unmodifiableList(children));
+
+		return new CentralDirectory(files, directories);
+	}
+
+	/**
+	 * Reads a part of the zip file into a little endian heap buffer.
+	 *
+	 * @throws ZipException if the file ends before the part does
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, position, buffer);
+
+		return buffer.flip();
+	}
+
+	private static void readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new ZipException("Unexpected end of the zip file");
+			}
+		}
+	}
+
+	private static int findEndOfCentralDirectory(ByteBuffer data) throws ZipException {
+		int last = data.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+		int first = Math.max(0, last - MAX_COMMENT_LENGTH);
+
+		for (int position = last; position >= first; position--) {
+			if (data.getInt(position) == END_OF_CENTRAL_DIRECTORY) {
+				return position;
+			}
+		}
+
+		throw new ZipException("Not a zip file, or the end of its central directory is missing");
+	}
+
+	/**
+	 * Removes leading, trailing and duplicate slashes as well as "." segments, so that names can be compared with
+	 * normalized paths.
+	 */
+	private static String normalizeName(String name) {
+		StringBuilder builder = new StringBuilder(name.length());
+
+		for (String segment : name.split("/")) {
+			if (segment.isEmpty() || segment.equals(".")) {
+				continue;
+			}
+
+			if (!builder.isEmpty()) {
+				builder.append('/');
+			}
+
+			builder.append(segment);
+		}
+
+		return builder.toString();
+	}
+
+	private static void addToDirectories(String name, boolean directory, Map<String, List<String>> directories) {
+		if (directory) {
+			if (directories.containsKey(name)) {
+				return;
+			}
+
+			directories.put(name, new ArrayList<>());
+		}
+
+		// Zips don't have to contain entries for directories, so parent directories are added as they are found
+		String child = name;
+
+		while (true) {
+			int separator = child.lastIndexOf('/');
+			String parent = separator == -1 ? "" : child.substring(0, separator);
+			List<String> siblings = directories.get(parent);
+			boolean parentExists = siblings != null;
+
+			if (!parentExists) {
+				siblings = new ArrayList<>();
+				directories.put(parent, siblings);
+			}
+
+			siblings.add(child.substring(separator + 1));
+
+			if (parentExists) {
+				return;
+			}
+
+			child = parent;
+		}
+	}
+
+	private static long dosToJavaTime(int dosTime) {
+		try {
+			LocalDateTime time = LocalDateTime.of(
+				((dosTime >> 25) & 0x7F) + 1980,
+				(dosTime >> 21) & 0x0F,
+				(dosTime >> 16) & 0x1F,
+				(dosTime >> 11) & 0x1F,
+				(dosTime >> 5) & 0x3F,
+				(dosTime << 1) & 0x3E);
+
+			return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		} catch (RuntimeException e) {
+			// an invalid date, which isn't worth failing over
+			return 0;
+		}
+	}
+
+	Entry getFile(String name) {
+		return files.get(name);
+	}
+
+	/**
+	 * Returns the names of the entries directly contained in a directory, or null if there is no such directory.
+	 */
+	List<String> getDirectory(String name) {
+		return directories.get(name);
+	}
+
+	/**
+	 * Reads and decompresses an entry. This is safe to call from any thread.
+	 *
+	 * @throws ClosedFileSystemException if the index was closed
+	 */
+	byte[] read(String name, Entry entry) throws IOException {
+		lock.readLock().lock();
+
+		try {
+			if (closed) {
+				throw new ClosedFileSystemException();
+			}
+
+			return readUnlocked(name, entry);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Closes the zip file once all reads that are in progress are done. Reads after this fail.
+	 */
+	void close() throws IOException {
+		lock.writeLock().lock();
+
+		try {
+			if (!closed) {
+				closed = true;
+				channel.close();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private byte[] readUnlocked(String name, Entry entry) throws IOException {
+		long header = entry.localHeaderOffset();
+
+		if (header + LOCAL_FILE_HEADER_SIZE > length) {
+			throw new ZipException("Invalid local header for " + name);
+		}
+
+		ByteBuffer headerData = read(channel, header, LOCAL_FILE_HEADER_SIZE);
+
+		if (headerData.getInt(0) != LOCAL_FILE_HEADER) {
+			throw new ZipException("Invalid local header for " + name);
+		}
+
+		int nameLength = Short.toUnsignedInt(headerData.getShort(26));
+		int extraLength = Short.toUnsignedInt(headerData.getShort(28));
+		long start = header + LOCAL_FILE_HEADER_SIZE + nameLength + extraLength;
+
+		if (start + entry.compressedSize() > length) {
+			throw new ZipException("Truncated entry " + name);
+		}
+
+		byte[] content = new byte[entry.size()];
+
+		if (entry.method() == STORED) {
+			if (entry.compressedSize() != entry.size()) {
+				throw new ZipException("Invalid size of stored entry " + name);
+			}
+
+			// stored entries are read straight into the content
+			readFully(channel, start, ByteBuffer.wrap(content));
+		} else {
+			Inflater inflater = new Inflater(true);
+
+			try {
+				inflater.setInput(read(channel, start, (int) entry.compressedSize()).array());
+				int length = 0;
+
+				while (length < content.length) {
+					int inflated = inflater.inflate(content, length, content.length - length);
+
+					if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+
+					length += inflated;
+				}
+
+				if (length != content.length) {
+					throw new ZipException("Truncated entry " + name);
+				}
+			} catch (DataFormatException e) {
+				throw new ZipException("Invalid compressed data in " + name + ": " + e.getMessage());
+			} finally {
+				inflater.end();
+			}
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(content);
+
+		if ((int) crc.getValue() != entry.crc()) {
+			throw new ZipException("Checksum mismatch in " + name);
+		}
+
+		return content;
+	}
+
+	private record CentralDirectory(Map<String, Entry> files, Map<String, List<String>> directories) {
+	}
+
+	record Entry(int method, int crc, long compressedSize, int size, long localHeaderOffset, int dosTime) {
+		long lastModifiedTime() {
+			return dosToJavaTime(dosTime);
+		}
+	}
+
+	/**
+	 * Thrown for valid zip files that use features which aren't supported, so that they can be opened in a different
+	 * way instead.
+	 */
+	static class UnsupportedZipException extends IOException {
+		UnsupportedZipException(String message) {
+			super(message);
+		}
+	}
+}
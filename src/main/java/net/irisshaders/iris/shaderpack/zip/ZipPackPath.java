@@ -0,0 +1,286 @@
+package net.irisshaders.iris.shaderpack.zip;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A path within a {@link ZipPackFileSystem}. Paths are made of names separated by "/", and absolute paths start at
+ * the root of the zip.
+ */
+final class ZipPackPath implements Path {
+	private static final String[] NO_NAMES = new String[0];
+
+	private final ZipPackFileSystem fileSystem;
+	private final boolean absolute;
+	private final String[] names;
+	private String string;
+
+	ZipPackPath(ZipPackFileSystem fileSystem, boolean absolute, String[] names) {
+		this.fileSystem = fileSystem;
+		this.absolute = absolute;
+		this.names = names;
+	}
+
+	static ZipPackPath parse(ZipPackFileSystem fileSystem, String path) {
+		List<String> names = new ArrayList<>();
+
+		for (String name : path.split("/")) {
+			if (!name.isEmpty()) {
+				names.add(name);
+			}
+		}
+
+		return new ZipPackPath(fileSystem, path.startsWith("/"), names.toArray(NO_NAMES));
+	}
+
+	private ZipPackPath checkPath(Path path) {
+		if (!(path instanceof ZipPackPath other) || other.fileSystem != fileSystem) {
+			throw new ProviderMismatchException();
+		}
+
+		return other;
+	}
+
+	/**
+	 * Returns the name of the entry in the zip that this path refers to, "" being the root directory.
+	 */
+	String getEntryName() {
+		ZipPackPath normalized = (ZipPackPath) toAbsolutePath().normalize();
+		return String.join("/", normalized.names);
+	}
+
+	@Override
+	public ZipPackFileSystem getFileSystem() {
+		return fileSystem;
+	}
+
+	@Override
+	public boolean isAbsolute() {
+		return absolute;
+	}
+
+	@Override
+	public Path getRoot() {
+		return absolute ? new ZipPackPath(fileSystem, true, NO_NAMES) : null;
+	}
+
+	@Override
+	public Path getFileName() {
+		return names.length == 0 ? null : new ZipPackPath(fileSystem, false, new String[]{names[names.length - 1]});
+	}
+
+	@Override
+	public Path getParent() {
+		if (names.length == 0 || (names.length == 1 && !absolute)) {
+			return null;
+		}
+
+		return new ZipPackPath(fileSystem, absolute, Arrays.copyOf(names, names.length - 1));
+	}
+
+	@Override
+	public int getNameCount() {
+		return names.length;
+	}
+
+	@Override
+	public Path getName(int index) {
+		if (index < 0 || index >= names.length) {
+			throw new IllegalArgumentException("Invalid name index " + index + " for " + this);
+		}
+
+		return new ZipPackPath(fileSystem, false, new String[]{names[index]});
+	}
+
+	@Override
+	public Path subpath(int beginIndex, int endIndex) {
+		if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException("Invalid subpath " + beginIndex + ".." + endIndex + " of " + this);
+		}
+
+		return new ZipPackPath(fileSystem, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+	}
+
+	@Override
+	public boolean startsWith(Path other) {
+		if (!(other instanceof ZipPackPath path) || path.fileSystem != fileSystem) {
+			return false;
+		}
+
+		if (path.absolute != absolute || path.names.length > names.length) {
+			return false;
+		}
+
+		for (int i = 0; i < path.names.length; i++) {
+			if (!path.names[i].equals(names[i])) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean endsWith(Path other) {
+		if (!(other instanceof ZipPackPath path) || path.fileSystem != fileSystem) {
+			return false;
+		}
+
+		if (path.absolute) {
+			return equals(path);
+		}
+
+		if (path.names.length == 0 || path.names.length > names.length) {
+			return false;
+		}
+
+		int offset = names.length - path.names.length;
+
+		for (int i = 0; i < path.names.length; i++) {
+			if (!path.names[i].equals(names[offset + i])) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public Path normalize() {
+		List<String> normalized = new ArrayList<>(names.length);
+
+		for (String name : names) {
+			if (name.equals(".")) {
+				continue;
+			}
+
+			if (name.equals("..")) {
+				if (!normalized.isEmpty() && !normalized.get(normalized.size() - 1).equals("..")) {
+					normalized.remove(normalized.size() - 1);
+					continue;
+				}
+
+				if (absolute) {
+					// the parent of the root is the root itself
+					continue;
+				}
+			}
+
+			normalized.add(name);
+		}
+
+		if (normalized.size() == names.length) {
+			return this;
+		}
+
+		return new ZipPackPath(fileSystem, absolute, normalized.toArray(NO_NAMES));
+	}
+
+	@Override
+	public Path resolve(Path other) {
+		ZipPackPath path = checkPath(other);
+
+		if (path.absolute) {
+			return path;
+		}
+
+		if (path.names.length == 0) {
+			return this;
+		}
+
+		String[] resolved = Arrays.copyOf(names, names.length + path.names.length);
+		System.arraycopy(path.names, 0, resolved, names.length, path.names.length);
+
+		return new ZipPackPath(fileSystem, absolute, resolved);
+	}
+
+	@Override
+	public Path relativize(Path other) {
+		ZipPackPath path = checkPath(other);
+
+		if (path.absolute != absolute) {
+			throw new IllegalArgumentException("Can't relativize " + other + " against " + this);
+		}
+
+		int common = 0;
+
+		while (common < names.length && common < path.names.length && names[common].equals(path.names[common])) {
+			common++;
+		}
+
+		List<String> relative = new ArrayList<>();
+
+		for (int i = common; i < names.length; i++) {
+			relative.add("..");
+		}
+
+		relative.addAll(Arrays.asList(path.names).subList(common, path.names.length));
+
+		return new ZipPackPath(fileSystem, false, relative.toArray(NO_NAMES));
+	}
+
+	@Override
+	public URI toUri() {
+		try {
+			return new URI(ZipPackFileSystemProvider.SCHEME, fileSystem.getZip().toUri() + "!" + toAbsolutePath(), null);
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public Path toAbsolutePath() {
+		return absolute ? this : new ZipPackPath(fileSystem, true, names);
+	}
+
+	@Override
+	public Path toRealPath(LinkOption... options) throws IOException {
+		ZipPackPath real = (ZipPackPath) toAbsolutePath().normalize();
+
+		if (!fileSystem.exists(real.getEntryName())) {
+			throw new NoSuchFileException(toString());
+		}
+
+		return real;
+	}
+
+	@Override
+	public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+		throw new UnsupportedOperationException("Zipped shader packs can't be watched");
+	}
+
+	@Override
+	public int compareTo(Path other) {
+		return toString().compareTo(checkPath(other).toString());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof ZipPackPath other && other.fileSystem == fileSystem && other.toString().equals(toString());
+	}
+
+	@Override
+	public int hashCode() {
+		return toString().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		if (string == null) {
+			string = (absolute ? "/" : "") + String.join("/", names);
+		}
+
+		return string;
+	}
+}
@@ -1,8 +1,19 @@
 package net.irisshaders.iris.texture.mipmap;
 
 import com.mojang.blaze3d.platform.NativeImage;
+import net.irisshaders.iris.helpers.WorkerPool;
+import net.irisshaders.iris.texture.util.ImageManipulationUtil;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class AbstractMipmapGenerator implements CustomMipmapGenerator {
+	// Levels at least this large are split into bands of rows that are blended on the worker pool. Smaller levels are
+	// done faster than the tasks could be handed out.
+	private static final int PARALLEL_PIXEL_THRESHOLD = 256 * 256;
+	private static final int ROWS_PER_BAND = 32;
+
 	@Override
 	public NativeImage[] generateMipLevels(NativeImage[] image, int mipLevel) {
 		if (mipLevel + 1 <= image.length) {
@@ -15,18 +26,7 @@ public abstract class AbstractMipmapGenerator implements CustomMipmapGenerator {
 			for (int level = 1; level <= mipLevel; ++level) {
 				NativeImage prevMipmap = level == 1 ? image[0] : newImages[level - 1];
 				NativeImage mipmap = new NativeImage(prevMipmap.getWidth() >> 1, prevMipmap.getHeight() >> 1, false);
-				int width = mipmap.getWidth();
-				int height = mipmap.getHeight();
-				for (int x = 0; x < width; ++x) {
-					for (int y = 0; y < height; ++y) {
-						mipmap.setPixelRGBA(x, y, blend(
-							prevMipmap.getPixelRGBA(x * 2, y * 2),
-							prevMipmap.getPixelRGBA(x * 2 + 1, y * 2),
-							prevMipmap.getPixelRGBA(x * 2, y * 2 + 1),
-							prevMipmap.getPixelRGBA(x * 2 + 1, y * 2 + 1)
-						));
-					}
-				}
+				downsample(prevMipmap, mipmap);
 				newImages[level] = mipmap;
 			}
 		}
@@ -36,5 +36,52 @@ public abstract class AbstractMipmapGenerator implements CustomMipmapGenerator {
 		return newImages;
 	}
 
+	private void downsample(NativeImage source, NativeImage target) {
+		long sourcePixels = ImageManipulationUtil.getPixelsRGBA(source);
+		long targetPixels = ImageManipulationUtil.getPixelsRGBA(target);
+		int sourceWidth = source.getWidth();
+		int width = target.getWidth();
+		int height = target.getHeight();
+
+		if (width * height < PARALLEL_PIXEL_THRESHOLD) {
+			blendRows(sourcePixels, sourceWidth, targetPixels, width, 0, height);
+			return;
+		}
+
+		List<Integer> bands = new ArrayList<>();
+
+		for (int startY = 0; startY < height; startY += ROWS_PER_BAND) {
+			bands.add(startY);
+		}
+
+		WorkerPool.forEach(bands, startY -> blendRows(sourcePixels, sourceWidth, targetPixels, width,
+			startY, Math.min(startY + ROWS_PER_BAND, height)));
+	}
+
+	/**
+	 * Blends the rows from startY up to endY of a mip level from the level above it, working directly on the pixels of
+	 * both images. Both images are walked row by row, so every row of the source is read front to back.
+	 */
+	protected void blendRows(long source, int sourceWidth, long target, int width, int startY, int endY) {
+		long sourceStride = sourceWidth * 4L;
+
+		for (int y = startY; y < endY; y++) {
+			long top = source + y * 2L * sourceStride;
+			long bottom = top + sourceStride;
+			long out = target + (long) y * width * 4L;
+
+			for (int x = 0; x < width; x++) {
+				long offset = x * 8L;
+
+				MemoryUtil.memPutInt(out + x * 4L, blend(
+					MemoryUtil.memGetInt(top + offset),
+					MemoryUtil.memGetInt(top + offset + 4),
+					MemoryUtil.memGetInt(bottom + offset),
+					MemoryUtil.memGetInt(bottom + offset + 4)
+				));
+			}
+		}
+	}
+
 	public abstract int blend(int c0, int c1, int c2, int c3);
 }
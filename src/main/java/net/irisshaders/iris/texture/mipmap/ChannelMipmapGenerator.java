@@ -7,16 +7,27 @@ public class ChannelMipmapGenerator extends AbstractMipmapGenerator {
 	protected final BlendFunction greenFunc;
 	protected final BlendFunction blueFunc;
 	protected final BlendFunction alphaFunc;
+	private final boolean linear;
 
 	public ChannelMipmapGenerator(BlendFunction redFunc, BlendFunction greenFunc, BlendFunction blueFunc, BlendFunction alphaFunc) {
 		this.redFunc = redFunc;
 		this.greenFunc = greenFunc;
 		this.blueFunc = blueFunc;
 		this.alphaFunc = alphaFunc;
+		this.linear = isLinear(redFunc) && isLinear(greenFunc) && isLinear(blueFunc) && isLinear(alphaFunc);
+	}
+
+	private static boolean isLinear(BlendFunction function) {
+		// subclasses could blend differently
+		return function.getClass() == LinearBlendFunction.class;
 	}
 
 	@Override
 	public int blend(int c0, int c1, int c2, int c3) {
+		if (linear) {
+			return LinearBlendFunction.blendPacked(c0, c1, c2, c3);
+		}
+
 		return FastColor.ABGR32.color(
 			alphaFunc.blend(
 				FastColor.ABGR32.alpha(c0),
@@ -4,9 +4,15 @@ import java.util.function.IntUnaryOperator;
 
 public class DiscreteBlendFunction implements ChannelMipmapGenerator.BlendFunction {
 	protected final IntUnaryOperator typeFunc;
+	// The types of all values a color channel can have, so that typeFunc isn't called four times for every pixel
+	private final int[] channelTypes = new int[256];
 
 	public DiscreteBlendFunction(IntUnaryOperator typeFunc) {
 		this.typeFunc = typeFunc;
+
+		for (int value = 0; value < channelTypes.length; value++) {
+			channelTypes[value] = typeFunc.applyAsInt(value);
+		}
 	}
 
 	/**
@@ -27,10 +33,10 @@ public class DiscreteBlendFunction implements ChannelMipmapGenerator.BlendFuncti
 
 	@Override
 	public int blend(int v0, int v1, int v2, int v3) {
-		int t0 = typeFunc.applyAsInt(v0);
-		int t1 = typeFunc.applyAsInt(v1);
-		int t2 = typeFunc.applyAsInt(v2);
-		int t3 = typeFunc.applyAsInt(v3);
+		int t0 = getType(v0);
+		int t1 = getType(v1);
+		int t2 = getType(v2);
+		int t3 = getType(v3);
 
 		int targetType = selectTargetType(t0, t1, t2, t3);
 
@@ -55,4 +61,8 @@ public class DiscreteBlendFunction implements ChannelMipmapGenerator.BlendFuncti
 
 		return sum / amount;
 	}
+
+	private int getType(int value) {
+		return (value & ~0xFF) == 0 ? channelTypes[value] : typeFunc.applyAsInt(value);
+	}
 }
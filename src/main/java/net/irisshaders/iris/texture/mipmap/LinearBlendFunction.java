@@ -3,6 +3,19 @@ package net.irisshaders.iris.texture.mipmap;
 public class LinearBlendFunction implements ChannelMipmapGenerator.BlendFunction {
 	public static final LinearBlendFunction INSTANCE = new LinearBlendFunction();
 
+	private static final int EVEN_CHANNELS = 0x00FF00FF;
+
+	/**
+	 * Averages all four channels of four packed colors at once, with the same result as blending every channel on its
+	 * own. Every other channel is spread out to 16 bits so that the sums can't overflow into their neighbours.
+	 */
+	public static int blendPacked(int c0, int c1, int c2, int c3) {
+		int even = (c0 & EVEN_CHANNELS) + (c1 & EVEN_CHANNELS) + (c2 & EVEN_CHANNELS) + (c3 & EVEN_CHANNELS);
+		int odd = ((c0 >>> 8) & EVEN_CHANNELS) + ((c1 >>> 8) & EVEN_CHANNELS) + ((c2 >>> 8) & EVEN_CHANNELS) + ((c3 >>> 8) & EVEN_CHANNELS);
+
+		return ((even >>> 2) & EVEN_CHANNELS) | (((odd >>> 2) & EVEN_CHANNELS) << 8);
+	}
+
 	@Override
 	public int blend(int v0, int v1, int v2, int v3) {
 		return (v0 + v1 + v2 + v3) / 4;
@@ -2,6 +2,7 @@ package net.irisshaders.iris.texture.pbr.loader;
 
 import com.mojang.blaze3d.platform.NativeImage;
 import net.irisshaders.iris.Iris;
+import net.irisshaders.iris.helpers.WorkerPool;
 import net.irisshaders.iris.mixin.texture.AnimationMetadataSectionAccessor;
 import net.irisshaders.iris.mixin.texture.TextureAtlasAccessor;
 import net.irisshaders.iris.texture.format.TextureFormat;
@@ -28,7 +29,10 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 public class AtlasPBRLoader implements PBRTextureLoader<TextureAtlas> {
 	public static final ChannelMipmapGenerator LINEAR_MIPMAP_GENERATOR = new ChannelMipmapGenerator(
@@ -45,11 +49,30 @@ public class AtlasPBRLoader implements PBRTextureLoader<TextureAtlas> {
 		int atlasHeight = atlasAccessor.callGetHeight();
 		int mipLevel = atlasAccessor.getMipLevel();
 
+		List<TextureAtlasSprite> sprites = new ArrayList<>(atlasAccessor.getTexturesByName().values());
+		PBRTextureAtlasSprite[] normalSprites = new PBRTextureAtlasSprite[sprites.size()];
+		PBRTextureAtlasSprite[] specularSprites = new PBRTextureAtlasSprite[sprites.size()];
+
+		// Reading, scaling and mipmapping the images of the sprites doesn't touch any shared state, so it is done on
+		// the worker pool. Only adding the sprites to the atlases and uploading those happens on this thread.
+		try {
+			WorkerPool.forEach(IntStream.range(0, sprites.size()).boxed().toList(), index -> {
+				TextureAtlasSprite sprite = sprites.get(index);
+				normalSprites[index] = createPBRSprite(sprite, resourceManager, atlas, atlasWidth, atlasHeight, mipLevel, PBRType.NORMAL);
+				specularSprites[index] = createPBRSprite(sprite, resourceManager, atlas, atlasWidth, atlasHeight, mipLevel, PBRType.SPECULAR);
+			});
+		} catch (RuntimeException e) {
+			closeAll(normalSprites);
+			closeAll(specularSprites);
+			throw e;
+		}
+
 		PBRAtlasTexture normalAtlas = null;
 		PBRAtlasTexture specularAtlas = null;
-		for (TextureAtlasSprite sprite : ((TextureAtlasAccessor) atlas).getTexturesByName().values()) {
-			PBRTextureAtlasSprite normalSprite = createPBRSprite(sprite, resourceManager, atlas, atlasWidth, atlasHeight, mipLevel, PBRType.NORMAL);
-			PBRTextureAtlasSprite specularSprite = createPBRSprite(sprite, resourceManager, atlas, atlasWidth, atlasHeight, mipLevel, PBRType.SPECULAR);
+		for (int i = 0; i < sprites.size(); i++) {
+			TextureAtlasSprite sprite = sprites.get(i);
+			PBRTextureAtlasSprite normalSprite = normalSprites[i];
+			PBRTextureAtlasSprite specularSprite = specularSprites[i];
 			if (normalSprite != null) {
 				if (normalAtlas == null) {
 					normalAtlas = new PBRAtlasTexture(atlas, PBRType.NORMAL);
@@ -80,6 +103,18 @@ public class AtlasPBRLoader implements PBRTextureLoader<TextureAtlas> {
 		}
 	}
 
+	private static void closeAll(PBRTextureAtlasSprite[] sprites) {
+		for (PBRTextureAtlasSprite sprite : sprites) {
+			if (sprite != null) {
+				sprite.contents().close();
+			}
+		}
+	}
+
+	/**
+	 * Loads the PBR sprite of one type for a sprite of the atlas. This is called on the worker pool, for many sprites
+	 * at the same time.
+	 */
 	@Nullable
 	protected PBRTextureAtlasSprite createPBRSprite(TextureAtlasSprite sprite, ResourceManager resourceManager, TextureAtlas atlas, int atlasWidth, int atlasHeight, int mipLevel, PBRType pbrType) {
 		ResourceLocation spriteName = sprite.contents().name();
@@ -1,94 +1,139 @@
 package net.irisshaders.iris.texture.util;
 
 import com.mojang.blaze3d.platform.NativeImage;
+import net.irisshaders.iris.mixin.texture.NativeImageAccessor;
 import net.minecraft.util.FastColor;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.Locale;
 
 public class ImageManipulationUtil {
+	/**
+	 * Returns the address of the pixels of an RGBA image, which are stored row by row as one int per pixel, with the
+	 * same checks that {@link NativeImage#getPixelRGBA} does for every single pixel.
+	 */
+	public static long getPixelsRGBA(NativeImage image) {
+		if (image.format() != NativeImage.Format.RGBA) {
+			throw new IllegalArgumentException(String.format(Locale.ROOT, "getPixelsRGBA only works on RGBA images; have %s", image.format()));
+		}
+
+		long pixels = ((NativeImageAccessor) (Object) image).getPixels();
+
+		if (pixels == 0L) {
+			throw new IllegalStateException("Image is not allocated.");
+		}
+
+		return pixels;
+	}
+
 	public static NativeImage scaleNearestNeighbor(NativeImage image, int newWidth, int newHeight) {
+		long source = getPixelsRGBA(image);
+		int width = image.getWidth();
+		int height = image.getHeight();
 		NativeImage scaled = new NativeImage(image.format(), newWidth, newHeight, false);
-		float xScale = (float) newWidth / image.getWidth();
-		float yScale = (float) newHeight / image.getHeight();
+		long target = getPixelsRGBA(scaled);
+		float xScale = (float) newWidth / width;
+		float yScale = (float) newHeight / height;
+
+		// Every row samples the same columns, so they are only worked out once
+		int[] sourceX = new int[newWidth];
+		for (int x = 0; x < newWidth; ++x) {
+			float unscaledX = (x + 0.5f) / xScale;
+			sourceX[x] = Math.min((int) unscaledX, width - 1);
+		}
+
 		for (int y = 0; y < newHeight; ++y) {
+			float unscaledY = (y + 0.5f) / yScale;
+			long sourceRow = source + (long) Math.min((int) unscaledY, height - 1) * width * 4L;
+			long targetRow = target + (long) y * newWidth * 4L;
 			for (int x = 0; x < newWidth; ++x) {
-				float unscaledX = (x + 0.5f) / xScale;
-				float unscaledY = (y + 0.5f) / yScale;
-				scaled.setPixelRGBA(x, y, image.getPixelRGBA((int) unscaledX, (int) unscaledY));
+				MemoryUtil.memPutInt(targetRow + x * 4L, MemoryUtil.memGetInt(sourceRow + sourceX[x] * 4L));
 			}
 		}
 		return scaled;
 	}
 
 	public static NativeImage scaleBilinear(NativeImage image, int newWidth, int newHeight) {
+		long source = getPixelsRGBA(image);
+		int width = image.getWidth();
+		int height = image.getHeight();
 		NativeImage scaled = new NativeImage(image.format(), newWidth, newHeight, false);
-		float xScale = (float) newWidth / image.getWidth();
-		float yScale = (float) newHeight / image.getHeight();
+		long target = getPixelsRGBA(scaled);
+		float xScale = (float) newWidth / width;
+		float yScale = (float) newHeight / height;
+
+		// Every row samples the same columns with the same weights, so they are only worked out once
+		int[] columnX0 = new int[newWidth];
+		int[] columnX1 = new int[newWidth];
+		float[] columnLeftWeight = new float[newWidth];
+		float[] columnRightWeight = new float[newWidth];
+		for (int x = 0; x < newWidth; ++x) {
+			float unscaledX = (x + 0.5f) / xScale;
+
+			int x1 = Math.round(unscaledX);
+			int x0 = x1 - 1;
+
+			columnX0[x] = x0;
+			columnX1[x] = x1;
+			columnLeftWeight[x] = (x1 + 0.5f) - unscaledX;
+			columnRightWeight[x] = unscaledX - (x0 + 0.5f);
+		}
+
 		for (int y = 0; y < newHeight; ++y) {
+			float unscaledY = (y + 0.5f) / yScale;
+
+			int y1 = Math.round(unscaledY);
+			int y0 = y1 - 1;
+
+			boolean y0valid = y0 >= 0;
+			boolean y1valid = y1 < height;
+
+			float topWeight = (y1 + 0.5f) - unscaledY;
+			float bottomWeight = unscaledY - (y0 + 0.5f);
+
+			long row0 = source + (long) y0 * width * 4L;
+			long row1 = source + (long) y1 * width * 4L;
+			long validRow = y0valid ? row0 : row1;
+			long targetRow = target + (long) y * newWidth * 4L;
+
 			for (int x = 0; x < newWidth; ++x) {
-				float unscaledX = (x + 0.5f) / xScale;
-				float unscaledY = (y + 0.5f) / yScale;
-
-				int x1 = Math.round(unscaledX);
-				int y1 = Math.round(unscaledY);
-				int x0 = x1 - 1;
-				int y0 = y1 - 1;
-
-				boolean x0valid = true;
-				boolean y0valid = true;
-				boolean x1valid = true;
-				boolean y1valid = true;
-				if (x0 < 0) {
-					x0valid = false;
-				}
-				if (y0 < 0) {
-					y0valid = false;
-				}
-				if (x1 >= image.getWidth()) {
-					x1valid = false;
-				}
-				if (y1 >= image.getHeight()) {
-					y1valid = false;
-				}
+				int x0 = columnX0[x];
+				int x1 = columnX1[x];
 
-				int finalColor = 0;
+				boolean x0valid = x0 >= 0;
+				boolean x1valid = x1 < width;
+
+				int finalColor;
 				if (x0valid & y0valid & x1valid & y1valid) {
-					float leftWeight = (x1 + 0.5f) - unscaledX;
-					float rightWeight = unscaledX - (x0 + 0.5f);
-					float topWeight = (y1 + 0.5f) - unscaledY;
-					float bottomWeight = unscaledY - (y0 + 0.5f);
+					float leftWeight = columnLeftWeight[x];
+					float rightWeight = columnRightWeight[x];
 
 					float weightTL = leftWeight * topWeight;
 					float weightTR = rightWeight * topWeight;
 					float weightBL = leftWeight * bottomWeight;
 					float weightBR = rightWeight * bottomWeight;
 
-					int colorTL = image.getPixelRGBA(x0, y0);
-					int colorTR = image.getPixelRGBA(x1, y0);
-					int colorBL = image.getPixelRGBA(x0, y1);
-					int colorBR = image.getPixelRGBA(x1, y1);
+					int colorTL = MemoryUtil.memGetInt(row0 + x0 * 4L);
+					int colorTR = MemoryUtil.memGetInt(row0 + x1 * 4L);
+					int colorBL = MemoryUtil.memGetInt(row1 + x0 * 4L);
+					int colorBR = MemoryUtil.memGetInt(row1 + x1 * 4L);
 
 					finalColor = blendColor(colorTL, colorTR, colorBL, colorBR, weightTL, weightTR, weightBL, weightBR);
 				} else if (x0valid & x1valid) {
-					float leftWeight = (x1 + 0.5f) - unscaledX;
-					float rightWeight = unscaledX - (x0 + 0.5f);
-
-					int validY = y0valid ? y0 : y1;
-					int colorLeft = image.getPixelRGBA(x0, validY);
-					int colorRight = image.getPixelRGBA(x1, validY);
+					int colorLeft = MemoryUtil.memGetInt(validRow + x0 * 4L);
+					int colorRight = MemoryUtil.memGetInt(validRow + x1 * 4L);
 
-					finalColor = blendColor(colorLeft, colorRight, leftWeight, rightWeight);
+					finalColor = blendColor(colorLeft, colorRight, columnLeftWeight[x], columnRightWeight[x]);
 				} else if (y0valid & y1valid) {
-					float topWeight = (y1 + 0.5f) - unscaledY;
-					float bottomWeight = unscaledY - (y0 + 0.5f);
-
 					int validX = x0valid ? x0 : x1;
-					int colorTop = image.getPixelRGBA(validX, y0);
-					int colorBottom = image.getPixelRGBA(validX, y1);
+					int colorTop = MemoryUtil.memGetInt(row0 + validX * 4L);
+					int colorBottom = MemoryUtil.memGetInt(row1 + validX * 4L);
 
 					finalColor = blendColor(colorTop, colorBottom, topWeight, bottomWeight);
 				} else {
-					finalColor = image.getPixelRGBA(x0valid ? x0 : x1, y0valid ? y0 : y1);
+					finalColor = MemoryUtil.memGetInt(validRow + (x0valid ? x0 : x1) * 4L);
 				}
-				scaled.setPixelRGBA(x, y, finalColor);
+				MemoryUtil.memPutInt(targetRow + x * 4L, finalColor);
 			}
 		}
 		return scaled;
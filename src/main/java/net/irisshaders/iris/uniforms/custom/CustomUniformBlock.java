@@ -0,0 +1,165 @@
+package net.irisshaders.iris.uniforms.custom;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import net.irisshaders.iris.gl.GLDebug;
+import net.irisshaders.iris.gl.IrisRenderSystem;
+import net.irisshaders.iris.gl.uniform.UniformBlockLayout;
+import net.irisshaders.iris.uniforms.custom.cached.CachedUniform;
+import org.lwjgl.opengl.GL31C;
+import org.lwjgl.opengl.GL43C;
+import org.lwjgl.opengl.GL44C;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The uniform buffer backing the uniform block shared by all programs of a pipeline. The buffer is filled once per
+ * frame, and programs whose uniforms were moved into the block read them from there instead of having them uploaded
+ * separately.
+ * <p>
+ * The buffer is split into {@link #REGIONS} regions, each holding a full copy of the block. Whenever a value changes
+ * the next region is written and bound, and the region that was just retired is fenced, so a region is only written
+ * again once the GPU is done with the draws that read from it. Where buffer storage is available the regions are
+ * mapped persistently and written directly; otherwise they are updated with glBufferSubData.
+ */
+class CustomUniformBlock {
+	/**
+	 * The uniform buffer binding point of the block. Binding points are shared between all programs, and neither
+	 * vanilla nor Sodium use uniform buffers, so this only needs to stay clear of the low binding points that packs
+	 * might pick for their own blocks.
+	 */
+	static final int BINDING = 15;
+
+	// one region being read by the frame on the GPU, one queued up behind it, and one being written
+	private static final int REGIONS = 3;
+	private static final int PERSISTENT_FLAGS =
+		GL44C.GL_MAP_WRITE_BIT | GL44C.GL_MAP_PERSISTENT_BIT | GL44C.GL_MAP_COHERENT_BIT;
+
+	private final UniformBlockLayout layout;
+	private final CachedUniform[] uniforms;
+	private final int[] offsets;
+	private final int[] storedVersions;
+	private final long[] fences = new long[REGIONS];
+	private ByteBuffer data;
+	private int buffer;
+	private long regionSize;
+	private long mapping;
+	private int region;
+
+	CustomUniformBlock(UniformBlockLayout layout, List<CachedUniform> uniforms) {
+		this.layout = layout;
+		this.uniforms = uniforms.toArray(new CachedUniform[0]);
+		this.offsets = new int[this.uniforms.length];
+		this.storedVersions = new int[this.uniforms.length];
+
+		for (int i = 0; i < this.uniforms.length; i++) {
+			this.offsets[i] = layout.getMember(this.uniforms[i].getName()).offset();
+		}
+	}
+
+	UniformBlockLayout getLayout() {
+		return layout;
+	}
+
+	CachedUniform[] getUniforms() {
+		return uniforms;
+	}
+
+	/**
+	 * Uploads the values that changed since the last upload, and binds the current region to {@link #BINDING}.
+	 */
+	void upload() {
+		boolean changed = false;
+
+		if (data == null) {
+			create();
+			// no version is negative until it overflows, so every value is stored the first time
+			Arrays.fill(storedVersions, -1);
+		}
+
+		for (int i = 0; i < uniforms.length; i++) {
+			int version = uniforms[i].getVersion();
+
+			if (version != storedVersions[i]) {
+				uniforms[i].store(data, offsets[i]);
+				storedVersions[i] = version;
+				changed = true;
+			}
+		}
+
+		if (changed) {
+			nextRegion();
+		}
+
+		// bind every frame, since the pipelines of other dimensions use the same binding point
+		IrisRenderSystem.bindBufferRange(GL31C.GL_UNIFORM_BUFFER, BINDING, buffer, region * regionSize, layout.getSize());
+	}
+
+	private void create() {
+		int alignment = GlStateManager._getInteger(GL31C.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT);
+		regionSize = (layout.getSize() + alignment - 1) / alignment * (long) alignment;
+		data = MemoryUtil.memCalloc(layout.getSize());
+		buffer = GlStateManager._glGenBuffers();
+		// start on the last region, so that the first upload writes the first one
+		region = REGIONS - 1;
+
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, buffer);
+
+		if (IrisRenderSystem.supportsBufferStorage()) {
+			IrisRenderSystem.bufferStorage(GL31C.GL_UNIFORM_BUFFER, regionSize * REGIONS, PERSISTENT_FLAGS);
+			mapping = IrisRenderSystem.mapBufferRange(GL31C.GL_UNIFORM_BUFFER, 0, regionSize * REGIONS, PERSISTENT_FLAGS);
+		} else {
+			IrisRenderSystem.bufferData(GL31C.GL_UNIFORM_BUFFER, regionSize * REGIONS, GL31C.GL_DYNAMIC_DRAW);
+		}
+
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, 0);
+		GLDebug.nameObject(GL43C.GL_BUFFER, buffer, "Custom uniform block");
+	}
+
+	/**
+	 * Retires the current region and writes the block to the next one, waiting for the GPU to finish reading from it if
+	 * it is still in use.
+	 */
+	private void nextRegion() {
+		fences[region] = IrisRenderSystem.fenceSync();
+		region = (region + 1) % REGIONS;
+
+		if (fences[region] != 0L) {
+			IrisRenderSystem.waitSync(fences[region]);
+			IrisRenderSystem.deleteSync(fences[region]);
+			fences[region] = 0L;
+		}
+
+		long offset = region * regionSize;
+
+		if (mapping != 0L) {
+			MemoryUtil.memCopy(MemoryUtil.memAddress(data), mapping + offset, layout.getSize());
+		} else {
+			GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, buffer);
+			IrisRenderSystem.bufferSubData(GL31C.GL_UNIFORM_BUFFER, offset, data);
+			GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, 0);
+		}
+	}
+
+	void destroy() {
+		if (data == null) {
+			return;
+		}
+
+		for (int i = 0; i < REGIONS; i++) {
+			if (fences[i] != 0L) {
+				IrisRenderSystem.deleteSync(fences[i]);
+				fences[i] = 0L;
+			}
+		}
+
+		IrisRenderSystem.bindBufferBase(GL31C.GL_UNIFORM_BUFFER, BINDING, 0);
+		// deleting the buffer also unmaps it
+		IrisRenderSystem.deleteBuffers(buffer);
+		MemoryUtil.memFree(data);
+		data = null;
+		mapping = 0L;
+	}
+}
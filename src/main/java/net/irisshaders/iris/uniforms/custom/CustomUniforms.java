@@ -8,6 +8,8 @@ import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import kroppeb.stareval.element.ExpressionElement;
+import kroppeb.stareval.expression.CallExpression;
+import kroppeb.stareval.expression.ConstantExpression;
 import kroppeb.stareval.expression.Expression;
 import kroppeb.stareval.expression.VariableExpression;
 import kroppeb.stareval.function.FunctionContext;
@@ -17,13 +19,19 @@ import kroppeb.stareval.parser.Parser;
 import kroppeb.stareval.resolver.ExpressionResolver;
 import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.gl.uniform.LocationalUniformHolder;
+import net.irisshaders.iris.gl.uniform.UniformBlockLayout;
 import net.irisshaders.iris.gl.uniform.UniformHolder;
+import net.irisshaders.iris.gl.uniform.UniformType;
+import net.irisshaders.iris.gl.uniform.UniformUpdateFrequency;
 import net.irisshaders.iris.parsing.IrisFunctions;
 import net.irisshaders.iris.parsing.IrisOptions;
 import net.irisshaders.iris.parsing.VectorType;
 import net.irisshaders.iris.uniforms.custom.cached.CachedUniform;
+import net.minecraft.client.Minecraft;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
@@ -33,14 +41,28 @@ import java.util.stream.Collectors;
 
 
 public class CustomUniforms implements FunctionContext {
+	/**
+	 * Set the {@code iris.uniformBlock} system property to read the built-in inputs and the custom uniforms from a
+	 * uniform buffer that is filled once per frame, instead of uploading them to every program that uses them.
+	 */
+	private static final boolean USE_UNIFORM_BLOCK = Boolean.getBoolean("iris.uniformBlock");
 	private final Map<String, CachedUniform> variables = new Object2ObjectLinkedOpenHashMap<>();
 	private final Map<String, Expression> variablesExpressions = new Object2ObjectLinkedOpenHashMap<>();
 	private final CustomUniformFixedInputUniformsHolder inputHolder;
 	private final List<CachedUniform> uniforms = new ArrayList<>();
 	private final List<CachedUniform> uniformOrder;
-	private final Map<Object, Object2IntMap<CachedUniform>> locationMap = new Object2ObjectOpenHashMap<>();
+	private final Map<Object, PassUniforms> locationMap = new Object2ObjectOpenHashMap<>();
 	private final Map<CachedUniform, List<CachedUniform>> dependsOn;
 	private final Map<CachedUniform, List<CachedUniform>> requiredBy;
+	private final Map<CachedUniform, UniformUpdateFrequency> frequencies = new Object2ObjectOpenHashMap<>();
+	private final CustomUniformBlock block;
+	private List<CachedUniform> onceOrder;
+	private List<CachedUniform> perTickOrder;
+	private List<CachedUniform> perFrameOrder;
+	private boolean hasUpdated;
+	private long lastTick;
+	// incremented whenever the once or per tick uniforms are updated, so passes know when to check those for changes
+	private int tickGeneration;
 
 	private CustomUniforms(CustomUniformFixedInputUniformsHolder inputHolder, Map<String, Builder.Variable> variables) {
 		this.inputHolder = inputHolder;
@@ -57,9 +79,41 @@ public class CustomUniforms implements FunctionContext {
 			},
 			true);
 
+		FunctionReturn folding = new FunctionReturn();
+		Map<Builder.Variable, Expression> resolved = new Object2ObjectLinkedOpenHashMap<>();
+
 		for (Builder.Variable variable : variables.values()) {
 			try {
 				Expression expression = resolver.resolveExpression(variable.type, variable.expression);
+				// Fold constant subexpressions and branches that can never be taken. Custom variables aren't known yet,
+				// so they stay references to be looked up later.
+				resolved.put(variable, expression.partialEval(this, folding));
+			} catch (Exception e) {
+				warnUnresolved(variable, e);
+			}
+		}
+
+		// Evaluate subexpressions that are shared between or within uniforms only once, in hidden variables that
+		// are updated before the uniforms using them.
+		SubexpressionHoister hoister = new SubexpressionHoister(this);
+		resolved.values().forEach(hoister::count);
+		resolved.replaceAll((variable, expression) -> hoister.rewrite(expression));
+
+		for (Map.Entry<String, SubexpressionHoister.Hoisted> entry : hoister.getHoisted().entrySet()) {
+			try {
+				SubexpressionHoister.Hoisted hoisted = entry.getValue();
+				this.addVariable(hoisted.expression(),
+					CachedUniform.forExpression(entry.getKey(), hoisted.type(), hoisted.expression(), this));
+			} catch (Exception e) {
+				Iris.logger.warn("Failed to share subexpression " + entry.getKey() + ", reason: " + e.getMessage(), e);
+			}
+		}
+
+		for (Map.Entry<Builder.Variable, Expression> entry : resolved.entrySet()) {
+			Builder.Variable variable = entry.getKey();
+
+			try {
+				Expression expression = entry.getValue();
 				CachedUniform cachedUniform = CachedUniform
 					.forExpression(variable.name, variable.type, expression, this);
 				this.addVariable(expression, cachedUniform);
@@ -68,9 +122,7 @@ public class CustomUniforms implements FunctionContext {
 				}
 				//Iris.logger.info("Was able to resolve uniform " + variable.name + " = " + variable.expression);
 			} catch (Exception e) {
-				Iris.logger
-					.warn("Failed to resolve uniform " + variable.name + ", reason: " + e
-						.getMessage() + " ( = " + variable.expression + ")", e);
+				warnUnresolved(variable, e);
 			}
 		}
 
@@ -174,6 +226,127 @@ public class CustomUniforms implements FunctionContext {
 
 			this.uniformOrder = ordered;
 		}
+
+		this.classifyFrequencies();
+		this.buildSchedules();
+		this.block = USE_UNIFORM_BLOCK ? this.createBlock() : null;
+	}
+
+	private static void warnUnresolved(Builder.Variable variable, Exception e) {
+		Iris.logger
+			.warn("Failed to resolve uniform " + variable.name + ", reason: " + e
+				.getMessage() + " ( = " + variable.expression + ")", e);
+	}
+
+	private static long getCurrentTick() {
+		if (Minecraft.getInstance().level == null) {
+			return 0L;
+		} else {
+			return Minecraft.getInstance().level.getGameTime();
+		}
+	}
+
+	/**
+	 * Returns whether the expression always gives the same result for the same variable values.
+	 */
+	private static boolean isPure(Expression expression) {
+		if (expression instanceof CallExpression call) {
+			if (!call.getFunction().isPure()) {
+				return false;
+			}
+
+			for (Expression argument : call.getArguments()) {
+				if (!isPure(argument)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		return expression instanceof ConstantExpression || expression instanceof VariableExpression;
+	}
+
+	/**
+	 * A custom uniform only needs to be updated as often as the most frequently changing uniform it depends on.
+	 * Uniforms that call impure functions, such as random() or smooth(), are always updated every frame.
+	 */
+	private void classifyFrequencies() {
+		// dependencies always come before the uniforms depending on them
+		for (CachedUniform uniform : this.uniformOrder) {
+			UniformUpdateFrequency frequency;
+
+			if (this.variables.get(uniform.getName()) != uniform) {
+				// a built-in input, CUSTOM is the frequency of uniforms defined by the pack, so don't trust it here
+				frequency = uniform.getUpdateFrequency() == UniformUpdateFrequency.CUSTOM
+					? UniformUpdateFrequency.PER_FRAME
+					: uniform.getUpdateFrequency();
+			} else if (!isPure(this.variablesExpressions.get(uniform.getName()))) {
+				frequency = UniformUpdateFrequency.PER_FRAME;
+			} else {
+				frequency = UniformUpdateFrequency.ONCE;
+
+				for (CachedUniform dependency : this.dependsOn.getOrDefault(uniform, List.of())) {
+					UniformUpdateFrequency dependencyFrequency =
+						this.frequencies.getOrDefault(dependency, UniformUpdateFrequency.PER_FRAME);
+
+					if (dependencyFrequency.ordinal() > frequency.ordinal()) {
+						frequency = dependencyFrequency;
+					}
+				}
+			}
+
+			this.frequencies.put(uniform, frequency);
+		}
+	}
+
+	private void buildSchedules() {
+		this.onceOrder = new ObjectArrayList<>();
+		this.perTickOrder = new ObjectArrayList<>();
+		this.perFrameOrder = new ObjectArrayList<>();
+
+		for (CachedUniform uniform : this.uniformOrder) {
+			switch (this.frequencies.get(uniform)) {
+				case ONCE -> this.onceOrder.add(uniform);
+				case PER_TICK -> this.perTickOrder.add(uniform);
+				default -> this.perFrameOrder.add(uniform);
+			}
+		}
+	}
+
+	/**
+	 * The block holds the built-in inputs and the uniforms defined by the pack, but not the variables, which are only
+	 * uploaded to programs that happen to declare a uniform with the same name.
+	 */
+	private CustomUniformBlock createBlock() {
+		Set<CachedUniform> declaredUniforms = new ObjectOpenHashSet<>(this.uniforms);
+		Map<String, UniformType> types = new Object2ObjectLinkedOpenHashMap<>();
+		List<CachedUniform> members = new ArrayList<>();
+
+		for (CachedUniform uniform : this.uniformOrder) {
+			if (declaredUniforms.contains(uniform) || this.inputHolder.getUniform(uniform.getName()) == uniform) {
+				types.put(uniform.getName(), Type.convert(uniform.getType()));
+				members.add(uniform);
+			}
+		}
+
+		UniformBlockLayout layout = UniformBlockLayout.create(types);
+
+		if (layout == null) {
+			Iris.logger.warn("Not using a uniform block for the custom uniforms since they don't fit into one");
+			return null;
+		}
+
+		members.removeIf(uniform -> layout.getMember(uniform.getName()) == null);
+
+		return new CustomUniformBlock(layout, members);
+	}
+
+	private static void updateAll(List<CachedUniform> uniforms) {
+		// Indexed to avoid allocating an iterator every frame.
+		for (int i = 0; i < uniforms.size(); i++) {
+			uniforms.get(i).update();
+		}
 	}
 
 	private void addVariable(Expression expression, CachedUniform uniform) throws Exception {
@@ -199,7 +372,36 @@ public class CustomUniforms implements FunctionContext {
 				throw new RuntimeException(uniform.getName(), e);
 			}
 		}
-		this.locationMap.put(targetHolder, locations);
+		this.locationMap.put(targetHolder, new PassUniforms(locations, this.frequencies));
+
+		if (this.block != null) {
+			// programs that kept using plain uniforms don't have the block, which makes this a no-op for them
+			targetHolder.bindUniformBlock(UniformBlockLayout.BLOCK_NAME, CustomUniformBlock.BINDING);
+		}
+	}
+
+	/**
+	 * Returns the layout of the uniform block holding the custom uniforms, or null if they are uploaded to every
+	 * program separately.
+	 */
+	public UniformBlockLayout getUniformBlockLayout() {
+		return this.block != null ? this.block.getLayout() : null;
+	}
+
+	/**
+	 * Uploads the current values to the uniform block and binds it. This must be called every frame after
+	 * {@link #update()}.
+	 */
+	public void uploadBlock() {
+		if (this.block != null) {
+			this.block.upload();
+		}
+	}
+
+	public void destroy() {
+		if (this.block != null) {
+			this.block.destroy();
+		}
 	}
 
 	public void mapholderToPass(LocationalUniformHolder holder, Object pass) {
@@ -208,15 +410,35 @@ public class CustomUniforms implements FunctionContext {
 
 
 	public void update() {
-		for (CachedUniform value : this.uniformOrder) {
-			value.update();
+		update(getCurrentTick());
+	}
+
+	/**
+	 * Updates the custom uniforms. Uniforms that only depend on per tick values are only updated if the tick
+	 * changed, and uniforms that only depend on constant values are only updated the first time.
+	 */
+	public void update(long currentTick) {
+		if (!this.hasUpdated) {
+			this.hasUpdated = true;
+			this.lastTick = currentTick;
+			this.tickGeneration++;
+
+			updateAll(this.onceOrder);
+			updateAll(this.perTickOrder);
+		} else if (this.lastTick != currentTick) {
+			this.lastTick = currentTick;
+			this.tickGeneration++;
+
+			updateAll(this.perTickOrder);
 		}
+
+		updateAll(this.perFrameOrder);
 	}
 
 	public void push(Object pass) {
-		Object2IntMap<CachedUniform> uniforms = this.locationMap.get(pass);
+		PassUniforms uniforms = this.locationMap.get(pass);
 		if (uniforms != null) {
-			uniforms.forEach(CachedUniform::pushIfChanged);
+			uniforms.push(this.tickGeneration);
 		}
 	}
 
@@ -227,15 +449,7 @@ public class CustomUniforms implements FunctionContext {
 	 *         Remove unused uniforms
 	 *     </li>
 	 *     <li>
-	 *         TODO: Create separate push lists for each renderpass
-	 *     </li>
-	 *     <li>
-	 *         TODO: Sort the others in the correct execution line <p/>
-	 *               note: that if a `EVERY_FRAME` depends on a `EVERY_TICK`, it has to correctly now that it's
-	 *               dependency hasn't updated <br/>
-	 *                  suggestion: set a boolean in the `EVERY_TICK` execution line saying this is a tick
-	 *                  and have it set to false in the `EVERY_FRAME`. Depending on the value, `frameDependencies` or
-	 *                  `allDependencies` lists are used
+	 *         Rebuild the once, per tick and per frame execution lines without them
 	 *     </li>
 	 * </ul>
 	 */
@@ -252,8 +466,15 @@ public class CustomUniforms implements FunctionContext {
 
 		// Count the times a pass depends on a uniform
 		// ensures they wont ever be removed
-		for (Object2IntMap<CachedUniform> map : this.locationMap.values()) {
-			for (CachedUniform cachedUniform : map.keySet()) {
+		for (PassUniforms pass : this.locationMap.values()) {
+			for (CachedUniform cachedUniform : pass.uniforms) {
+				dependedByCount.mergeInt(cachedUniform, 1, Integer::sum);
+			}
+		}
+
+		// the block is filled with every member, whether a pass reads it or not
+		if (this.block != null) {
+			for (CachedUniform cachedUniform : this.block.getUniforms()) {
 				dependedByCount.mergeInt(cachedUniform, 1, Integer::sum);
 			}
 		}
@@ -277,6 +498,7 @@ public class CustomUniforms implements FunctionContext {
 		}
 
 		this.uniformOrder.removeAll(unused);
+		this.buildSchedules();
 	}
 
 	@Override
@@ -296,6 +518,66 @@ public class CustomUniforms implements FunctionContext {
 		throw new RuntimeException("Unknown variable: " + name);
 	}
 
+	/**
+	 * The custom uniforms of a single pass, along with the version of each uniform that was last uploaded to it.
+	 * Uniform values are stored in the program object, so they only need to be uploaded again once they change.
+	 * <p>
+	 * The uniforms are sorted by update frequency, so the ones that can only change on a tick are skipped entirely
+	 * between ticks.
+	 */
+	private static class PassUniforms {
+		private final CachedUniform[] uniforms;
+		private final int[] locations;
+		private final int[] pushedVersions;
+		// the index of the first uniform that is updated every frame
+		private final int perFrameStart;
+		private int pushedTickGeneration = -1;
+
+		PassUniforms(Object2IntMap<CachedUniform> locations, Map<CachedUniform, UniformUpdateFrequency> frequencies) {
+			this.uniforms = new CachedUniform[locations.size()];
+			this.locations = new int[locations.size()];
+			this.pushedVersions = new int[locations.size()];
+
+			List<Object2IntMap.Entry<CachedUniform>> entries = new ArrayList<>(locations.object2IntEntrySet());
+			entries.sort(Comparator.comparingInt(entry -> frequencies.get(entry.getKey()).ordinal()));
+
+			int perFrameStart = entries.size();
+			for (int i = 0; i < entries.size(); i++) {
+				Object2IntMap.Entry<CachedUniform> entry = entries.get(i);
+				this.uniforms[i] = entry.getKey();
+				this.locations[i] = entry.getIntValue();
+
+				if (perFrameStart == entries.size() && frequencies.get(entry.getKey()) == UniformUpdateFrequency.PER_FRAME) {
+					perFrameStart = i;
+				}
+			}
+
+			this.perFrameStart = perFrameStart;
+
+			// no version is negative until it overflows, so this makes sure every uniform is uploaded at least once
+			Arrays.fill(this.pushedVersions, -1);
+		}
+
+		void push(int tickGeneration) {
+			int start = this.perFrameStart;
+
+			if (tickGeneration != this.pushedTickGeneration) {
+				this.pushedTickGeneration = tickGeneration;
+				start = 0;
+			}
+
+			for (int i = start; i < this.uniforms.length; i++) {
+				CachedUniform uniform = this.uniforms[i];
+				int version = uniform.getVersion();
+
+				if (version != this.pushedVersions[i]) {
+					uniform.push(this.locations[i]);
+					this.pushedVersions[i] = version;
+				}
+			}
+		}
+	}
+
 	public static class Builder {
 		final private static Map<String, Type> types = new ImmutableMap.Builder<String, Type>()
 			.put("bool", Type.Boolean)
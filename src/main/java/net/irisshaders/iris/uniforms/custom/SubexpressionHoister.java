@@ -0,0 +1,232 @@
+package net.irisshaders.iris.uniforms.custom;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import kroppeb.stareval.expression.CallExpression;
+import kroppeb.stareval.expression.ConstantExpression;
+import kroppeb.stareval.expression.Expression;
+import kroppeb.stareval.expression.NamedVariableExpression;
+import kroppeb.stareval.function.FunctionContext;
+import kroppeb.stareval.function.FunctionReturn;
+import kroppeb.stareval.function.Type;
+import kroppeb.stareval.function.TypedFunction;
+import net.irisshaders.iris.parsing.IfFunction;
+import net.irisshaders.iris.parsing.VectorType;
+import net.irisshaders.iris.uniforms.custom.cached.CachedUniform;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds subexpressions that occur more than once across the custom uniforms of a pack, and moves them into hidden
+ * variables so that they are evaluated once instead of once per occurrence.
+ * <p>
+ * Two subexpressions are considered equal if they call the same function instances with equal arguments. Functions
+ * that keep state per call site, like smooth(), are never equal to each other and therefore never shared.
+ * <p>
+ * Only occurrences that are always evaluated are counted. A subexpression that only occurs in a branch of an if()
+ * could throw if evaluated when the branch isn't taken, like a division by a value that the condition checks.
+ */
+class SubexpressionHoister {
+	private static final String PREFIX = "<shared$";
+	// hoisting a single call doesn't pay for the extra variable
+	private static final int MIN_CALLS = 2;
+	private static final Set<Type> HOISTABLE_TYPES = Set.of(
+		Type.Boolean, Type.Int, Type.Float, VectorType.VEC2, VectorType.VEC3, VectorType.VEC4
+	);
+
+	private final FunctionContext context;
+	private final FunctionReturn functionReturn = new FunctionReturn();
+	private final Map<Expression, Object> keys = new IdentityHashMap<>();
+	private final Object2IntMap<Object> occurrences = new Object2IntOpenHashMap<>();
+	private final Map<Object, String> hoistedNames = new Object2ObjectOpenHashMap<>();
+	private final Map<String, Hoisted> hoisted = new Object2ObjectLinkedOpenHashMap<>();
+	private int conditionalDepth;
+
+	SubexpressionHoister(FunctionContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Registers the occurrences of the subexpressions of an expression. Every expression has to be counted before
+	 * any expression is rewritten.
+	 */
+	void count(Expression expression) {
+		this.keyOf(expression);
+	}
+
+	/**
+	 * Replaces the subexpressions of an expression that occur more than once by references to hidden variables.
+	 */
+	Expression rewrite(Expression expression) {
+		if (!(expression instanceof CallExpression call)) {
+			return expression;
+		}
+
+		Object key = this.keys.get(call);
+
+		if (key instanceof CallKey callKey && this.isHoistable(callKey)) {
+			String name = this.hoistedNames.get(callKey);
+
+			if (name == null) {
+				name = PREFIX + this.hoisted.size() + ">";
+				this.hoistedNames.put(callKey, name);
+
+				// the subexpressions inside of this one are now only evaluated once, instead of once per occurrence
+				this.discount(call, this.occurrences.getInt(callKey) - 1);
+				this.hoisted.put(name, new Hoisted(call.getFunction().getReturnType(), this.rewriteArguments(call)));
+			}
+
+			return new NamedVariableExpression(name);
+		}
+
+		return this.rewriteArguments(call);
+	}
+
+	/**
+	 * The hidden variables created while rewriting, by name.
+	 */
+	Map<String, Hoisted> getHoisted() {
+		return this.hoisted;
+	}
+
+	private boolean isHoistable(CallKey key) {
+		return key.calls() >= MIN_CALLS
+			&& this.occurrences.getInt(key) > 1
+			&& HOISTABLE_TYPES.contains(key.function().getReturnType());
+	}
+
+	private Expression rewriteArguments(CallExpression call) {
+		Expression[] arguments = call.getArguments();
+		Expression[] rewritten = new Expression[arguments.length];
+		boolean changed = false;
+
+		for (int i = 0; i < arguments.length; i++) {
+			rewritten[i] = this.rewrite(arguments[i]);
+			changed |= rewritten[i] != arguments[i];
+		}
+
+		return changed ? new CallExpression(call.getFunction(), rewritten) : call;
+	}
+
+	private void discount(CallExpression call, int amount) {
+		Expression[] arguments = call.getArguments();
+		// only the first condition of an if() was counted, see keyOfCall
+		int counted = call.getFunction() instanceof IfFunction ? 1 : arguments.length;
+
+		for (int i = 0; i < counted; i++) {
+			if (arguments[i] instanceof CallExpression inner) {
+				Object key = this.keys.get(inner);
+
+				if (key != null && this.occurrences.containsKey(key)) {
+					this.occurrences.put(key, this.occurrences.getInt(key) - amount);
+				}
+
+				this.discount(inner, amount);
+			}
+		}
+	}
+
+	/**
+	 * Computes a key that is equal for expressions that always evaluate to the same value, or null if the expression
+	 * can't be shared.
+	 */
+	private Object keyOf(Expression expression) {
+		Object key;
+
+		if (expression instanceof CallExpression call) {
+			key = this.keyOfCall(call);
+		} else if (expression instanceof NamedVariableExpression variable) {
+			key = new VariableKey(variable.getName());
+		} else if (expression instanceof CachedUniform uniform) {
+			key = new VariableKey(uniform.getName());
+		} else if (expression instanceof ConstantExpression constant) {
+			key = this.keyOfConstant(constant);
+		} else {
+			key = null;
+		}
+
+		if (key != null) {
+			this.keys.put(expression, key);
+		}
+
+		return key;
+	}
+
+	private Object keyOfCall(CallExpression call) {
+		TypedFunction function = call.getFunction();
+		Expression[] arguments = call.getArguments();
+		List<Object> argumentKeys = new ArrayList<>(arguments.length);
+		int calls = 1;
+		boolean shareable = function.isPure();
+
+		// visit every argument, even if this call can't be shared, so that its arguments are counted
+		for (int i = 0; i < arguments.length; i++) {
+			// everything but the first condition of an if() is only evaluated depending on that condition
+			boolean conditional = function instanceof IfFunction && i > 0;
+
+			if (conditional) {
+				this.conditionalDepth++;
+			}
+
+			Object argumentKey = this.keyOf(arguments[i]);
+
+			if (conditional) {
+				this.conditionalDepth--;
+			}
+
+			if (argumentKey == null) {
+				shareable = false;
+			} else if (argumentKey instanceof CallKey callKey) {
+				calls += callKey.calls();
+			}
+
+			argumentKeys.add(argumentKey);
+		}
+
+		if (!shareable) {
+			return null;
+		}
+
+		CallKey key = new CallKey(function, argumentKeys, calls);
+
+		if (this.conditionalDepth == 0) {
+			this.occurrences.mergeInt(key, 1, Integer::sum);
+		}
+
+		return key;
+	}
+
+	private Object keyOfConstant(ConstantExpression constant) {
+		Type type = constant.getType();
+		constant.evaluateTo(this.context, this.functionReturn);
+
+		if (type.equals(Type.Boolean)) {
+			return new ConstantKey(type, this.functionReturn.booleanReturn);
+		} else if (type.equals(Type.Int)) {
+			return new ConstantKey(type, this.functionReturn.intReturn);
+		} else if (type.equals(Type.Float)) {
+			return new ConstantKey(type, this.functionReturn.floatReturn);
+		} else {
+			// objects can be mutable, so only the same constant is equal
+			return constant;
+		}
+	}
+
+	record Hoisted(Type type, Expression expression) {
+	}
+
+	private record CallKey(TypedFunction function, List<Object> arguments, int calls) {
+	}
+
+	private record VariableKey(String name) {
+	}
+
+	private record ConstantKey(Type type, Object value) {
+	}
+}
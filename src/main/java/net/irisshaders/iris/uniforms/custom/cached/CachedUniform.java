@@ -1,20 +1,34 @@
 package net.irisshaders.iris.uniforms.custom.cached;
 
+import kroppeb.stareval.compiler.CompiledBooleanExpression;
+import kroppeb.stareval.compiler.CompiledFloatExpression;
+import kroppeb.stareval.compiler.CompiledIntExpression;
+import kroppeb.stareval.compiler.ExpressionCompiler;
 import kroppeb.stareval.expression.Expression;
 import kroppeb.stareval.expression.VariableExpression;
 import kroppeb.stareval.function.FunctionContext;
 import kroppeb.stareval.function.FunctionReturn;
 import kroppeb.stareval.function.Type;
+import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.gl.uniform.UniformUpdateFrequency;
 import net.irisshaders.iris.parsing.VectorType;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 
+import java.nio.ByteBuffer;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
 public abstract class CachedUniform implements VariableExpression {
+	/**
+	 * Set the {@code iris.interpretCustomUniforms} system property to evaluate custom uniforms with the interpreter,
+	 * in case the compiled expressions ever misbehave.
+	 */
+	private static final boolean COMPILE_EXPRESSIONS = !Boolean.getBoolean("iris.interpretCustomUniforms");
 	private final String name;
 	private final UniformUpdateFrequency updateFrequency;
-	private boolean changed = true;
+	private int version;
 
 	public CachedUniform(String name, UniformUpdateFrequency updateFrequency) {
 		this.name = name;
@@ -24,6 +38,22 @@ public abstract class CachedUniform implements VariableExpression {
 	static public CachedUniform forExpression(String name, Type type, Expression expression, FunctionContext context) {
 		final FunctionReturn held = new FunctionReturn();
 		final UniformUpdateFrequency frequency = UniformUpdateFrequency.CUSTOM;
+		if (COMPILE_EXPRESSIONS && ExpressionCompiler.supports(type)) {
+			if (type.equals(Type.Boolean)) {
+				final LazyCompiledExpression<CompiledBooleanExpression> compiled = new LazyCompiledExpression<>(name, expression, context,
+					ExpressionCompiler::compileBoolean, CompiledBooleanExpression::interpret);
+				return new BooleanCachedUniform(name, frequency, () -> compiled.get().evaluateBoolean());
+			} else if (type.equals(Type.Int)) {
+				final LazyCompiledExpression<CompiledIntExpression> compiled = new LazyCompiledExpression<>(name, expression, context,
+					ExpressionCompiler::compileInt, CompiledIntExpression::interpret);
+				return new IntCachedUniform(name, frequency, () -> compiled.get().evaluateInt());
+			} else {
+				final LazyCompiledExpression<CompiledFloatExpression> compiled = new LazyCompiledExpression<>(name, expression, context,
+					ExpressionCompiler::compileFloat, CompiledFloatExpression::interpret);
+				return new FloatCachedUniform(name, frequency, () -> compiled.get().evaluateFloat());
+			}
+		}
+
 		if (type.equals(Type.Boolean)) {
 			return new BooleanCachedUniform(name, frequency, () -> {
 				expression.evaluateTo(context, held);
@@ -59,25 +89,27 @@ public abstract class CachedUniform implements VariableExpression {
 		}
 	}
 
-	public void markUnchanged() {
-		this.changed = false;
-	}
-
 	public void update() {
-		doUpdate();
-		// TODO: Works around a logic error / architectural flaw - there's no way to
-		//       know when a uniform has been uploaded to all programs, so we can never
-		//       safely change this to false with the current design.
-		this.changed = true;
+		if (doUpdate()) {
+			this.version++;
+		}
 	}
 
 	protected abstract boolean doUpdate();
 
 	public abstract void push(int location);
 
-	public void pushIfChanged(int location) {
-		if (this.changed)
-			push(location);
+	/**
+	 * Writes the value of this uniform into a buffer at the given byte offset, laid out as in a std140 uniform block.
+	 */
+	public abstract void store(ByteBuffer buffer, int offset);
+
+	/**
+	 * Returns a counter that changes whenever the value of this uniform changes. Passes remember the version they
+	 * last uploaded, so they can skip the upload if the value hasn't changed since.
+	 */
+	public int getVersion() {
+		return this.version;
 	}
 
 	@Override
@@ -96,4 +128,50 @@ public abstract class CachedUniform implements VariableExpression {
 	public UniformUpdateFrequency getUpdateFrequency() {
 		return updateFrequency;
 	}
+
+	/**
+	 * Compiles the expression on first use rather than right away, since the expression may refer to custom uniforms
+	 * that are only created after this one. Falls back to the interpreter if compilation fails.
+	 */
+	private static final class LazyCompiledExpression<T> implements Supplier<T> {
+		private final String name;
+		private final FunctionContext context;
+		private final Compiler<T> compiler;
+		private final BiFunction<Expression, FunctionContext, T> interpreter;
+		private Expression expression;
+		private T compiled;
+
+		private LazyCompiledExpression(String name, Expression expression, FunctionContext context,
+									   Compiler<T> compiler, BiFunction<Expression, FunctionContext, T> interpreter) {
+			this.name = name;
+			this.expression = expression;
+			this.context = context;
+			this.compiler = compiler;
+			this.interpreter = interpreter;
+		}
+
+		@Override
+		public T get() {
+			if (compiled == null) {
+				try {
+					compiled = compiler.compile(expression, context);
+				} catch (Throwable e) {
+					Iris.logger.warn("Failed to compile custom uniform " + name + ", falling back to the interpreter", e);
+					compiled = interpreter.apply(expression, context);
+				}
+
+				expression = null;
+			}
+
+			return compiled;
+		}
+	}
+
+	/**
+	 * One of the typed compile methods of {@link ExpressionCompiler}.
+	 */
+	@FunctionalInterface
+	private interface Compiler<T> {
+		T compile(Expression expression, FunctionContext context) throws ReflectiveOperationException;
+	}
 }
@@ -5,6 +5,7 @@ import net.irisshaders.iris.parsing.VectorType;
 import org.joml.Vector2f;
 import org.lwjgl.opengl.GL21;
 
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
 public class Float2VectorCachedUniform extends VectorCachedUniform<Vector2f> {
@@ -23,6 +24,11 @@ public class Float2VectorCachedUniform extends VectorCachedUniform<Vector2f> {
 		GL21.glUniform2f(location, this.cached.x, this.cached.y);
 	}
 
+	@Override
+	public void store(ByteBuffer buffer, int offset) {
+		this.cached.get(offset, buffer);
+	}
+
 	@Override
 	public VectorType getType() {
 		return VectorType.VEC2;
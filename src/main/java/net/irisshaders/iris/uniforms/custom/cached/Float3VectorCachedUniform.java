@@ -5,6 +5,7 @@ import net.irisshaders.iris.parsing.VectorType;
 import org.joml.Vector3f;
 import org.lwjgl.opengl.GL21;
 
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
 public class Float3VectorCachedUniform extends VectorCachedUniform<Vector3f> {
@@ -23,6 +24,11 @@ public class Float3VectorCachedUniform extends VectorCachedUniform<Vector3f> {
 		GL21.glUniform3f(location, this.cached.x, this.cached.y, this.cached.z);
 	}
 
+	@Override
+	public void store(ByteBuffer buffer, int offset) {
+		this.cached.get(offset, buffer);
+	}
+
 	@Override
 	public VectorType getType() {
 		return VectorType.VEC3;
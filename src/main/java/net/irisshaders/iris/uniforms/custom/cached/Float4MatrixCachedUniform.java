@@ -5,6 +5,7 @@ import net.irisshaders.iris.parsing.MatrixType;
 import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL21;
 
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
 public class Float4MatrixCachedUniform extends VectorCachedUniform<Matrix4f> {
@@ -26,6 +27,11 @@ public class Float4MatrixCachedUniform extends VectorCachedUniform<Matrix4f> {
 		GL21.glUniformMatrix4fv(location, false, buffer);
 	}
 
+	@Override
+	public void store(ByteBuffer buffer, int offset) {
+		this.cached.get(offset, buffer);
+	}
+
 	@Override
 	public MatrixType<Matrix4f> getType() {
 		return MatrixType.MAT4;
@@ -5,6 +5,7 @@ import net.irisshaders.iris.parsing.VectorType;
 import org.joml.Vector4f;
 import org.lwjgl.opengl.GL21;
 
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
 public class Float4VectorCachedUniform extends VectorCachedUniform<Vector4f> {
@@ -23,6 +24,11 @@ public class Float4VectorCachedUniform extends VectorCachedUniform<Vector4f> {
 		GL21.glUniform4f(location, this.cached.x, this.cached.y, this.cached.z, this.cached.w);
 	}
 
+	@Override
+	public void store(ByteBuffer buffer, int offset) {
+		this.cached.get(offset, buffer);
+	}
+
 	@Override
 	public VectorType getType() {
 		return VectorType.VEC4;
@@ -6,6 +6,8 @@ import net.irisshaders.iris.gl.uniform.FloatSupplier;
 import net.irisshaders.iris.gl.uniform.UniformUpdateFrequency;
 import org.lwjgl.opengl.GL21;
 
+import java.nio.ByteBuffer;
+
 public class FloatCachedUniform extends CachedUniform {
 
 	final private FloatSupplier supplier;
@@ -28,6 +30,11 @@ public class FloatCachedUniform extends CachedUniform {
 		GL21.glUniform1f(location, this.cached);
 	}
 
+	@Override
+	public void store(ByteBuffer buffer, int offset) {
+		buffer.putFloat(offset, this.cached);
+	}
+
 	@Override
 	public void writeTo(FunctionReturn functionReturn) {
 		functionReturn.floatReturn = this.cached;
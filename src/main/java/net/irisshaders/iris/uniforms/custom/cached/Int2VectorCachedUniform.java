@@ -6,6 +6,7 @@ import net.irisshaders.iris.parsing.VectorType;
 import org.joml.Vector2i;
 import org.lwjgl.opengl.GL21;
 
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
 public class Int2VectorCachedUniform extends VectorCachedUniform<Vector2i> {
@@ -24,6 +25,11 @@ public class Int2VectorCachedUniform extends VectorCachedUniform<Vector2i> {
 		GL21.glUniform2i(location, this.cached.x, this.cached.y);
 	}
 
+	@Override
+	public void store(ByteBuffer buffer, int offset) {
+		this.cached.get(offset, buffer);
+	}
+
 	@Override
 	public void writeTo(FunctionReturn functionReturn) {
 		functionReturn.objectReturn = this.cached;
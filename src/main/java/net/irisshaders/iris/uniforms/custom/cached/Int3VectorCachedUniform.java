@@ -5,6 +5,7 @@ import net.irisshaders.iris.parsing.VectorType;
 import org.joml.Vector3i;
 import org.lwjgl.opengl.GL21;
 
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
 public class Int3VectorCachedUniform extends VectorCachedUniform<Vector3i> {
@@ -23,6 +24,11 @@ public class Int3VectorCachedUniform extends VectorCachedUniform<Vector3i> {
 		GL21.glUniform3i(location, this.cached.x, this.cached.y, this.cached.z);
 	}
 
+	@Override
+	public void store(ByteBuffer buffer, int offset) {
+		this.cached.get(offset, buffer);
+	}
+
 	@Override
 	public VectorType getType() {
 		return VectorType.I_VEC3;
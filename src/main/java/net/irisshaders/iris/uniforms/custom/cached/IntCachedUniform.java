@@ -5,6 +5,7 @@ import kroppeb.stareval.function.Type;
 import net.irisshaders.iris.gl.uniform.UniformUpdateFrequency;
 import org.lwjgl.opengl.GL21;
 
+import java.nio.ByteBuffer;
 import java.util.function.IntSupplier;
 
 public class IntCachedUniform extends CachedUniform {
@@ -29,6 +30,11 @@ public class IntCachedUniform extends CachedUniform {
 		GL21.glUniform1i(location, this.cached);
 	}
 
+	@Override
+	public void store(ByteBuffer buffer, int offset) {
+		buffer.putInt(offset, this.cached);
+	}
+
 	@Override
 	public void writeTo(FunctionReturn functionReturn) {
 		functionReturn.intReturn = this.cached;
@@ -0,0 +1,34 @@
+package net.irisshaders.iris.vertices;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The vertex attributes that Iris adds to the vertex formats of the world, in the order that they are laid out in a
+ * terrain vertex. Entity and text vertices only carry the texture midpoint, tangent and normal.
+ */
+public enum ExtendedAttribute {
+	MID_TEX_COORD("mc_midTexCoord", "gl_MultiTexCoord3"),
+	TANGENT("at_tangent"),
+	NORMAL("gl_Normal", "vaNormal"),
+	BLOCK_ID("mc_Entity"),
+	MID_BLOCK("at_midBlock");
+
+	public static final Set<ExtendedAttribute> ALL = Collections.unmodifiableSet(EnumSet.allOf(ExtendedAttribute.class));
+
+	private final Pattern reference;
+
+	ExtendedAttribute(String... names) {
+		this.reference = Pattern.compile("\\b(?:" + String.join("|", names) + ")\\b");
+	}
+
+	/**
+	 * Returns whether a shader refers to this attribute. This only looks for the names that the attribute can be
+	 * accessed through, so an attribute that is merely mentioned is still reported as used.
+	 */
+	public boolean isReferencedBy(String source) {
+		return reference.matcher(source).find();
+	}
+}
@@ -2,6 +2,8 @@ package net.irisshaders.iris.vertices;
 
 import com.mojang.blaze3d.vertex.VertexFormat;
 
+import java.util.Set;
+
 public interface IrisExtendedBufferBuilder {
 	VertexFormat iris$format();
 
@@ -13,6 +15,12 @@ public interface IrisExtendedBufferBuilder {
 
 	boolean iris$injectNormalAndUV1();
 
+	/**
+	 * Returns the extended attributes that are read by the programs drawing the format being built. The others don't
+	 * need to be computed.
+	 */
+	Set<ExtendedAttribute> iris$referencedAttributes();
+
 	int iris$vertexCount();
 
 	void iris$incrementVertexCount();
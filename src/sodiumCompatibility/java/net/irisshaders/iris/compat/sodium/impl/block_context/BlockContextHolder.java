@@ -1,11 +1,10 @@
 package net.irisshaders.iris.compat.sodium.impl.block_context;
 
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
-import it.unimi.dsi.fastutil.objects.Object2IntMaps;
+import net.irisshaders.iris.shaderpack.materialmap.BlockStateIdTable;
 import net.minecraft.world.level.block.state.BlockState;
 
 public class BlockContextHolder {
-	private final Object2IntMap<BlockState> blockStateIds;
+	private final BlockStateIdTable blockStateIds;
 
 	public int localPosX;
 	public int localPosY;
@@ -17,13 +16,13 @@ public class BlockContextHolder {
 	public byte lightValue;
 
 	public BlockContextHolder() {
-		this.blockStateIds = Object2IntMaps.emptyMap();
+		this.blockStateIds = BlockStateIdTable.EMPTY;
 		this.blockId = -1;
 		this.renderType = -1;
 		this.lightValue = 0;
 	}
 
-	public BlockContextHolder(Object2IntMap<BlockState> idMap) {
+	public BlockContextHolder(BlockStateIdTable idMap) {
 		this.blockStateIds = idMap;
 		this.blockId = -1;
 		this.renderType = -1;
@@ -1,7 +1,27 @@
 package net.irisshaders.iris.compat.sodium.impl.vertex_format;
 
 import net.irisshaders.iris.compat.sodium.impl.vertex_format.terrain_xhfp.XHFPModelVertexType;
+import net.irisshaders.iris.shaderpack.materialmap.WorldRenderingSettings;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class IrisModelVertexFormats {
-	public static final XHFPModelVertexType MODEL_VERTEX_XHFP = new XHFPModelVertexType();
+	public static final XHFPModelVertexType MODEL_VERTEX_XHFP = new XHFPModelVertexType(ExtendedAttribute.ALL);
+
+	// Vertex types are compared by identity, so there must only be one for every set of attributes
+	private static final Map<Set<ExtendedAttribute>, XHFPModelVertexType> TYPES = new ConcurrentHashMap<>();
+
+	static {
+		TYPES.put(ExtendedAttribute.ALL, MODEL_VERTEX_XHFP);
+	}
+
+	/**
+	 * Returns the vertex type that terrain is built with for the current pipeline.
+	 */
+	public static XHFPModelVertexType getTerrainVertexType() {
+		return TYPES.computeIfAbsent(WorldRenderingSettings.INSTANCE.getTerrainVertexAttributes(), XHFPModelVertexType::new);
+	}
 }
@@ -7,23 +7,21 @@ import me.jellysquid.mods.sodium.client.render.chunk.vertex.format.ChunkVertexEn
 import me.jellysquid.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.irisshaders.iris.compat.sodium.impl.vertex_format.IrisChunkMeshAttributes;
 import net.irisshaders.iris.compat.sodium.impl.vertex_format.IrisGlVertexAttributeFormat;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Like HFPModelVertexType, but extended to support Iris. The extensions aren't particularly efficient right now.
+ * <p>
+ * Each extended attribute takes up 4 bytes after the attributes of Sodium, and attributes that a vertex type wasn't
+ * created with are left out entirely. With every attribute present, a vertex takes up 40 bytes.
  */
 public class XHFPModelVertexType implements ChunkVertexType {
-	public static final int STRIDE = 40;
-	public static final GlVertexFormat<ChunkMeshAttribute> VERTEX_FORMAT = GlVertexFormat.builder(ChunkMeshAttribute.class, STRIDE)
-		.addElement(ChunkMeshAttribute.POSITION_MATERIAL_MESH, 0, GlVertexAttributeFormat.UNSIGNED_SHORT, 4, false, true)
-		.addElement(ChunkMeshAttribute.COLOR_SHADE, 8, GlVertexAttributeFormat.UNSIGNED_BYTE, 4, true, false)
-		.addElement(ChunkMeshAttribute.BLOCK_TEXTURE, 12, GlVertexAttributeFormat.UNSIGNED_SHORT, 2, false, false)
-		.addElement(ChunkMeshAttribute.LIGHT_TEXTURE, 16, GlVertexAttributeFormat.UNSIGNED_SHORT, 2, false, true)
-		.addElement(IrisChunkMeshAttributes.MID_TEX_COORD, 20, GlVertexAttributeFormat.UNSIGNED_SHORT, 2, false, false)
-		.addElement(IrisChunkMeshAttributes.TANGENT, 24, IrisGlVertexAttributeFormat.BYTE, 4, true, false)
-		.addElement(IrisChunkMeshAttributes.NORMAL, 28, IrisGlVertexAttributeFormat.BYTE, 3, true, false)
-		.addElement(IrisChunkMeshAttributes.BLOCK_ID, 32, IrisGlVertexAttributeFormat.SHORT, 2, false, false)
-		.addElement(IrisChunkMeshAttributes.MID_BLOCK, 36, IrisGlVertexAttributeFormat.BYTE, 4, false, false)
-		.build();
+	private static final int BASE_STRIDE = 20;
+	private static final int ATTRIBUTE_SIZE = 4;
 
 	private static final int POSITION_MAX_VALUE = 65536;
 	private static final int TEXTURE_MAX_VALUE = 32768;
@@ -36,6 +34,58 @@ public class XHFPModelVertexType implements ChunkVertexType {
 
 	private static final float TEXTURE_SCALE = (1.0f / TEXTURE_MAX_VALUE);
 
+	private final Set<ExtendedAttribute> attributes;
+	private final int[] offsets = new int[ExtendedAttribute.values().length];
+	private final int stride;
+	private final GlVertexFormat<ChunkMeshAttribute> vertexFormat;
+
+	public XHFPModelVertexType(Set<ExtendedAttribute> attributes) {
+		EnumSet<ExtendedAttribute> copy = EnumSet.noneOf(ExtendedAttribute.class);
+		copy.addAll(attributes);
+		this.attributes = Collections.unmodifiableSet(copy);
+
+		int offset = BASE_STRIDE;
+
+		for (ExtendedAttribute attribute : ExtendedAttribute.values()) {
+			if (attributes.contains(attribute)) {
+				offsets[attribute.ordinal()] = offset;
+				offset += ATTRIBUTE_SIZE;
+			} else {
+				offsets[attribute.ordinal()] = -1;
+			}
+		}
+
+		this.stride = offset;
+
+		GlVertexFormat.Builder<ChunkMeshAttribute> builder = GlVertexFormat.builder(ChunkMeshAttribute.class, stride)
+			.addElement(ChunkMeshAttribute.POSITION_MATERIAL_MESH, 0, GlVertexAttributeFormat.UNSIGNED_SHORT, 4, false, true)
+			.addElement(ChunkMeshAttribute.COLOR_SHADE, 8, GlVertexAttributeFormat.UNSIGNED_BYTE, 4, true, false)
+			.addElement(ChunkMeshAttribute.BLOCK_TEXTURE, 12, GlVertexAttributeFormat.UNSIGNED_SHORT, 2, false, false)
+			.addElement(ChunkMeshAttribute.LIGHT_TEXTURE, 16, GlVertexAttributeFormat.UNSIGNED_SHORT, 2, false, true);
+
+		if (hasAttribute(ExtendedAttribute.MID_TEX_COORD)) {
+			builder.addElement(IrisChunkMeshAttributes.MID_TEX_COORD, getOffset(ExtendedAttribute.MID_TEX_COORD), GlVertexAttributeFormat.UNSIGNED_SHORT, 2, false, false);
+		}
+
+		if (hasAttribute(ExtendedAttribute.TANGENT)) {
+			builder.addElement(IrisChunkMeshAttributes.TANGENT, getOffset(ExtendedAttribute.TANGENT), IrisGlVertexAttributeFormat.BYTE, 4, true, false);
+		}
+
+		if (hasAttribute(ExtendedAttribute.NORMAL)) {
+			builder.addElement(IrisChunkMeshAttributes.NORMAL, getOffset(ExtendedAttribute.NORMAL), IrisGlVertexAttributeFormat.BYTE, 3, true, false);
+		}
+
+		if (hasAttribute(ExtendedAttribute.BLOCK_ID)) {
+			builder.addElement(IrisChunkMeshAttributes.BLOCK_ID, getOffset(ExtendedAttribute.BLOCK_ID), IrisGlVertexAttributeFormat.SHORT, 2, false, false);
+		}
+
+		if (hasAttribute(ExtendedAttribute.MID_BLOCK)) {
+			builder.addElement(IrisChunkMeshAttributes.MID_BLOCK, getOffset(ExtendedAttribute.MID_BLOCK), IrisGlVertexAttributeFormat.BYTE, 4, false, false);
+		}
+
+		this.vertexFormat = builder.build();
+	}
+
 	public static int encodeTexture(float u, float v) {
 		return ((Math.round(u * TEXTURE_MAX_VALUE) & 0xFFFF) << 0) |
 			((Math.round(v * TEXTURE_MAX_VALUE) & 0xFFFF) << 16);
@@ -53,6 +103,25 @@ public class XHFPModelVertexType implements ChunkVertexType {
 		return (raw & 0xFFFF) * MODEL_SCALE - MODEL_ORIGIN;
 	}
 
+	public boolean hasAttribute(ExtendedAttribute attribute) {
+		return offsets[attribute.ordinal()] != -1;
+	}
+
+	/**
+	 * @return the offset of an attribute within a vertex, or -1 if vertices of this type don't contain it
+	 */
+	public int getOffset(ExtendedAttribute attribute) {
+		return offsets[attribute.ordinal()];
+	}
+
+	public int getStride() {
+		return stride;
+	}
+
+	public Set<ExtendedAttribute> getAttributes() {
+		return attributes;
+	}
+
 	@Override
 	public float getTextureScale() {
 		return TEXTURE_SCALE;
@@ -70,11 +139,11 @@ public class XHFPModelVertexType implements ChunkVertexType {
 
 	@Override
 	public GlVertexFormat<ChunkMeshAttribute> getVertexFormat() {
-		return VERTEX_FORMAT;
+		return vertexFormat;
 	}
 
 	@Override
 	public ChunkVertexEncoder getEncoder() {
-		return new XHFPTerrainVertex();
+		return new XHFPTerrainVertex(this);
 	}
 }
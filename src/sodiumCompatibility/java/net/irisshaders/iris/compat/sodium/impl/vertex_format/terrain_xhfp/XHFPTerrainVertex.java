@@ -4,17 +4,36 @@ import me.jellysquid.mods.sodium.client.render.chunk.terrain.material.Material;
 import me.jellysquid.mods.sodium.client.render.chunk.vertex.format.ChunkVertexEncoder;
 import net.irisshaders.iris.compat.sodium.impl.block_context.BlockContextHolder;
 import net.irisshaders.iris.compat.sodium.impl.block_context.ContextAwareVertexWriter;
+import net.irisshaders.iris.shaderpack.materialmap.WorldRenderingSettings;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
 import net.irisshaders.iris.vertices.ExtendedDataHelper;
+import net.irisshaders.iris.vertices.IrisVertexFormats;
 import net.irisshaders.iris.vertices.NormI8;
 import net.irisshaders.iris.vertices.NormalHelper;
 import org.joml.Vector3f;
 import org.lwjgl.system.MemoryUtil;
 
-import static net.irisshaders.iris.compat.sodium.impl.vertex_format.terrain_xhfp.XHFPModelVertexType.STRIDE;
+import java.util.Set;
 
 public class XHFPTerrainVertex implements ChunkVertexEncoder, ContextAwareVertexWriter {
-	private final QuadViewTerrain.QuadViewTerrainUnsafe quad = new QuadViewTerrain.QuadViewTerrainUnsafe();
+	private final int stride;
+	// The offsets of the extended attributes, or -1 for the ones that the vertex type leaves out or that no terrain
+	// program reads. The latter are zeroed through unusedOffsets instead of being computed.
+	private final int midTexCoordOffset;
+	private final int tangentOffset;
+	private final int normalOffset;
+	private final int blockIdOffset;
+	private final int midBlockOffset;
+	private final int[] unusedOffsets;
+	private final boolean computeNormal;
 	private final Vector3f normal = new Vector3f();
+	// The positions and texture coordinates of the current quad as the shader will see them, kept so that the normal
+	// and tangent can be computed without reading back and decoding the vertices that were just written.
+	private final float[] quadX = new float[4];
+	private final float[] quadY = new float[4];
+	private final float[] quadZ = new float[4];
+	private final float[] quadU = new float[4];
+	private final float[] quadV = new float[4];
 
 	private BlockContextHolder contextHolder;
 
@@ -23,6 +42,23 @@ public class XHFPTerrainVertex implements ChunkVertexEncoder, ContextAwareVertex
 	private float vSum;
 	private boolean flipUpcomingNormal;
 
+	public XHFPTerrainVertex(XHFPModelVertexType type) {
+		Set<ExtendedAttribute> referenced = WorldRenderingSettings.INSTANCE.getReferencedAttributes(IrisVertexFormats.TERRAIN);
+
+		this.stride = type.getStride();
+		this.midTexCoordOffset = referenced.contains(ExtendedAttribute.MID_TEX_COORD) ? type.getOffset(ExtendedAttribute.MID_TEX_COORD) : -1;
+		this.tangentOffset = referenced.contains(ExtendedAttribute.TANGENT) ? type.getOffset(ExtendedAttribute.TANGENT) : -1;
+		this.normalOffset = referenced.contains(ExtendedAttribute.NORMAL) ? type.getOffset(ExtendedAttribute.NORMAL) : -1;
+		this.blockIdOffset = referenced.contains(ExtendedAttribute.BLOCK_ID) ? type.getOffset(ExtendedAttribute.BLOCK_ID) : -1;
+		this.midBlockOffset = referenced.contains(ExtendedAttribute.MID_BLOCK) ? type.getOffset(ExtendedAttribute.MID_BLOCK) : -1;
+		this.unusedOffsets = type.getAttributes().stream()
+			.filter(attribute -> !referenced.contains(attribute))
+			.mapToInt(type::getOffset)
+			.toArray();
+		// The tangent is computed relative to the normal
+		this.computeNormal = normalOffset != -1 || tangentOffset != -1;
+	}
+
 	// TODO: FIX
 
 	/*@Override
@@ -64,95 +100,112 @@ public class XHFPTerrainVertex implements ChunkVertexEncoder, ContextAwareVertex
 					  Material material, Vertex vertex, int chunkId) {
 		uSum += vertex.u;
 		vSum += vertex.v;
+
+		short x = XHFPModelVertexType.encodePosition(vertex.x);
+		short y = XHFPModelVertexType.encodePosition(vertex.y);
+		short z = XHFPModelVertexType.encodePosition(vertex.z);
+		int texture = XHFPModelVertexType.encodeTexture(vertex.u, vertex.v);
+
+		quadX[vertexCount] = XHFPModelVertexType.decodePosition(x);
+		quadY[vertexCount] = XHFPModelVertexType.decodePosition(y);
+		quadZ[vertexCount] = XHFPModelVertexType.decodePosition(z);
+		quadU[vertexCount] = XHFPModelVertexType.decodeBlockTexture((short) texture);
+		quadV[vertexCount] = XHFPModelVertexType.decodeBlockTexture((short) (texture >>> 16));
 		vertexCount++;
 
-		MemoryUtil.memPutShort(ptr, XHFPModelVertexType.encodePosition(vertex.x));
-		MemoryUtil.memPutShort(ptr + 2L, XHFPModelVertexType.encodePosition(vertex.y));
-		MemoryUtil.memPutShort(ptr + 4L, XHFPModelVertexType.encodePosition(vertex.z));
+		MemoryUtil.memPutShort(ptr, x);
+		MemoryUtil.memPutShort(ptr + 2L, y);
+		MemoryUtil.memPutShort(ptr + 4L, z);
 		MemoryUtil.memPutByte(ptr + 6L, (byte) material.bits());
 		MemoryUtil.memPutByte(ptr + 7L, (byte) chunkId);
 
 		MemoryUtil.memPutInt(ptr + 8, vertex.color);
 
-		MemoryUtil.memPutInt(ptr + 12, XHFPModelVertexType.encodeTexture(vertex.u, vertex.v));
+		MemoryUtil.memPutInt(ptr + 12, texture);
 
 		MemoryUtil.memPutInt(ptr + 16, vertex.light);
 
-		MemoryUtil.memPutShort(ptr + 32, contextHolder.blockId);
-		MemoryUtil.memPutShort(ptr + 34, contextHolder.renderType);
-		MemoryUtil.memPutInt(ptr + 36, contextHolder.ignoreMidBlock ? 0 : ExtendedDataHelper.computeMidBlock(vertex.x, vertex.y, vertex.z, contextHolder.localPosX, contextHolder.localPosY, contextHolder.localPosZ));
-		MemoryUtil.memPutByte(ptr + 39, contextHolder.lightValue);
+		for (int offset : unusedOffsets) {
+			MemoryUtil.memPutInt(ptr + offset, 0);
+		}
+
+		if (blockIdOffset != -1) {
+			MemoryUtil.memPutShort(ptr + blockIdOffset, contextHolder.blockId);
+			MemoryUtil.memPutShort(ptr + blockIdOffset + 2, contextHolder.renderType);
+		}
+
+		if (midBlockOffset != -1) {
+			MemoryUtil.memPutInt(ptr + midBlockOffset, contextHolder.ignoreMidBlock ? 0 : ExtendedDataHelper.computeMidBlock(vertex.x, vertex.y, vertex.z, contextHolder.localPosX, contextHolder.localPosY, contextHolder.localPosZ));
+			MemoryUtil.memPutByte(ptr + midBlockOffset + 3, contextHolder.lightValue);
+		}
 
 		if (vertexCount == 4) {
 			vertexCount = 0;
 
-			// FIXME
-			// The following logic is incorrect because OpenGL denormalizes shorts by dividing by 65535. The atlas is
-			// based on power-of-two values and so a normalization factor that is not a power of two causes the values
-			// used in the shader to be off by enough to cause visual errors. These are most noticeable on 1.18 with POM
-			// on block edges.
-			//
-			// The only reliable way that this can be fixed is to apply the same shader transformations to midTexCoord
-			// as Sodium does to the regular texture coordinates - dividing them by the correct power-of-two value inside
-			// of the shader instead of letting OpenGL value normalization do the division. However, this requires
-			// fragile patching that is not yet possible.
-			//
-			// As a temporary solution, the normalized shorts have been replaced with regular floats, but this takes up
-			// an extra 4 bytes per vertex.
-
-			// NB: Be careful with the math here! A previous bug was caused by midU going negative as a short, which
-			// was sign-extended into midTexCoord, causing midV to have garbage (likely NaN data). If you're touching
-			// this code, be aware of that, and don't introduce those kinds of bugs!
-			//
-			// Also note that OpenGL takes shorts in the range of [0, 65535] and transforms them linearly to [0.0, 1.0],
-			// so multiply by 65535, not 65536.
-			//
-			// TODO: Does this introduce precision issues? Do we need to fall back to floats here? This might break
-			// with high resolution texture packs.
-//			int midU = (int)(65535.0F * Math.min(uSum * 0.25f, 1.0f)) & 0xFFFF;
-//			int midV = (int)(65535.0F * Math.min(vSum * 0.25f, 1.0f)) & 0xFFFF;
-//			int midTexCoord = (midV << 16) | midU;
-
+			// midTexCoord is stored like the regular texture coordinates: as unnormalized shorts that
+			// SodiumTransformer scales back down inside of the shader. Letting OpenGL normalize the shorts would
+			// divide by 65535, which isn't a power of two and puts the values off by enough to cause visual errors.
 			uSum *= 0.25f;
 			vSum *= 0.25f;
 
-			int midUV = XHFPModelVertexType.encodeTexture(uSum, vSum);
+			if (midTexCoordOffset != -1) {
+				int midUV = XHFPModelVertexType.encodeTexture(uSum, vSum);
 
-			MemoryUtil.memPutInt(ptr + 20, midUV);
-			MemoryUtil.memPutInt(ptr + 20 - STRIDE, midUV);
-			MemoryUtil.memPutInt(ptr + 20 - STRIDE * 2, midUV);
-			MemoryUtil.memPutInt(ptr + 20 - STRIDE * 3, midUV);
+				MemoryUtil.memPutInt(ptr + midTexCoordOffset, midUV);
+				MemoryUtil.memPutInt(ptr + midTexCoordOffset - stride, midUV);
+				MemoryUtil.memPutInt(ptr + midTexCoordOffset - stride * 2L, midUV);
+				MemoryUtil.memPutInt(ptr + midTexCoordOffset - stride * 3L, midUV);
+			}
 
 			uSum = 0;
 			vSum = 0;
 
+			if (!computeNormal) {
+				flipUpcomingNormal = false;
+				return ptr + stride;
+			}
+
 			// normal computation
 			// Implementation based on the algorithm found here:
 			// https://github.com/IrisShaders/ShaderDoc/blob/master/vertex-format-extensions.md#surface-normal-vector
 
-			quad.setup(ptr, STRIDE);
 			if (flipUpcomingNormal) {
-				NormalHelper.computeFaceNormalFlipped(normal, quad);
+				NormalHelper.computeFaceNormal(normal,
+					quadX[3], quadY[3], quadZ[3],
+					quadX[2], quadY[2], quadZ[2],
+					quadX[1], quadY[1], quadZ[1],
+					quadX[0], quadY[0], quadZ[0]);
 				flipUpcomingNormal = false;
 			} else {
-				NormalHelper.computeFaceNormal(normal, quad);
+				NormalHelper.computeFaceNormal(normal,
+					quadX[0], quadY[0], quadZ[0],
+					quadX[1], quadY[1], quadZ[1],
+					quadX[2], quadY[2], quadZ[2],
+					quadX[3], quadY[3], quadZ[3]);
 			}
-			int packedNormal = NormI8.pack(normal);
 
+			if (normalOffset != -1) {
+				int packedNormal = NormI8.pack(normal);
 
-			MemoryUtil.memPutInt(ptr + 28, packedNormal);
-			MemoryUtil.memPutInt(ptr + 28 - STRIDE, packedNormal);
-			MemoryUtil.memPutInt(ptr + 28 - STRIDE * 2, packedNormal);
-			MemoryUtil.memPutInt(ptr + 28 - STRIDE * 3, packedNormal);
+				MemoryUtil.memPutInt(ptr + normalOffset, packedNormal);
+				MemoryUtil.memPutInt(ptr + normalOffset - stride, packedNormal);
+				MemoryUtil.memPutInt(ptr + normalOffset - stride * 2L, packedNormal);
+				MemoryUtil.memPutInt(ptr + normalOffset - stride * 3L, packedNormal);
+			}
 
-			int tangent = NormalHelper.computeTangent(normal.x, normal.y, normal.z, quad);
+			if (tangentOffset != -1) {
+				int tangent = NormalHelper.computeTangent(normal.x, normal.y, normal.z,
+					quadX[0], quadY[0], quadZ[0], quadU[0], quadV[0],
+					quadX[1], quadY[1], quadZ[1], quadU[1], quadV[1],
+					quadX[2], quadY[2], quadZ[2], quadU[2], quadV[2]);
 
-			MemoryUtil.memPutInt(ptr + 24, tangent);
-			MemoryUtil.memPutInt(ptr + 24 - STRIDE, tangent);
-			MemoryUtil.memPutInt(ptr + 24 - STRIDE * 2, tangent);
-			MemoryUtil.memPutInt(ptr + 24 - STRIDE * 3, tangent);
+				MemoryUtil.memPutInt(ptr + tangentOffset, tangent);
+				MemoryUtil.memPutInt(ptr + tangentOffset - stride, tangent);
+				MemoryUtil.memPutInt(ptr + tangentOffset - stride * 2L, tangent);
+				MemoryUtil.memPutInt(ptr + tangentOffset - stride * 3L, tangent);
+			}
 		}
 
-		return ptr + STRIDE;
+		return ptr + stride;
 	}
 }
@@ -1,6 +1,5 @@
 package net.irisshaders.iris.compat.sodium.mixin.block_id;
 
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.BakedChunkModelBuilder;
@@ -9,6 +8,7 @@ import me.jellysquid.mods.sodium.client.render.chunk.vertex.format.ChunkVertexTy
 import net.irisshaders.iris.compat.sodium.impl.block_context.BlockContextHolder;
 import net.irisshaders.iris.compat.sodium.impl.block_context.ChunkBuildBuffersExt;
 import net.irisshaders.iris.compat.sodium.impl.block_context.ContextAwareVertexWriter;
+import net.irisshaders.iris.shaderpack.materialmap.BlockStateIdTable;
 import net.irisshaders.iris.shaderpack.materialmap.WorldRenderingSettings;
 import net.minecraft.world.level.block.state.BlockState;
 import org.spongepowered.asm.mixin.Final;
@@ -33,7 +33,7 @@ public class MixinChunkBuildBuffers implements ChunkBuildBuffersExt {
 
 	@Inject(method = "<init>", at = @At("RETURN"), remap = false)
 	private void iris$onConstruct(ChunkVertexType vertexType, CallbackInfo ci) {
-		Object2IntMap<BlockState> blockStateIds = WorldRenderingSettings.INSTANCE.getBlockStateIds();
+		BlockStateIdTable blockStateIds = WorldRenderingSettings.INSTANCE.getBlockStateIds();
 
 		if (blockStateIds != null) {
 			this.contextHolder = new BlockContextHolder(blockStateIds);
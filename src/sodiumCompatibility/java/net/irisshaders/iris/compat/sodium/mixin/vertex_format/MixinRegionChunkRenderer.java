@@ -10,11 +10,16 @@ import me.jellysquid.mods.sodium.client.render.chunk.vertex.format.ChunkMeshAttr
 import me.jellysquid.mods.sodium.client.render.chunk.vertex.format.ChunkVertexType;
 import net.irisshaders.iris.compat.sodium.impl.IrisChunkShaderBindingPoints;
 import net.irisshaders.iris.compat.sodium.impl.vertex_format.IrisChunkMeshAttributes;
+import net.irisshaders.iris.compat.sodium.impl.vertex_format.terrain_xhfp.XHFPModelVertexType;
 import net.irisshaders.iris.shaderpack.materialmap.WorldRenderingSettings;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Mixin(DefaultChunkRenderer.class)
 public abstract class MixinRegionChunkRenderer extends ShaderChunkRenderer {
 	public MixinRegionChunkRenderer(RenderDevice device, ChunkVertexType vertexType) {
@@ -23,11 +28,11 @@ public abstract class MixinRegionChunkRenderer extends ShaderChunkRenderer {
 
 	@Redirect(remap = false, method = "createRegionTessellation", at = @At(value = "INVOKE", target = "Lme/jellysquid/mods/sodium/client/gl/tessellation/TessellationBinding;forVertexBuffer(Lme/jellysquid/mods/sodium/client/gl/buffer/GlBuffer;[Lme/jellysquid/mods/sodium/client/gl/attribute/GlVertexAttributeBinding;)Lme/jellysquid/mods/sodium/client/gl/tessellation/TessellationBinding;"))
 	private TessellationBinding iris$onInit(GlBuffer buffer, GlVertexAttributeBinding[] attributes) {
-		if (!WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat()) {
+		if (!WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat() || !(vertexType instanceof XHFPModelVertexType type)) {
 			return TessellationBinding.forVertexBuffer(buffer, attributes);
 		}
 
-		attributes = new GlVertexAttributeBinding[]{
+		List<GlVertexAttributeBinding> bindings = new ArrayList<>(List.of(
 			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.ATTRIBUTE_POSITION_ID,
 				vertexFormat.getAttribute(ChunkMeshAttribute.POSITION_MATERIAL_MESH)),
 			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.ATTRIBUTE_COLOR,
@@ -35,18 +40,35 @@ public abstract class MixinRegionChunkRenderer extends ShaderChunkRenderer {
 			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.ATTRIBUTE_BLOCK_TEXTURE,
 				vertexFormat.getAttribute(ChunkMeshAttribute.BLOCK_TEXTURE)),
 			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.ATTRIBUTE_LIGHT_TEXTURE,
-				vertexFormat.getAttribute(ChunkMeshAttribute.LIGHT_TEXTURE)),
-			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.MID_BLOCK,
-				vertexFormat.getAttribute(IrisChunkMeshAttributes.MID_BLOCK)),
-			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.BLOCK_ID,
-				vertexFormat.getAttribute(IrisChunkMeshAttributes.BLOCK_ID)),
-			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.MID_TEX_COORD,
-				vertexFormat.getAttribute(IrisChunkMeshAttributes.MID_TEX_COORD)),
-			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.TANGENT,
-				vertexFormat.getAttribute(IrisChunkMeshAttributes.TANGENT)),
-			new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.NORMAL,
-				vertexFormat.getAttribute(IrisChunkMeshAttributes.NORMAL))
-		};
+				vertexFormat.getAttribute(ChunkMeshAttribute.LIGHT_TEXTURE))));
+
+		// Attributes that the vertices leave out have no data to bind
+		if (type.hasAttribute(ExtendedAttribute.MID_BLOCK)) {
+			bindings.add(new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.MID_BLOCK,
+				vertexFormat.getAttribute(IrisChunkMeshAttributes.MID_BLOCK)));
+		}
+
+		if (type.hasAttribute(ExtendedAttribute.BLOCK_ID)) {
+			bindings.add(new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.BLOCK_ID,
+				vertexFormat.getAttribute(IrisChunkMeshAttributes.BLOCK_ID)));
+		}
+
+		if (type.hasAttribute(ExtendedAttribute.MID_TEX_COORD)) {
+			bindings.add(new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.MID_TEX_COORD,
+				vertexFormat.getAttribute(IrisChunkMeshAttributes.MID_TEX_COORD)));
+		}
+
+		if (type.hasAttribute(ExtendedAttribute.TANGENT)) {
+			bindings.add(new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.TANGENT,
+				vertexFormat.getAttribute(IrisChunkMeshAttributes.TANGENT)));
+		}
+
+		if (type.hasAttribute(ExtendedAttribute.NORMAL)) {
+			bindings.add(new GlVertexAttributeBinding(IrisChunkShaderBindingPoints.NORMAL,
+				vertexFormat.getAttribute(IrisChunkMeshAttributes.NORMAL)));
+		}
+
+		attributes = bindings.toArray(new GlVertexAttributeBinding[0]);
 
 		return TessellationBinding.forVertexBuffer(buffer, attributes);
 	}
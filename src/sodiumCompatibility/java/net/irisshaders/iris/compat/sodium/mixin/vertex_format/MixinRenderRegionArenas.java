@@ -16,6 +16,6 @@ public class MixinRenderRegionArenas {
 			target = "Lme/jellysquid/mods/sodium/client/render/chunk/vertex/format/ChunkMeshFormats;COMPACT:Lme/jellysquid/mods/sodium/client/render/chunk/vertex/format/ChunkVertexType;",
 			remap = false))
 	private ChunkVertexType iris$useExtendedStride() {
-		return WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat() ? IrisModelVertexFormats.MODEL_VERTEX_XHFP : ChunkMeshFormats.COMPACT;
+		return WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat() ? IrisModelVertexFormats.getTerrainVertexType() : ChunkMeshFormats.COMPACT;
 	}
 }
@@ -14,13 +14,13 @@ public class MixinRenderSectionManager {
 		at = @At(value = "INVOKE",
 			target = "Lme/jellysquid/mods/sodium/client/render/chunk/DefaultChunkRenderer;<init>(Lme/jellysquid/mods/sodium/client/gl/device/RenderDevice;Lme/jellysquid/mods/sodium/client/render/chunk/vertex/format/ChunkVertexType;)V"))
 	private ChunkVertexType iris$useExtendedVertexFormat$1(ChunkVertexType vertexType) {
-		return WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat() ? IrisModelVertexFormats.MODEL_VERTEX_XHFP : vertexType;
+		return WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat() ? IrisModelVertexFormats.getTerrainVertexType() : vertexType;
 	}
 
 	@ModifyArg(method = "<init>",
 		at = @At(value = "INVOKE",
 			target = "Lme/jellysquid/mods/sodium/client/render/chunk/compile/executor/ChunkBuilder;<init>(Lnet/minecraft/client/multiplayer/ClientLevel;Lme/jellysquid/mods/sodium/client/render/chunk/vertex/format/ChunkVertexType;)V"))
 	private ChunkVertexType iris$useExtendedVertexFormat$2(ChunkVertexType vertexType) {
-		return WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat() ? IrisModelVertexFormats.MODEL_VERTEX_XHFP : vertexType;
+		return WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat() ? IrisModelVertexFormats.getTerrainVertexType() : vertexType;
 	}
 }
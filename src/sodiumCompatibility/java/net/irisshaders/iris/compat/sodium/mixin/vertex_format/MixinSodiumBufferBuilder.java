@@ -11,6 +11,7 @@ import net.irisshaders.iris.compat.sodium.impl.vertex_format.IrisCommonVertexAtt
 import net.irisshaders.iris.compat.sodium.impl.vertex_format.SodiumBufferBuilderPolygonView;
 import net.irisshaders.iris.uniforms.CapturedRenderingState;
 import net.irisshaders.iris.vertices.BlockSensitiveBufferBuilder;
+import net.irisshaders.iris.vertices.ExtendedAttribute;
 import net.irisshaders.iris.vertices.ExtendedDataHelper;
 import net.irisshaders.iris.vertices.IrisExtendedBufferBuilder;
 import net.irisshaders.iris.vertices.NormI8;
@@ -25,6 +26,8 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.Set;
+
 @Mixin(SodiumBufferBuilder.class)
 public abstract class MixinSodiumBufferBuilder implements BlockSensitiveBufferBuilder {
 	@Unique
@@ -179,11 +182,15 @@ public abstract class MixinSodiumBufferBuilder implements BlockSensitiveBufferBu
 		this.writtenAttributes |= ATTRIBUTE_TANGENT_BIT;
 
 		if (ext.iris$isTerrain()) {
-			final long offset = MemoryUtil.memAddress(this.builder.sodium$getBuffer(), this.builder.sodium$getElementOffset() + this.attributeOffsetPosition);
-			float x = PositionAttribute.getX(offset);
-			float y = PositionAttribute.getY(offset);
-			float z = PositionAttribute.getZ(offset);
-			putMidBlockAttribute(ExtendedDataHelper.computeMidBlock(x, y, z, ext.iris$currentLocalPosX(), ext.iris$currentLocalPosY(), ext.iris$currentLocalPosZ()));
+			if (ext.iris$referencedAttributes().contains(ExtendedAttribute.MID_BLOCK)) {
+				final long offset = MemoryUtil.memAddress(this.builder.sodium$getBuffer(), this.builder.sodium$getElementOffset() + this.attributeOffsetPosition);
+				float x = PositionAttribute.getX(offset);
+				float y = PositionAttribute.getY(offset);
+				float z = PositionAttribute.getZ(offset);
+				putMidBlockAttribute(ExtendedDataHelper.computeMidBlock(x, y, z, ext.iris$currentLocalPosX(), ext.iris$currentLocalPosY(), ext.iris$currentLocalPosZ()));
+			} else {
+				putMidBlockAttribute(0);
+			}
 		}
 
 		ext.iris$incrementVertexCount();
@@ -207,38 +214,63 @@ public abstract class MixinSodiumBufferBuilder implements BlockSensitiveBufferBu
 		long ptr = MemoryUtil.memAddress(builder.sodium$getBuffer(), this.builder.sodium$getElementOffset());
 		polygon.setup(ptr, attributeOffsetPosition, attributeOffsetTexture, stride, vertexAmount);
 
+		// Attributes that aren't read are still written as zeroes, since nothing else fills them in
+		Set<ExtendedAttribute> referenced = ext.iris$referencedAttributes();
+		boolean computeMidTexCoord = referenced.contains(ExtendedAttribute.MID_TEX_COORD);
+		boolean computeNormal = referenced.contains(ExtendedAttribute.NORMAL);
+		boolean computeTangent = referenced.contains(ExtendedAttribute.TANGENT);
+
 		float midU = 0;
 		float midV = 0;
 
-		for (int vertex = 0; vertex < vertexAmount; vertex++) {
-			midU += polygon.u(vertex);
-			midV += polygon.v(vertex);
-		}
+		if (computeMidTexCoord) {
+			for (int vertex = 0; vertex < vertexAmount; vertex++) {
+				midU += polygon.u(vertex);
+				midV += polygon.v(vertex);
+			}
 
-		midU /= vertexAmount;
-		midV /= vertexAmount;
+			midU /= vertexAmount;
+			midV /= vertexAmount;
+		}
 
 		if (vertexAmount == 3) {
 			// NormalHelper.computeFaceNormalTri(normal, polygon);	// Removed to enable smooth shaded triangles. Mods rendering triangles with bad normals need to recalculate their normals manually or otherwise shading might be inconsistent.
 
 			for (int vertex = 0; vertex < vertexAmount; vertex++) {
-				int packedNormal = NormalAttribute.get(ptr + attributeOffsetNormal - (long) stride * vertex); // retrieve per-vertex normal
+				int tangent = 0;
 
-				int tangent = NormalHelper.computeTangentSmooth(NormI8.unpackX(packedNormal), NormI8.unpackY(packedNormal), NormI8.unpackZ(packedNormal), polygon);
+				if (computeTangent) {
+					int packedNormal = NormalAttribute.get(ptr + attributeOffsetNormal - (long) stride * vertex); // retrieve per-vertex normal
+
+					tangent = NormalHelper.computeTangentSmooth(NormI8.unpackX(packedNormal), NormI8.unpackY(packedNormal), NormI8.unpackZ(packedNormal), polygon);
+				}
 
 				MemoryUtil.memPutFloat(ptr + attributeOffsetMidTexCoord - (long) stride * vertex, midU);
 				MemoryUtil.memPutFloat(ptr + attributeOffsetMidTexCoord + 4 - (long) stride * vertex, midV);
 				MemoryUtil.memPutInt(ptr + attributeOffsetTangent - (long) stride * vertex, tangent);
 			}
 		} else {
-			NormalHelper.computeFaceNormal(normal, polygon);
-			int packedNormal = NormI8.pack(normal.x, normal.y, normal.z, 0.0f);
-			int tangent = NormalHelper.computeTangent(normal.x, normal.y, normal.z, polygon);
+			int packedNormal = 0;
+			int tangent = 0;
+
+			// The tangent is computed relative to the face normal
+			if (computeNormal || computeTangent) {
+				NormalHelper.computeFaceNormal(normal, polygon);
+				packedNormal = NormI8.pack(normal.x, normal.y, normal.z, 0.0f);
+			}
+
+			if (computeTangent) {
+				tangent = NormalHelper.computeTangent(normal.x, normal.y, normal.z, polygon);
+			}
 
 			for (int vertex = 0; vertex < vertexAmount; vertex++) {
 				MemoryUtil.memPutFloat(ptr + attributeOffsetMidTexCoord - (long) stride * vertex, midU);
 				MemoryUtil.memPutFloat(ptr + attributeOffsetMidTexCoord + 4 - (long) stride * vertex, midV);
-				MemoryUtil.memPutInt(ptr + attributeOffsetNormal - (long) stride * vertex, packedNormal);
+
+				if (computeNormal) {
+					MemoryUtil.memPutInt(ptr + attributeOffsetNormal - (long) stride * vertex, packedNormal);
+				}
+
 				MemoryUtil.memPutInt(ptr + attributeOffsetTangent - (long) stride * vertex, tangent);
 			}
 		}